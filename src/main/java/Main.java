@@ -1,5 +1,9 @@
-public class Main {
-    public static void main(String[] args) {
+import com.dhu.zlchashmap.workload.WorkloadDriver;
 
+public class Main {
+    // 负载驱动，参数见 WorkloadConfig，例如：
+    // --map=concurrent --threads=virtual --concurrency=1000 --mix=90:8:2 --dist=zipfian --rate=200000
+    public static void main(String[] args) throws InterruptedException {
+        WorkloadDriver.main(args);
     }
 }
@@ -0,0 +1,233 @@
+package com.dhu.zlchashmap;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * MyHashMap 的自适应容量策略，通过 MyHashMap.setAdaptiveSizing 挂上，代替手工给每个构造调用挑负载因子。
+ * <p>
+ * 每 sampleInterval 次 get/put 采样一次：get 记录这次查找比较了几个节点、是否命中，put 记录所在桶的条目数。
+ * 每攒够 window 个样本在下一次 put 中评估一次（get 只采样，不会改变表结构）：
+ * <ul>
+ *     <li>内存紧张（memoryTight 为 true）时负载因子调高一档，推迟下一次扩容，最高到 maxLoadFactor</li>
+ *     <li>否则平均比较次数超过 targetProbes 或最长的桶超过 maxChain 时负载因子调低一档，最低到 minLoadFactor，
+ *     条目数因此超过阈值时立即扩容（提前扩容）。条目数不到容量 × minLoadFactor 时长链来自哈希冲突而不是负载，
+ *     扩容没有帮助，不做调整</li>
+ *     <li>内存不再紧张、链长正常而负载因子仍高于挂上时的值，调回一档</li>
+ * </ul>
+ * 每个决定都作为 Decision 交给 listener，并保留最近 HISTORY 个。
+ * 一个实例只能挂在一个映射上，与 MyHashMap 一样不是线程安全的
+ */
+public class AdaptiveSizing {
+    static final int DEFAULT_SAMPLE_INTERVAL = 64;
+    static final int DEFAULT_WINDOW = 256;
+    static final double DEFAULT_TARGET_PROBES = 2.0;
+    static final int DEFAULT_MAX_CHAIN = 8;
+    static final double DEFAULT_HEAP_FRACTION = 0.85;
+    static final float STEP = 0.125f; // 负载因子每次调整的幅度
+    static final int HISTORY = 64;
+
+    public enum Kind {
+        /**
+         * 链长超标，调低负载因子并因此立即扩容
+         */
+        GROW_EARLY,
+        /**
+         * 链长超标，调低负载因子，下一次扩容提前
+         */
+        LOWER_LOAD_FACTOR,
+        /**
+         * 内存紧张，调高负载因子
+         */
+        RAISE_LOAD_FACTOR,
+        /**
+         * 内存恢复，负载因子调回挂上时的值
+         */
+        RESTORE_LOAD_FACTOR
+    }
+
+    /**
+     * 一次调整及其依据。averageProbes、maxChain、hitRatio 是触发评估的那个窗口的采样结果
+     */
+    public record Decision(Kind kind, int size, int capacityBefore, int capacityAfter,
+                           float loadFactorBefore, float loadFactorAfter,
+                           double averageProbes, int maxChain, double hitRatio, boolean memoryTight) {
+    }
+
+    private final float minLoadFactor;
+    private final float maxLoadFactor;
+    private final double targetProbes;
+    private final int maxChain;
+    private final int sampleMask;
+    private final int window;
+    private final BooleanSupplier memoryTight;
+    private Consumer<? super Decision> listener;
+    private final ArrayDeque<Decision> history = new ArrayDeque<>();
+
+    private MyHashMap<?, ?> owner;
+    private float baseLoadFactor;
+    private int ops;
+    private int samples;
+    private int lookups;
+    private int hits;
+    private long probeSum;
+    private int longest;
+    private long evaluations;
+
+    /**
+     * 负载因子在 [0.5, 1.0] 之间调整，内存紧张以堆使用超过 85% 为准（见 heapUsageAbove）
+     */
+    public AdaptiveSizing() {
+        this(0.5f, 1.0f, DEFAULT_TARGET_PROBES, DEFAULT_MAX_CHAIN,
+                DEFAULT_SAMPLE_INTERVAL, DEFAULT_WINDOW, heapUsageAbove(DEFAULT_HEAP_FRACTION));
+    }
+
+    /**
+     * @param targetProbes   查找平均比较节点数的上限
+     * @param maxChain       窗口内允许的最长桶
+     * @param sampleInterval 每多少次操作采样一次，2 的幂
+     * @param window         每多少个样本评估一次
+     * @param memoryTight    内存是否紧张，每次评估时调用
+     */
+    public AdaptiveSizing(float minLoadFactor, float maxLoadFactor, double targetProbes, int maxChain,
+                          int sampleInterval, int window, BooleanSupplier memoryTight) {
+        if (!(minLoadFactor > 0) || !(maxLoadFactor >= minLoadFactor))
+            throw new IllegalArgumentException("Illegal load factor bounds: " + minLoadFactor + ", " + maxLoadFactor);
+        if (!(targetProbes >= 1)) throw new IllegalArgumentException("Illegal target probes: " + targetProbes);
+        if (maxChain <= 0) throw new IllegalArgumentException("Illegal max chain: " + maxChain);
+        if (sampleInterval <= 0 || Integer.bitCount(sampleInterval) != 1)
+            throw new IllegalArgumentException("Sample interval must be a power of two: " + sampleInterval);
+        if (window <= 0) throw new IllegalArgumentException("Illegal window: " + window);
+        this.minLoadFactor = minLoadFactor;
+        this.maxLoadFactor = maxLoadFactor;
+        this.targetProbes = targetProbes;
+        this.maxChain = maxChain;
+        this.sampleMask = sampleInterval - 1;
+        this.window = window;
+        this.memoryTight = Objects.requireNonNull(memoryTight);
+    }
+
+    /**
+     * 堆内存是否紧张：某个堆内存池最近一次 GC 后的占用超过最大值的 fraction。
+     * 借助 MemoryPoolMXBean 的 collection usage threshold 实现，阈值是 JVM 全局的设置，已经设过的内存池沿用原值
+     */
+    public static BooleanSupplier heapUsageAbove(double fraction) {
+        if (!(fraction > 0 && fraction < 1)) throw new IllegalArgumentException("Illegal fraction: " + fraction);
+        List<MemoryPoolMXBean> pools = new ArrayList<>();
+        for (MemoryPoolMXBean p : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (p.getType() != MemoryType.HEAP || !p.isCollectionUsageThresholdSupported()) continue;
+            long max = p.getUsage().getMax();
+            if (max <= 0) continue;
+            if (p.getCollectionUsageThreshold() == 0) p.setCollectionUsageThreshold((long) (max * fraction));
+            pools.add(p);
+        }
+        return () -> {
+            for (MemoryPoolMXBean p : pools) {
+                if (p.isCollectionUsageThresholdExceeded()) return true;
+            }
+            return false;
+        };
+    }
+
+    /**
+     * 每个决定生效后在 put 的调用线程上通知
+     */
+    public void setListener(Consumer<? super Decision> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 最近的决定，从旧到新
+     */
+    public List<Decision> recentDecisions() {
+        return new ArrayList<>(history);
+    }
+
+    public long evaluations() {
+        return evaluations;
+    }
+
+    /* ----------------- MyHashMap 调用 -------------------- */
+
+    void attach(MyHashMap<?, ?> map) {
+        if (owner != null && owner != map) throw new IllegalStateException("AdaptiveSizing is already attached to another map");
+        owner = map;
+        baseLoadFactor = map.loadFactor;
+        resetWindow();
+    }
+
+    void detach(MyHashMap<?, ?> map) {
+        if (owner == map) owner = null;
+    }
+
+    /**
+     * 这次操作是否采样
+     */
+    boolean tick() {
+        return (++ops & sampleMask) == 0;
+    }
+
+    void sampleLookup(int probes, boolean hit) {
+        lookups++;
+        probeSum += probes;
+        if (hit) hits++;
+        longest = Math.max(longest, probes);
+        samples++;
+    }
+
+    void samplePut(MyHashMap<?, ?> map, int binLength) {
+        longest = Math.max(longest, binLength);
+        if (++samples >= window) evaluate(map);
+    }
+
+    private void resetWindow() {
+        samples = 0;
+        lookups = 0;
+        hits = 0;
+        probeSum = 0;
+        longest = 0;
+    }
+
+    private void evaluate(MyHashMap<?, ?> map) {
+        evaluations++;
+        double avg = lookups == 0 ? 0 : (double) probeSum / lookups;
+        double hitRatio = lookups == 0 ? 1 : (double) hits / lookups;
+        int maxSeen = longest;
+        boolean tight = memoryTight.getAsBoolean();
+        resetWindow();
+
+        float lf = map.loadFactor;
+        Kind kind;
+        float target;
+        if (tight) {
+            if (lf >= maxLoadFactor) return;
+            kind = Kind.RAISE_LOAD_FACTOR;
+            target = Math.min(maxLoadFactor, lf + STEP);
+        } else if (avg > targetProbes || maxSeen > maxChain) {
+            if (lf <= minLoadFactor || map.size < map.capacity * minLoadFactor) return;
+            kind = Kind.LOWER_LOAD_FACTOR;
+            target = Math.max(minLoadFactor, lf - STEP);
+        } else if (lf > baseLoadFactor) {
+            kind = Kind.RESTORE_LOAD_FACTOR;
+            target = Math.max(baseLoadFactor, lf - STEP);
+        } else {
+            return;
+        }
+        int capacityBefore = map.capacity;
+        map.adjustLoadFactor(target);
+        if (kind == Kind.LOWER_LOAD_FACTOR && map.capacity != capacityBefore) kind = Kind.GROW_EARLY;
+        Decision d = new Decision(kind, map.size, capacityBefore, map.capacity, lf, target,
+                avg, maxSeen, hitRatio, tight);
+        if (history.size() == HISTORY) history.removeFirst();
+        history.addLast(d);
+        Consumer<? super Decision> l = listener;
+        if (l != null) l.accept(d);
+    }
+}
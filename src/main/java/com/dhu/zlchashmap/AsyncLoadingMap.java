@@ -0,0 +1,83 @@
+package com.dhu.zlchashmap;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * 异步加载的缓存映射，解决缓存失效时大量请求同时回源（cache stampede）的问题。
+ * <p>
+ * 底层是 MyConcurrentHashMap&lt;K, CompletableFuture&lt;V&gt;&gt;：同一个键只会放入一个 future，
+ * 所有并发的 get 拿到同一个 future，loader 在 executor 上只执行一次，调用线程不会阻塞在桶锁或加载上。
+ * 命中走无锁的 get。
+ * <p>
+ * 加载失败（抛出异常或返回 null）时 future 以异常完成，随后从映射中移除，下一次 get 会重新加载
+ */
+public class AsyncLoadingMap<K, V> {
+    private final MyConcurrentHashMap<K, CompletableFuture<V>> futures;
+    private final Function<? super K, ? extends V> loader;
+    private final Executor executor;
+
+    public AsyncLoadingMap(Function<? super K, ? extends V> loader) {
+        this(loader, ForkJoinPool.commonPool());
+    }
+
+    public AsyncLoadingMap(Function<? super K, ? extends V> loader, Executor executor) {
+        this.loader = Objects.requireNonNull(loader);
+        this.executor = Objects.requireNonNull(executor);
+        this.futures = new MyConcurrentHashMap<>();
+    }
+
+    /**
+     * 返回键对应的 future，不存在时提交一次加载
+     */
+    public CompletableFuture<V> get(K key) {
+        CompletableFuture<V> f = futures.get(key);
+        if (f != null) {
+            return f;
+        }
+        CompletableFuture<V> created = new CompletableFuture<>();
+        f = futures.computeIfAbsent(key, k -> created);
+        if (f == created) {
+            // 放入映射之后才开始加载，失败时的移除一定能找到这个 future
+            created.whenComplete((v, ex) -> {
+                if (ex != null) futures.remove(key, created);
+            });
+            executor.execute(() -> {
+                try {
+                    V v = loader.apply(key);
+                    if (v == null) throw new NullPointerException("loader returned null for " + key);
+                    created.complete(v);
+                } catch (Throwable ex) {
+                    created.completeExceptionally(ex);
+                }
+            });
+        }
+        return f;
+    }
+
+    /**
+     * 已有的 future（可能尚未完成），不触发加载
+     */
+    public CompletableFuture<V> getIfPresent(K key) {
+        return futures.get(key);
+    }
+
+    /**
+     * 放入已知的值，替换正在进行或已完成的加载
+     */
+    public void put(K key, V value) {
+        Objects.requireNonNull(value);
+        futures.put(key, CompletableFuture.completedFuture(value));
+    }
+
+    public void invalidate(K key) {
+        futures.remove(key);
+    }
+
+    public int size() {
+        return futures.size();
+    }
+}
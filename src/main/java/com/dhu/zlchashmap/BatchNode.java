@@ -0,0 +1,46 @@
+package com.dhu.zlchashmap;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 多键原子操作执行期间占住桶的节点（见 MyConcurrentHashMap.putAllAtomic）。
+ * <p>
+ * before 是占住时的桶头，after 是修改后的桶头（在副本上构建，before 始终不变）。
+ * 同一批的所有 BatchNode 共享一个 Batch，提交就是一次 volatile 写：读者提交前读 before、提交后读 after，
+ * 所以不会看到一部分桶已修改而另一部分还没有。写者遇到它时等待这一批结束
+ */
+final class BatchNode<K, V> extends Node<K, V> {
+
+    static final class Batch {
+        volatile boolean committed;
+        // 提交或放弃后完成，等待的写者随后重新读取桶头
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        void await() {
+            done.join();
+        }
+    }
+
+    final Batch batch;
+    final Node<K, V> before;
+    Node<K, V> after; // 在 committed 的 volatile 写之前赋值
+
+    BatchNode(Batch batch, Node<K, V> before) {
+        super(MyConcurrentHashMap.BATCH, null, null);
+        this.batch = batch;
+        this.before = before;
+    }
+
+    /**
+     * 读者此刻应该看到的桶头
+     */
+    Node<K, V> current() {
+        return batch.committed ? after : before;
+    }
+
+    @Override
+    public Node<K, V> find(int h, Object k) {
+        Node<K, V> e = current();
+        return e == null ? null : e.find(h, k);
+    }
+}
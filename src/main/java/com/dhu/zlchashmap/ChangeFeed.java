@@ -0,0 +1,280 @@
+package com.dhu.zlchashmap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * MyHashMap 的变更流：映射通过 setChangeFeed 挂上之后，put、remove 和 compute 系列操作产生的每次修改
+ * 都会作为 Change 发给所有订阅者，订阅者据此增量维护索引、副本等，代价与修改次数成正比而不是与映射大小成正比。
+ * <p>
+ * 每个订阅者有自己的有界环形缓冲区，事件在 executor 上按批（每批最多 maxBatch 个）通过 onNext 交付，
+ * 每批消耗一个 request 配额。缓冲区满时写映射的线程等待订阅者消费（背压），订阅者取消后不再等待。
+ * 订阅只收到订阅之后的修改。onNext、onError、onComplete 都只在 executor 上的交付任务中调用。
+ * <p>
+ * 背压等待要求交付能在写线程之外进行：executor 是同线程执行器（Runnable::run）而 request 也只由写线程发出，
+ * 或者写线程本身就是单线程 executor 的唯一线程时，缓冲区一满，写线程会在 offer 中永久阻塞
+ * <p>
+ * coalescing 模式下，同一个键还在缓冲区里的事件会与新事件合并为一个（插入后删除则互相抵消），
+ * 订阅者看到的是每个键的净变化；合并后的事件留在较早事件的位置，不同键之间的顺序因此可能与修改顺序不同
+ */
+public class ChangeFeed<K, V> implements Flow.Publisher<List<ChangeFeed.Change<K, V>>> {
+    static final int DEFAULT_BUFFER_SIZE = 1024;
+    static final int DEFAULT_MAX_BATCH = 256;
+
+    public enum Kind {INSERT, REPLACE, REMOVE}
+
+    /**
+     * 一次修改。INSERT 的 oldValue 和 REMOVE 的 newValue 总是 null
+     */
+    public record Change<K, V>(Kind kind, K key, V oldValue, V newValue) {
+
+        /**
+         * 同一个键上先发生 this、后发生 later 的净效果，互相抵消时返回 null
+         */
+        Change<K, V> then(Change<K, V> later) {
+            return switch (kind) {
+                case INSERT -> later.kind == Kind.REMOVE ? null : new Change<>(Kind.INSERT, key, null, later.newValue);
+                case REPLACE -> new Change<>(later.kind, key, oldValue, later.newValue);
+                case REMOVE -> later.kind == Kind.REMOVE ? this : new Change<>(Kind.REPLACE, key, oldValue, later.newValue);
+            };
+        }
+    }
+
+    /**
+     * coalescing 模式下互相抵消的事件留下的空位，同一个键的下一个事件直接放回这里
+     */
+    private record Cancelled(Object key) {
+    }
+
+    private final Executor executor;
+    private final int bufferSize;
+    private final int maxBatch;
+    private final boolean coalescing;
+    private final List<ChangeSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
+
+    public ChangeFeed() {
+        this(ForkJoinPool.commonPool(), DEFAULT_BUFFER_SIZE, DEFAULT_MAX_BATCH, false);
+    }
+
+    /**
+     * @param bufferSize 每个订阅者缓冲的事件数上限
+     * @param maxBatch   每次 onNext 交付的事件数上限
+     * @param coalescing 是否合并同一个键尚未交付的事件
+     */
+    public ChangeFeed(Executor executor, int bufferSize, int maxBatch, boolean coalescing) {
+        if (bufferSize <= 0) throw new IllegalArgumentException("Illegal buffer size: " + bufferSize);
+        if (maxBatch <= 0) throw new IllegalArgumentException("Illegal batch size: " + maxBatch);
+        this.executor = Objects.requireNonNull(executor);
+        this.bufferSize = bufferSize;
+        this.maxBatch = maxBatch;
+        this.coalescing = coalescing;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super List<Change<K, V>>> subscriber) {
+        Objects.requireNonNull(subscriber);
+        ChangeSubscription s = new ChangeSubscription(subscriber);
+        subscriber.onSubscribe(s);
+        if (closed) {
+            s.done = true;
+            s.signal();
+        } else {
+            subscriptions.add(s);
+        }
+    }
+
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    /**
+     * 不再发布新事件；各订阅者收完缓冲区里的事件后收到 onComplete
+     */
+    public void close() {
+        closed = true;
+        for (ChangeSubscription s : subscriptions) {
+            s.lock.lock();
+            try {
+                s.done = true;
+            } finally {
+                s.lock.unlock();
+            }
+            s.signal();
+        }
+        subscriptions.clear();
+    }
+
+    void publish(Kind kind, K key, V oldValue, V newValue) {
+        if (closed || subscriptions.isEmpty()) return;
+        Change<K, V> c = new Change<>(kind, key, oldValue, newValue);
+        for (ChangeSubscription s : subscriptions) {
+            s.offer(c);
+        }
+    }
+
+    /**
+     * 一个订阅者的缓冲区和交付状态。写映射的线程在 lock 内入队，交付任务在 lock 内按批出队、在 lock 外调用 onNext；
+     * wip 保证同一时刻只有一个交付任务在运行
+     */
+    private final class ChangeSubscription implements Flow.Subscription {
+        final Flow.Subscriber<? super List<Change<K, V>>> subscriber;
+        final ReentrantLock lock = new ReentrantLock();
+        final Condition notFull = lock.newCondition();
+        final AtomicLong demand = new AtomicLong();
+        final AtomicInteger wip = new AtomicInteger();
+
+        // 环形缓冲区，seq 是事件的全局序号，所在槽为 seq % 长度；合并抵消掉的事件留下 Cancelled
+        final Object[] ring = new Object[bufferSize];
+        long headSeq;
+        long tailSeq;
+        // coalescing 模式下键 -> 它在缓冲区中的事件序号
+        final MyHashMap<K, Long> pending = coalescing ? new MyHashMap<>() : null;
+
+        boolean done;
+        volatile boolean cancelled;
+        // request 参数非法时记下的错误，由交付任务发出；errorDelivered 只在交付任务中访问
+        volatile Throwable error;
+        boolean errorDelivered;
+
+        ChangeSubscription(Flow.Subscriber<? super List<Change<K, V>>> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @SuppressWarnings("unchecked")
+        void offer(Change<K, V> c) {
+            lock.lock();
+            try {
+                if (pending != null) {
+                    Long seq = pending.get(c.key());
+                    if (seq != null) {
+                        int slot = (int) (seq % ring.length);
+                        if (ring[slot] instanceof Change<?, ?> earlier) {
+                            Change<K, V> merged = ((Change<K, V>) earlier).then(c);
+                            ring[slot] = merged != null ? merged : new Cancelled(c.key());
+                        } else {
+                            ring[slot] = c;
+                        }
+                        return;
+                    }
+                }
+                while (tailSeq - headSeq == ring.length && !cancelled) {
+                    notFull.awaitUninterruptibly();
+                }
+                if (cancelled) return;
+                if (pending != null) pending.put(c.key(), tailSeq);
+                ring[(int) (tailSeq++ % ring.length)] = c;
+            } finally {
+                lock.unlock();
+            }
+            // 先入队再读 demand：与 request 先加 demand 再 signal 配合，不会漏掉交付
+            if (demand.get() > 0) signal();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                // 规范 §3.9：以 onError 结束订阅；不在调用 request 的线程上直接回调
+                cancel();
+                if (error == null) error = new IllegalArgumentException("non-positive subscription request: " + n);
+                signal();
+                return;
+            }
+            long d;
+            do {
+                d = demand.get();
+            } while (!demand.compareAndSet(d, d + n < 0 ? Long.MAX_VALUE : d + n));
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+            lock.lock();
+            try {
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void signal() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                Throwable e = error;
+                if (e != null && !errorDelivered) {
+                    errorDelivered = true;
+                    subscriber.onError(e);
+                }
+                while (!cancelled) {
+                    List<Change<K, V>> batch;
+                    boolean complete = false;
+                    lock.lock();
+                    try {
+                        if (headSeq == tailSeq) {
+                            if (!done) break;
+                            complete = true;
+                            batch = null;
+                        } else if (demand.get() == 0) {
+                            break;
+                        } else {
+                            batch = take();
+                            notFull.signalAll();
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                    if (complete) {
+                        cancelled = true;
+                        subscriber.onComplete();
+                        break;
+                    }
+                    if (batch.isEmpty()) continue; // 取出的都是合并抵消掉的空位
+                    demand.decrementAndGet();
+                    try {
+                        subscriber.onNext(batch);
+                    } catch (Throwable ex) {
+                        cancel();
+                        subscriber.onError(ex);
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<Change<K, V>> take() {
+            int n = (int) Math.min(maxBatch, tailSeq - headSeq);
+            List<Change<K, V>> batch = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                int slot = (int) (headSeq++ % ring.length);
+                Object o = ring[slot];
+                ring[slot] = null;
+                if (o instanceof Cancelled x) {
+                    pending.remove(x.key());
+                    continue;
+                }
+                Change<K, V> c = (Change<K, V>) o;
+                if (pending != null) pending.remove(c.key());
+                batch.add(c);
+            }
+            return batch;
+        }
+    }
+}
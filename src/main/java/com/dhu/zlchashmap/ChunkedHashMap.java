@@ -0,0 +1,390 @@
+package com.dhu.zlchashmap;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * 分块存储桶数组的哈希表，用于超大映射。桶结构与 MyHashMap 相同（链表 + 红黑树，hash 用 MyHashMap.hash），区别在于：
+ * <ul>
+ *     <li>桶数组是一个块目录，每块固定 2^16 个桶，块在第一次写入时才分配，不会出现几 GB 的连续数组，
+ *     块的大小也低于 G1 在大堆上的 humongous 阈值（半个 region）</li>
+ *     <li>容量和 size 都是 long，容量上限为 2^32（hash 只有 32 位，更多的桶没有意义）</li>
+ *     <li>扩容只把目录加倍，旧块由之后的每次 put/remove 各拆分一块，
+ *     拆分时低位留在原块、高位放入新块，不需要一次性迁移整张表</li>
+ * </ul>
+ * 容量不足一块时只有一个长度等于容量的块，扩容一次完成。允许 null 键和 null 值。不是线程安全的
+ */
+public class ChunkedHashMap<K, V> {
+    static final int DEFAULT_CHUNK_SHIFT = 16;
+    static final long MAXIMUM_CAPACITY = 1L << 32;
+
+    private final int chunkShift;
+    private final int chunkSize;
+    private final float loadFactor;
+
+    private Node<K, V>[][] chunks; // 块目录，元素为 null 表示这一块还没有任何节点
+    private long capacity;
+    private long size;
+    private long threshold;
+
+    // 增量扩容：oldCapacity 为 0 表示没有进行中的扩容；旧表中下标小于 splitCursor 的块已经拆分
+    private long oldCapacity;
+    private int splitCursor;
+
+    public ChunkedHashMap() {
+        this(MyHashMap.DEFAULT_CAPACITY);
+    }
+
+    public ChunkedHashMap(long initialCapacity) {
+        this(initialCapacity, MyHashMap.LOAD_FACTOR);
+    }
+
+    public ChunkedHashMap(long initialCapacity, float loadFactor) {
+        this(initialCapacity, loadFactor, DEFAULT_CHUNK_SHIFT);
+    }
+
+    @SuppressWarnings("unchecked")
+    ChunkedHashMap(long initialCapacity, float loadFactor, int chunkShift) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " + initialCapacity);
+        if (loadFactor <= 0 || Float.isNaN(loadFactor))
+            throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
+        this.chunkShift = chunkShift;
+        this.chunkSize = 1 << chunkShift;
+        this.loadFactor = loadFactor;
+        this.capacity = capacitySizeFor(initialCapacity);
+        this.chunks = (Node<K, V>[][]) new Node[chunkCount(capacity)][];
+        this.threshold = thresholdFor(capacity);
+    }
+
+    static long capacitySizeFor(long cap) {
+        if (cap >= MAXIMUM_CAPACITY) return MAXIMUM_CAPACITY;
+        return cap <= 1 ? 1 : Long.highestOneBit(cap - 1) << 1;
+    }
+
+    private int chunkCount(long cap) {
+        return (int) Math.max(1, cap >>> chunkShift);
+    }
+
+    private long thresholdFor(long cap) {
+        return cap >= MAXIMUM_CAPACITY ? Long.MAX_VALUE : (long) (cap * (double) loadFactor);
+    }
+
+    /* ----------------- 定位桶 -------------------- */
+
+    /**
+     * 桶下标：旧表中还没拆分的块仍按旧容量定位
+     */
+    private long indexFor(int h) {
+        long u = h & 0xFFFFFFFFL;
+        if (oldCapacity != 0) {
+            long io = u & (oldCapacity - 1);
+            if ((io >>> chunkShift) >= splitCursor) return io;
+        }
+        return u & (capacity - 1);
+    }
+
+    private Node<K, V> binAt(long i) {
+        Node<K, V>[] c = chunks[(int) (i >>> chunkShift)];
+        return c == null ? null : c[(int) i & (chunkSize - 1)];
+    }
+
+    private void setBin(long i, Node<K, V> n) {
+        int ci = (int) (i >>> chunkShift);
+        Node<K, V>[] c = chunks[ci];
+        if (c == null) {
+            if (n == null) return;
+            chunks[ci] = c = newChunk();
+        }
+        c[(int) i & (chunkSize - 1)] = n;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Node<K, V>[] newChunk() {
+        return (Node<K, V>[]) new Node[(int) Math.min(capacity, chunkSize)];
+    }
+
+    /* ----------------- 查找 -------------------- */
+
+    public V get(Object key) {
+        Node<K, V> p = findNode(key);
+        return p == null ? null : p.val;
+    }
+
+    public boolean containsKey(Object key) {
+        return findNode(key) != null;
+    }
+
+    private Node<K, V> findNode(Object key) {
+        int h = MyHashMap.hash(key);
+        Node<K, V> head = binAt(indexFor(h));
+        return head == null ? null : head.find(h, key);
+    }
+
+    public int size() {
+        return size > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) size;
+    }
+
+    public long mappingCount() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+
+    /**
+     * 是否有尚未拆分完的旧块
+     */
+    boolean isResizing() {
+        return oldCapacity != 0;
+    }
+
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        Deque<RedBlackNode<K, V>> stack = new ArrayDeque<>();
+        for (Node<K, V>[] c : chunks) {
+            if (c == null) continue;
+            for (Node<K, V> head : c) {
+                if (head instanceof RedBlackNode<K, V> root) {
+                    stack.push(root);
+                    while (!stack.isEmpty()) {
+                        RedBlackNode<K, V> n = stack.pop();
+                        action.accept(n.key, n.val);
+                        if (n.right != null) stack.push(n.right);
+                        if (n.left != null) stack.push(n.left);
+                    }
+                } else {
+                    for (Node<K, V> e = head; e != null; e = e.next) action.accept(e.key, e.val);
+                }
+            }
+        }
+    }
+
+    /* ----------------- 修改 -------------------- */
+
+    public V put(K key, V value) {
+        if (oldCapacity != 0) splitNextChunk();
+        int h = MyHashMap.hash(key);
+        long i = indexFor(h);
+        Node<K, V> p = binAt(i);
+        if (p == null) {
+            setBin(i, new Node<>(h, key, value));
+        } else if (p instanceof RedBlackNode<K, V> root) {
+            RedBlackNode<K, V> t = root.findNode(root, h, key);
+            if (t != null) {
+                V old = t.val;
+                t.val = value;
+                return old;
+            }
+            RedBlackNode<K, V> x = new RedBlackNode<>(h, key, value, null);
+            setBin(i, x.insertNewNodeWithBalance(root, x));
+        } else {
+            int binCount = 0;
+            Node<K, V> last = null;
+            for (Node<K, V> e = p; e != null; e = e.next) {
+                if (e.hash == h && Objects.equals(e.key, key)) {
+                    V old = e.val;
+                    e.val = value;
+                    return old;
+                }
+                last = e;
+                binCount++;
+            }
+            last.next = new Node<>(h, key, value);
+            if (binCount + 1 >= MyHashMap.TREEIFY_THRESHOLD) {
+                if (capacity < MyHashMap.MIN_TREEIFY_CAPACITY) {
+                    // 表太小时优先扩容
+                    size++;
+                    grow();
+                    return null;
+                }
+                setBin(i, treeify(p));
+            }
+        }
+        if (++size > threshold) grow();
+        return null;
+    }
+
+    public V remove(Object key) {
+        if (oldCapacity != 0) splitNextChunk();
+        int h = MyHashMap.hash(key);
+        long i = indexFor(h);
+        Node<K, V> p = binAt(i);
+        if (p instanceof RedBlackNode<K, V> root) {
+            RedBlackNode<K, V> t = root.findNode(root, h, key);
+            if (t == null) return null;
+            RedBlackNode<K, V> newRoot = root.treeDelete(root, t);
+            setBin(i, newRoot != null && countUpTo(newRoot, MyHashMap.UNTREEIFY_THRESHOLD + 1)
+                    <= MyHashMap.UNTREEIFY_THRESHOLD ? toList(newRoot) : newRoot);
+            size--;
+            return t.val;
+        }
+        for (Node<K, V> e = p, pred = null; e != null; pred = e, e = e.next) {
+            if (e.hash == h && Objects.equals(e.key, key)) {
+                if (pred == null) setBin(i, e.next);
+                else pred.next = e.next;
+                size--;
+                return e.val;
+            }
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void clear() {
+        chunks = (Node<K, V>[][]) new Node[chunks.length][];
+        oldCapacity = 0;
+        size = 0;
+    }
+
+    /* ----------------- 扩容 -------------------- */
+
+    @SuppressWarnings("unchecked")
+    private void grow() {
+        if (capacity >= MAXIMUM_CAPACITY) {
+            threshold = Long.MAX_VALUE;
+            return;
+        }
+        while (oldCapacity != 0) splitNextChunk();
+        long newCap = capacity << 1;
+        if (newCap <= chunkSize) {
+            // 单块：直接搬到两倍长的新块
+            Node<K, V>[] old = chunks[0];
+            int oldCap = (int) capacity;
+            capacity = newCap;
+            Node<K, V>[] c = chunks[0] = newChunk();
+            if (old != null) {
+                for (int j = 0; j < oldCap; j++) {
+                    if (old[j] == null) continue;
+                    Node<K, V>[] parts = splitBin(old[j], oldCap);
+                    c[j] = parts[0];
+                    c[j + oldCap] = parts[1];
+                }
+            }
+        } else {
+            // 多块：目录加倍，旧块留给之后的写操作逐块拆分
+            oldCapacity = capacity;
+            splitCursor = 0;
+            capacity = newCap;
+            chunks = Arrays.copyOf(chunks, chunkCount(newCap));
+        }
+        threshold = thresholdFor(capacity);
+    }
+
+    /**
+     * 拆分旧表的第 splitCursor 块：低位节点留在原块，高位节点进入 oldCapacity 之后对应位置的新块
+     */
+    private void splitNextChunk() {
+        int oldChunks = chunkCount(oldCapacity);
+        int ci = splitCursor;
+        Node<K, V>[] lo = chunks[ci];
+        if (lo != null) {
+            Node<K, V>[] hi = null;
+            for (int j = 0; j < chunkSize; j++) {
+                if (lo[j] == null) continue;
+                Node<K, V>[] parts = splitBin(lo[j], oldCapacity);
+                lo[j] = parts[0];
+                if (parts[1] != null) {
+                    if (hi == null) hi = newChunk();
+                    hi[j] = parts[1];
+                }
+            }
+            chunks[ci + oldChunks] = hi;
+        }
+        if (++splitCursor == oldChunks) {
+            oldCapacity = 0;
+        }
+    }
+
+    /**
+     * 按 hash & bit 把一个桶拆成低位和高位两部分，链表保持原有顺序，树拆开后按大小决定重新树化还是转成链表
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, V> Node<K, V>[] splitBin(Node<K, V> head, long bit) {
+        int b = (int) bit; // bit 最大为 2^31，转成 int 后仍只有这一位
+        if (head instanceof RedBlackNode<K, V> root) {
+            Node<K, V>[] lists = root.split(b);
+            for (int k = 0; k < 2; k++) {
+                int n = 0;
+                for (Node<K, V> e = lists[k]; e != null; e = e.next) n++;
+                lists[k] = n > MyHashMap.UNTREEIFY_THRESHOLD ? treeify(lists[k]) : copyAsList(lists[k]);
+            }
+            return lists;
+        }
+        Node<K, V> loHead = null, loTail = null, hiHead = null, hiTail = null;
+        for (Node<K, V> e = head, next; e != null; e = next) {
+            next = e.next;
+            e.next = null;
+            if ((e.hash & b) == 0) {
+                if (loTail == null) loHead = e;
+                else loTail.next = e;
+                loTail = e;
+            } else {
+                if (hiTail == null) hiHead = e;
+                else hiTail.next = e;
+                hiTail = e;
+            }
+        }
+        return (Node<K, V>[]) new Node[]{loHead, hiHead};
+    }
+
+    private static <K, V> RedBlackNode<K, V> treeify(Node<K, V> head) {
+        RedBlackNode<K, V> root = null;
+        for (Node<K, V> e = head; e != null; e = e.next) {
+            RedBlackNode<K, V> x = new RedBlackNode<>(e.hash, e.key, e.val, null);
+            root = x.insertNewNodeWithBalance(root, x);
+        }
+        return root;
+    }
+
+    /**
+     * 把一串节点（可能是拆开的树节点）复制成普通链表节点
+     */
+    private static <K, V> Node<K, V> copyAsList(Node<K, V> head) {
+        Node<K, V> h = null, tail = null;
+        for (Node<K, V> e = head; e != null; e = e.next) {
+            Node<K, V> copy = new Node<>(e.hash, e.key, e.val);
+            if (tail == null) h = copy;
+            else tail.next = copy;
+            tail = copy;
+        }
+        return h;
+    }
+
+    private static <K, V> Node<K, V> toList(RedBlackNode<K, V> root) {
+        Node<K, V> h = null;
+        Deque<RedBlackNode<K, V>> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            RedBlackNode<K, V> n = stack.pop();
+            h = new Node<>(n.hash, n.key, n.val, h);
+            if (n.right != null) stack.push(n.right);
+            if (n.left != null) stack.push(n.left);
+        }
+        return h;
+    }
+
+    /**
+     * 树的节点数，数到 limit 为止
+     */
+    private static int countUpTo(RedBlackNode<?, ?> root, int limit) {
+        int n = 0;
+        Deque<RedBlackNode<?, ?>> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty() && n < limit) {
+            RedBlackNode<?, ?> x = stack.pop();
+            n++;
+            if (x.right != null) stack.push(x.right);
+            if (x.left != null) stack.push(x.left);
+        }
+        return n;
+    }
+}
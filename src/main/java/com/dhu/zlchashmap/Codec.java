@@ -0,0 +1,25 @@
+package com.dhu.zlchashmap;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * 键/值的二进制编解码器，用于日志、快照等持久化场景。
+ * 实现不需要处理 null，null 由调用方用标志位单独记录
+ */
+public interface Codec<T> {
+
+    void encode(T value, DataOutput out) throws IOException;
+
+    T decode(DataInput in) throws IOException;
+
+    /**
+     * 作为键的编解码器时，是否把 hash 一并写出。
+     * 适用于 hashCode 计算昂贵且跨 JVM 稳定的键（不能依赖 identityHashCode），
+     * 读取时直接使用写出的 hash 放入桶中，不再调用 hashCode
+     */
+    default boolean storesHash() {
+        return false;
+    }
+}
@@ -0,0 +1,97 @@
+package com.dhu.zlchashmap;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 常用类型的内置编解码器
+ */
+public final class Codecs {
+    private Codecs() {
+    }
+
+    public static final Codec<Integer> INTEGER = new Codec<>() {
+        @Override
+        public void encode(Integer value, DataOutput out) throws IOException {
+            out.writeInt(value);
+        }
+
+        @Override
+        public Integer decode(DataInput in) throws IOException {
+            return in.readInt();
+        }
+    };
+
+    public static final Codec<Long> LONG = new Codec<>() {
+        @Override
+        public void encode(Long value, DataOutput out) throws IOException {
+            out.writeLong(value);
+        }
+
+        @Override
+        public Long decode(DataInput in) throws IOException {
+            return in.readLong();
+        }
+    };
+
+    public static final Codec<byte[]> BYTES = new Codec<>() {
+        @Override
+        public void encode(byte[] value, DataOutput out) throws IOException {
+            writeVarInt(out, value.length);
+            out.write(value);
+        }
+
+        @Override
+        public byte[] decode(DataInput in) throws IOException {
+            byte[] b = new byte[readVarInt(in)];
+            in.readFully(b);
+            return b;
+        }
+    };
+
+    // 长度用变长整数：短字符串/字节串只占 1 个字节的长度前缀
+    // 不用 writeUTF：它有 64KB 上限，且使用的是修改版 UTF-8
+    public static final Codec<String> STRING = new Codec<>() {
+        @Override
+        public void encode(String value, DataOutput out) throws IOException {
+            BYTES.encode(value.getBytes(StandardCharsets.UTF_8), out);
+        }
+
+        @Override
+        public String decode(DataInput in) throws IOException {
+            return new String(BYTES.decode(in), StandardCharsets.UTF_8);
+        }
+    };
+
+    /* ----------------- 变长整数（LEB128，每字节 7 位，最高位表示后面还有字节） -------------------- */
+
+    public static void writeVarInt(DataOutput out, int value) throws IOException {
+        writeVarLong(out, value & 0xFFFFFFFFL);
+    }
+
+    public static int readVarInt(DataInput in) throws IOException {
+        long v = readVarLong(in);
+        if ((v >>> 32) != 0) throw new IOException("Varint overflow: " + v);
+        return (int) v;
+    }
+
+    public static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    public static long readVarLong(DataInput in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,210 @@
+package com.dhu.zlchashmap;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * 按插入顺序遍历的紧凑哈希表，结构参照 Python 3.6 之后的 dict：
+ * <ul>
+ *     <li>条目按插入顺序追加到稠密的并行数组 hashes / keys / values 中</li>
+ *     <li>另有一张开放定址（线性探测）的稀疏索引表，槽里存条目下标，
+ *     按容量选用 byte[]、short[] 或 int[]，小表的索引只占很少的字节</li>
+ * </ul>
+ * 遍历就是顺序扫描稠密数组，没有空桶也不用跟指针。每个条目的固定开销约为
+ * 12 字节（hash + 两个压缩引用）加上 1.5 个索引槽，MyHashMap 的 Node 加桶位要 37 字节左右。
+ * <p>
+ * 哈希使用 MyHashMap.hash，允许 null 键和 null 值。删除只把条目标记为已删除，
+ * 索引槽留下墓碑，稠密数组写满时按当前元素数重建并压缩。不是线程安全的
+ */
+public class CompactHashMap<K, V> {
+    static final int MIN_CAPACITY = 8;           // 索引表最小长度
+    static final int EMPTY = 0;                  // 索引槽：空
+    static final int DUMMY = 1;                  // 索引槽：墓碑
+    static final int BYTE_INDEX_LIMIT = 1 << 8;  // 索引表长度不超过它时用 byte[]
+    static final int SHORT_INDEX_LIMIT = 1 << 16;
+    // 已删除条目的键，null 键是合法的，不能用 null 标记
+    private static final Object DELETED = new Object();
+
+    // 索引槽里存 条目下标 + 2，三者只有一个非 null
+    private byte[] index8;
+    private short[] index16;
+    private int[] index32;
+    private int mask;
+
+    private int[] hashes;
+    private Object[] keys;
+    private Object[] values;
+    private int used;  // 稠密数组中已使用的条目数，包括已删除的
+    private int size;
+
+    public CompactHashMap() {
+        this(0);
+    }
+
+    public CompactHashMap(int expectedSize) {
+        if (expectedSize < 0) throw new IllegalArgumentException("Illegal expected size: " + expectedSize);
+        allocate(indexSizeFor(expectedSize));
+    }
+
+    /**
+     * 索引表装载因子为 2/3：容纳 n 个条目所需的索引表长度
+     */
+    static int indexSizeFor(int n) {
+        long want = ((long) n * 3 + 1) / 2;
+        if (want > MyHashMap.MAXIMUM_CAPACITY) return MyHashMap.MAXIMUM_CAPACITY;
+        return Math.max(MIN_CAPACITY, MyHashMap.tableSizeFor((int) want));
+    }
+
+    private static int usableFor(int indexSize) {
+        return indexSize * 2 / 3;
+    }
+
+    private void allocate(int indexSize) {
+        index8 = null;
+        index16 = null;
+        index32 = null;
+        if (indexSize <= BYTE_INDEX_LIMIT) index8 = new byte[indexSize];
+        else if (indexSize <= SHORT_INDEX_LIMIT) index16 = new short[indexSize];
+        else index32 = new int[indexSize];
+        mask = indexSize - 1;
+        int usable = usableFor(indexSize);
+        hashes = new int[usable];
+        keys = new Object[usable];
+        values = new Object[usable];
+        used = 0;
+    }
+
+    private int slotAt(int i) {
+        if (index8 != null) return index8[i] & 0xFF;
+        if (index16 != null) return index16[i] & 0xFFFF;
+        return index32[i];
+    }
+
+    private void setSlot(int i, int v) {
+        if (index8 != null) index8[i] = (byte) v;
+        else if (index16 != null) index16[i] = (short) v;
+        else index32[i] = v;
+    }
+
+    /* ----------------- 查找 -------------------- */
+
+    /**
+     * 返回键所在的索引槽，不存在时返回 -1
+     */
+    private int findSlot(int h, Object key) {
+        for (int i = h & mask; ; i = (i + 1) & mask) {
+            int s = slotAt(i);
+            if (s == EMPTY) return -1;
+            if (s != DUMMY) {
+                int e = s - 2;
+                if (hashes[e] == h && Objects.equals(keys[e], key)) return i;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int i = findSlot(MyHashMap.hash(key), key);
+        return i < 0 ? null : (V) values[slotAt(i) - 2];
+    }
+
+    public boolean containsKey(Object key) {
+        return findSlot(MyHashMap.hash(key), key) >= 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 按插入顺序遍历；覆盖已有键的值不改变它的位置
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        Object[] ks = keys, vs = values;
+        for (int e = 0, n = used; e < n; e++) {
+            Object k = ks[e];
+            if (k != DELETED) action.accept((K) k, (V) vs[e]);
+        }
+    }
+
+    /* ----------------- 修改 -------------------- */
+
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        int h = MyHashMap.hash(key);
+        int i = findSlot(h, key);
+        if (i >= 0) {
+            int e = slotAt(i) - 2;
+            V old = (V) values[e];
+            values[e] = value;
+            return old;
+        }
+        if (used == keys.length) {
+            // 按存活元素数重建：删除较多时原地压缩，否则扩大
+            resize(indexSizeFor(Math.max(size * 2, size + 1)));
+        }
+        int e = used++;
+        hashes[e] = h;
+        keys[e] = key;
+        values[e] = value;
+        // 墓碑可以复用：新键不在表中，探测到第一个空槽或墓碑即可
+        int j = h & mask;
+        while (slotAt(j) > DUMMY) j = (j + 1) & mask;
+        setSlot(j, e + 2);
+        size++;
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        int i = findSlot(MyHashMap.hash(key), key);
+        if (i < 0) return null;
+        int e = slotAt(i) - 2;
+        V old = (V) values[e];
+        setSlot(i, DUMMY);
+        keys[e] = DELETED;
+        values[e] = null;
+        size--;
+        return old;
+    }
+
+    public void clear() {
+        if (index8 != null) Arrays.fill(index8, (byte) 0);
+        else if (index16 != null) Arrays.fill(index16, (short) 0);
+        else Arrays.fill(index32, 0);
+        Arrays.fill(keys, 0, used, null);
+        Arrays.fill(values, 0, used, null);
+        used = size = 0;
+    }
+
+    /**
+     * 重建索引表并压缩稠密数组，保持插入顺序
+     */
+    private void resize(int indexSize) {
+        int[] oldHashes = hashes;
+        Object[] oldKeys = keys, oldValues = values;
+        int oldUsed = used;
+        if (usableFor(indexSize) < size + 1) throw new IllegalStateException("CompactHashMap is full");
+        allocate(indexSize);
+        int n = 0;
+        for (int e = 0; e < oldUsed; e++) {
+            if (oldKeys[e] == DELETED) continue;
+            int h = oldHashes[e];
+            hashes[n] = h;
+            keys[n] = oldKeys[e];
+            values[n] = oldValues[e];
+            int j = h & mask;
+            while (slotAt(j) != EMPTY) j = (j + 1) & mask;
+            setSlot(j, n + 2);
+            n++;
+        }
+        used = n;
+    }
+}
@@ -0,0 +1,335 @@
+package com.dhu.zlchashmap;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * 一个键对应多个值的哈希表，替代 MyHashMap&lt;K, List&lt;V&gt;&gt;。
+ * <p>
+ * 桶结构与 MyHashMap 的链表桶相同（MyHashMap.hash、2 的幂容量、扩容时按 hash &amp; oldCap 拆成高低两条链），
+ * 但每个键只有一个 ValuesNode：前两个值直接放在节点的 val 和 second 字段里，第三个值起全部移到
+ * 节点自己的 Object[] 中，按 2 倍增长。大多数键只有一两个值时不需要任何额外对象，
+ * 也没有 ArrayList 的对象头和空余容量；putValue 一次查找完成，不需要先 get 再 put。
+ * <p>
+ * 键和值都允许为 null。值的顺序就是添加顺序。桶不会树化。不是线程安全的
+ */
+public class CompactMultimap<K, V> {
+    static final int DEFAULT_CAPACITY = 16;
+    static final float LOAD_FACTOR = 0.75f;
+    static final int INLINE_VALUES = 2;
+
+    /**
+     * 一个键和它的全部值。count &lt;= 2 时值在 val、second 中，更多时全部在 spill 中，val 和 second 置空
+     */
+    static final class ValuesNode<K, V> extends Node<K, V> {
+        V second;
+        Object[] spill;
+        int count;
+
+        ValuesNode(int hash, K key, V value) {
+            super(hash, key, value);
+            count = 1;
+        }
+
+        @SuppressWarnings("unchecked")
+        V valueAt(int i) {
+            if (spill != null) return (V) spill[i];
+            return i == 0 ? val : second;
+        }
+
+        void add(V v) {
+            if (count < INLINE_VALUES) {
+                second = v;
+            } else if (spill == null) {
+                spill = new Object[]{val, second, v, null};
+                val = null;
+                second = null;
+            } else {
+                if (count == spill.length) spill = Arrays.copyOf(spill, count << 1);
+                spill[count] = v;
+            }
+            count++;
+        }
+
+        int indexOf(Object v) {
+            for (int i = 0; i < count; i++) {
+                if (Objects.equals(v, valueAt(i))) return i;
+            }
+            return -1;
+        }
+
+        /**
+         * 删除全部值。节点摘下后调用，已发出的视图随之变为空
+         */
+        void clearValues() {
+            count = 0;
+            val = null;
+            second = null;
+            spill = null;
+        }
+
+        @SuppressWarnings("unchecked")
+        void removeAt(int i) {
+            if (spill != null) {
+                System.arraycopy(spill, i + 1, spill, i, count - i - 1);
+                spill[--count] = null;
+                if (count == INLINE_VALUES) {
+                    // 退回内联存储
+                    val = (V) spill[0];
+                    second = (V) spill[1];
+                    spill = null;
+                }
+            } else {
+                if (i == 0) val = second;
+                second = null;
+                count--;
+            }
+        }
+    }
+
+    /**
+     * get 返回的只读视图，直接读节点，不复制
+     */
+    private static final class ValuesView<V> extends AbstractList<V> {
+        private final ValuesNode<?, V> node;
+
+        ValuesView(ValuesNode<?, V> node) {
+            this.node = node;
+        }
+
+        @Override
+        public V get(int index) {
+            Objects.checkIndex(index, node.count);
+            return node.valueAt(index);
+        }
+
+        @Override
+        public int size() {
+            return node.count;
+        }
+    }
+
+    private final int initialCapacity;
+    private Node<K, V>[] table;
+    private int threshold;
+    private int keyCount;
+    private int size;
+
+    public CompactMultimap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param expectedKeys 预计的不同键数
+     */
+    public CompactMultimap(int expectedKeys) {
+        if (expectedKeys < 0) throw new IllegalArgumentException("Illegal expected key count: " + expectedKeys);
+        initialCapacity = Math.max(2, MyHashMap.capacityFor(expectedKeys, LOAD_FACTOR));
+    }
+
+    /* ----------------- 查找 -------------------- */
+
+    private ValuesNode<K, V> findNode(Object key) {
+        Node<K, V>[] tab = table;
+        if (tab == null) return null;
+        int h = MyHashMap.hash(key);
+        Node<K, V> first = tab[(tab.length - 1) & h];
+        return first == null ? null : (ValuesNode<K, V>) first.find(h, key);
+    }
+
+    /**
+     * 键的全部值的只读视图，按添加顺序；之后对这个键的 putValue/removeValue 会反映到视图中。
+     * 键不存在时返回空列表；键的最后一个值被删除（包括 removeAll 和 clear）后视图变为空，即使之后重新添加这个键
+     */
+    public List<V> get(Object key) {
+        ValuesNode<K, V> e = findNode(key);
+        return e == null ? List.of() : new ValuesView<>(e);
+    }
+
+    public boolean containsKey(Object key) {
+        return findNode(key) != null;
+    }
+
+    public boolean containsEntry(Object key, Object value) {
+        ValuesNode<K, V> e = findNode(key);
+        return e != null && e.indexOf(value) >= 0;
+    }
+
+    public int valueCount(Object key) {
+        ValuesNode<K, V> e = findNode(key);
+        return e == null ? 0 : e.count;
+    }
+
+    /**
+     * 所有键值对的个数
+     */
+    public int size() {
+        return size;
+    }
+
+    public int keyCount() {
+        return keyCount;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 按添加顺序遍历一个键的值，不分配视图
+     */
+    public void forEachValue(Object key, Consumer<? super V> action) {
+        Objects.requireNonNull(action);
+        ValuesNode<K, V> e = findNode(key);
+        if (e == null) return;
+        for (int i = 0; i < e.count; i++) action.accept(e.valueAt(i));
+    }
+
+    /**
+     * 遍历所有键值对，同一个键的值连续出现
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        Node<K, V>[] tab = table;
+        if (tab == null) return;
+        for (Node<K, V> head : tab) {
+            for (Node<K, V> p = head; p != null; p = p.next) {
+                ValuesNode<K, V> e = (ValuesNode<K, V>) p;
+                for (int i = 0; i < e.count; i++) action.accept(e.key, e.valueAt(i));
+            }
+        }
+    }
+
+    /* ----------------- 修改 -------------------- */
+
+    /**
+     * 给键追加一个值，允许重复
+     */
+    @SuppressWarnings("unchecked")
+    public void putValue(K key, V value) {
+        if (table == null) {
+            table = (Node<K, V>[]) new Node[initialCapacity];
+            threshold = (int) (initialCapacity * LOAD_FACTOR);
+        }
+        int h = MyHashMap.hash(key);
+        int i = (table.length - 1) & h;
+        Node<K, V> first = table[i];
+        ValuesNode<K, V> e = first == null ? null : (ValuesNode<K, V>) first.find(h, key);
+        if (e != null) {
+            e.add(value);
+        } else {
+            table[i] = new ValuesNode<>(h, key, value);
+            table[i].next = first;
+            if (++keyCount > threshold) resize();
+        }
+        size++;
+    }
+
+    /**
+     * 删除键的第一个等于 value 的值，键没有值了就删除键
+     */
+    public boolean removeValue(Object key, Object value) {
+        Node<K, V>[] tab = table;
+        if (tab == null) return false;
+        int h = MyHashMap.hash(key);
+        int i = (tab.length - 1) & h;
+        for (Node<K, V> p = tab[i], pred = null; p != null; pred = p, p = p.next) {
+            if (p.hash == h && Objects.equals(p.key, key)) {
+                ValuesNode<K, V> e = (ValuesNode<K, V>) p;
+                int at = e.indexOf(value);
+                if (at < 0) return false;
+                size--;
+                if (e.count == 1) {
+                    e.count = 0;
+                    e.val = null;
+                    unlink(i, pred, e);
+                } else {
+                    e.removeAt(at);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 删除键及其全部值，返回删除的值的个数
+     */
+    public int removeAll(Object key) {
+        Node<K, V>[] tab = table;
+        if (tab == null) return 0;
+        int h = MyHashMap.hash(key);
+        int i = (tab.length - 1) & h;
+        for (Node<K, V> p = tab[i], pred = null; p != null; pred = p, p = p.next) {
+            if (p.hash == h && Objects.equals(p.key, key)) {
+                ValuesNode<K, V> e = (ValuesNode<K, V>) p;
+                int n = e.count;
+                size -= n;
+                e.clearValues();
+                unlink(i, pred, e);
+                return n;
+            }
+        }
+        return 0;
+    }
+
+    private void unlink(int i, Node<K, V> pred, Node<K, V> e) {
+        if (pred == null) table[i] = e.next;
+        else pred.next = e.next;
+        keyCount--;
+    }
+
+    /**
+     * 删除所有键。逐个清空节点，使已发出的视图与 removeAll 之后一样变为空
+     */
+    public void clear() {
+        Node<K, V>[] tab = table;
+        if (tab == null) return;
+        for (int i = 0; i < tab.length; i++) {
+            for (Node<K, V> p = tab[i]; p != null; p = p.next) ((ValuesNode<K, V>) p).clearValues();
+            tab[i] = null;
+        }
+        keyCount = 0;
+        size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void resize() {
+        Node<K, V>[] oldTab = table;
+        int oldCap = oldTab.length;
+        if (oldCap >= MyHashMap.MAXIMUM_CAPACITY) {
+            threshold = Integer.MAX_VALUE;
+            return;
+        }
+        Node<K, V>[] newTab = (Node<K, V>[]) new Node[oldCap << 1];
+        for (int j = 0; j < oldCap; j++) {
+            Node<K, V> loHead = null, loTail = null, hiHead = null, hiTail = null;
+            for (Node<K, V> e = oldTab[j], next; e != null; e = next) {
+                next = e.next;
+                if ((e.hash & oldCap) == 0) {
+                    if (loTail == null) loHead = e;
+                    else loTail.next = e;
+                    loTail = e;
+                } else {
+                    if (hiTail == null) hiHead = e;
+                    else hiTail.next = e;
+                    hiTail = e;
+                }
+            }
+            if (loTail != null) {
+                loTail.next = null;
+                newTab[j] = loHead;
+            }
+            if (hiTail != null) {
+                hiTail.next = null;
+                newTab[j + oldCap] = hiHead;
+            }
+        }
+        table = newTab;
+        threshold = (int) (newTab.length * LOAD_FACTOR);
+    }
+}
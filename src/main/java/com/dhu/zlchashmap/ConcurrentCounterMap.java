@@ -0,0 +1,122 @@
+package com.dhu.zlchashmap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * 并发计数映射，替代 map.put(k, map.get(k) + 1) 加锁的写法。
+ * <p>
+ * 底层是 MyConcurrentHashMap&lt;K, StripedCounter&gt;：已存在的键走无锁的 get 找到计数器，
+ * 新键用 putIfAbsent 插入（空桶 CAS、非空桶锁桶头），之后计数都在计数器上完成，不再碰桶。
+ * 计数是原始 long，不装箱；同一个键上的并发自增出现竞争后自动分散到多个缓存行。
+ * <p>
+ * sum、topK 和 forEach 是弱一致的，读到的是各计数器在读取时刻的值。
+ * remove 与同一个键上的并发 add 竞争时，落在被删除计数器上的增量会丢失
+ */
+public class ConcurrentCounterMap<K> {
+
+    /**
+     * topK 的结果项
+     */
+    public record Count<K>(K key, long count) {
+    }
+
+    private final MyConcurrentHashMap<K, StripedCounter> counters;
+
+    public ConcurrentCounterMap() {
+        this.counters = new MyConcurrentHashMap<>();
+    }
+
+    public ConcurrentCounterMap(int initialCapacity) {
+        this.counters = new MyConcurrentHashMap<>(initialCapacity);
+    }
+
+    public void increment(K key) {
+        add(key, 1L);
+    }
+
+    public void add(K key, long delta) {
+        counterFor(key).add(delta);
+    }
+
+    /**
+     * 键当前的计数，不存在时为 0
+     */
+    public long sum(K key) {
+        StripedCounter c = counters.get(key);
+        return c == null ? 0L : c.sum();
+    }
+
+    /**
+     * 删除键并返回删除时的计数，不存在时为 0
+     */
+    public long remove(K key) {
+        StripedCounter c = counters.remove(key);
+        return c == null ? 0L : c.sum();
+    }
+
+    public boolean containsKey(K key) {
+        return counters.containsKey(key);
+    }
+
+    public int size() {
+        return counters.size();
+    }
+
+    public boolean isEmpty() {
+        return counters.isEmpty();
+    }
+
+    /**
+     * 所有键的计数之和
+     */
+    public long total() {
+        long[] total = new long[1];
+        counters.forEach((k, c) -> total[0] += c.sum());
+        return total[0];
+    }
+
+    public void forEach(ObjLongConsumer<? super K> action) {
+        Objects.requireNonNull(action);
+        counters.forEach((k, c) -> action.accept(k, c.sum()));
+    }
+
+    /**
+     * 计数最大的 n 个键，按计数从大到小排列。用大小为 n 的小顶堆遍历一次，O(size * log n)
+     */
+    public List<Count<K>> topK(int n) {
+        if (n < 0) throw new IllegalArgumentException("Illegal n: " + n);
+        if (n == 0) return List.of();
+        Comparator<Count<K>> byCount = Comparator.comparingLong(Count::count);
+        PriorityQueue<Count<K>> heap = new PriorityQueue<>(n + 1, byCount);
+        counters.forEach((k, c) -> {
+            long s = c.sum();
+            if (heap.size() < n) {
+                heap.add(new Count<>(k, s));
+            } else if (s > heap.peek().count()) {
+                heap.poll();
+                heap.add(new Count<>(k, s));
+            }
+        });
+        List<Count<K>> result = new ArrayList<>(heap);
+        result.sort(byCount.reversed());
+        return result;
+    }
+
+    /**
+     * 热路径：已存在的键只做一次无锁查找
+     */
+    private StripedCounter counterFor(K key) {
+        StripedCounter c = counters.get(key);
+        if (c == null) {
+            StripedCounter created = new StripedCounter();
+            c = counters.putIfAbsent(key, created);
+            if (c == null) c = created;
+        }
+        return c;
+    }
+}
@@ -0,0 +1,124 @@
+package com.dhu.zlchashmap;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 读优化的并发布谷鸟哈希：写者串行（一把锁），读者不加锁，用乐观版本号校验。
+ * <p>
+ * 版本号按键的 hash 分成 VERSION_STRIPES 条。写者在改动某个键所在的槽（插入、删除、沿踢出路径搬移）
+ * 前后各把该键所在条的版本号加一，期间为奇数。读者查找前读一次版本号，查找后再读一次，
+ * 两次相同且为偶数才接受结果，否则重试。键在两个候选桶之间搬移时，
+ * 读者可能两个桶都没看到它，正是这种情况需要按键而不是按桶划分版本号。
+ * <p>
+ * 扩容在私有的新表上完成后整体发布，旧表不再修改，读者在旧表上得到的结果仍然一致。
+ * forEach 不加锁，是弱一致的：正在搬移的键可能被漏掉或看到两次
+ */
+public class ConcurrentCuckooHashMap<K, V> extends CuckooHashMap<K, V> {
+    static final int VERSION_STRIPES = 4096;
+    private static final VarHandle VERSIONS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final long[] versions = new long[VERSION_STRIPES];
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public ConcurrentCuckooHashMap() {
+        super();
+    }
+
+    public ConcurrentCuckooHashMap(int expectedSize) {
+        super(expectedSize);
+    }
+
+    @Override
+    public V get(Object key) {
+        if (key == null) return null;
+        int h = MyHashMap.hash(key);
+        int stripe = h & (VERSION_STRIPES - 1);
+        while (true) {
+            long v = (long) VERSIONS.getAcquire(versions, stripe);
+            if ((v & 1) == 0) {
+                Table t = table;
+                int i = indexOf(t, h, key);
+                V val = i < 0 ? null : val(t, i);
+                VarHandle.acquireFence(); // 槽的读取不能被重排到第二次读版本号之后
+                if ((long) VERSIONS.getOpaque(versions, stripe) == v) {
+                    return val;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (key == null) return false;
+        int h = MyHashMap.hash(key);
+        int stripe = h & (VERSION_STRIPES - 1);
+        while (true) {
+            long v = (long) VERSIONS.getAcquire(versions, stripe);
+            if ((v & 1) == 0) {
+                boolean found = indexOf(table, h, key) >= 0;
+                VarHandle.acquireFence();
+                if ((long) VERSIONS.getOpaque(versions, stripe) == v) {
+                    return found;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    V putVal(K key, V value, boolean onlyIfAbsent) {
+        lock.lock();
+        try {
+            return super.putVal(key, value, onlyIfAbsent);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        lock.lock();
+        try {
+            return super.remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            super.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 只有持锁的写者调用，读-改-写不需要 CAS
+    @Override
+    void beginWrite(int h) {
+        int stripe = h & (VERSION_STRIPES - 1);
+        VERSIONS.setOpaque(versions, stripe, (long) VERSIONS.getOpaque(versions, stripe) + 1);
+        VarHandle.storeStoreFence(); // 奇数版本号先于槽的修改可见
+    }
+
+    @Override
+    void endWrite(int h) {
+        int stripe = h & (VERSION_STRIPES - 1);
+        VERSIONS.setRelease(versions, stripe, (long) VERSIONS.getOpaque(versions, stripe) + 1);
+    }
+}
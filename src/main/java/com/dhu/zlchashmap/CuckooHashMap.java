@@ -0,0 +1,387 @@
+package com.dhu.zlchashmap;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * 分桶布谷鸟哈希：每个键有两个候选桶，每桶 4 个槽，get 最多检查 8 个槽再加一个很小的 stash，
+ * 探测次数有常数上界，不像 MyHashMap 的链表/树桶那样随冲突增长。
+ * <p>
+ * 第一个桶由 MyHashMap.hash 决定，第二个桶由它再经过带种子的 murmur3 混合得到。
+ * 两个候选桶都满时，用广度优先搜索找一条最短的“踢出”路径，从路径末端往回逐个搬移；
+ * 找不到路径时放进 stash，stash 也满时换种子重哈希或扩容。
+ * <p>
+ * 第二个哈希由 hashCode 派生，hashCode 完全相同的键共享同两个桶：同一个 hashCode 最多容纳
+ * 2 * SLOTS_PER_BUCKET + STASH_SIZE 个键，超出时抛出 IllegalStateException。
+ * 不接受 null 键；不是线程安全的，并发读多写少的场景使用 ConcurrentCuckooHashMap
+ */
+public class CuckooHashMap<K, V> {
+    static final int SLOTS_PER_BUCKET = 4;
+    static final int STASH_SIZE = 8;
+    static final int MAX_BFS_DEPTH = 5;
+    static final int MAX_BFS_NODES = 2 * (1 + 4 + 16 + 64 + 256);
+    static final float LOAD_FACTOR = 0.9f; // 4 路分桶的布谷鸟哈希在 95% 左右才开始频繁失败
+    static final int MIN_BUCKETS = 4;
+
+    static final VarHandle OBJECTS = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    /**
+     * 一次性分配的表：前 buckets * 4 个位置是桶，末尾 STASH_SIZE 个位置是 stash。
+     * 扩容时整体替换，并发版本的读者拿到的表要么是当前表，要么是不再修改的旧表
+     */
+    static final class Table {
+        final int mask;    // 桶数 - 1
+        final int seed;
+        final int slots;   // 桶中的槽数，stash 从这里开始
+        final Object[] keys;
+        final Object[] vals;
+        final int[] hashes;
+        volatile int stashCount;
+
+        Table(int buckets, int seed) {
+            this.mask = buckets - 1;
+            this.seed = seed;
+            this.slots = buckets * SLOTS_PER_BUCKET;
+            this.keys = new Object[slots + STASH_SIZE];
+            this.vals = new Object[slots + STASH_SIZE];
+            this.hashes = new int[slots + STASH_SIZE];
+        }
+
+        int bucket1(int h) {
+            return h & mask;
+        }
+
+        int bucket2(int h) {
+            return mix(h ^ seed) & mask;
+        }
+
+        /**
+         * 桶 b 中存放的、hash 为 h 的键的另一个候选桶
+         */
+        int alternate(int h, int b) {
+            int b1 = bucket1(h);
+            return b == b1 ? bucket2(h) : b1;
+        }
+
+        int freeSlot(int b) {
+            int base = b * SLOTS_PER_BUCKET;
+            for (int i = base; i < base + SLOTS_PER_BUCKET; i++) {
+                if (keys[i] == null) return i;
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * murmur3 fmix32
+     */
+    static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    volatile Table table;
+    int size;
+
+    // BFS 用的队列，预先分配，插入时不产生垃圾
+    private final int[] bfsBucket = new int[MAX_BFS_NODES];
+    private final int[] bfsParent = new int[MAX_BFS_NODES];
+    private final int[] bfsSlot = new int[MAX_BFS_NODES];
+    private final int[] bfsDepth = new int[MAX_BFS_NODES];
+
+    public CuckooHashMap() {
+        this(16);
+    }
+
+    public CuckooHashMap(int expectedSize) {
+        if (expectedSize < 0) throw new IllegalArgumentException("Illegal expected size: " + expectedSize);
+        this.table = new Table(bucketsFor(expectedSize), 0x9E3779B9);
+    }
+
+    static int bucketsFor(long expectedSize) {
+        long slots = (long) Math.ceil(expectedSize / (double) LOAD_FACTOR);
+        long buckets = Math.max(MIN_BUCKETS, (slots + SLOTS_PER_BUCKET - 1) / SLOTS_PER_BUCKET);
+        if (buckets > MyHashMap.MAXIMUM_CAPACITY / SLOTS_PER_BUCKET) throw new IllegalArgumentException("Too large: " + expectedSize);
+        return MyHashMap.tableSizeFor((int) buckets);
+    }
+
+    /* ----------------- 读 -------------------- */
+
+    public V get(Object key) {
+        if (key == null) return null;
+        Table t = table;
+        int i = indexOf(t, MyHashMap.hash(key), key);
+        return i < 0 ? null : val(t, i);
+    }
+
+    public boolean containsKey(Object key) {
+        return key != null && indexOf(table, MyHashMap.hash(key), key) >= 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * 键所在的位置，不存在返回 -1。最多检查两个桶的 8 个槽和 stash
+     */
+    static int indexOf(Table t, int h, Object key) {
+        int i = indexInBucket(t, t.bucket1(h), h, key);
+        if (i >= 0) return i;
+        i = indexInBucket(t, t.bucket2(h), h, key);
+        if (i >= 0) return i;
+        if (t.stashCount != 0) {
+            for (i = t.slots; i < t.slots + STASH_SIZE; i++) {
+                if (matches(t, i, h, key)) return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexInBucket(Table t, int b, int h, Object key) {
+        int base = b * SLOTS_PER_BUCKET;
+        for (int i = base; i < base + SLOTS_PER_BUCKET; i++) {
+            if (matches(t, i, h, key)) return i;
+        }
+        return -1;
+    }
+
+    private static boolean matches(Table t, int i, int h, Object key) {
+        if (t.hashes[i] != h) return false;
+        Object k = OBJECTS.getAcquire(t.keys, i);
+        return k != null && (k == key || key.equals(k));
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> V val(Table t, int i) {
+        return (V) OBJECTS.getAcquire(t.vals, i);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        Table t = table;
+        for (int i = 0; i < t.keys.length; i++) {
+            Object k = OBJECTS.getAcquire(t.keys, i);
+            if (k != null) action.accept((K) k, val(t, i));
+        }
+    }
+
+    /* ----------------- 写 -------------------- */
+
+    public V put(K key, V value) {
+        return putVal(key, value, false);
+    }
+
+    public V putIfAbsent(K key, V value) {
+        return putVal(key, value, true);
+    }
+
+    V putVal(K key, V value, boolean onlyIfAbsent) {
+        if (key == null) throw new NullPointerException();
+        int h = MyHashMap.hash(key);
+        Table t = table;
+        int i = indexOf(t, h, key);
+        if (i >= 0) {
+            V old = val(t, i);
+            if (!onlyIfAbsent || old == null) {
+                beginWrite(h);
+                OBJECTS.setRelease(t.vals, i, value);
+                endWrite(h);
+            }
+            return old;
+        }
+        if (size + 1 > (long) (t.slots * LOAD_FACTOR)) {
+            t = rebuild(t.mask + 1 << 1, t.seed);
+        }
+        while (!insert(t, h, key, value)) {
+            if (sameHashCount(t, h) >= 2 * SLOTS_PER_BUCKET + STASH_SIZE) {
+                // 两个候选桶只由 hashCode 决定，换种子或扩容都无法分开
+                throw new IllegalStateException("Too many keys share hash code " + h);
+            }
+            // 踢出路径和 stash 都用尽：负载不高说明是种子不好，换种子；否则扩容
+            int buckets = size < t.slots * LOAD_FACTOR / 2 ? t.mask + 1 : t.mask + 1 << 1;
+            t = rebuild(buckets, mix(t.seed + 0x61c88647));
+        }
+        size++;
+        return null;
+    }
+
+    public V remove(Object key) {
+        if (key == null) return null;
+        int h = MyHashMap.hash(key);
+        Table t = table;
+        int i = indexOf(t, h, key);
+        if (i < 0) return null;
+        V old = val(t, i);
+        beginWrite(h);
+        clearSlot(t, i);
+        endWrite(h);
+        size--;
+        if (i >= t.slots) {
+            t.stashCount--;
+        } else if (t.stashCount != 0) {
+            drainStash(t);
+        }
+        return old;
+    }
+
+    public void clear() {
+        table = new Table(MIN_BUCKETS, table.seed);
+        size = 0;
+    }
+
+    /**
+     * 插入一个确定不存在的键：候选桶有空位直接放，否则沿 BFS 找到的路径搬移，最后退到 stash
+     */
+    private boolean insert(Table t, int h, Object key, Object value) {
+        int b1 = t.bucket1(h), b2 = t.bucket2(h);
+        int i = t.freeSlot(b1);
+        if (i < 0) i = t.freeSlot(b2);
+        if (i < 0) i = makeRoom(t, b1, b2);
+        if (i < 0) {
+            if (t.stashCount == STASH_SIZE) return false;
+            for (i = t.slots; t.keys[i] != null; i++) ;
+            t.stashCount++;
+        }
+        beginWrite(h);
+        writeSlot(t, i, h, key, value);
+        endWrite(h);
+        return true;
+    }
+
+    /**
+     * 从两个候选桶出发做广度优先搜索，找到一个有空槽的桶后从末端往回搬移，返回腾出的根槽位；失败返回 -1
+     */
+    private int makeRoom(Table t, int b1, int b2) {
+        int head = 0, tail = 0;
+        tail = push(tail, b1, -1, -1, 0);
+        if (b2 != b1) tail = push(tail, b2, -1, -1, 0);
+        while (head < tail) {
+            int n = head++;
+            if (bfsDepth[n] == MAX_BFS_DEPTH) continue;
+            int base = bfsBucket[n] * SLOTS_PER_BUCKET;
+            for (int s = 0; s < SLOTS_PER_BUCKET; s++) {
+                int alt = t.alternate(t.hashes[base + s], bfsBucket[n]);
+                if (alt == bfsBucket[n] || onPath(n, alt)) continue;
+                if (tail == MAX_BFS_NODES) return -1;
+                int free = t.freeSlot(alt);
+                int child = tail;
+                tail = push(tail, alt, n, s, bfsDepth[n] + 1);
+                if (free >= 0) return applyPath(t, child, free);
+            }
+        }
+        return -1;
+    }
+
+    private int push(int tail, int bucket, int parent, int slot, int depth) {
+        bfsBucket[tail] = bucket;
+        bfsParent[tail] = parent;
+        bfsSlot[tail] = slot;
+        bfsDepth[tail] = depth;
+        return tail + 1;
+    }
+
+    // 路径上不允许重复的桶，否则前面的搬移会占掉后面要用的空槽
+    private boolean onPath(int n, int bucket) {
+        for (; n >= 0; n = bfsParent[n]) {
+            if (bfsBucket[n] == bucket) return true;
+        }
+        return false;
+    }
+
+    private int applyPath(Table t, int n, int free) {
+        while (bfsParent[n] >= 0) {
+            int p = bfsParent[n];
+            int from = bfsBucket[p] * SLOTS_PER_BUCKET + bfsSlot[n];
+            int h = t.hashes[from];
+            beginWrite(h);
+            writeSlot(t, free, h, t.keys[from], t.vals[from]);
+            clearSlot(t, from);
+            endWrite(h);
+            free = from;
+            n = p;
+        }
+        return free;
+    }
+
+    private static int sameHashCount(Table t, int h) {
+        int n = 0;
+        for (int i = 0; i < t.keys.length; i++) {
+            if (t.hashes[i] == h && t.keys[i] != null) n++;
+        }
+        return n;
+    }
+
+    /**
+     * 删除腾出空位后，把能放回桶里的 stash 条目搬回去，让后续查找尽量不用扫描 stash
+     */
+    private void drainStash(Table t) {
+        for (int i = t.slots; i < t.slots + STASH_SIZE; i++) {
+            Object k = t.keys[i];
+            if (k == null) continue;
+            int h = t.hashes[i];
+            int j = t.freeSlot(t.bucket1(h));
+            if (j < 0) j = t.freeSlot(t.bucket2(h));
+            if (j < 0) continue;
+            beginWrite(h);
+            writeSlot(t, j, h, k, t.vals[i]);
+            clearSlot(t, i);
+            endWrite(h);
+            t.stashCount--;
+        }
+    }
+
+    /**
+     * 用新的桶数和种子重建并发布新表。新表发布前不会被读者看到，旧表发布后不再修改
+     */
+    private Table rebuild(int buckets, int seed) {
+        Table old = table;
+        while (true) {
+            Table t = new Table(buckets, seed);
+            boolean ok = true;
+            for (int i = 0; i < old.keys.length && ok; i++) {
+                Object k = old.keys[i];
+                if (k != null) ok = insert(t, old.hashes[i], k, old.vals[i]);
+            }
+            if (ok) {
+                table = t;
+                return t;
+            }
+            if (buckets >= MyHashMap.MAXIMUM_CAPACITY / SLOTS_PER_BUCKET) {
+                throw new IllegalStateException("Too many keys share a hash code");
+            }
+            buckets <<= 1;
+            seed = mix(seed + 0x61c88647);
+        }
+    }
+
+    private static void writeSlot(Table t, int i, int h, Object key, Object value) {
+        t.hashes[i] = h;
+        OBJECTS.setRelease(t.vals, i, value);
+        OBJECTS.setRelease(t.keys, i, key);
+    }
+
+    private static void clearSlot(Table t, int i) {
+        OBJECTS.setRelease(t.keys, i, null);
+        OBJECTS.setRelease(t.vals, i, null);
+    }
+
+    /* ----------------- 并发版本的钩子：修改 hash 为 h 的键所在的槽之前/之后调用 -------------------- */
+
+    void beginWrite(int h) {
+    }
+
+    void endWrite(int h) {
+    }
+}
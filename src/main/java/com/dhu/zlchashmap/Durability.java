@@ -0,0 +1,19 @@
+package com.dhu.zlchashmap;
+
+/**
+ * 写前日志的持久化级别
+ */
+public enum Durability {
+    /**
+     * 只追加到内存缓冲，由后台线程定期写入并 fsync；进程崩溃可能丢失最近一个刷新周期的修改
+     */
+    ASYNC,
+    /**
+     * 返回前写入操作系统页缓存（不 fsync）；进程崩溃不丢数据，断电可能丢失
+     */
+    WRITE,
+    /**
+     * 返回前 fsync；并发写者合并为一次 fsync（group commit）
+     */
+    SYNC
+}
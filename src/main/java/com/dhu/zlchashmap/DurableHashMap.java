@@ -0,0 +1,456 @@
+package com.dhu.zlchashmap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 带写前日志的持久化 MyHashMap。
+ * <p>
+ * 每次 put/remove 先在写锁内追加一条日志记录，追加成功后才修改内存表，释放写锁后再按
+ * {@link Durability} 等待落盘，所以并发写者的 fsync 可以被合并。
+ * 当前日志段超过阈值时，后台线程把旧快照和已封存的日志段折叠成新快照
+ * （snapshot-g 表示已包含所有代号小于 g 的日志段），随后删除旧文件。
+ * 打开时加载最新快照并按顺序重放其后的日志段，撕裂的尾部会被截断。
+ * 追加失败（日志已处于失败状态、记录过大或 I/O 错误）时抛出 IOException，内存表保持不变。
+ */
+public final class DurableHashMap<K, V> implements Closeable {
+    static final long DEFAULT_COMPACTION_THRESHOLD = 64L << 20;
+    static final long ASYNC_FLUSH_INTERVAL_MILLIS = 10;
+    static final int SNAPSHOT_MAGIC = 0x5A4C4353; // "ZLCS"
+    static final int SNAPSHOT_VERSION = 2;
+
+    static final byte OP_PUT = 1;
+    static final byte OP_REMOVE = 2;
+    static final int NULL_KEY = 1;
+    static final int NULL_VALUE = 2;
+
+    private final Path dir;
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+    private final MyHashMapSerializer<K, V> serializer;
+    private final Durability durability;
+    private final long compactionThreshold;
+
+    private final ReentrantReadWriteLock mapLock = new ReentrantReadWriteLock();
+    private final MyHashMap<K, V> map;
+    private final WriteAheadLog wal;
+    // 记录缓冲只在持有写锁时使用
+    private final RecordBuffer record = new RecordBuffer();
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+
+    private final ScheduledExecutorService maintenance;
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    // 已提交但尚未结束的后台压缩，保证同一时刻最多排队一个
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    private volatile long snapshotGeneration;
+    private volatile IOException backgroundFailure;
+    private volatile boolean closed;
+
+    public DurableHashMap(Path dir, Codec<K> keyCodec, Codec<V> valueCodec, Durability durability) throws IOException {
+        this(dir, keyCodec, valueCodec, durability, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    public DurableHashMap(Path dir, Codec<K> keyCodec, Codec<V> valueCodec, Durability durability,
+                          long compactionThreshold) throws IOException {
+        if (compactionThreshold <= 0)
+            throw new IllegalArgumentException("Illegal compaction threshold: " + compactionThreshold);
+        this.dir = dir;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.serializer = new MyHashMapSerializer<>(keyCodec, valueCodec);
+        this.durability = durability;
+        this.compactionThreshold = compactionThreshold;
+        Files.createDirectories(dir);
+
+        Recovery<K, V> recovered = recover();
+        this.map = recovered.map;
+        this.snapshotGeneration = recovered.snapshotGeneration;
+        this.wal = new WriteAheadLog(dir, recovered.nextGeneration);
+
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "durable-map-maintenance");
+            t.setDaemon(true);
+            return t;
+        });
+        if (durability == Durability.ASYNC) {
+            maintenance.scheduleWithFixedDelay(this::backgroundSync,
+                    ASYNC_FLUSH_INTERVAL_MILLIS, ASYNC_FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        if (recovered.replayedBytes > compactionThreshold) {
+            scheduleCompaction();
+        }
+    }
+
+    public V get(Object key) {
+        mapLock.readLock().lock();
+        try {
+            return map.get(key);
+        } finally {
+            mapLock.readLock().unlock();
+        }
+    }
+
+    public boolean containsKey(Object key) {
+        mapLock.readLock().lock();
+        try {
+            return map.containsKey(key);
+        } finally {
+            mapLock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        mapLock.readLock().lock();
+        try {
+            return map.size();
+        } finally {
+            mapLock.readLock().unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public V put(K key, V value) throws IOException {
+        V oldValue;
+        long lsn;
+        mapLock.writeLock().lock();
+        try {
+            ensureOpen();
+            // 先编码并追加：任一步失败时内存表保持不变，读者不会看到重启后会消失的修改
+            encode(OP_PUT, key, value);
+            lsn = wal.append(record.buffer(), 0, record.size());
+            oldValue = map.put(key, value);
+        } finally {
+            mapLock.writeLock().unlock();
+        }
+        afterAppend(lsn);
+        return oldValue;
+    }
+
+    public V remove(Object key) throws IOException {
+        V oldValue;
+        long lsn;
+        mapLock.writeLock().lock();
+        try {
+            ensureOpen();
+            if (!map.containsKey(key)) {
+                return null; // 不存在的键不写日志
+            }
+            @SuppressWarnings("unchecked")
+            K k = (K) key;
+            encode(OP_REMOVE, k, null);
+            lsn = wal.append(record.buffer(), 0, record.size());
+            oldValue = map.remove(key);
+        } finally {
+            mapLock.writeLock().unlock();
+        }
+        afterAppend(lsn);
+        return oldValue;
+    }
+
+    /**
+     * 把所有已追加的修改写出并 fsync，与持久化级别无关
+     */
+    public void sync() throws IOException {
+        wal.sync();
+    }
+
+    private void afterAppend(long lsn) throws IOException {
+        switch (durability) {
+            case SYNC -> wal.flushUpTo(lsn, true);
+            case WRITE -> wal.flushUpTo(lsn, false);
+            case ASYNC -> {
+                // 由后台线程定期刷盘
+            }
+        }
+        if (wal.segmentBytes() > compactionThreshold) {
+            scheduleCompaction();
+        }
+    }
+
+    private void scheduleCompaction() {
+        if (closed || !compactionScheduled.compareAndSet(false, true)) return;
+        try {
+            maintenance.execute(this::backgroundCompact);
+        } catch (RejectedExecutionException e) {
+            // 追加之后、提交之前 close 已关闭维护线程，不再需要压缩
+            compactionScheduled.set(false);
+        }
+    }
+
+    private void encode(byte op, K key, V value) throws IOException {
+        record.reset();
+        int flags = (key == null ? NULL_KEY : 0) | (op == OP_PUT && value == null ? NULL_VALUE : 0);
+        recordOut.writeByte(op);
+        recordOut.writeByte(flags);
+        if (key != null) keyCodec.encode(key, recordOut);
+        if (op == OP_PUT && value != null) valueCodec.encode(value, recordOut);
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) throw new IOException("Map is closed");
+        IOException failure = backgroundFailure;
+        if (failure != null) throw new IOException("Background maintenance failed", failure);
+    }
+
+    /* ----------------- 压缩 -------------------- */
+
+    /**
+     * 立即封存当前日志段并把它折叠进新快照，返回时新快照已落盘。
+     * 若后台已有压缩在进行则直接返回
+     */
+    public void compact() throws IOException {
+        if (!compacting.compareAndSet(false, true)) return;
+        try {
+            long sealed = wal.rotate();
+            long base = snapshotGeneration;
+            long target = sealed + 1;
+            MyHashMap<K, V> folded = new MyHashMap<>();
+            if (base > 0) {
+                folded = readSnapshot(snapshotPath(dir, base), 0);
+            }
+            for (long gen = base; gen <= sealed; gen++) {
+                Path segment = WriteAheadLog.segmentPath(dir, gen);
+                if (Files.exists(segment)) {
+                    replay(segment, folded);
+                }
+            }
+            writeSnapshot(folded, target);
+            snapshotGeneration = target;
+            // 新快照已原子可见，之前的文件都可以删除
+            if (base > 0) Files.deleteIfExists(snapshotPath(dir, base));
+            for (long gen = base; gen <= sealed; gen++) {
+                Files.deleteIfExists(WriteAheadLog.segmentPath(dir, gen));
+            }
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    private void backgroundCompact() {
+        try {
+            if (!closed) compact();
+        } catch (IOException e) {
+            backgroundFailure = e;
+        } finally {
+            compactionScheduled.set(false);
+        }
+    }
+
+    private void backgroundSync() {
+        try {
+            wal.sync();
+        } catch (IOException e) {
+            backgroundFailure = e;
+        }
+    }
+
+    static Path snapshotPath(Path dir, long generation) {
+        return dir.resolve(String.format("snapshot-%08d.snap", generation));
+    }
+
+    private void writeSnapshot(MyHashMap<K, V> source, long generation) throws IOException {
+        Path target = snapshotPath(dir, generation);
+        Path tmp = dir.resolve(target.getFileName() + ".tmp");
+        CRC32C crc = new CRC32C();
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream raw = java.nio.channels.Channels.newOutputStream(ch);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(raw, crc), 64 * 1024));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            serializer.write(source, (DataOutput) out);
+            out.flush();
+            // 校验和覆盖前面所有字节，自身不参与计算
+            DataOutputStream trailer = new DataOutputStream(raw);
+            trailer.writeInt((int) crc.getValue());
+            trailer.flush();
+            ch.force(true);
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory();
+    }
+
+    /**
+     * 读取快照；extra 为之后还要重放的日志记录数，用于预先确定表容量
+     */
+    private MyHashMap<K, V> readSnapshot(Path file, long extra) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (InputStream raw = new BufferedInputStream(Files.newInputStream(file), 64 * 1024)) {
+            DataInputStream in = new DataInputStream(new CheckedInputStream(raw, crc));
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Not a snapshot file: " + file);
+            }
+            MyHashMap<K, V> result = serializer.read((DataInput) in, extra);
+            int expected = (int) crc.getValue();
+            if (new DataInputStream(raw).readInt() != expected) {
+                throw new IOException("Snapshot checksum mismatch: " + file);
+            }
+            return result;
+        }
+    }
+
+    private void replay(Path segment, MyHashMap<K, V> target) throws IOException {
+        WriteAheadLog.scan(segment, payload -> apply(payload, target));
+    }
+
+    private void apply(byte[] payload, MyHashMap<K, V> target) throws IOException {
+        DataInput in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte op = in.readByte();
+        int flags = in.readUnsignedByte();
+        K key = (flags & NULL_KEY) != 0 ? null : keyCodec.decode(in);
+        if (op == OP_PUT) {
+            V value = (flags & NULL_VALUE) != 0 ? null : valueCodec.decode(in);
+            target.put(key, value);
+        } else if (op == OP_REMOVE) {
+            target.remove(key);
+        } else {
+            throw new IOException("Unknown log operation: " + op);
+        }
+    }
+
+    /* ----------------- 恢复 -------------------- */
+
+    private record Recovery<K, V>(MyHashMap<K, V> map, long snapshotGeneration, long nextGeneration,
+                                  long replayedBytes) {
+    }
+
+    private Recovery<K, V> recover() throws IOException {
+        long snapshotGen = 0;
+        List<Long> segments = new ArrayList<>();
+        List<Long> snapshots = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path p : files) {
+                String name = p.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    Files.delete(p); // 未完成的快照
+                } else if (name.startsWith("wal-") && name.endsWith(".log")) {
+                    segments.add(Long.parseLong(name.substring(4, name.length() - 4)));
+                } else if (name.startsWith("snapshot-") && name.endsWith(".snap")) {
+                    long gen = Long.parseLong(name.substring(9, name.length() - 5));
+                    snapshots.add(gen);
+                    snapshotGen = Math.max(snapshotGen, gen);
+                }
+            }
+        }
+        segments.sort(null);
+        // 清理被最新快照覆盖的旧文件（压缩在删除阶段崩溃时会残留）
+        for (long gen : snapshots) {
+            if (gen < snapshotGen) Files.delete(snapshotPath(dir, gen));
+        }
+        List<Path> live = new ArrayList<>();
+        long next = snapshotGen;
+        for (long gen : segments) {
+            if (gen < snapshotGen) {
+                Files.delete(WriteAheadLog.segmentPath(dir, gen));
+            } else {
+                live.add(WriteAheadLog.segmentPath(dir, gen));
+                next = gen + 1;
+            }
+        }
+
+        // 第一遍：校验并计数，截断撕裂的尾部；只有最后一个段允许不完整
+        long records = 0;
+        long bytes = 0;
+        for (int i = 0; i < live.size(); i++) {
+            Path segment = live.get(i);
+            long[] count = new long[1];
+            long valid = WriteAheadLog.scan(segment, payload -> count[0]++);
+            long length = Files.size(segment);
+            if (valid < length) {
+                if (i != live.size() - 1) {
+                    throw new IOException("Corrupt write-ahead log segment: " + segment);
+                }
+                WriteAheadLog.truncate(segment, valid);
+            }
+            records += count[0];
+            bytes += valid;
+        }
+
+        // 第二遍：在预先确定容量的表上重放
+        MyHashMap<K, V> result = snapshotGen > 0
+                ? readSnapshot(snapshotPath(dir, snapshotGen), records)
+                : new MyHashMap<>(MyHashMap.capacityFor(records, MyHashMap.LOAD_FACTOR), MyHashMap.LOAD_FACTOR);
+        for (Path segment : live) {
+            replay(segment, result);
+        }
+        return new Recovery<>(result, snapshotGen, next, bytes);
+    }
+
+    private void syncDirectory() {
+        // 部分平台不支持对目录 fsync，失败时忽略
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * 测试用：后台维护线程
+     */
+    ScheduledExecutorService maintenance() {
+        return maintenance;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mapLock.writeLock().lock();
+        try {
+            if (closed) return;
+            closed = true;
+        } finally {
+            mapLock.writeLock().unlock();
+        }
+        maintenance.shutdown();
+        try {
+            maintenance.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        wal.close();
+        IOException failure = backgroundFailure;
+        if (failure != null) throw new IOException("Background maintenance failed", failure);
+    }
+
+    /**
+     * 暴露内部数组的 ByteArrayOutputStream，避免每条记录 toByteArray 复制
+     */
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+        RecordBuffer() {
+            super(256);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.dhu.zlchashmap;
+
+/**
+ * 扩容时放在旧表桶中的占位节点：该桶已迁移完毕，查找转到新表
+ */
+final class ForwardingNode<K, V> extends Node<K, V> {
+    final Node<K, V>[] nextTable;
+
+    ForwardingNode(Node<K, V>[] nextTable) {
+        super(MyConcurrentHashMap.MOVED, null, null);
+        this.nextTable = nextTable;
+    }
+
+    @Override
+    public Node<K, V> find(int h, Object k) {
+        Node<K, V>[] tab = nextTable;
+        while (true) {
+            Node<K, V> e = MyConcurrentHashMap.tabAt(tab, (tab.length - 1) & h);
+            if (e == null) {
+                return null;
+            }
+            if (e instanceof ForwardingNode<K, V> fwd) {
+                // 新表也在扩容，继续往下一张表找
+                tab = fwd.nextTable;
+                continue;
+            }
+            return e.find(h, k);
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.dhu.zlchashmap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 只读映射，由 MyHashMap.freeze() 创建。用最小完美哈希把 n 个键一一映射到 [0, n)，
+ * 键和值各存在一个长度为 n 的数组里：没有 Node、没有冲突链，64 位哈希不冲突时 get 只做一次键比较。
+ * <p>
+ * 完美哈希采用 CHD/PTHash 的“分桶 + 导航值（pilot）”构造：键先按哈希分到约 n / λ 个桶，
+ * 桶按大小从大到小依次处理，为每个桶搜索一个 pilot，使桶内所有键经 pilot 扰动后落在尚未占用的位置。
+ * 位置空间取 n / α（α 略小于 1）以加快搜索，落在 n 之外的位置再通过 remap 表映射到 [0, n) 中空出的位置。
+ * <p>
+ * 键的 64 位哈希见 Hash64：字符串按内容计算，整数类按数值，其他类型由 hashCode 派生。
+ * 完美哈希建立在 d 个互不相同的 64 位哈希上；哈希相同的其他键（hashCode 冲突的键、Integer 1 与 Long 1L 等）
+ * 放在槽位 [d, n) 的溢出区，按所在槽位连续存放，查找时在主槽位不相等后再用 equals 逐个比较。
+ * 写入文件后在下次启动时读回，要求键的哈希跨 JVM 稳定（不能依赖 identityHashCode）
+ */
+public final class FrozenMap<K, V> {
+    static final int MAGIC = 0x5A4C4346; // "ZLCF"
+    static final int VERSION = 2; // 版本 1 没有溢出区，仍可读取
+    static final double BUCKET_SIZE = 4.0;   // λ：每个桶的平均键数
+    static final double LOAD = 0.98;         // α：位置空间的装载率
+    static final int MAX_PILOT = 1 << 20;
+
+    private final long seed;
+    private final int n;
+    private final int d;          // 不同 64 位哈希的个数，完美哈希把它们映射到 [0, d)
+    private final int m;          // 位置空间大小，m >= d
+    private final int[] pilots;   // 每个桶的 pilot
+    private final int[] remap;    // 位置 d..m-1 映射到的实际槽位
+    private final int[] overflow; // 槽位 s 的溢出键在 [overflow[s], overflow[s + 1])，没有冲突时为 null
+    private final Object[] keys;
+    private final Object[] vals;
+
+    private FrozenMap(long seed, int n, int d, int m, int[] pilots, int[] remap, int[] overflow,
+                      Object[] keys, Object[] vals) {
+        this.seed = seed;
+        this.n = n;
+        this.d = d;
+        this.m = m;
+        this.pilots = pilots;
+        this.remap = remap;
+        this.overflow = overflow;
+        this.keys = keys;
+        this.vals = vals;
+    }
+
+    /* ----------------- 查找 -------------------- */
+
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int i = indexOf(key);
+        return i >= 0 ? (V) vals[i] : null;
+    }
+
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    public int size() {
+        return n;
+    }
+
+    public boolean isEmpty() {
+        return n == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        for (int i = 0; i < n; i++) action.accept((K) keys[i], (V) vals[i]);
+    }
+
+    /**
+     * 键所在的下标，不存在时返回 -1
+     */
+    private int indexOf(Object key) {
+        if (n == 0) return -1;
+        long h = Hash64.mix(Hash64.of(key) ^ seed);
+        int p = position(h, pilots[bucket(h, pilots.length)], m);
+        int slot = p < d ? p : remap[p - d];
+        if (Objects.equals(keys[slot], key)) return slot;
+        if (overflow != null) {
+            for (int i = overflow[slot], end = overflow[slot + 1]; i < end; i++) {
+                if (Objects.equals(keys[i], key)) return i;
+            }
+        }
+        return -1;
+    }
+
+    /* ----------------- 哈希 -------------------- */
+
+    // 高 32 位选桶，低 32 位与 pilot 的混合值一起决定位置
+    private static int bucket(long h, int buckets) {
+        return (int) (((h >>> 32) * buckets) >>> 32);
+    }
+
+    private static int position(long h, int pilot, int m) {
+        long x = Hash64.mix(h ^ (pilot * 0x9E3779B97F4A7C15L));
+        return (int) (((x >>> 32) * m) >>> 32);
+    }
+
+    /* ----------------- 构造 -------------------- */
+
+    static <K, V> FrozenMap<K, V> of(MyHashMap<K, V> map) {
+        int n = map.size();
+        Object[] ks = new Object[n];
+        Object[] vs = new Object[n];
+        int[] count = new int[1];
+        map.forEachNode(e -> {
+            ks[count[0]] = e.key;
+            vs[count[0]++] = e.val;
+        });
+        return build(ks, vs);
+    }
+
+    private static <K, V> FrozenMap<K, V> build(Object[] ks, Object[] vs) {
+        int n = ks.length;
+        if (n == 0) return new FrozenMap<>(0, 0, 0, 0, new int[0], new int[0], null, ks, vs);
+        // 按 64 位哈希排序，相同哈希的键排在一起，每组的第一个作为完美哈希的代表
+        long[] hashes = new long[n];
+        for (int i = 0; i < n; i++) hashes[i] = Hash64.of(ks[i]);
+        Integer[] idx = new Integer[n];
+        for (int i = 0; i < n; i++) idx[i] = i;
+        Arrays.sort(idx, (a, b) -> Long.compare(hashes[a], hashes[b]));
+        int[] groupStart = new int[n + 1];
+        int d = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || hashes[idx[i]] != hashes[idx[i - 1]]) groupStart[d++] = i;
+        }
+        groupStart[d] = n;
+        long[] base = new long[d];
+        for (int g = 0; g < d; g++) base[g] = hashes[idx[groupStart[g]]];
+
+        int m = Math.max(d, (int) Math.ceil(d / LOAD));
+        int buckets = Math.max(1, (int) Math.ceil(d / BUCKET_SIZE));
+        for (long seed = 0x5DEECE66DL; ; seed = Hash64.mix(seed + 1)) {
+            Placement pl = tryBuild(seed, base, m, buckets);
+            if (pl == null) continue;
+            Object[] keys = new Object[n];
+            Object[] vals = new Object[n];
+            int[] overflow = d == n ? null : new int[d + 1];
+            int[] groupOfSlot = new int[d];
+            for (int g = 0; g < d; g++) {
+                int slot = pl.slotOf[g];
+                groupOfSlot[slot] = g;
+                int first = idx[groupStart[g]];
+                keys[slot] = ks[first];
+                vals[slot] = vs[first];
+            }
+            if (overflow != null) {
+                int next = d;
+                for (int slot = 0; slot < d; slot++) {
+                    int g = groupOfSlot[slot];
+                    overflow[slot] = next;
+                    for (int j = groupStart[g] + 1; j < groupStart[g + 1]; j++) {
+                        keys[next] = ks[idx[j]];
+                        vals[next++] = vs[idx[j]];
+                    }
+                }
+                overflow[d] = next;
+            }
+            return new FrozenMap<>(seed, n, d, m, pl.pilots, pl.remap, overflow, keys, vals);
+        }
+    }
+
+    /**
+     * 完美哈希的构造结果：slotOf[i] 是第 i 个哈希的槽位
+     */
+    private record Placement(int[] pilots, int[] remap, int[] slotOf) {
+    }
+
+    /**
+     * 用给定 seed 为 base 中互不相同的哈希构造完美哈希，某个桶找不到 pilot 时返回 null，由调用方换 seed 重试
+     */
+    private static Placement tryBuild(long seed, long[] base, int m, int buckets) {
+        int n = base.length;
+        long[] h = new long[n];
+        int[] bucketOf = new int[n];
+        int[] start = new int[buckets + 1];
+        for (int i = 0; i < n; i++) {
+            h[i] = Hash64.mix(base[i] ^ seed);
+            bucketOf[i] = bucket(h[i], buckets);
+            start[bucketOf[i] + 1]++;
+        }
+        // 计数排序：members[start[b], start[b+1]) 是桶 b 中的键
+        for (int b = 0; b < buckets; b++) start[b + 1] += start[b];
+        int[] fill = Arrays.copyOf(start, buckets);
+        int[] members = new int[n];
+        for (int i = 0; i < n; i++) members[fill[bucketOf[i]]++] = i;
+
+        // 大桶先处理：此时空位多，最容易找到 pilot
+        Integer[] order = new Integer[buckets];
+        for (int b = 0; b < buckets; b++) order[b] = b;
+        Arrays.sort(order, (a, b) -> Integer.compare(start[b + 1] - start[b], start[a + 1] - start[a]));
+
+        int[] pilots = new int[buckets];
+        int[] slotOfKey = new int[n];
+        long[] taken = new long[(m + 63) >>> 6];
+        int[] positions = new int[64];
+        for (int b : order) {
+            int size = start[b + 1] - start[b];
+            if (size == 0) break;
+            if (size > positions.length) positions = new int[size];
+            int pilot = 0;
+            search:
+            for (; ; pilot++) {
+                if (pilot == MAX_PILOT) return null;
+                for (int j = 0; j < size; j++) {
+                    int p = position(h[members[start[b] + j]], pilot, m);
+                    if ((taken[p >>> 6] & (1L << p)) != 0) continue search;
+                    for (int q = 0; q < j; q++) if (positions[q] == p) continue search;
+                    positions[j] = p;
+                }
+                break;
+            }
+            pilots[b] = pilot;
+            for (int j = 0; j < size; j++) {
+                int p = positions[j];
+                taken[p >>> 6] |= 1L << p;
+                slotOfKey[members[start[b] + j]] = p;
+            }
+        }
+
+        // 位置 >= n 的键依次映射到 [0, n) 中空出的位置
+        int[] remap = new int[m - n];
+        int free = 0;
+        for (int p = n; p < m; p++) {
+            if ((taken[p >>> 6] & (1L << p)) == 0) continue;
+            while ((taken[free >>> 6] & (1L << free)) != 0) free++;
+            remap[p - n] = free++;
+        }
+        for (int i = 0; i < n; i++) {
+            int p = slotOfKey[i];
+            if (p >= n) slotOfKey[i] = remap[p - n];
+        }
+        return new Placement(pilots, remap, slotOfKey);
+    }
+
+    /* ----------------- 文件 -------------------- */
+
+    /**
+     * 写入文件：[int MAGIC][byte VERSION][long seed][varint n][varint d][varint m][varint 桶数]，
+     * 之后是各桶的 pilot、remap 表、d &lt; n 时每个槽位的溢出键数（均为 varint），再按槽位顺序写出条目
+     * [byte null 标志][键][值]，最后是前面所有字节的 CRC32C
+     */
+    public void write(Path file, Codec<? super K> keyCodec, Codec<? super V> valueCodec) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024), crc))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(seed);
+            Codecs.writeVarInt(out, n);
+            Codecs.writeVarInt(out, d);
+            Codecs.writeVarInt(out, m);
+            Codecs.writeVarInt(out, pilots.length);
+            for (int p : pilots) Codecs.writeVarInt(out, p);
+            for (int r : remap) Codecs.writeVarInt(out, r);
+            if (overflow != null) {
+                for (int s = 0; s < d; s++) Codecs.writeVarInt(out, overflow[s + 1] - overflow[s]);
+            }
+            for (int i = 0; i < n; i++) {
+                Object k = keys[i], v = vals[i];
+                out.writeByte((k == null ? MyHashMapSerializer.NULL_KEY : 0) | (v == null ? MyHashMapSerializer.NULL_VALUE : 0));
+                if (k != null) encode(keyCodec, k, out);
+                if (v != null) encode(valueCodec, v, out);
+            }
+            out.writeInt((int) crc.getValue());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void encode(Codec<T> codec, Object value, DataOutputStream out) throws IOException {
+        codec.encode((T) value, out);
+    }
+
+    /**
+     * 读回 write 写出的文件，不需要重新构造完美哈希
+     */
+    public static <K, V> FrozenMap<K, V> read(Path file, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(file), 64 * 1024), crc))) {
+            int version;
+            if (in.readInt() != MAGIC || ((version = in.readUnsignedByte()) != VERSION && version != 1)) {
+                throw new IOException("Not a frozen map file: " + file);
+            }
+            long seed = in.readLong();
+            int n = Codecs.readVarInt(in);
+            int d = version == 1 ? n : Codecs.readVarInt(in);
+            int m = Codecs.readVarInt(in);
+            int buckets = Codecs.readVarInt(in);
+            if (n < 0 || d < 0 || d > n || (d == 0) != (n == 0) || m < d || buckets < 0)
+                throw new IOException("Corrupt frozen map header: " + file);
+            int[] pilots = new int[buckets];
+            for (int i = 0; i < buckets; i++) pilots[i] = Codecs.readVarInt(in);
+            int[] remap = new int[m - d];
+            for (int i = 0; i < remap.length; i++) remap[i] = Codecs.readVarInt(in);
+            int[] overflow = null;
+            if (d < n) {
+                overflow = new int[d + 1];
+                overflow[0] = d;
+                for (int s = 0; s < d; s++) overflow[s + 1] = overflow[s] + Codecs.readVarInt(in);
+                if (overflow[d] != n) throw new IOException("Corrupt frozen map overflow table: " + file);
+            }
+            Object[] keys = new Object[n];
+            Object[] vals = new Object[n];
+            for (int i = 0; i < n; i++) {
+                int flags = in.readUnsignedByte();
+                if ((flags & MyHashMapSerializer.NULL_KEY) == 0) keys[i] = keyCodec.decode(in);
+                if ((flags & MyHashMapSerializer.NULL_VALUE) == 0) vals[i] = valueCodec.decode(in);
+            }
+            int expected = (int) crc.getValue();
+            if (in.readInt() != expected) throw new IOException("Checksum mismatch in " + file);
+            return new FrozenMap<>(seed, n, d, m, pilots, remap, overflow, keys, vals);
+        }
+    }
+}
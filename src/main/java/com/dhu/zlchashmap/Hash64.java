@@ -0,0 +1,60 @@
+package com.dhu.zlchashmap;
+
+/**
+ * 键的 64 位哈希，FrozenMap 的完美哈希和轨迹录制的指纹共用。
+ * <p>
+ * 字符串按内容计算（FNV-1a，不区分 CharSequence 的具体类型），整数类按数值（Integer 1 与 Long 1L 相同），
+ * byte[] 按内容；其他类型只能由类名和 hashCode 派生，hashCode 相同的不同键得到相同的值，调用方需要自行处理。
+ * 除最后一类外结果跨 JVM 稳定
+ */
+public final class Hash64 {
+    private Hash64() {
+    }
+
+    /**
+     * 未混合的 64 位哈希，null 为 0。相近的整数键得到相近的值，作为桶下标使用前应先 mix
+     */
+    public static long of(Object key) {
+        if (key == null) return 0;
+        if (key instanceof CharSequence s) {
+            long h = 0xcbf29ce484222325L; // FNV-1a 64
+            for (int i = 0; i < s.length(); i++) {
+                h ^= s.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            return h;
+        }
+        if (key instanceof Long || key instanceof Integer || key instanceof Short || key instanceof Byte) {
+            return ((Number) key).longValue();
+        }
+        if (key instanceof byte[] b) {
+            long h = 0xcbf29ce484222325L;
+            for (byte x : b) {
+                h ^= x & 0xff;
+                h *= 0x100000001b3L;
+            }
+            return h;
+        }
+        return ((long) key.getClass().getName().hashCode() << 32) ^ (key.hashCode() & 0xFFFFFFFFL);
+    }
+
+    /**
+     * 按值计算的类型（of 的结果不依赖 hashCode）
+     */
+    public static boolean isValueBased(Object key) {
+        return key == null || key instanceof CharSequence || key instanceof byte[]
+                || key instanceof Long || key instanceof Integer || key instanceof Short || key instanceof Byte;
+    }
+
+    /**
+     * murmur3 fmix64
+     */
+    public static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,230 @@
+package com.dhu.zlchashmap;
+
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+
+/**
+ * MyHashMap 之间的并行集合运算：mergeAll、intersectKeys、difference、equalsContent 的实现。
+ * <p>
+ * 各表长度都是 2 的幂，取其中最小的长度 n：hash 模 n 余 r 的条目在每张表里都只落在下标模 n 余 r 的桶中。
+ * 于是按余数区间把工作切成 ForkJoin 任务，每个任务只读写自己那些余数的桶，互不重叠，不需要加锁；
+ * 两张表容量相同时就是逐桶对应地处理。查找另一张表时直接用节点里缓存的 hash，不再调用 hashCode。
+ * <p>
+ * 结果写入按上界预先分配好的新表，最后一次性交给目标映射；节点都是新建的普通节点，不经过
+ * newNode/releaseNode（RecyclingHashMap 的节点池不是线程安全的）。运算期间两个映射都不能被修改
+ */
+final class MapAlgebra {
+    static final int MIN_SPLIT = 1 << 10; // 每个任务至少处理的余数个数，表更小时在调用线程里完成
+
+    // lookup 的"不存在"，值本身可以是 null
+    static final Object ABSENT = new Object();
+
+    private MapAlgebra() {
+    }
+
+    interface EntrySink<K, V> {
+        void accept(int h, K k, V v);
+    }
+
+    interface RangeJob {
+        long run(int lo, int hi);
+    }
+
+    /**
+     * 用缓存的 hash 在表中查找，返回值或 ABSENT
+     */
+    static Object lookup(Node<?, ?>[] tab, int h, Object key) {
+        return tab == null ? ABSENT : lookupBin(tab[(tab.length - 1) & h], h, key);
+    }
+
+    static Object lookupBin(Node<?, ?> head, int h, Object key) {
+        if (head == null) return ABSENT;
+        if (head instanceof SortedArrayBin<?, ?> b) {
+            int i = b.indexOf(h, key);
+            return i < 0 ? ABSENT : b.vals[i];
+        }
+        Node<?, ?> e = head.find(h, key);
+        return e == null ? ABSENT : e.val;
+    }
+
+    /**
+     * 遍历一个桶，树桶递归下降，不分配栈
+     */
+    static <K, V> void forEachInBin(Node<K, V> head, EntrySink<K, V> sink) {
+        if (head instanceof SortedArrayBin<K, V> b) {
+            for (int i = 0; i < b.size; i++) sink.accept(b.hashes[i], b.keyAt(i), b.valueAt(i));
+        } else if (head instanceof RedBlackNode<K, V> root) {
+            forEachInTree(root, sink);
+        } else {
+            for (Node<K, V> e = head; e != null; e = e.next) sink.accept(e.hash, e.key, e.val);
+        }
+    }
+
+    private static <K, V> void forEachInTree(RedBlackNode<K, V> n, EntrySink<K, V> sink) {
+        for (; n != null; n = n.right) {
+            forEachInTree(n.left, sink);
+            sink.accept(n.hash, n.key, n.val);
+        }
+    }
+
+    /**
+     * 对余数 [lo, hi) 中的每个 r，遍历 tab 中下标模 n 余 r 的桶
+     */
+    static <K, V> void forEachInResidues(Node<K, V>[] tab, int n, int lo, int hi, EntrySink<K, V> sink) {
+        if (tab == null) return;
+        for (int r = lo; r < hi; r++) {
+            for (int i = r; i < tab.length; i += n) {
+                Node<K, V> head = tab[i];
+                if (head != null) forEachInBin(head, sink);
+            }
+        }
+    }
+
+    /**
+     * 把余数 [0, n) 切成任务并行执行，返回各任务结果之和。某个任务抛出异常时，等所有任务都结束后才抛出
+     */
+    static long parallel(int n, RangeJob job) {
+        if (n <= MIN_SPLIT) return job.run(0, n);
+        return ForkJoinPool.commonPool().invoke(new RangeTask(job, 0, n));
+    }
+
+    private static final class RangeTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        final transient RangeJob job; // 任务只在本进程的 ForkJoinPool 中执行，不会被序列化
+        final int lo, hi;
+
+        RangeTask(RangeJob job, int lo, int hi) {
+            this.job = job;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected Long compute() {
+            if (hi - lo <= MIN_SPLIT) return job.run(lo, hi);
+            int mid = (lo + hi) >>> 1;
+            RangeTask left = new RangeTask(job, lo, mid);
+            left.fork();
+            long right;
+            try {
+                right = new RangeTask(job, mid, hi).compute();
+            } catch (Throwable e) {
+                // 等分出去的一半结束后再抛出：调用方随后读取结果、继续使用表，不能还有任务在改它
+                try {
+                    left.join();
+                } catch (Throwable other) {
+                    if (other != e) e.addSuppressed(other);
+                }
+                throw e;
+            }
+            return left.join() + right;
+        }
+    }
+
+    /**
+     * 结果表中下标模 n 余 [lo, hi) 的桶按长度树化，规则同 MyHashMap.treeifyBin
+     */
+    private static <K, V> void shapeBins(MyHashMap<K, V> shaper, Node<K, V>[] tab, int n, int lo, int hi) {
+        for (int r = lo; r < hi; r++) {
+            for (int i = r; i < tab.length; i += n) {
+                Node<K, V> head = tab[i];
+                if (head == null || head.next == null) continue;
+                int c = 0;
+                for (Node<K, V> p = head; p != null; p = p.next) c++;
+                tab[i] = shaper.shapeBin(head, c, tab.length);
+            }
+        }
+    }
+
+    private static <K, V> void link(Node<K, V>[] tab, int h, K k, V v) {
+        int i = (tab.length - 1) & h;
+        tab[i] = new Node<>(h, k, v, tab[i]);
+    }
+
+    private static int minLength(Node<?, ?>[] a, Node<?, ?>[] b, Node<?, ?>[] c) {
+        int n = c.length;
+        if (a != null) n = Math.min(n, a.length);
+        if (b != null) n = Math.min(n, b.length);
+        return n;
+    }
+
+    /**
+     * 并集：两边都有的键值为 fn(左值, 右值)，结果为 null 的键不出现在结果中。返回结果表的条目数
+     */
+    @SuppressWarnings("unchecked")
+    static <K, V> long merge(Node<K, V>[] left, Node<? extends K, ? extends V>[] right,
+                             BiFunction<? super V, ? super V, ? extends V> fn,
+                             MyHashMap<K, V> shaper, Node<K, V>[] out) {
+        Node<K, V>[] rt = (Node<K, V>[]) right;
+        int n = minLength(left, rt, out);
+        return parallel(n, (lo, hi) -> {
+            long[] count = new long[1];
+            forEachInResidues(left, n, lo, hi, (h, k, v) -> {
+                Object ov = lookup(rt, h, k);
+                if (ov == ABSENT) {
+                    link(out, h, k, v);
+                    count[0]++;
+                    return;
+                }
+                V nv = fn.apply(v, (V) ov);
+                if (nv != null) {
+                    link(out, h, k, nv);
+                    count[0]++;
+                }
+            });
+            forEachInResidues(rt, n, lo, hi, (h, k, v) -> {
+                if (lookup(left, h, k) == ABSENT) {
+                    link(out, h, k, v);
+                    count[0]++;
+                }
+            });
+            shapeBins(shaper, out, n, lo, hi);
+            return count[0];
+        });
+    }
+
+    /**
+     * left 中键在（keep 为 true）或不在（keep 为 false）right 中的条目写入 out，返回条目数
+     */
+    static <K, V> long filter(Node<K, V>[] left, Node<?, ?>[] right, boolean keep,
+                              MyHashMap<K, V> shaper, Node<K, V>[] out) {
+        int n = minLength(left, null, out);
+        return parallel(n, (lo, hi) -> {
+            long[] count = new long[1];
+            forEachInResidues(left, n, lo, hi, (h, k, v) -> {
+                if ((lookup(right, h, k) != ABSENT) == keep) {
+                    link(out, h, k, v);
+                    count[0]++;
+                }
+            });
+            shapeBins(shaper, out, n, lo, hi);
+            return count[0];
+        });
+    }
+
+    /**
+     * 条目数相同的前提下，left 的每个条目在 right 中都有相等的值。发现不同后其余任务尽快结束
+     */
+    static boolean sameEntries(Node<?, ?>[] left, Node<?, ?>[] right) {
+        if (left == null) return true;
+        AtomicBoolean differs = new AtomicBoolean();
+        @SuppressWarnings("unchecked") Node<Object, Object>[] lt = (Node<Object, Object>[]) left;
+        int n = left.length;
+        parallel(n, (lo, hi) -> {
+            for (int i = lo; i < hi && !differs.get(); i++) {
+                Node<Object, Object> head = lt[i];
+                if (head == null) continue;
+                forEachInBin(head, (h, k, v) -> {
+                    Object ov = lookup(right, h, k);
+                    if (ov == ABSENT || !Objects.equals(v, ov)) differs.set(true);
+                });
+            }
+            return 0;
+        });
+        return !differs.get();
+    }
+}
@@ -1,8 +1,863 @@
 package com.dhu.zlchashmap;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
-public class MyConcurrentHashMap {
+/**
+ * 线程安全的哈希表，结构与 MyHashMap 相同（2 的幂长度的桶数组 + 链表/红黑树），并发控制参照 JDK ConcurrentHashMap：
+ * <ul>
+ *     <li>读不加锁：桶数组元素用 VarHandle 以 acquire 语义读取，Node 的 val/next 是 volatile，
+ *     树化的桶用乐观读（见 TreeBin）</li>
+ *     <li>空桶用 CAS 放入第一个节点；非空桶对桶头节点加锁后修改</li>
+ *     <li>扩容由一个线程完成：逐个锁住旧桶，把节点复制到新表后在旧桶放入 ForwardingNode，
+ *     读者遇到它就去新表查找，写者遇到它就等待扩容结束</li>
+ * </ul>
+ * 与 MyHashMap 不同，键和值都不允许为 null（无法区分"不存在"和"值为 null"）
+ * <p>
+ * computeIfAbsent 对每个键只执行一次映射函数：第一个未命中的线程在桶里放入值为 Loading 占位符的节点，
+ * 在桶锁之外执行函数，其他线程在占位符上等待结果；命中走无锁的 get。占位符对所有读写操作都视为键不存在
+ * <p>
+ * putAllAtomic/removeAllAtomic 按下标顺序占住涉及的几个桶后一起修改，见 BatchNode
+ * <p>
+ * 桶锁有两种实现，见 {@link LockMode}：默认对桶头 synchronized，与 JDK 相同；
+ * PARKING 模式改用按桶下标分段的 ReentrantLock，在 Java 21 上虚拟线程等锁时可以卸载，不会占住载体线程
+ */
+public class MyConcurrentHashMap<K, V> {
 
+    /**
+     * 桶锁的实现方式
+     */
+    public enum LockMode {
+        /**
+         * 对桶头节点 synchronized。虚拟线程在 monitor 上阻塞时会钉住载体线程
+         */
+        MONITOR,
+        /**
+         * 按桶下标分段的 ReentrantLock，先短暂自旋再 park，虚拟线程 park 时会从载体线程卸载
+         */
+        PARKING
+    }
 
+    static final int DEFAULT_CAPACITY = 16; //默认初始容量
+    static final int MAXIMUM_CAPACITY = 1 << 30; // 最大表容量
+    static final int TREEIFY_THRESHOLD = 8;//链表转树
+    static final int UNTREEIFY_THRESHOLD = 6;//树转链表
+    static final int MIN_TREEIFY_CAPACITY = 64; //树化最小容量
+
+    // 特殊节点的 hash，普通节点的 hash 恒为非负
+    static final int MOVED = -1;   // ForwardingNode
+    static final int TREEBIN = -2; // TreeBin
+    static final int BATCH = -3;   // BatchNode
+    static final int HASH_BITS = 0x7fffffff;
+
+    static final int LOCK_STRIPES = 256; // PARKING 模式下桶锁的分段数
+    static final int LOCK_SPINS = 64;    // 临界区很短，park 之前先自旋几次
+    // 桶锁内修改失败（桶头已被替换）时的返回值
+    private static final Object RETRY = new Object();
+    // 链表插入后长度达到树化阈值时的返回值
+    private static final Object TREEIFY = new Object();
+
+    private static final VarHandle TAB = MethodHandles.arrayElementVarHandle(Node[].class);
+    private static final VarHandle SIZE_CTL;
+
+    static {
+        try {
+            SIZE_CTL = MethodHandles.lookup().findVarHandle(MyConcurrentHashMap.class, "sizeCtl", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    volatile Node<K, V>[] table;//长度为2的幂
+    /**
+     * 表未初始化时为初始容量；-1 表示正在初始化或扩容；其余情况为触发扩容的元素数量
+     */
+    private volatile int sizeCtl;
+    private final LongAdder count = new LongAdder();
+    /**
+     * PARKING 模式的分段桶锁，MONITOR 模式为 null。
+     * 同一个桶头在任何时刻只位于一张表的一个下标上，按下标取锁与按桶头加锁等价
+     */
+    final Lock[] binLocks;
+
+    public MyConcurrentHashMap() {
+        this.sizeCtl = DEFAULT_CAPACITY;
+        this.binLocks = null;
+    }
+
+    public MyConcurrentHashMap(int initialCapacity) {
+        this(initialCapacity, LockMode.MONITOR);
+    }
+
+    public MyConcurrentHashMap(int initialCapacity, LockMode lockMode) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " + initialCapacity);
+        this.sizeCtl = MyHashMap.tableSizeFor(Math.max(initialCapacity, 1));
+        if (lockMode == LockMode.PARKING) {
+            binLocks = new Lock[LOCK_STRIPES];
+            for (int i = 0; i < LOCK_STRIPES; i++) binLocks[i] = new ReentrantLock();
+        } else {
+            binLocks = null;
+        }
+    }
+
+    public LockMode lockMode() {
+        return binLocks == null ? LockMode.MONITOR : LockMode.PARKING;
+    }
+
+    static int spread(Object key) {
+        return MyHashMap.hash(key) & HASH_BITS;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> Node<K, V> tabAt(Node<K, V>[] tab, int i) {
+        return (Node<K, V>) TAB.getAcquire(tab, i);
+    }
+
+    static <K, V> boolean casTabAt(Node<K, V>[] tab, int i, Node<K, V> expected, Node<K, V> v) {
+        return TAB.compareAndSet(tab, i, expected, v);
+    }
+
+    static <K, V> void setTabAt(Node<K, V>[] tab, int i, Node<K, V> v) {
+        TAB.setRelease(tab, i, v);
+    }
+
+    /**
+     * computeIfAbsent 执行期间占住键的值。节点在扩容、树化时会被复制，所以加载结束时按占位符的身份
+     * 而不是按节点找回它（见 replaceNode）
+     */
+    static final class Loading<V> {
+        final Thread owner = Thread.currentThread();
+        final CompletableFuture<V> result = new CompletableFuture<>();
+
+        V await() {
+            if (owner == Thread.currentThread()) {
+                throw new IllegalStateException("Recursive computeIfAbsent on a key that is being loaded");
+            }
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                // 映射函数抛出的异常原样交给每个等待者
+                if (e.getCause() instanceof RuntimeException re) throw re;
+                if (e.getCause() instanceof Error err) throw err;
+                throw e;
+            }
+        }
+    }
+
+    public V get(Object key) {
+        Node<K, V>[] tab = table;
+        if (key == null || tab == null) {
+            return null;
+        }
+        int h = spread(key);
+        Node<K, V> e = tabAt(tab, (tab.length - 1) & h);
+        if (e == null) {
+            return null;
+        }
+        // 链表、TreeBin、ForwardingNode 各自实现 find
+        Node<K, V> p = e.find(h, key);
+        if (p == null) {
+            return null;
+        }
+        V v = p.val;
+        return v instanceof Loading ? null : v;
+    }
+
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    public V put(K key, V value) {
+        return putVal(key, value, false);
+    }
+
+    public V putIfAbsent(K key, V value) {
+        return putVal(key, value, true);
+    }
+
+    final V putVal(K key, V value, boolean onlyIfAbsent) {
+        if (key == null || value == null) throw new NullPointerException();
+        int h = spread(key);
+        for (Node<K, V>[] tab = table; ; ) {
+            Node<K, V> f;
+            int n, i;
+            if (tab == null || (n = tab.length) == 0) {
+                tab = initTable();
+            } else if ((f = tabAt(tab, i = (n - 1) & h)) == null) {
+                // 空桶：CAS 放入，失败说明有竞争，重试
+                if (casTabAt(tab, i, null, new Node<>(h, key, value))) {
+                    break;
+                }
+            } else if (f.hash == MOVED) {
+                tab = awaitResize(tab);
+            } else if (f instanceof BatchNode<K, V> b) {
+                b.batch.await();
+            } else {
+                Object r;
+                if (binLocks == null) {
+                    synchronized (f) {
+                        r = putInBin(tab, i, f, h, key, value, onlyIfAbsent);
+                    }
+                } else {
+                    Lock l = lockBin(i);
+                    try {
+                        r = putInBin(tab, i, f, h, key, value, onlyIfAbsent);
+                    } finally {
+                        l.unlock();
+                    }
+                }
+                if (r == RETRY) {
+                    continue;
+                }
+                if (r == TREEIFY) {
+                    treeifyBin(tab, i);
+                } else if (r != null) {
+                    @SuppressWarnings("unchecked") V oldVal = (V) r;
+                    return oldVal;
+                }
+                break;
+            }
+        }
+        if (!(value instanceof Loading)) {
+            addCount(1); // 占位符不计数，加载完成写入值时再计
+        }
+        return null;
+    }
+
+    /**
+     * 调用方持有桶锁。返回已有的旧值；新插入时返回 null，链表因此达到树化阈值时返回 TREEIFY；
+     * 桶头已被替换（删除/树化/迁移）时返回 RETRY。
+     * 已有节点的值是占位符时视为不存在：写入普通值并返回 null；value 本身是占位符（预约）时返回已有的占位符
+     */
+    private Object putInBin(Node<K, V>[] tab, int i, Node<K, V> f, int h, K key, V value, boolean onlyIfAbsent) {
+        if (tabAt(tab, i) != f) {
+            return RETRY;
+        }
+        if (f.hash >= 0) {
+            for (int binCount = 1; ; ++binCount) {
+                if (f.hash == h && Objects.equals(f.key, key)) {
+                    return updateVal(f, value, onlyIfAbsent);
+                }
+                Node<K, V> last = f;
+                if ((f = f.next) == null) {
+                    last.next = new Node<>(h, key, value);
+                    return binCount >= TREEIFY_THRESHOLD ? TREEIFY : null;
+                }
+            }
+        } else if (f instanceof TreeBin<K, V> t) {
+            Node<K, V> p = t.putTreeVal(h, key, value);
+            return p == null ? null : updateVal(p, value, onlyIfAbsent);
+        }
+        return RETRY;
+    }
+
+    private Object updateVal(Node<K, V> e, V value, boolean onlyIfAbsent) {
+        V oldVal = e.val;
+        if (oldVal instanceof Loading) {
+            if (value instanceof Loading) return oldVal;
+            e.val = value;
+            return null;
+        }
+        if (!onlyIfAbsent) e.val = value;
+        return oldVal;
+    }
+
+    /**
+     * 键不存在时用 mappingFunction 计算值并放入，同一个键的并发调用只执行一次函数，其余调用等待并得到同一结果。
+     * 函数返回 null 时不放入映射并返回 null；函数抛出的异常会交给所有等待者。
+     * 函数不能在同一个键上递归调用 computeIfAbsent
+     */
+    @SuppressWarnings("unchecked")
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        if (key == null || mappingFunction == null) throw new NullPointerException();
+        V v = get(key);
+        if (v != null) {
+            return v;
+        }
+        Loading<V> mine = new Loading<>();
+        Object r = putVal(key, (V) mine, true);
+        if (r instanceof Loading<?> other) {
+            return ((Loading<V>) other).await();
+        }
+        if (r != null) {
+            return (V) r;
+        }
+        // 预约成功，在桶锁之外执行映射函数
+        V computed;
+        try {
+            computed = mappingFunction.apply(key);
+        } catch (Throwable ex) {
+            replaceNode(key, null, mine);
+            mine.result.completeExceptionally(ex);
+            throw ex;
+        }
+        Object cur = replaceNode(key, computed, mine);
+        // 占位符被并发的 put 覆盖时，以 put 写入的值为准
+        V result = cur == mine ? computed : get(key);
+        mine.result.complete(result);
+        return result;
+    }
+
+    public V remove(Object key) {
+        if (key == null) throw new NullPointerException();
+        @SuppressWarnings("unchecked") V oldVal = (V) replaceNode(key, null, null);
+        return oldVal;
+    }
+
+    /**
+     * 仅当键当前映射到 value 时删除
+     */
+    public boolean remove(Object key, Object value) {
+        if (key == null) throw new NullPointerException();
+        return value != null && replaceNode(key, null, value) != null;
+    }
+
+    /**
+     * remove 与加载完成的共同实现：cv 为 null 或等于当前值时，value 为 null 则删除节点，否则替换值。
+     * 返回被替换的旧值，没有变化时返回 null。值为占位符的节点只有 cv 就是该占位符时才会被改动
+     */
+    final Object replaceNode(Object key, V value, Object cv) {
+        int h = spread(key);
+        for (Node<K, V>[] tab = table; ; ) {
+            Node<K, V> f;
+            int n, i;
+            if (tab == null || (n = tab.length) == 0 || (f = tabAt(tab, i = (n - 1) & h)) == null) {
+                return null;
+            }
+            if (f.hash == MOVED) {
+                tab = awaitResize(tab);
+                continue;
+            }
+            if (f instanceof BatchNode<K, V> b) {
+                b.batch.await();
+                continue;
+            }
+            Object r;
+            if (binLocks == null) {
+                synchronized (f) {
+                    r = replaceInBin(tab, i, f, h, key, value, cv);
+                }
+            } else {
+                Lock l = lockBin(i);
+                try {
+                    r = replaceInBin(tab, i, f, h, key, value, cv);
+                } finally {
+                    l.unlock();
+                }
+            }
+            if (r != RETRY) {
+                if (r != null) {
+                    boolean wasLoading = r instanceof Loading;
+                    if (value == null && !wasLoading) addCount(-1);
+                    else if (value != null && wasLoading) addCount(1);
+                }
+                return r;
+            }
+        }
+    }
+
+    /**
+     * 调用方持有桶锁。见 replaceNode，桶头已被替换时返回 RETRY
+     */
+    private Object replaceInBin(Node<K, V>[] tab, int i, Node<K, V> f, int h, Object key, V value, Object cv) {
+        if (tabAt(tab, i) != f) {
+            return RETRY;
+        }
+        if (f.hash >= 0) {
+            for (Node<K, V> e = f, pred = null; e != null; pred = e, e = e.next) {
+                if (e.hash == h && Objects.equals(e.key, key)) {
+                    V ev = e.val;
+                    if (!matches(ev, cv)) return null;
+                    if (value != null) e.val = value;
+                    else if (pred != null) pred.next = e.next;
+                    else setTabAt(tab, i, e.next);
+                    return ev;
+                }
+            }
+        } else if (f instanceof TreeBin<K, V> t) {
+            Node<K, V> p = t.find(h, key);
+            if (p == null) return null;
+            V ev = p.val;
+            if (!matches(ev, cv)) return null;
+            if (value != null) {
+                p.val = value;
+            } else {
+                t.removeTreeNode(h, key);
+                if (t.count <= UNTREEIFY_THRESHOLD) {
+                    setTabAt(tab, i, t.untreeify());
+                }
+            }
+            return ev;
+        }
+        return null;
+    }
+
+    private static boolean matches(Object ev, Object cv) {
+        if (ev instanceof Loading) return ev == cv;
+        return cv == null || cv == ev || cv.equals(ev);
+    }
+
+    public int size() {
+        long n = count.sum();
+        return n < 0 ? 0 : n > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) n;
+    }
+
+    public long mappingCount() {
+        return Math.max(count.sum(), 0L);
+    }
+
+    public boolean isEmpty() {
+        return count.sum() <= 0;
+    }
+
+    /**
+     * 弱一致遍历：不抛出并发修改异常，可能反映也可能不反映遍历开始后的修改
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        Node<K, V>[] tab = table;
+        if (tab == null) return;
+        for (int i = 0; i < tab.length; i++) {
+            forEachInBin(tabAt(tab, i), i, tab.length, action);
+        }
+    }
+
+    private void forEachInBin(Node<K, V> f, int i, int n, BiConsumer<? super K, ? super V> action) {
+        if (f == null) return;
+        if (f instanceof ForwardingNode<K, V> fwd) {
+            // 旧表第 i 个桶拆分到新表的 i 和 i + n
+            Node<K, V>[] nt = fwd.nextTable;
+            forEachInBin(tabAt(nt, i), i, nt.length, action);
+            forEachInBin(tabAt(nt, i + n), i + n, nt.length, action);
+            return;
+        }
+        if (f instanceof BatchNode<K, V> b) {
+            forEachInBin(b.current(), i, n, action);
+            return;
+        }
+        Node<K, V> e = f instanceof TreeBin<K, V> t ? t.first : f;
+        for (; e != null; e = e.next) {
+            V v = e.val;
+            if (v != null && !(v instanceof Loading)) action.accept(e.key, v);
+        }
+    }
+
+    /* ----------------- 多键原子操作 -------------------- */
+
+    /**
+     * 原子地放入 m 的全部映射：其他线程（包括不加锁的 get）要么看到全部放入之前的状态，要么看到全部放入之后的状态。
+     * <p>
+     * 涉及的桶按下标从小到大逐个占住：在桶锁内把桶头换成 BatchNode，空桶直接 CAS 放入。全部占住之后在各桶的副本上修改，
+     * 一次 volatile 写提交，再把新桶头换进表里。所有批量操作都按下标顺序占桶，互相之间不会死锁；
+     * 单键操作只在碰到被占住的桶时等待，其余桶不受影响。遇到扩容时放弃已占住的桶，等扩容结束后在新表上重试。
+     * 适合一次几十个键的事务式更新，每个涉及的桶都会被整体复制一次
+     */
+    public void putAllAtomic(Map<? extends K, ? extends V> m) {
+        Object[] keys = new Object[m.size()];
+        Object[] vals = new Object[keys.length];
+        int j = 0;
+        for (Map.Entry<? extends K, ? extends V> e : m.entrySet()) {
+            if (e.getKey() == null || e.getValue() == null) throw new NullPointerException();
+            keys[j] = e.getKey();
+            vals[j++] = e.getValue();
+        }
+        if (j != keys.length) throw new ConcurrentModificationException();
+        addCount(applyAtomic(keys, vals));
+    }
+
+    /**
+     * 原子地删除 keys 中的所有键，返回实际删除的个数。并发方式同 putAllAtomic
+     */
+    public int removeAllAtomic(Collection<?> keys) {
+        Object[] ks = keys.toArray();
+        for (Object k : ks) {
+            if (k == null) throw new NullPointerException();
+        }
+        long delta = applyAtomic(ks, new Object[ks.length]);
+        addCount(delta);
+        return (int) -delta;
+    }
+
+    /**
+     * vals[j] 为 null 表示删除 keys[j]。返回条目数的变化，由调用方计数
+     */
+    private long applyAtomic(Object[] keys, Object[] vals) {
+        int m = keys.length;
+        if (m == 0) return 0;
+        int[] hashes = new int[m];
+        for (int j = 0; j < m; j++) hashes[j] = spread(keys[j]);
+        long[] order = new long[m];
+        int[] bins = new int[m];
+        @SuppressWarnings("unchecked") BatchNode<K, V>[] held = (BatchNode<K, V>[]) new BatchNode[m];
+        for (Node<K, V>[] tab = table; ; ) {
+            if (tab == null || tab.length == 0) {
+                tab = initTable();
+                continue;
+            }
+            int n = tab.length;
+            // 高 32 位是桶下标，低 32 位是操作序号：排序后同一个桶的操作相邻，并保持原有顺序
+            for (int j = 0; j < m; j++) order[j] = ((long) ((n - 1) & hashes[j]) << 32) | j;
+            Arrays.sort(order);
+            BatchNode.Batch batch = new BatchNode.Batch();
+            int nb = 0;
+            boolean moved = false;
+            try {
+                for (int j = 0; j < m; j++) {
+                    int i = (int) (order[j] >>> 32);
+                    if (nb > 0 && bins[nb - 1] == i) continue;
+                    BatchNode<K, V> b = reserveBin(tab, i, batch);
+                    if (b == null) {
+                        moved = true;
+                        break;
+                    }
+                    bins[nb] = i;
+                    held[nb++] = b;
+                }
+                if (!moved) {
+                    long delta = 0;
+                    int grow = -1;
+                    for (int k = 0, j = 0; k < nb; k++) {
+                        int from = j;
+                        while (j < m && (int) (order[j] >>> 32) == bins[k]) j++;
+                        delta += buildBin(held[k], n, order, from, j, keys, vals, hashes);
+                        if (n < MIN_TREEIFY_CAPACITY && chainLength(held[k].after) >= TREEIFY_THRESHOLD) grow = bins[k];
+                    }
+                    batch.committed = true;
+                    for (int k = 0; k < nb; k++) setTabAt(tab, bins[k], held[k].after);
+                    batch.done.complete(null);
+                    if (grow >= 0) treeifyBin(tab, grow); // 与 putVal 相同：表太小时链表过长先扩容
+                    return delta;
+                }
+            } finally {
+                if (!batch.committed) {
+                    for (int k = 0; k < nb; k++) setTabAt(tab, bins[k], held[k].before);
+                    batch.done.complete(null);
+                }
+                Arrays.fill(held, 0, nb, null);
+            }
+            tab = awaitResize(tab);
+        }
+    }
+
+    /**
+     * 占住第 i 个桶：空桶 CAS 放入 BatchNode，非空桶在桶锁内替换桶头；桶已被其他批量操作占住时先等它结束。
+     * 遇到 ForwardingNode 时返回 null
+     */
+    private BatchNode<K, V> reserveBin(Node<K, V>[] tab, int i, BatchNode.Batch batch) {
+        while (true) {
+            Node<K, V> f = tabAt(tab, i);
+            if (f == null) {
+                BatchNode<K, V> b = new BatchNode<>(batch, null);
+                if (casTabAt(tab, i, null, b)) return b;
+            } else if (f.hash == MOVED) {
+                return null;
+            } else if (f instanceof BatchNode<K, V> other) {
+                other.batch.await();
+            } else {
+                BatchNode<K, V> b = new BatchNode<>(batch, f);
+                boolean reserved;
+                if (binLocks == null) {
+                    synchronized (f) {
+                        reserved = casTabAt(tab, i, f, b);
+                    }
+                } else {
+                    Lock l = lockBin(i);
+                    try {
+                        reserved = casTabAt(tab, i, f, b);
+                    } finally {
+                        l.unlock();
+                    }
+                }
+                if (reserved) return b;
+            }
+        }
+    }
+
+    /**
+     * 在 b.before 的副本上依次执行 order[from, to) 中的操作，新桶头存入 b.after，桶没有变化时 after 就是 before。
+     * 返回条目数的变化。值为占位符的节点对删除视为不存在，放入时按新插入计数
+     */
+    @SuppressWarnings("unchecked")
+    private int buildBin(BatchNode<K, V> b, int n, long[] order, int from, int to,
+                         Object[] keys, Object[] vals, int[] hashes) {
+        Node<K, V> f = b.before;
+        Node<K, V> head = null, tail = null;
+        int c = 0;
+        for (Node<K, V> e = f instanceof TreeBin<K, V> t ? t.first : f; e != null; e = e.next) {
+            Node<K, V> copy = new Node<>(e.hash, e.key, e.val);
+            if (tail == null) head = copy;
+            else tail.next = copy;
+            tail = copy;
+            c++;
+        }
+        int delta = 0;
+        boolean changed = false;
+        for (int j = from; j < to; j++) {
+            int op = (int) order[j];
+            int h = hashes[op];
+            Object key = keys[op];
+            V value = (V) vals[op];
+            Node<K, V> e = head, pred = null;
+            while (e != null && !(e.hash == h && Objects.equals(e.key, key))) {
+                pred = e;
+                e = e.next;
+            }
+            if (value != null) {
+                if (e == null) {
+                    e = new Node<>(h, (K) key, value);
+                    if (tail == null) head = e;
+                    else tail.next = e;
+                    tail = e;
+                    c++;
+                    delta++;
+                } else {
+                    if (e.val instanceof Loading) delta++;
+                    e.val = value;
+                }
+                changed = true;
+            } else if (e != null && !(e.val instanceof Loading)) {
+                if (pred == null) head = e.next;
+                else pred.next = e.next;
+                if (tail == e) tail = pred;
+                c--;
+                delta--;
+                changed = true;
+            }
+        }
+        if (!changed) {
+            b.after = f;
+            return 0;
+        }
+        boolean tree = (c >= TREEIFY_THRESHOLD && n >= MIN_TREEIFY_CAPACITY)
+                || (f instanceof TreeBin && c > UNTREEIFY_THRESHOLD);
+        b.after = tree ? new TreeBin<>(head) : head;
+        return delta;
+    }
+
+    private static int chainLength(Node<?, ?> f) {
+        int c = 0;
+        for (Node<?, ?> e = f; e != null && e.hash >= 0; e = e.next) c++;
+        return c;
+    }
+
+    /* ----------------- 桶锁 -------------------- */
+
+    /**
+     * PARKING 模式下锁住第 i 个桶并返回锁
+     */
+    private Lock lockBin(int i) {
+        Lock l = binLocks[i & (LOCK_STRIPES - 1)];
+        acquire(l);
+        return l;
+    }
+
+    /**
+     * 先自旋 LOCK_SPINS 次 tryLock，仍未拿到再 park 等待
+     */
+    private static void acquire(Lock l) {
+        for (int spins = LOCK_SPINS; !l.tryLock(); ) {
+            if (--spins <= 0) {
+                l.lock();
+                return;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /* ----------------- 初始化与扩容 -------------------- */
+
+    @SuppressWarnings("unchecked")
+    private Node<K, V>[] initTable() {
+        Node<K, V>[] tab;
+        while ((tab = table) == null || tab.length == 0) {
+            int sc = sizeCtl;
+            if (sc < 0) {
+                Thread.yield(); // 其他线程正在初始化
+            } else if (SIZE_CTL.compareAndSet(this, sc, -1)) {
+                try {
+                    if ((tab = table) == null || tab.length == 0) {
+                        int n = sc > 0 ? sc : DEFAULT_CAPACITY;
+                        tab = (Node<K, V>[]) new Node[n];
+                        table = tab;
+                        sc = n - (n >>> 2); // n * 0.75
+                    }
+                } finally {
+                    sizeCtl = sc;
+                }
+                break;
+            }
+        }
+        return tab;
+    }
+
+    private void addCount(long x) {
+        count.add(x);
+        if (x > 0) {
+            Node<K, V>[] tab;
+            int sc;
+            while (count.sum() >= (long) (sc = sizeCtl) && sc >= 0
+                    && (tab = table) != null && tab.length < MAXIMUM_CAPACITY) {
+                if (SIZE_CTL.compareAndSet(this, sc, -1)) {
+                    transfer(tab);
+                }
+            }
+        }
+    }
+
+    /**
+     * 写者遇到 ForwardingNode 时调用：等待扩容完成，返回新表
+     */
+    private Node<K, V>[] awaitResize(Node<K, V>[] tab) {
+        Node<K, V>[] t;
+        while ((t = table) == tab) {
+            Thread.yield();
+        }
+        return t;
+    }
+
+    /**
+     * 调用方已把 sizeCtl 置为 -1。从后往前逐桶迁移，
+     * 迁移过的桶放入 ForwardingNode，最后发布新表并恢复 sizeCtl
+     */
+    @SuppressWarnings("unchecked")
+    private void transfer(Node<K, V>[] tab) {
+        int n = tab.length;
+        Node<K, V>[] nt = (Node<K, V>[]) new Node[n << 1];
+        ForwardingNode<K, V> fwd = new ForwardingNode<>(nt);
+        for (int i = n - 1; i >= 0; ) {
+            Node<K, V> f = tabAt(tab, i);
+            if (f == null) {
+                if (casTabAt(tab, i, null, fwd)) --i;
+                continue;
+            }
+            if (f instanceof BatchNode<K, V> b) {
+                b.batch.await();
+                continue;
+            }
+            boolean moved;
+            if (binLocks == null) {
+                synchronized (f) {
+                    moved = transferBin(tab, nt, i, f, fwd);
+                }
+            } else {
+                Lock l = lockBin(i);
+                try {
+                    moved = transferBin(tab, nt, i, f, fwd);
+                } finally {
+                    l.unlock();
+                }
+            }
+            if (moved) --i; // 否则桶头变了，重新读取
+        }
+        table = nt;
+        sizeCtl = (n << 1) - (n >>> 1); // 2n * 0.75
+    }
+
+    /**
+     * 调用方持有桶锁。把旧表第 i 个桶拆到新表的 i 和 i + n，桶头已被替换时返回 false
+     */
+    private boolean transferBin(Node<K, V>[] tab, Node<K, V>[] nt, int i, Node<K, V> f, ForwardingNode<K, V> fwd) {
+        if (tabAt(tab, i) != f) {
+            return false;
+        }
+        int n = tab.length;
+        Node<K, V> lo, hi;
+        if (f instanceof TreeBin<K, V> t) {
+            lo = splitTreeBin(t.first, n, 0);
+            hi = splitTreeBin(t.first, n, n);
+        } else {
+            Node<K, V>[] parts = splitChain(f, n);
+            lo = parts[0];
+            hi = parts[1];
+        }
+        setTabAt(nt, i, lo);
+        setTabAt(nt, i + n, hi);
+        setTabAt(tab, i, fwd);
+        return true;
+    }
+
+    /**
+     * 拆分链表。末尾连续落在同一侧的一段（lastRun）可以直接复用，
+     * 其余节点复制，旧链表对并发读者保持完整
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, V> Node<K, V>[] splitChain(Node<K, V> f, int n) {
+        int runBit = f.hash & n;
+        Node<K, V> lastRun = f;
+        for (Node<K, V> p = f.next; p != null; p = p.next) {
+            int b = p.hash & n;
+            if (b != runBit) {
+                runBit = b;
+                lastRun = p;
+            }
+        }
+        Node<K, V> lo = runBit == 0 ? lastRun : null;
+        Node<K, V> hi = runBit != 0 ? lastRun : null;
+        for (Node<K, V> p = f; p != lastRun; p = p.next) {
+            if ((p.hash & n) == 0) lo = new Node<>(p.hash, p.key, p.val, lo);
+            else hi = new Node<>(p.hash, p.key, p.val, hi);
+        }
+        return (Node<K, V>[]) new Node[]{lo, hi};
+    }
+
+    /**
+     * 取出树中 (hash & n) == bit 的节点，数量不超过 UNTREEIFY_THRESHOLD 时返回普通链表，否则重新建树
+     */
+    private static <K, V> Node<K, V> splitTreeBin(Node<K, V> first, int n, int bit) {
+        Node<K, V> head = null;
+        int c = 0;
+        for (Node<K, V> e = first; e != null; e = e.next) {
+            if ((e.hash & n) == bit) {
+                head = new Node<>(e.hash, e.key, e.val, head);
+                c++;
+            }
+        }
+        if (c > UNTREEIFY_THRESHOLD) {
+            return new TreeBin<>(head);
+        }
+        return head;
+    }
+
+    private void treeifyBin(Node<K, V>[] tab, int index) {
+        if (tab.length < MIN_TREEIFY_CAPACITY) {
+            // 表太小时优先扩容
+            int sc = sizeCtl;
+            if (sc >= 0 && table == tab && SIZE_CTL.compareAndSet(this, sc, -1)) {
+                transfer(tab);
+            }
+            return;
+        }
+        Node<K, V> b = tabAt(tab, index);
+        if (b != null && b.hash >= 0) {
+            if (binLocks == null) {
+                synchronized (b) {
+                    if (tabAt(tab, index) == b) {
+                        setTabAt(tab, index, new TreeBin<>(b));
+                    }
+                }
+            } else {
+                Lock l = lockBin(index);
+                try {
+                    if (tabAt(tab, index) == b) {
+                        setTabAt(tab, index, new TreeBin<>(b));
+                    }
+                } finally {
+                    l.unlock();
+                }
+            }
+        }
+    }
 }
@@ -1,6 +1,14 @@
 package com.dhu.zlchashmap;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class MyHashMap<K, V> {
     static final int DEFAULT_CAPACITY = 16; //默认初始容量
@@ -9,14 +17,19 @@ public class MyHashMap<K, V> {
     static final int TREEIFY_THRESHOLD = 8;//链表转树
     static final int UNTREEIFY_THRESHOLD = 6;//树转链表
     static final int MIN_TREEIFY_CAPACITY = 64; //树化最小容量
+    static final int SORTED_BIN_LIMIT = 64; // 有序数组桶的最大条目数，超过后转成红黑树
 
     volatile Node<K, V>[] table;//长度为2的幂
     int size;//当前键值对数量
     float loadFactor;//当前负载因子
     int threshold; // 修正：threshold 表示触发扩容的元素数量（capacity * loadFactor）
     int capacity;  // 修正：显式记录当前容量（table.length）
+    final boolean sortedBins; // 链表过长时先转成有序数组桶（SortedArrayBin），更大时才用红黑树
+    ChangeFeed<K, V> changeFeed; // 为 null 时不发布变更事件
+    AdaptiveSizing adaptive; // 为 null 时负载因子固定
 
     public MyHashMap() {
+        this.sortedBins = false;
         this.loadFactor = LOAD_FACTOR;
         this.capacity = DEFAULT_CAPACITY;
         // 修正：threshold 应为 capacity * loadFactor，而不是直接设为 DEFAULT_CAPACITY
@@ -24,6 +37,15 @@ public class MyHashMap<K, V> {
     }
 
     public MyHashMap(int initialCapacity, float loadFactor) {
+        this(initialCapacity, loadFactor, false);
+    }
+
+    /**
+     * sortedBins 为 true 时，链表超过 TREEIFY_THRESHOLD 的桶先转成按 (hash, 键) 排序的数组、二分查找，
+     * 超过 SORTED_BIN_LIMIT 个条目才转成红黑树
+     */
+    public MyHashMap(int initialCapacity, float loadFactor, boolean sortedBins) {
+        this.sortedBins = sortedBins;
         if (initialCapacity < 0)
             throw new IllegalArgumentException("Illegal initial capacity: " +
                     initialCapacity);
@@ -59,13 +81,57 @@ public class MyHashMap<K, V> {
         if (table == null || size == 0) {
             return null;
         }
+        AdaptiveSizing a = adaptive;
+        if (a != null && a.tick()) {
+            return sampledGet(key, a);
+        }
         int index = calculateIndex(key, table.length);
         Node<K, V> head = table[index];
         if (head == null) return null;
+        if (head instanceof SortedArrayBin<K, V> b) {
+            int i = b.indexOf(hash(key), key);
+            return i < 0 ? null : b.valueAt(i);
+        }
         Node<K, V> kvNode = head.find(hash(key), key);
         return kvNode == null ? null : kvNode.val;
     }
 
+    /**
+     * 采样的 get：另外统计比较了几个节点交给自适应策略。树桶按 hash 下降的深度计
+     */
+    private V sampledGet(Object key, AdaptiveSizing a) {
+        int h = hash(key);
+        Node<K, V> head = table[(table.length - 1) & h];
+        int probes = 0;
+        Node<K, V> found = null;
+        V v = null;
+        if (head instanceof SortedArrayBin<K, V> b) {
+            probes = 32 - Integer.numberOfLeadingZeros(b.size); // 二分查找的比较次数
+            int i = b.indexOf(h, key);
+            if (i >= 0) {
+                found = b;
+                v = b.valueAt(i);
+            }
+        } else if (head instanceof RedBlackNode<K, V> root) {
+            for (RedBlackNode<K, V> p = root; p != null; p = h < p.hash ? p.left : h > p.hash ? p.right : null) {
+                probes++;
+            }
+            found = root.find(h, key);
+            if (found != null) v = found.val;
+        } else {
+            for (Node<K, V> e = head; e != null; e = e.next) {
+                probes++;
+                if (e.hash == h && Objects.equals(e.key, key)) {
+                    found = e;
+                    v = e.val;
+                    break;
+                }
+            }
+        }
+        a.sampleLookup(probes, found != null);
+        return v;
+    }
+
     //保证容量是2的幂次
     static int tableSizeFor(int cap) {
         // 修正：使用标准方法得到 >= cap 的最小 2 的幂
@@ -125,7 +191,12 @@ public class MyHashMap<K, V> {
                 if ((e = oldTab[j]) != null) {
                     oldTab[j] = null; // 帮助 GC
 
-                    if (e.next == null) {
+                    // 修正：树根的 next 恒为 null，必须先判断是否为树，否则整棵树会被当作单个节点搬走
+                    if (e instanceof SortedArrayBin<K, V> b) {
+                        // Case 0: 有序数组桶，拆开后各自仍然有序
+                        newTab[j] = shrinkArrayBin(b.split(oldCap, 0));
+                        newTab[j + oldCap] = shrinkArrayBin(b.split(oldCap, oldCap));
+                    } else if (e.next == null && !(e instanceof RedBlackNode)) {
                         // Case 1: 桶中只有一个节点
                         newTab[e.hash & (newCap - 1)] = e;
                     } else if (e instanceof RedBlackNode) {
@@ -141,7 +212,9 @@ public class MyHashMap<K, V> {
                             int lc = 0; // low count
                             for (Node<K,V> p = loHead; p != null; p = p.next) lc++;
                             if (lc <= UNTREEIFY_THRESHOLD) {
-                                newTab[j] = loHead; // 保持为链表
+                                newTab[j] = copyAsList(loHead); // 保持为链表
+                            } else if (sortedBins && lc <= SORTED_BIN_LIMIT) {
+                                newTab[j] = listToArray(loHead, lc);
                             } else {
                                 newTab[j] = treeify(loHead); // 重新树化
                             }
@@ -152,7 +225,9 @@ public class MyHashMap<K, V> {
                             int hc = 0; // high count
                             for (Node<K,V> p = hiHead; p != null; p = p.next) hc++;
                             if (hc <= UNTREEIFY_THRESHOLD) {
-                                newTab[j + oldCap] = hiHead; // 保持为链表
+                                newTab[j + oldCap] = copyAsList(hiHead); // 保持为链表
+                            } else if (sortedBins && hc <= SORTED_BIN_LIMIT) {
+                                newTab[j + oldCap] = listToArray(hiHead, hc);
                             } else {
                                 newTab[j + oldCap] = treeify(hiHead); // 重新树化
                             }
@@ -187,8 +262,115 @@ public class MyHashMap<K, V> {
         }
     }
 
-    @SuppressWarnings("unchecked")
     public V put(K key, V value) {
+        ChangeFeed<K, V> feed = changeFeed;
+        AdaptiveSizing a = adaptive;
+        if (feed == null && a == null) {
+            return putVal(hash(key), key, value);
+        }
+        int h = hash(key);
+        int before = size;
+        V oldValue = putVal(h, key, value);
+        if (feed != null) {
+            // 旧值可能就是 null，是否新插入看 size 有没有变化
+            if (size != before) feed.publish(ChangeFeed.Kind.INSERT, key, null, value);
+            else feed.publish(ChangeFeed.Kind.REPLACE, key, oldValue, value);
+        }
+        if (a != null && a.tick()) {
+            a.samplePut(this, binLength(table[(table.length - 1) & h]));
+        }
+        return oldValue;
+    }
+
+    private static int binLength(Node<?, ?> head) {
+        if (head instanceof SortedArrayBin<?, ?> b) return b.size;
+        if (head instanceof RedBlackNode<?, ?> root) return countTree(root);
+        int n = 0;
+        for (Node<?, ?> e = head; e != null; e = e.next) n++;
+        return n;
+    }
+
+    private static int countTree(RedBlackNode<?, ?> n) {
+        int c = 0;
+        for (; n != null; n = n.right) c += 1 + countTree(n.left);
+        return c;
+    }
+
+    /**
+     * 挂上变更流，之后的 put、remove 和 compute 系列操作都会发布事件；传入 null 取消
+     */
+    public void setChangeFeed(ChangeFeed<K, V> feed) {
+        this.changeFeed = feed;
+    }
+
+    /**
+     * 挂上自适应容量策略（见 AdaptiveSizing），传入 null 取消，负载因子保持当时的值
+     */
+    public void setAdaptiveSizing(AdaptiveSizing policy) {
+        if (policy != null) policy.attach(this);
+        if (adaptive != null && adaptive != policy) adaptive.detach(this);
+        this.adaptive = policy;
+    }
+
+    /**
+     * 自适应策略调整负载因子：重新计算阈值，条目数超过新阈值时立即扩容
+     */
+    final void adjustLoadFactor(float lf) {
+        loadFactor = lf;
+        threshold = (int) Math.min((long) (capacity * lf), Integer.MAX_VALUE);
+        while (table != null && size > threshold && capacity < MAXIMUM_CAPACITY) {
+            resize();
+        }
+    }
+
+    /**
+     * 键不存在或值为 null 时，用 mappingFunction 计算值并放入；函数返回 null 时不放入
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+        V v = get(key);
+        if (v != null) {
+            return v;
+        }
+        v = mappingFunction.apply(key);
+        if (v != null) {
+            put(key, v);
+        }
+        return v;
+    }
+
+    /**
+     * 键存在且值不为 null 时重新计算，结果为 null 时删除
+     */
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        V old = get(key);
+        if (old == null) {
+            return null;
+        }
+        V v = remappingFunction.apply(key, old);
+        if (v != null) put(key, v);
+        else remove(key);
+        return v;
+    }
+
+    /**
+     * 按当前值（不存在时为 null）重新计算，结果为 null 时删除
+     */
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        V old = get(key);
+        V v = remappingFunction.apply(key, old);
+        if (v != null) put(key, v);
+        else if (old != null || containsKey(key)) remove(key);
+        return v;
+    }
+
+    /**
+     * put 的实际实现，hash 由调用方给出（反序列化等场景可以复用已知的 hash）
+     */
+    @SuppressWarnings("unchecked")
+    final V putVal(int hash, K key, V value) {
         V oldValue = null;
         //1. 检查table是否为空,为空则初始化
         if (table == null) {
@@ -196,24 +378,38 @@ public class MyHashMap<K, V> {
             table = (Node<K, V>[]) new Node[this.capacity];
         }
         //2. 计算hash并且定位index;
-        int index = calculateIndex(key, table.length);
+        int index = (table.length - 1) & hash;
         //3. 若桶为空,则直接插入新节点
         if (table[index] == null) { // 修正：这里应判断具体桶是否为空，而不是 isEmpty()
-            Node<K, V> node = new Node<K, V>(hash(key), key, value);
-            table[index] = node;
+            table[index] = newNode(hash, key, value);
             size++;
         } else {
             // 4. 若非空, 处理冲突
             Node<K, V> p = table[index];
-            if (p instanceof RedBlackNode<K, V> treeNode) { // 检查是否为树节点
-                RedBlackNode<K, V> targetNode = treeNode.findNode(treeNode, hash(key), key);
+            if (p instanceof SortedArrayBin<K, V> b) {
+                int i = b.indexOf(hash, key);
+                if (i >= 0) {
+                    oldValue = b.valueAt(i);
+                    b.vals[i] = value;
+                    return oldValue;
+                }
+                if (b.size < SORTED_BIN_LIMIT) {
+                    b.insertAt(-i - 1, hash, key, value);
+                } else {
+                    // 数组桶已满，转成红黑树
+                    RedBlackNode<K, V> root = treeifyArray(b);
+                    table[index] = root.insertNewNodeWithBalance(root, newTreeNode(hash, key, value));
+                }
+                size++;
+            } else if (p instanceof RedBlackNode<K, V> treeNode) { // 检查是否为树节点
+                RedBlackNode<K, V> targetNode = treeNode.findNode(treeNode, hash, key);
                 if (targetNode != null) {
                     oldValue = targetNode.val;
                     targetNode.val = value; // 仅替换值
                     return oldValue;
                 }
                 // 插入新节点到树中
-                treeNode = treeNode.insertNewNodeWithBalance(treeNode, new RedBlackNode<>(hash(key), key, value, null));
+                treeNode = treeNode.insertNewNodeWithBalance(treeNode, newTreeNode(hash, key, value));
                 table[index] = treeNode; // 根节点可能改变，需要更新
                 size++;
 
@@ -224,7 +420,7 @@ public class MyHashMap<K, V> {
                 int binCount = 0; // 计算链表长度
                 while (head != null) {
                     binCount++;
-                    if (Objects.equals(head.key, key) && head.hash == hash(key)) {
+                    if (Objects.equals(head.key, key) && head.hash == hash) {
                         oldValue = head.val;
                         head.val = value;
                         replaced = true;
@@ -235,7 +431,7 @@ public class MyHashMap<K, V> {
                 }
                 if (!replaced) {
                     if (prev != null) {
-                        prev.next = new Node<>(hash(key), key, value);
+                        prev.next = newNode(hash, key, value);
                     }
                     size++;
                     // 检查是否需要树化
@@ -257,7 +453,19 @@ public class MyHashMap<K, V> {
         return size == 0;
     }
 
+    @SuppressWarnings("unchecked")
     public V remove(Object key) {
+        ChangeFeed<K, V> feed = changeFeed;
+        if (feed == null) {
+            return removeNode(key);
+        }
+        int before = size;
+        V oldValue = removeNode(key);
+        if (size != before) feed.publish(ChangeFeed.Kind.REMOVE, (K) key, oldValue, null);
+        return oldValue;
+    }
+
+    final V removeNode(Object key) {
         if (isEmpty() || table == null) {
             return null;
         }
@@ -265,7 +473,17 @@ public class MyHashMap<K, V> {
         // 定位index;
         int index = calculateIndex(key, table.length);
         Node<K, V> head = table[index];
-        if (head instanceof RedBlackNode) {
+        if (head instanceof SortedArrayBin<K, V> b) {
+            int i = b.indexOf(hash(key), key);
+            if (i < 0) return null;
+            V oldValue = b.valueAt(i);
+            b.removeAt(i);
+            size--;
+            if (b.size <= UNTREEIFY_THRESHOLD) {
+                table[index] = arrayToList(b);
+            }
+            return oldValue;
+        } else if (head instanceof RedBlackNode) {
             RedBlackNode<K, V> tree = (RedBlackNode<K, V>) head;
             RedBlackNode<K, V> targetNode = tree.findNode(tree, hash(key), key);
             if (targetNode == null) {
@@ -275,6 +493,7 @@ public class MyHashMap<K, V> {
             // 调用树的删除方法，它会返回新的根
             RedBlackNode<K, V> newRoot = tree.treeDelete(tree, targetNode);
             table[index] = newRoot;
+            releaseNode(targetNode);
             size--;
             // 检查是否需要反树化
             if (newRoot != null && newRoot.countNodes(newRoot, 0) <= UNTREEIFY_THRESHOLD) {
@@ -293,6 +512,7 @@ public class MyHashMap<K, V> {
                     } else {
                         prev.next = head.next;
                     }
+                    releaseNode(head);
                     size--;
                     if (table[index] != null && size <= UNTREEIFY_THRESHOLD && table[index] instanceof RedBlackNode<K, V>) {
                         // 树转链表
@@ -317,16 +537,360 @@ public class MyHashMap<K, V> {
         int index = calculateIndex(key, table.length);
         Node<K, V> head = table[index];
         if (head == null) return false;
+        if (head instanceof SortedArrayBin<K, V> b) return b.indexOf(hash(key), key) >= 0;
         return head.find(hash(key), key) != null;
     }
 
+    /**
+     * 遍历所有键值对。链表桶沿 next 遍历；树桶的 next 不维护，需按树结构遍历
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        forEachNode(e -> action.accept(e.key, e.val));
+    }
+
+    /**
+     * 按节点遍历，调用方可以直接拿到缓存的 hash，不产生中间集合
+     */
+    final void forEachNode(Consumer<? super Node<K, V>> action) {
+        Node<K, V>[] tab = table;
+        if (tab == null || size == 0) return;
+        Node<K, V> cursor = null;
+        for (Node<K, V> head : tab) {
+            if (head instanceof SortedArrayBin<K, V> b) {
+                // 数组桶没有节点对象，依次装进同一个游标节点交给 action，action 不能保留它
+                if (cursor == null) cursor = new Node<>(0, null, null);
+                for (int i = 0; i < b.size; i++) {
+                    cursor.hash = b.hashes[i];
+                    cursor.key = b.keyAt(i);
+                    cursor.val = b.valueAt(i);
+                    action.accept(cursor);
+                }
+            } else if (head instanceof RedBlackNode<K, V> root) {
+                java.util.Deque<RedBlackNode<K, V>> stack = new java.util.ArrayDeque<>();
+                stack.push(root);
+                while (!stack.isEmpty()) {
+                    RedBlackNode<K, V> n = stack.pop();
+                    action.accept(n);
+                    if (n.right != null) stack.push(n.right);
+                    if (n.left != null) stack.push(n.left);
+                }
+            } else {
+                for (Node<K, V> e = head; e != null; e = e.next) {
+                    action.accept(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 构造当前内容的只读副本，查找时只做一次键比较，见 FrozenMap。之后对本映射的修改不会反映到副本中
+     */
+    public FrozenMap<K, V> freeze() {
+        return FrozenMap.of(this);
+    }
+
+    /* ----------------- 批量删除 -------------------- */
+
+    /**
+     * 删除 filter 返回 true 的所有条目，返回删除的个数。
+     * <p>
+     * 只遍历一次表，匹配的节点在桶内就地摘下：不像逐个 remove 那样每个键都重新算 hash、重新找桶，
+     * 树桶也不会每删一个就再平衡一次、再递归统计一遍节点数。有删除的树桶在处理完后按剩余条目数一次性重建
+     * （退回链表、有序数组桶或新的红黑树），数组桶就地压缩。每个条目只调用一次 filter；
+     * 挂了变更流时每删除一个条目发布一个 REMOVE。filter 抛出异常时已删除的条目不会恢复，映射仍保持一致
+     */
+    public int removeIf(BiPredicate<? super K, ? super V> filter) {
+        return removeIf(filter, false);
+    }
+
+    /**
+     * 只保留 filter 返回 true 的条目，返回删除的个数
+     */
+    public int retainIf(BiPredicate<? super K, ? super V> filter) {
+        return retainIf(filter, false);
+    }
+
+    /**
+     * 并行方式同 removeIf(BiPredicate, boolean)
+     */
+    public int retainIf(BiPredicate<? super K, ? super V> filter, boolean parallel) {
+        Objects.requireNonNull(filter);
+        return removeIf((k, v) -> !filter.test(k, v), parallel);
+    }
+
+    /**
+     * parallel 为 true 时按桶区间分成 ForkJoin 任务（见 MapAlgebra.parallel），各任务只改自己的桶，不需要加锁，
+     * filter 会在多个线程上调用。并行时重建的节点由一个普通 MyHashMap 分配、摘下的节点不回收，
+     * 子类的节点池不会被多个线程碰到。挂了变更流时总是在调用线程上顺序执行，以便按顺序发布事件
+     */
+    public int removeIf(BiPredicate<? super K, ? super V> filter, boolean parallel) {
+        Objects.requireNonNull(filter);
+        Node<K, V>[] tab = table;
+        if (tab == null || size == 0) return 0;
+        if (!parallel || changeFeed != null) {
+            int[] removed = new int[1];
+            ArrayList<Node<K, V>> scratch = new ArrayList<>();
+            try {
+                for (int i = 0; i < tab.length; i++) {
+                    if (tab[i] != null) purgeBin(tab, i, filter, this, scratch, removed);
+                }
+            } finally {
+                size -= removed[0];
+            }
+            return removed[0];
+        }
+        MyHashMap<K, V> alloc = new MyHashMap<>(0, loadFactor, sortedBins);
+        AtomicLong total = new AtomicLong();
+        try {
+            MapAlgebra.parallel(tab.length, (lo, hi) -> {
+                int[] removed = new int[1];
+                ArrayList<Node<K, V>> scratch = new ArrayList<>();
+                try {
+                    for (int i = lo; i < hi; i++) {
+                        if (tab[i] != null) purgeBin(tab, i, filter, alloc, scratch, removed);
+                    }
+                } finally {
+                    total.addAndGet(removed[0]);
+                }
+                return 0;
+            });
+        } finally {
+            size -= (int) total.get();
+        }
+        return (int) total.get();
+    }
+
+    /**
+     * 删除桶 i 中匹配的条目，删除个数累加到 removed[0]。alloc 负责节点的分配和回收；
+     * scratch 是调用方复用的暂存列表。filter 抛出异常时尚未判断的条目全部保留
+     */
+    private void purgeBin(Node<K, V>[] tab, int i, BiPredicate<? super K, ? super V> filter,
+                          MyHashMap<K, V> alloc, ArrayList<Node<K, V>> scratch, int[] removed) {
+        ChangeFeed<K, V> feed = changeFeed;
+        Node<K, V> head = tab[i];
+        if (head instanceof SortedArrayBin<K, V> b) {
+            int n = b.size, j = 0, k = 0;
+            try {
+                for (; k < n; k++) {
+                    K key = b.keyAt(k);
+                    V val = b.valueAt(k);
+                    if (filter.test(key, val)) {
+                        if (feed != null) feed.publish(ChangeFeed.Kind.REMOVE, key, val, null);
+                        removed[0]++;
+                        continue;
+                    }
+                    if (j != k) {
+                        b.hashes[j] = b.hashes[k];
+                        b.keys[j] = key;
+                        b.vals[j] = val;
+                    }
+                    j++;
+                }
+            } finally {
+                // 正常结束时 k == n；异常时把未判断的 [k, n) 接到保留部分后面
+                if (j != k) {
+                    System.arraycopy(b.hashes, k, b.hashes, j, n - k);
+                    System.arraycopy(b.keys, k, b.keys, j, n - k);
+                    System.arraycopy(b.vals, k, b.vals, j, n - k);
+                    int size = j + n - k;
+                    Arrays.fill(b.keys, size, n, null);
+                    Arrays.fill(b.vals, size, n, null);
+                    b.size = size;
+                    tab[i] = size == 0 ? null : alloc.shrinkArrayBin(b);
+                }
+            }
+        } else if (head instanceof RedBlackNode<K, V> root) {
+            // 先按中序收集节点，之后不再访问旧树，判断为删除的节点可以马上回收
+            scratch.clear();
+            collectTree(root, scratch);
+            int n = scratch.size(), j = 0, k = 0;
+            try {
+                for (; k < n; k++) {
+                    Node<K, V> e = scratch.get(k);
+                    if (filter.test(e.key, e.val)) {
+                        if (feed != null) feed.publish(ChangeFeed.Kind.REMOVE, e.key, e.val, null);
+                        removed[0]++;
+                        alloc.releaseNode(e);
+                        continue;
+                    }
+                    scratch.set(j++, e);
+                }
+            } finally {
+                if (j != k) {
+                    for (; k < n; k++) scratch.set(j++, scratch.get(k));
+                    tab[i] = rebuildBin(scratch, j, alloc);
+                }
+                scratch.clear();
+            }
+        } else {
+            for (Node<K, V> e = head, pred = null, next; e != null; e = next) {
+                next = e.next;
+                if (!filter.test(e.key, e.val)) {
+                    pred = e;
+                    continue;
+                }
+                if (feed != null) feed.publish(ChangeFeed.Kind.REMOVE, e.key, e.val, null);
+                if (pred == null) tab[i] = next;
+                else pred.next = next;
+                removed[0]++;
+                alloc.releaseNode(e);
+            }
+        }
+    }
+
+    private static <K, V> void collectTree(RedBlackNode<K, V> n, ArrayList<Node<K, V>> out) {
+        for (; n != null; n = n.right) {
+            collectTree(n.left, out);
+            out.add(n);
+        }
+    }
+
+    /**
+     * 用树桶剩下的前 n 个节点（按原树的中序）重建桶：不超过 UNTREEIFY_THRESHOLD 个时是链表，
+     * 否则按 sortedBins 转成有序数组桶或重新插入一棵红黑树。旧节点复制后回收
+     */
+    private Node<K, V> rebuildBin(ArrayList<Node<K, V>> nodes, int n, MyHashMap<K, V> alloc) {
+        if (n > UNTREEIFY_THRESHOLD && !(sortedBins && n <= SORTED_BIN_LIMIT)) {
+            RedBlackNode<K, V> root = null;
+            for (int k = 0; k < n; k++) {
+                Node<K, V> e = nodes.get(k);
+                RedBlackNode<K, V> x = alloc.newTreeNode(e.hash, e.key, e.val);
+                alloc.releaseNode(e);
+                root = x.insertNewNodeWithBalance(root, x);
+            }
+            return root;
+        }
+        Node<K, V> head = null;
+        for (int k = n - 1; k >= 0; k--) {
+            Node<K, V> e = nodes.get(k);
+            Node<K, V> copy = alloc.newNode(e.hash, e.key, e.val);
+            alloc.releaseNode(e);
+            copy.next = head;
+            head = copy;
+        }
+        return n > UNTREEIFY_THRESHOLD ? alloc.listToArray(head, n) : head;
+    }
+
+    /* ----------------- 集合运算 -------------------- */
+
+    /**
+     * 把 other 合并进本映射：只在 other 中的键直接加入，两边都有的键值变为 remappingFunction(本映射的值, other 的值)，
+     * 结果为 null 时删除该键。
+     * <p>
+     * 按两表的桶对应关系分段并行处理（见 MapAlgebra），结果写入按 max(size, other.size) 预分配的新表后整体替换，
+     * remappingFunction 会在多个线程上调用。
+     * 挂了变更流时逐个 put/remove，以便发布每一次修改；写入前先在 other 的快照上算出全部结果。
+     * 两条路径上 other 都可以是本映射本身，remappingFunction 抛出异常时本映射保持不变、也不会发布任何修改
+     */
+    @SuppressWarnings("unchecked")
+    public void mergeAll(MyHashMap<? extends K, ? extends V> other,
+                         BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        if (other.size == 0) return;
+        if (changeFeed != null) {
+            // other 的键互不相同，先算完再写与逐个合并的结果一样，且遍历 other 时本映射没有被修改
+            Object[] ks = new Object[other.size];
+            Object[] vs = new Object[other.size];
+            boolean[] removed = new boolean[other.size];
+            int[] count = new int[1];
+            ((MyHashMap<K, V>) other).forEach((k, v) -> {
+                int i = count[0]++;
+                ks[i] = k;
+                if (!containsKey(k)) {
+                    vs[i] = v;
+                } else {
+                    vs[i] = remappingFunction.apply(get(k), v);
+                    removed[i] = vs[i] == null;
+                }
+            });
+            for (int i = 0; i < count[0]; i++) {
+                if (removed[i]) remove(ks[i]);
+                else put((K) ks[i], (V) vs[i]);
+            }
+            return;
+        }
+        int cap = capacityFor(Math.max(size, other.size), loadFactor);
+        if (table != null) cap = Math.max(cap, table.length);
+        Node<K, V>[] out = (Node<K, V>[]) new Node[cap];
+        // 新表只用普通节点构造，树化交给一个普通 MyHashMap，子类的节点池不会被多个线程碰到
+        MyHashMap<K, V> shaper = new MyHashMap<>(0, loadFactor, sortedBins);
+        long n = MapAlgebra.merge(table, other.table, remappingFunction, shaper, out);
+        adopt(out, n);
+    }
+
+    /**
+     * 键也在 other 中的条目组成的新映射，值取自本映射
+     */
+    @SuppressWarnings("unchecked")
+    public MyHashMap<K, V> intersectKeys(MyHashMap<?, ?> other) {
+        MyHashMap<K, V> result = new MyHashMap<>(capacityFor(Math.min(size, other.size), loadFactor), loadFactor, sortedBins);
+        if (size == 0 || other.size == 0) return result;
+        Node<K, V>[] out = (Node<K, V>[]) new Node[result.capacity];
+        result.adopt(out, MapAlgebra.filter(table, other.table, true, result, out));
+        return result;
+    }
+
+    /**
+     * 键不在 other 中的条目组成的新映射
+     */
+    @SuppressWarnings("unchecked")
+    public MyHashMap<K, V> difference(MyHashMap<?, ?> other) {
+        MyHashMap<K, V> result = new MyHashMap<>(capacityFor(size, loadFactor), loadFactor, sortedBins);
+        if (size == 0) return result;
+        Node<K, V>[] out = (Node<K, V>[]) new Node[result.capacity];
+        result.adopt(out, MapAlgebra.filter(table, other.table, false, result, out));
+        return result;
+    }
+
+    /**
+     * 两个映射的键集合相同且每个键的值 equals。并行比较，发现差异后尽快结束
+     */
+    public boolean equalsContent(MyHashMap<?, ?> other) {
+        if (other == this) return true;
+        if (other == null || other.size != size) return false;
+        return MapAlgebra.sameEntries(table, other.table);
+    }
+
+    /**
+     * 换上 MapAlgebra 构造好的表，size 超过阈值时再扩容一次
+     */
+    private void adopt(Node<K, V>[] tab, long count) {
+        table = tab;
+        capacity = tab.length;
+        size = (int) count;
+        threshold = (int) Math.min((long) (capacity * loadFactor), Integer.MAX_VALUE);
+        if (size > threshold) resize();
+    }
+
+    /**
+     * 直接构造的长度为 n 的链表按 treeifyBin 的规则转成有序数组桶或红黑树；表太小时保持链表
+     */
+    final Node<K, V> shapeBin(Node<K, V> head, int n, int tableLength) {
+        if (n < TREEIFY_THRESHOLD || tableLength < MIN_TREEIFY_CAPACITY) return head;
+        if (sortedBins && n <= SORTED_BIN_LIMIT) return listToArray(head, n);
+        return treeify(head);
+    }
+
+    /**
+     * 计算容纳 expectedSize 个元素而不触发扩容所需的初始容量
+     */
+    static int capacityFor(long expectedSize, float loadFactor) {
+        double cap = Math.ceil(expectedSize / (double) loadFactor) + 1;
+        return cap >= MAXIMUM_CAPACITY ? MAXIMUM_CAPACITY : tableSizeFor((int) cap);
+    }
+
     private void treeifyBin(Node<K, V>[] tab, int index) {
         if (tab == null || tab.length < MIN_TREEIFY_CAPACITY) {
             resize();
             return;
         }
         Node<K, V> e = tab[index];
-        if (e != null) {
+        if (e != null && sortedBins) {
+            int n = 0;
+            for (Node<K, V> p = e; p != null; p = p.next) n++;
+            tab[index] = listToArray(e, n);
+        } else if (e != null) {
             // 调用统一的 treeify 方法完成转换
             RedBlackNode<K, V> root = treeify(e);
             // 将桶的头节点替换为新的树根
@@ -334,28 +898,122 @@ public class MyHashMap<K, V> {
         }
     }
 
+    /* ----------------- 节点分配：RecyclingHashMap 覆盖这三个方法来复用节点 -------------------- */
+
+    Node<K, V> newNode(int hash, K key, V value) {
+        return new Node<>(hash, key, value);
+    }
+
+    RedBlackNode<K, V> newTreeNode(int hash, K key, V value) {
+        return new RedBlackNode<>(hash, key, value, null);
+    }
+
+    /**
+     * 节点已从表中摘下、不会再被访问时调用
+     */
+    void releaseNode(Node<K, V> node) {
+    }
+
+    /**
+     * split 得到的链表由 RedBlackNode 组成，直接放进桶里会被 instanceof 判断当成树，需要复制成普通节点
+     */
+    private Node<K, V> copyAsList(Node<K, V> head) {
+        Node<K, V> newHead = null, tail = null;
+        for (Node<K, V> p = head, next; p != null; p = next) {
+            next = p.next;
+            Node<K, V> copy = newNode(p.hash, p.key, p.val);
+            if (tail == null) newHead = copy;
+            else tail.next = copy;
+            tail = copy;
+            releaseNode(p);
+        }
+        return newHead;
+    }
+
+    /**
+     * 把 n 个节点的链表转成有序数组桶，原节点被回收
+     */
+    private SortedArrayBin<K, V> listToArray(Node<K, V> head, int n) {
+        SortedArrayBin<K, V> b = new SortedArrayBin<>(n);
+        for (Node<K, V> p = head, next; p != null; p = next) {
+            next = p.next;
+            b.append(p.hash, p.key, p.val);
+            releaseNode(p);
+        }
+        b.sort();
+        return b;
+    }
+
+    private Node<K, V> arrayToList(SortedArrayBin<K, V> b) {
+        Node<K, V> head = null;
+        for (int i = b.size - 1; i >= 0; i--) {
+            Node<K, V> e = newNode(b.hashes[i], b.keyAt(i), b.valueAt(i));
+            e.next = head;
+            head = e;
+        }
+        return head;
+    }
+
+    private RedBlackNode<K, V> treeifyArray(SortedArrayBin<K, V> b) {
+        RedBlackNode<K, V> root = null;
+        for (int i = 0; i < b.size; i++) {
+            RedBlackNode<K, V> x = newTreeNode(b.hashes[i], b.keyAt(i), b.valueAt(i));
+            root = x.insertNewNodeWithBalance(root, x);
+        }
+        return root;
+    }
+
+    /**
+     * 扩容拆分出的数组桶，条目不多时转回链表
+     */
+    private Node<K, V> shrinkArrayBin(SortedArrayBin<K, V> b) {
+        if (b == null) return null;
+        return b.size <= UNTREEIFY_THRESHOLD ? arrayToList(b) : b;
+    }
+
     private Node<K, V> untreeifyBin(RedBlackNode<K, V> root) {
         if (root == null) return null;
         Node<K, V> head = null, tail = null;
-        java.util.Deque<RedBlackNode<K, V>> stack = new java.util.ArrayDeque<>();
-        stack.push(root);
-        while (!stack.isEmpty()) {
-            RedBlackNode<K, V> n = stack.pop();
-            Node<K, V> newNode = new Node<>(n.hash, n.key, n.val, null);
+        // 借助 parent 指针中序遍历，不需要额外的栈；回收不会清空树指针，所以可以边复制边回收
+        RedBlackNode<K, V> n = root;
+        while (n.left != null) n = n.left;
+        while (n != null) {
+            RedBlackNode<K, V> succ = successor(n);
+            Node<K, V> newNode = newNode(n.hash, n.key, n.val);
             if (tail == null) head = newNode;
             else tail.next = newNode;
             tail = newNode;
-            if (n.right != null) stack.push(n.right);
-            if (n.left != null) stack.push(n.left);
+            releaseNode(n);
+            n = succ;
         }
         return head;
     }
+
+    private static <K, V> RedBlackNode<K, V> successor(RedBlackNode<K, V> n) {
+        if (n.right != null) {
+            n = n.right;
+            while (n.left != null) n = n.left;
+            return n;
+        }
+        RedBlackNode<K, V> p = n.parent;
+        while (p != null && n == p.right) {
+            n = p;
+            p = p.parent;
+        }
+        return p;
+    }
+
+    /**
+     * 把链表转成红黑树，返回新的根。原链表节点被替换，之后不再使用
+     */
     final RedBlackNode<K,V> treeify(Node<K,V> head) {
         RedBlackNode<K,V> root = null;
         Node<K,V> current = head;
         while (current != null) {
+            Node<K,V> next = current.next;
             // 将 current 节点包装成 RedBlackNode
-            RedBlackNode<K,V> newNode = new RedBlackNode<>(current.hash, current.key, current.val, null);
+            RedBlackNode<K,V> newNode = newTreeNode(current.hash, current.key, current.val);
+            releaseNode(current);
 
             // 插入到新树中并保持平衡
             if (root == null) {
@@ -366,7 +1024,7 @@ public class MyHashMap<K, V> {
             }
 
             // 处理链表中的下一个节点
-            current = current.next;
+            current = next;
         }
         return root;
     }
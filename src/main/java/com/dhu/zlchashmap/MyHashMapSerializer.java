@@ -0,0 +1,111 @@
+package com.dhu.zlchashmap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * MyHashMap 的流式二进制序列化。
+ * <p>
+ * 格式：[int MAGIC][byte VERSION][byte 标志][varlong 条目数]，之后每个条目为
+ * [byte null 标志][int hash（仅当键编解码器 storesHash）][键][值]。
+ * 写出时直接遍历桶，不产生中间集合；读取时先读条目数并预先确定表容量，
+ * 整个读取过程不会扩容
+ */
+public class MyHashMapSerializer<K, V> {
+    static final int MAGIC = 0x5A4C434D; // "ZLCM"
+    static final int VERSION = 1;
+    static final int HAS_HASH = 1;
+
+    static final int NULL_KEY = 1;
+    static final int NULL_VALUE = 2;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+
+    public MyHashMapSerializer(Codec<K> keyCodec, Codec<V> valueCodec) {
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+    }
+
+    /**
+     * 写出到流；内部带缓冲，结束时 flush 但不关闭 out
+     */
+    public void write(MyHashMap<K, V> map, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        write(map, (DataOutput) data);
+        data.flush();
+    }
+
+    public void write(MyHashMap<K, V> map, WritableByteChannel channel) throws IOException {
+        write(map, Channels.newOutputStream(channel));
+    }
+
+    void write(MyHashMap<K, V> map, DataOutput out) throws IOException {
+        boolean withHash = keyCodec.storesHash();
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(withHash ? HAS_HASH : 0);
+        Codecs.writeVarLong(out, map.size());
+        try {
+            map.forEachNode(e -> {
+                try {
+                    out.writeByte((e.key == null ? NULL_KEY : 0) | (e.val == null ? NULL_VALUE : 0));
+                    if (withHash) out.writeInt(e.hash);
+                    if (e.key != null) keyCodec.encode(e.key, out);
+                    if (e.val != null) valueCodec.encode(e.val, out);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 从流读取；内部带缓冲，可能读取超出映射数据末尾的字节
+     */
+    public MyHashMap<K, V> read(InputStream in) throws IOException {
+        return read((DataInput) new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE)), 0);
+    }
+
+    public MyHashMap<K, V> read(ReadableByteChannel channel) throws IOException {
+        return read(Channels.newInputStream(channel));
+    }
+
+    /**
+     * extra 为读完之后还会插入的条目数（例如恢复时待重放的日志记录），一并计入预分配容量
+     */
+    MyHashMap<K, V> read(DataInput in, long extra) throws IOException {
+        if (in.readInt() != MAGIC) throw new IOException("Not a serialized MyHashMap");
+        int version = in.readUnsignedByte();
+        if (version != VERSION) throw new IOException("Unsupported version: " + version);
+        boolean withHash = (in.readUnsignedByte() & HAS_HASH) != 0;
+        long count = Codecs.readVarLong(in);
+        if (count < 0) throw new IOException("Illegal entry count: " + count);
+
+        MyHashMap<K, V> map = new MyHashMap<>(MyHashMap.capacityFor(count + extra, MyHashMap.LOAD_FACTOR),
+                MyHashMap.LOAD_FACTOR);
+        for (long i = 0; i < count; i++) {
+            int flags = in.readUnsignedByte();
+            int hash = withHash ? in.readInt() : 0;
+            K key = (flags & NULL_KEY) != 0 ? null : keyCodec.decode(in);
+            V value = (flags & NULL_VALUE) != 0 ? null : valueCodec.decode(in);
+            map.putVal(withHash ? hash : MyHashMap.hash(key), key, value);
+        }
+        return map;
+    }
+}
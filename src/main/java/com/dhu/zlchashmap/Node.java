@@ -4,8 +4,12 @@ import java.util.Map;
 import java.util.Objects;
 
 public class Node<K, V> implements Map.Entry<K, V> {
-    final int hash;
-    final K key;
+    // hash/key 不是 final：RecyclingHashMap 会复用已删除的节点。MyHashMap 及其子类本身不是线程安全的
+    // （桶是普通数组写、RedBlackNode 的 left/right/parent 是普通字段），由调用方保证可见性；
+    // 并发读者只出现在 MyConcurrentHashMap 中，那里节点经 casTabAt/setTabAt 或 volatile 的 next 发布，
+    // TreeBin 的乐观读由 stamp 校验。被回收复用的节点决不能再被任何并发读者访问到
+    int hash;
+    K key;
     volatile V val;
     volatile Node<K, V> next;
 
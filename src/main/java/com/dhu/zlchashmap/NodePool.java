@@ -0,0 +1,120 @@
+package com.dhu.zlchashmap;
+
+/**
+ * RecyclingHashMap 的节点池，每个映射独占一个，不是线程安全的。
+ * <p>
+ * 删除的节点进入有界的空闲链表（经由 next 串起来，key/val 清空以免延长键值对象的生命周期），
+ * 新节点优先从空闲链表取；链表为空时从 slab 一次分配一批（不超过 maxFree 个），避免稳态下逐个分配。
+ * 超出上限的节点直接交给 GC，池中每种节点的空闲数都不会超过 maxFree
+ */
+final class NodePool<K, V> {
+    private final int maxFree;
+    private final int slabSize;
+
+    private Node<K, V> freeNodes;
+    private int freeNodeCount;
+    private RedBlackNode<K, V> freeTreeNodes;
+    private int freeTreeNodeCount;
+    private long allocated; // 实际 new 出来的节点数
+
+    NodePool(int maxFree, int slabSize) {
+        if (maxFree < 0 || slabSize <= 0)
+            throw new IllegalArgumentException("Illegal pool bounds: maxFree=" + maxFree + ", slabSize=" + slabSize);
+        this.maxFree = maxFree;
+        // 一批分配后有一个立即取走，池中最多剩 maxFree - 1 个；maxFree 为 0 时每次只分配一个
+        this.slabSize = Math.max(1, Math.min(slabSize, maxFree));
+    }
+
+    Node<K, V> node(int hash, K key, V val) {
+        Node<K, V> n = freeNodes;
+        if (n == null) {
+            refillNodes(slabSize);
+            n = freeNodes;
+        }
+        freeNodes = n.next;
+        freeNodeCount--;
+        n.hash = hash;
+        n.key = key;
+        n.val = val;
+        n.next = null;
+        return n;
+    }
+
+    RedBlackNode<K, V> treeNode(int hash, K key, V val) {
+        RedBlackNode<K, V> n = freeTreeNodes;
+        if (n == null) {
+            refillTreeNodes(slabSize);
+            n = freeTreeNodes;
+        }
+        freeTreeNodes = (RedBlackNode<K, V>) n.next;
+        freeTreeNodeCount--;
+        n.hash = hash;
+        n.key = key;
+        n.val = val;
+        n.next = null;
+        n.parent = n.left = n.right = null;
+        n.red = true;
+        return n;
+    }
+
+    /**
+     * 回收一个已经从映射中摘下的节点。树节点的 parent/left/right 保留到再次取出时才清空，
+     * 调用方可以先回收、再沿这些指针继续遍历
+     */
+    void release(Node<K, V> n) {
+        n.key = null;
+        n.val = null;
+        if (n instanceof RedBlackNode<K, V> t) {
+            if (freeTreeNodeCount >= maxFree) return;
+            t.next = freeTreeNodes;
+            freeTreeNodes = t;
+            freeTreeNodeCount++;
+        } else {
+            if (freeNodeCount >= maxFree) return;
+            n.next = freeNodes;
+            freeNodes = n;
+            freeNodeCount++;
+        }
+    }
+
+    /**
+     * 预先分配，使池中至少有 nodes 个普通节点和 treeNodes 个树节点（不超过上限）
+     */
+    void reserve(int nodes, int treeNodes) {
+        int n = Math.min(nodes, maxFree) - freeNodeCount;
+        if (n > 0) refillNodes(n);
+        n = Math.min(treeNodes, maxFree) - freeTreeNodeCount;
+        if (n > 0) refillTreeNodes(n);
+    }
+
+    private void refillNodes(int n) {
+        for (int i = 0; i < n; i++) {
+            Node<K, V> e = new Node<>(0, null, null, freeNodes);
+            freeNodes = e;
+        }
+        freeNodeCount += n;
+        allocated += n;
+    }
+
+    private void refillTreeNodes(int n) {
+        for (int i = 0; i < n; i++) {
+            RedBlackNode<K, V> e = new RedBlackNode<>(0, null, null, null);
+            e.next = freeTreeNodes;
+            freeTreeNodes = e;
+        }
+        freeTreeNodeCount += n;
+        allocated += n;
+    }
+
+    int freeNodes() {
+        return freeNodeCount;
+    }
+
+    int freeTreeNodes() {
+        return freeTreeNodeCount;
+    }
+
+    long allocated() {
+        return allocated;
+    }
+}
@@ -0,0 +1,63 @@
+package com.dhu.zlchashmap;
+
+/**
+ * 零垃圾模式的 MyHashMap：删除、树化、退树化替换下来的节点都回收到映射自己的 NodePool，
+ * 插入时优先复用。映射规模稳定后（不再扩容），put/remove 反复增删不再分配任何对象。
+ * <p>
+ * 键和值对象本身的分配（比如自动装箱）由调用方负责。与 MyHashMap 一样不是线程安全的；
+ * 节点被复用后内容会改变，所以不能用于读者可能仍持有旧节点的并发映射
+ */
+public class RecyclingHashMap<K, V> extends MyHashMap<K, V> {
+    static final int DEFAULT_MAX_FREE = 1024;
+    static final int DEFAULT_SLAB_SIZE = 64;
+
+    private final NodePool<K, V> pool;
+
+    public RecyclingHashMap() {
+        this(DEFAULT_CAPACITY, LOAD_FACTOR, DEFAULT_MAX_FREE);
+    }
+
+    /**
+     * @param maxFree 空闲链表的上限（普通节点和树节点分别计算），超出的节点交给 GC
+     */
+    public RecyclingHashMap(int initialCapacity, float loadFactor, int maxFree) {
+        super(initialCapacity, loadFactor);
+        this.pool = new NodePool<>(maxFree, DEFAULT_SLAB_SIZE);
+    }
+
+    /**
+     * 预先分配节点，使之后的 nodes 次插入（其中最多 treeNodes 次落在树桶里）不需要再分配
+     */
+    public void reserve(int nodes, int treeNodes) {
+        pool.reserve(nodes, treeNodes);
+    }
+
+    /**
+     * 池中空闲的普通节点和树节点总数
+     */
+    public int pooledNodes() {
+        return pool.freeNodes() + pool.freeTreeNodes();
+    }
+
+    /**
+     * 池累计 new 出来的节点数，稳态下不再增长
+     */
+    public long allocatedNodes() {
+        return pool.allocated();
+    }
+
+    @Override
+    Node<K, V> newNode(int hash, K key, V value) {
+        return pool.node(hash, key, value);
+    }
+
+    @Override
+    RedBlackNode<K, V> newTreeNode(int hash, K key, V value) {
+        return pool.treeNode(hash, key, value);
+    }
+
+    @Override
+    void releaseNode(Node<K, V> node) {
+        pool.release(node);
+    }
+}
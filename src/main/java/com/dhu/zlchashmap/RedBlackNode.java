@@ -109,29 +109,32 @@ public class RedBlackNode<K, V> extends Node<K, V> {
         return root;
     }
 
-    @SuppressWarnings("unchecked")
     private int compareKeys(K k1, K k2, int h1, int h2) {
         if (h1 != h2) {
             return h1 < h2 ? -1 : 1;
         }
         // hashes equal
         if (Objects.equals(k1, k2)) return 0;
+        int c = orderOf(k1, k2);
+        if (c != 0) return c;
+        // 同类且无法用 compareTo 区分：回退到 identityHashCode，保证不相等的键不会返回 0
+        return System.identityHashCode(k1) <= System.identityHashCode(k2) ? -1 : 1;
+    }
 
-        // 如果 key 可以比较并且类型相同，使用 Comparable
-        if (k1 instanceof Comparable && k2 != null
-                && k1.getClass() == k2.getClass()) {
-            return ((Comparable) k1).compareTo(k2);
+    /**
+     * hash 相同、键不相等时的确定性顺序：不同类按类名，同类且可比较时按 compareTo，无法区分时返回 0。
+     * 类名必须排在 identityHashCode 之前，否则查找时换一个实例就会走错子树
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static int orderOf(Object k1, Object k2) {
+        if (k1 == null || k2 == null) {
+            return k1 == null ? (k2 == null ? 0 : -1) : 1;
         }
-
-        // 否则回退到一个稳定但任意的顺序：
-        int s1 = System.identityHashCode(k1);
-        int s2 = System.identityHashCode(k2);
-        if (s1 != s2) return Integer.compare(s1, s2);
-
-        // 极端回退：比较类名避免 identityHashCode 恰好相等时返回 0（尽量避免返回 0 除非 equals 为 true）
-        String k1c = (k1 == null) ? "" : k1.getClass().getName();
-        String k2c = (k2 == null) ? "" : k2.getClass().getName();
-        return k1c.compareTo(k2c);
+        Class<?> c1 = k1.getClass(), c2 = k2.getClass();
+        if (c1 != c2) {
+            return c1.getName().compareTo(c2.getName());
+        }
+        return k1 instanceof Comparable ? ((Comparable) k1).compareTo(k2) : 0;
     }
 
     private RedBlackNode<K, V> insertFixup(RedBlackNode<K, V> root, RedBlackNode<K, V> x) {
@@ -300,12 +303,15 @@ public class RedBlackNode<K, V> extends Node<K, V> {
         boolean yOriginalRed = y.red;
 
         RedBlackNode<K, V> x; // x 是被移走位置的节点（可能为 null），用于 deleteFixup
+        RedBlackNode<K, V> xParent; // 修正：x 为 null 时无法通过 x.parent 找到父节点，需单独记录
 
         if (z.left == null) {
             x = z.right;
+            xParent = z.parent;
             root = transplant(root, z, z.right);
         } else if (z.right == null) {
             x = z.left;
+            xParent = z.parent;
             root = transplant(root, z, z.left);
         } else {
             // z 有两个子节点：找到后继 y（z 的右子树最小），把 y 的值放到 z，然后删除 y（y 最多有右子）
@@ -313,8 +319,10 @@ public class RedBlackNode<K, V> extends Node<K, V> {
             yOriginalRed = y.red;
             x = y.right;
             if (y.parent == z) {
+                xParent = y;
                 if (x != null) x.parent = y;
             } else {
+                xParent = y.parent;
                 root = transplant(root, y, y.right);
                 y.right = z.right;
                 if (y.right != null) y.right.parent = y;
@@ -327,7 +335,7 @@ public class RedBlackNode<K, V> extends Node<K, V> {
 
         if (!yOriginalRed) {
             // 如果被删除或移走的节点原先为黑，则可能破坏黑深度，需要修复
-            root = deleteFixup(root, x, /* parent of x if x==null? */ (x == null) ? null : x.parent);
+            root = deleteFixup(root, x, xParent);
         }
 
         if (root != null) setBlack(root);
@@ -426,13 +434,19 @@ public class RedBlackNode<K, V> extends Node<K, V> {
     public RedBlackNode<K, V> findNode(RedBlackNode<K, V> root, int h, Object k) {
         RedBlackNode<K, V> p = root;
         while (p != null) {
-            int cmp = compareKeys((K) k, p.key, h, p.hash);
-            if (cmp < 0) p = p.left;
-            else if (cmp > 0) p = p.right;
-            else {
-                // compareKeys 返回 0 时应当等价于 equals
+            int cmp;
+            if (h != p.hash) {
+                cmp = h < p.hash ? -1 : 1;
+            } else if (Objects.equals(k, p.key)) {
                 return p;
+            } else if ((cmp = orderOf(k, p.key)) == 0) {
+                // 插入时按 identityHashCode 定的左右，查找键换了实例无从判断，两侧都要找
+                RedBlackNode<K, V> q = p.right == null ? null : findNode(p.right, h, k);
+                if (q != null) return q;
+                p = p.left;
+                continue;
             }
+            p = cmp < 0 ? p.left : p.right;
         }
         return null;
     }
@@ -0,0 +1,465 @@
+package com.dhu.zlchashmap;
+
+import java.io.Closeable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * 无共享的分片映射：N 个分区各是一个普通的 MyHashMap，每个分区只由自己的工作线程访问，分区内不需要任何锁，
+ * 写入也不会在核之间争抢桶头所在的缓存行。
+ * <p>
+ * 键按 MyHashMap.hash（乘以黄金分割常数后）的高 log2(N) 位路由到分区，分区内的 MyHashMap 用低位定位桶，两者互不干扰。
+ * 调用方通过 Session 提交操作：每个 Session 对每个分区有一个 SPSC 环形队列，操作先写进队列但不发布，
+ * flush 时（或某个分区攒够 batchSize 个时）每个分区只发布一次尾指针、最多唤醒一次工作线程。
+ * 工作线程每次从一个队列取出最多 batchSize 个操作依次执行，结果通过 CompletableFuture 或回调返回。
+ * <p>
+ * 遍历类操作（forEach、size、select）发给所有分区并行执行，在同一个 Session 之前提交的修改之后执行。
+ * <p>
+ * future 的完成和回调都在分区的工作线程上执行，其中不能阻塞等待本映射的其他结果，应尽快返回。
+ * Java 不能把线程绑定到核上，工作线程是普通的平台线程，分区数默认取不小于 CPU 数的 2 的幂，
+ * 绑核需要在进程外（taskset 等）完成。键和值允许为 null
+ */
+public class ShardedMap<K, V> implements Closeable {
+    static final int DEFAULT_QUEUE_CAPACITY = 1 << 10;
+    static final int DEFAULT_BATCH_SIZE = 256;
+
+    static final int GOLDEN = 0x9E3779B9;
+
+    static final byte OP_GET = 1;
+    static final byte OP_PUT = 2;
+    static final byte OP_REMOVE = 3;
+    static final byte OP_SCAN = 4;
+
+    private static final VarHandle HEAD;
+    private static final VarHandle TAIL;
+
+    static {
+        try {
+            MethodHandles.Lookup l = MethodHandles.lookup();
+            HEAD = l.findVarHandle(Ring.class, "head", long.class);
+            TAIL = l.findVarHandle(Ring.class, "tail", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * 一个 Session 到一个分区的 SPSC 队列。生产者只写 pending、尾部槽位和 tail，工作线程只写 head
+     */
+    static final class Ring {
+        final Object[] keys;
+        final Object[] vals;
+        final Object[] replies; // CompletableFuture 或 BiConsumer
+        final byte[] ops;
+        final int mask;
+        volatile long head; // 工作线程已取走的位置
+        volatile long tail; // 生产者已发布的位置
+        long pending;       // 生产者已写入但可能未发布的位置，只有生产者访问
+        long cachedHead;    // 生产者缓存的 head，只在看起来满了时重读
+        volatile boolean closed;
+
+        Ring(int capacity) {
+            keys = new Object[capacity];
+            vals = new Object[capacity];
+            replies = new Object[capacity];
+            ops = new byte[capacity];
+            mask = capacity - 1;
+        }
+
+        boolean isEmpty() {
+            return (long) HEAD.getAcquire(this) == (long) TAIL.getVolatile(this);
+        }
+    }
+
+    static final class Shard<K, V> implements Runnable {
+        final ShardedMap<K, V> map;
+        final MyHashMap<K, V> partition = new MyHashMap<>();
+        volatile Ring[] rings = new Ring[0];
+        volatile boolean parked;
+        Thread thread;
+
+        Shard(ShardedMap<K, V> map) {
+            this.map = map;
+        }
+
+        synchronized void register(Ring r) {
+            Ring[] rs = Arrays.copyOf(rings, rings.length + 1);
+            rs[rs.length - 1] = r;
+            rings = rs;
+        }
+
+        private synchronized void unregister(Ring r) {
+            Ring[] rs = rings;
+            int n = 0;
+            Ring[] kept = new Ring[rs.length];
+            for (Ring x : rs) {
+                if (x != r) kept[n++] = x;
+            }
+            rings = Arrays.copyOf(kept, n);
+        }
+
+        void wake() {
+            if (parked) LockSupport.unpark(thread);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                int n = 0;
+                Ring[] rs = rings;
+                for (Ring r : rs) {
+                    n += drain(r);
+                    if (r.closed && r.isEmpty()) unregister(r);
+                }
+                if (n > 0) continue;
+                if (map.closed && allEmpty(rings)) return;
+                // 先置 parked 再检查队列，与生产者"先发布 tail 再读 parked"配对，不会两边都错过
+                parked = true;
+                if (!map.closed && allEmpty(rings)) LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+                parked = false;
+            }
+        }
+
+        private boolean allEmpty(Ring[] rs) {
+            for (Ring r : rs) {
+                if (!r.isEmpty()) return false;
+            }
+            return true;
+        }
+
+        /**
+         * 取出并执行一个队列中最多 batchSize 个操作，返回个数
+         */
+        @SuppressWarnings("unchecked")
+        private int drain(Ring r) {
+            long h = r.head;
+            long t = (long) TAIL.getAcquire(r);
+            int n = (int) Math.min(t - h, map.batchSize);
+            for (int k = 0; k < n; k++) {
+                int i = (int) (h + k) & r.mask;
+                K key = (K) r.keys[i];
+                Object value = r.vals[i];
+                Object reply = r.replies[i];
+                byte op = r.ops[i];
+                r.keys[i] = null;
+                r.vals[i] = null;
+                r.replies[i] = null;
+                Object result;
+                Throwable failure = null;
+                try {
+                    result = switch (op) {
+                        case OP_GET -> partition.get(key);
+                        case OP_PUT -> partition.put(key, (V) value);
+                        case OP_REMOVE -> partition.remove(key);
+                        default -> ((Function<MyHashMap<K, V>, ?>) value).apply(partition);
+                    };
+                } catch (Throwable e) {
+                    result = null;
+                    failure = e;
+                }
+                complete(reply, result, failure);
+            }
+            if (n > 0) HEAD.setRelease(r, h + n);
+            return n;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void complete(Object reply, Object result, Throwable failure) {
+            try {
+                if (reply instanceof CompletableFuture<?> f) {
+                    if (failure == null) ((CompletableFuture<Object>) f).complete(result);
+                    else f.completeExceptionally(failure);
+                } else {
+                    ((BiConsumer<Object, Throwable>) reply).accept(result, failure);
+                }
+            } catch (Throwable e) {
+                // 回调或依赖 future 的后续阶段抛出的异常不能让工作线程退出
+                Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+                handler.uncaughtException(thread, e);
+            }
+        }
+    }
+
+    private final Shard<K, V>[] shards;
+    private final int shardShift;
+    private final int queueCapacity;
+    private final int batchSize;
+    private volatile boolean closed;
+
+    public ShardedMap() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param shards        分区数，取不小于它的 2 的幂，每个分区一个工作线程
+     * @param queueCapacity 每个 Session 到每个分区的队列容量，取不小于它的 2 的幂
+     * @param batchSize     工作线程每次从一个队列取出的最多操作数，也是 Session 自动发布的阈值
+     */
+    @SuppressWarnings("unchecked")
+    public ShardedMap(int shards, int queueCapacity, int batchSize) {
+        if (shards <= 0) throw new IllegalArgumentException("Illegal shard count: " + shards);
+        if (queueCapacity <= 0) throw new IllegalArgumentException("Illegal queue capacity: " + queueCapacity);
+        if (batchSize <= 0) throw new IllegalArgumentException("Illegal batch size: " + batchSize);
+        int n = MyHashMap.tableSizeFor(shards);
+        this.shards = new Shard[n];
+        this.shardShift = 32 - Integer.numberOfTrailingZeros(n);
+        this.queueCapacity = MyHashMap.tableSizeFor(queueCapacity);
+        this.batchSize = Math.min(batchSize, this.queueCapacity);
+        for (int i = 0; i < n; i++) {
+            Shard<K, V> s = new Shard<>(this);
+            this.shards[i] = s;
+            s.thread = Thread.ofPlatform().name("sharded-map-" + i).daemon().unstarted(s);
+        }
+        for (Shard<K, V> s : this.shards) s.thread.start();
+    }
+
+    public int shardCount() {
+        return shards.length;
+    }
+
+    /**
+     * 键所在的分区：hash 乘以黄金分割常数后的高位。MyHashMap.hash 对小整数等键的高位全是 0，
+     * 直接取高位会让它们都落到分区 0，乘法把低位的差异扩散到高位。只有一个分区时移位 32 位，用 long 运算得到 0
+     */
+    int shardOf(Object key) {
+        return (int) (((MyHashMap.hash(key) * GOLDEN) & 0xffffffffL) >>> shardShift);
+    }
+
+    /**
+     * 测试用：分区内的 MyHashMap，只能在 close 之后访问
+     */
+    MyHashMap<K, V> partition(int shard) {
+        return shards[shard].partition;
+    }
+
+    /**
+     * 创建一个提交操作的会话。会话只能在创建它的线程中使用，多个线程各自创建
+     */
+    public Session openSession() {
+        ensureOpen();
+        return new Session();
+    }
+
+    private void ensureOpen() {
+        if (closed) throw new IllegalStateException("ShardedMap is closed");
+    }
+
+    /**
+     * 停止所有工作线程，已发布的操作执行完后返回。未 flush 的操作和之后提交的操作不会执行
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Shard<K, V> s : shards) LockSupport.unpark(s.thread);
+        try {
+            for (Shard<K, V> s : shards) s.thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 一个生产者线程的提交入口，对每个分区持有一个 SPSC 队列。
+     * 点操作在 flush 之前不会被执行（某个分区攒够 batchSize 个时自动发布该分区），遍历类操作提交后立即 flush
+     */
+    public final class Session implements Closeable {
+        private final Ring[] rings;
+        private final boolean[] dirty;
+        private final Thread owner = Thread.currentThread();
+        private boolean sessionClosed;
+
+        private Session() {
+            rings = new Ring[shards.length];
+            dirty = new boolean[shards.length];
+            for (int i = 0; i < rings.length; i++) {
+                rings[i] = new Ring(queueCapacity);
+                shards[i].register(rings[i]);
+            }
+        }
+
+        public CompletableFuture<V> get(K key) {
+            CompletableFuture<V> f = new CompletableFuture<>();
+            submit(shardOf(key), OP_GET, key, null, f);
+            return f;
+        }
+
+        public void get(K key, BiConsumer<? super V, ? super Throwable> callback) {
+            submit(shardOf(key), OP_GET, key, null, Objects.requireNonNull(callback));
+        }
+
+        /**
+         * future 的结果是旧值
+         */
+        public CompletableFuture<V> put(K key, V value) {
+            CompletableFuture<V> f = new CompletableFuture<>();
+            submit(shardOf(key), OP_PUT, key, value, f);
+            return f;
+        }
+
+        public void put(K key, V value, BiConsumer<? super V, ? super Throwable> callback) {
+            submit(shardOf(key), OP_PUT, key, value, Objects.requireNonNull(callback));
+        }
+
+        /**
+         * future 的结果是被删除的值
+         */
+        public CompletableFuture<V> remove(K key) {
+            CompletableFuture<V> f = new CompletableFuture<>();
+            submit(shardOf(key), OP_REMOVE, key, null, f);
+            return f;
+        }
+
+        public void remove(K key, BiConsumer<? super V, ? super Throwable> callback) {
+            submit(shardOf(key), OP_REMOVE, key, null, Objects.requireNonNull(callback));
+        }
+
+        /**
+         * 各分区并行遍历，action 会被多个工作线程同时调用，需要线程安全
+         */
+        public CompletableFuture<Void> forEach(BiConsumer<? super K, ? super V> action) {
+            Objects.requireNonNull(action);
+            return scan(m -> {
+                m.forEach(action);
+                return null;
+            }).thenApply(parts -> null);
+        }
+
+        public CompletableFuture<Long> size() {
+            return scan(MyHashMap::size).thenApply(parts -> {
+                long n = 0;
+                for (Integer s : parts) n += s;
+                return n;
+            });
+        }
+
+        /**
+         * 各分区并行筛选，合并成一个新的 HashMap
+         */
+        public CompletableFuture<Map<K, V>> select(BiPredicate<? super K, ? super V> filter) {
+            Objects.requireNonNull(filter);
+            return scan(m -> {
+                List<Object> kv = new ArrayList<>();
+                m.forEach((k, v) -> {
+                    if (filter.test(k, v)) {
+                        kv.add(k);
+                        kv.add(v);
+                    }
+                });
+                return kv;
+            }).thenApply(parts -> {
+                Map<K, V> out = new HashMap<>();
+                for (List<Object> kv : parts) {
+                    for (int i = 0; i < kv.size(); i += 2) out.put(castKey(kv.get(i)), castValue(kv.get(i + 1)));
+                }
+                return out;
+            });
+        }
+
+        /**
+         * 把 job 发给每个分区，在各自的工作线程上以分区的 MyHashMap 为参数并行执行，结果按分区顺序排列。
+         * job 可以读写分区，但不能把它的引用带出去，也不能改变键所在的分区
+         */
+        public <R> CompletableFuture<List<R>> scan(Function<? super MyHashMap<K, V>, ? extends R> job) {
+            Objects.requireNonNull(job);
+            List<CompletableFuture<R>> parts = new ArrayList<>(shards.length);
+            for (int i = 0; i < shards.length; i++) {
+                CompletableFuture<R> f = new CompletableFuture<>();
+                submit(i, OP_SCAN, null, job, f);
+                parts.add(f);
+            }
+            flush();
+            return CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+                List<R> out = new ArrayList<>(parts.size());
+                for (CompletableFuture<R> f : parts) out.add(f.join());
+                return out;
+            });
+        }
+
+        private void submit(int shard, byte op, Object key, Object value, Object reply) {
+            if (Thread.currentThread() != owner) throw new IllegalStateException("Session used outside its owner thread");
+            if (sessionClosed) throw new IllegalStateException("Session is closed");
+            ensureOpen();
+            Ring r = rings[shard];
+            long p = r.pending;
+            if (p - r.cachedHead >= r.mask + 1) {
+                r.cachedHead = (long) HEAD.getAcquire(r);
+                if (p - r.cachedHead >= r.mask + 1) {
+                    publish(shard);
+                    awaitSpace(r, shard);
+                }
+            }
+            int i = (int) p & r.mask;
+            r.keys[i] = key;
+            r.vals[i] = value;
+            r.replies[i] = reply;
+            r.ops[i] = op;
+            r.pending = p + 1;
+            dirty[shard] = true;
+            if (r.pending - r.tail >= batchSize) publish(shard);
+        }
+
+        private void awaitSpace(Ring r, int shard) {
+            for (int spins = 0; ; ) {
+                r.cachedHead = (long) HEAD.getAcquire(r);
+                if (r.pending - r.cachedHead <= r.mask) return;
+                ensureOpen();
+                if (++spins < 64) Thread.onSpinWait();
+                else LockSupport.parkNanos(10_000);
+            }
+        }
+
+        /**
+         * 发布所有分区中已提交的操作，每个有新操作的分区只发布一次 tail、最多唤醒一次
+         */
+        public void flush() {
+            for (int i = 0; i < rings.length; i++) {
+                if (dirty[i]) publish(i);
+            }
+        }
+
+        private void publish(int shard) {
+            Ring r = rings[shard];
+            dirty[shard] = false;
+            if (r.pending == r.tail) return;
+            // volatile 写：与工作线程"先置 parked 再检查队列"配对
+            TAIL.setVolatile(r, r.pending);
+            shards[shard].wake();
+        }
+
+        /**
+         * flush 并注销队列，工作线程取完剩余操作后不再检查它们
+         */
+        @Override
+        public void close() {
+            if (sessionClosed) return;
+            if (!closed) flush();
+            sessionClosed = true;
+            for (int i = 0; i < rings.length; i++) {
+                rings[i].closed = true;
+                shards[i].wake();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private K castKey(Object k) {
+        return (K) k;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V castValue(Object v) {
+        return (V) v;
+    }
+}
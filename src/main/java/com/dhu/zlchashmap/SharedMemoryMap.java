@@ -0,0 +1,456 @@
+package com.dhu.zlchashmap;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * 放在内存映射文件里的哈希表，同一台机器上的多个 JVM 映射同一个文件，共享一份数据并且都可以读写。
+ * <p>
+ * 文件由三部分组成：头部、开放定址的槽表（每槽 16 字节）、变长的记录区。键和值用 Codec 编码后
+ * 作为一条不可变记录（键长、值长、键字节、值字节）追加到记录区，槽里只有 hash 和记录的偏移。
+ * 修改值时写一条新记录再把槽指向它，删除只在偏移上打删除标记，所以读者读到的记录永远不会被改写。
+ * 替换和删除留下的旧记录不回收。hash 按键的编码字节计算，跨进程稳定；判断键相等时比较编码字节。
+ * <p>
+ * 槽的第一个字是 (版本号 &lt;&lt; 32 | hash)，用作 seqlock：写者用 CAS 把偶数版本改成奇数占住槽，
+ * 写入新的偏移后再改回下一个偶数；读者不加锁，读槽和记录前后各读一次版本号，不同或为奇数就重读。
+ * 跨进程的 CAS 通过映射缓冲区上的 VarHandle 完成，记录区的空间也用 CAS 推进分配指针。
+ * 一个槽第一次被某个键占用后就永远属于这个键（删除后再放入会复用它），所以同一个键的并发插入总会落到同一个槽。
+ * <p>
+ * 容量在创建时确定，不会扩容：槽用完（按曾经出现过的不同键计）或记录区用完时抛出 IllegalStateException。
+ * 记录区按 chunk 分段映射，单条记录不跨段，因此总大小可以超过 2GB；槽表映射在一段里，最多 2^26 个槽。
+ * 写者在占住槽的几条指令之间崩溃会让这个槽永远处于写入中状态，这里不做恢复。
+ * 键和值都不能为 null。close 之后映射要等到 GC 回收缓冲区时才真正解除
+ */
+public class SharedMemoryMap<K, V> implements Closeable {
+    static final int MAGIC = 0x5A4C534D; // "ZLSM"
+    static final int VERSION = 1;
+    static final int BYTE_ORDER_MARK = 0x01020304;
+    static final int DEFAULT_CHUNK_SHIFT = 30; // 记录区每段 1GB
+    static final int MAX_SLOTS = 1 << 26;
+
+    // 头部布局
+    static final int H_MAGIC = 0;
+    static final int H_VERSION = 4;
+    static final int H_SLOTS = 8;
+    static final int H_BYTE_ORDER = 12;
+    static final int H_DATA_CAPACITY = 16;
+    static final int H_DATA_TOP = 24;
+    static final int H_SIZE = 32;
+    static final int H_CHUNK_SHIFT = 40;
+    static final int HEADER_BYTES = 64;
+    static final int SLOT_BYTES = 16;
+    static final int PAGE = 4096;
+
+    static final long SEQ_ONE = 1L << 32;
+    static final long DELETED = 1L << 63;
+    static final int RECORD_HEADER = 8;
+
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final FileChannel channel;
+    private final MappedByteBuffer table; // 头部 + 槽表
+    private final MappedByteBuffer[] chunks;
+    private final int slotCount;
+    private final int chunkShift;
+    private final long dataCapacity;
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+    private volatile boolean closed;
+
+    /**
+     * 创建新文件，文件已存在时失败
+     *
+     * @param expectedEntries 预计的不同键数，槽数取其两倍以上的 2 的幂
+     * @param dataBytes       记录区大小
+     */
+    public static <K, V> SharedMemoryMap<K, V> create(Path file, int expectedEntries, long dataBytes,
+                                                      Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        return create(file, expectedEntries, dataBytes, keyCodec, valueCodec, DEFAULT_CHUNK_SHIFT);
+    }
+
+    static <K, V> SharedMemoryMap<K, V> create(Path file, int expectedEntries, long dataBytes,
+                                               Codec<K> keyCodec, Codec<V> valueCodec, int chunkShift) throws IOException {
+        if (expectedEntries < 0) throw new IllegalArgumentException("Illegal expected entries: " + expectedEntries);
+        if (dataBytes <= RECORD_HEADER) throw new IllegalArgumentException("Illegal data size: " + dataBytes);
+        if (chunkShift < 12 || chunkShift > 30) throw new IllegalArgumentException("Illegal chunk shift: " + chunkShift);
+        long wanted = Math.max(16L, 2L * expectedEntries);
+        if (wanted > MAX_SLOTS) throw new IllegalArgumentException("Too many entries: " + expectedEntries);
+        int slots = MyHashMap.tableSizeFor((int) wanted);
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long dataStart = dataStart(slots);
+            ch.write(ByteBuffer.wrap(new byte[1]), dataStart + dataBytes - 1); // 稀疏文件，按需占用磁盘和内存
+            MappedByteBuffer t = ch.map(FileChannel.MapMode.READ_WRITE, 0, dataStart);
+            t.order(ByteOrder.nativeOrder());
+            t.putInt(H_VERSION, VERSION);
+            t.putInt(H_SLOTS, slots);
+            t.putInt(H_BYTE_ORDER, BYTE_ORDER_MARK);
+            t.putLong(H_DATA_CAPACITY, dataBytes);
+            t.putLong(H_DATA_TOP, RECORD_HEADER); // 偏移 0 留作"没有记录"
+            t.putLong(H_SIZE, 0);
+            t.putInt(H_CHUNK_SHIFT, chunkShift);
+            VarHandle.releaseFence();
+            t.putInt(H_MAGIC, MAGIC); // 最后写魔数，打开方看到它时头部已完整
+            return new SharedMemoryMap<>(ch, t, keyCodec, valueCodec);
+        } catch (Throwable e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 打开其他进程（或之前）创建的文件
+     */
+    public static <K, V> SharedMemoryMap<K, V> open(Path file, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (ch.size() < HEADER_BYTES) throw new IOException("Not a shared map file: " + file);
+            ByteBuffer h = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.nativeOrder());
+            ch.read(h, 0);
+            if (h.getInt(H_MAGIC) != MAGIC) throw new IOException("Not a shared map file or not initialized: " + file);
+            if (h.getInt(H_VERSION) != VERSION) throw new IOException("Unsupported version " + h.getInt(H_VERSION) + ": " + file);
+            if (h.getInt(H_BYTE_ORDER) != BYTE_ORDER_MARK) throw new IOException("Byte order mismatch: " + file);
+            long dataStart = dataStart(h.getInt(H_SLOTS));
+            MappedByteBuffer t = ch.map(FileChannel.MapMode.READ_WRITE, 0, dataStart);
+            t.order(ByteOrder.nativeOrder());
+            return new SharedMemoryMap<>(ch, t, keyCodec, valueCodec);
+        } catch (Throwable e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    private SharedMemoryMap(FileChannel ch, MappedByteBuffer table, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        this.channel = ch;
+        this.table = table;
+        this.keyCodec = Objects.requireNonNull(keyCodec);
+        this.valueCodec = Objects.requireNonNull(valueCodec);
+        this.slotCount = table.getInt(H_SLOTS);
+        this.chunkShift = table.getInt(H_CHUNK_SHIFT);
+        this.dataCapacity = table.getLong(H_DATA_CAPACITY);
+        long dataStart = dataStart(slotCount);
+        long chunkSize = 1L << chunkShift;
+        int n = (int) ((dataCapacity + chunkSize - 1) >>> chunkShift);
+        chunks = new MappedByteBuffer[n];
+        for (int i = 0; i < n; i++) {
+            long from = (long) i << chunkShift;
+            chunks[i] = ch.map(FileChannel.MapMode.READ_WRITE, dataStart + from, Math.min(chunkSize, dataCapacity - from));
+            chunks[i].order(ByteOrder.nativeOrder());
+        }
+    }
+
+    private static long dataStart(int slots) {
+        long end = HEADER_BYTES + (long) SLOT_BYTES * slots;
+        return (end + PAGE - 1) & -PAGE;
+    }
+
+    /* ----------------- 读 -------------------- */
+
+    public V get(K key) {
+        byte[] v = find(encode(keyCodec, key));
+        return v == null ? null : decode(valueCodec, v);
+    }
+
+    public boolean containsKey(K key) {
+        return find(encode(keyCodec, key)) != null;
+    }
+
+    /**
+     * 所有进程中的条目数
+     */
+    public int size() {
+        long n = (long) LONG.getVolatile(table, H_SIZE);
+        return (int) Math.max(0, Math.min(n, Integer.MAX_VALUE));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * 弱一致遍历：每个条目单独校验，不阻止其他进程修改
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        ensureOpen();
+        for (int i = 0; i < slotCount; i++) {
+            int at = slotAt(i);
+            while (true) {
+                long w = (long) LONG.getAcquire(table, at);
+                if (w == 0) break;
+                if ((w & SEQ_ONE) != 0) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                long ref = (long) LONG.getAcquire(table, at + 8);
+                byte[] k = (ref & DELETED) != 0 ? null : keyBytes(ref);
+                byte[] v = k == null ? null : valueBytes(ref);
+                if ((long) LONG.getAcquire(table, at) != w) continue;
+                if (k != null) action.accept(decode(keyCodec, k), decode(valueCodec, v));
+                break;
+            }
+        }
+    }
+
+    /**
+     * 返回键当前值的编码，不存在时返回 null
+     */
+    private byte[] find(byte[] kb) {
+        ensureOpen();
+        int h = hashOf(kb);
+        int mask = slotCount - 1;
+        for (int i = h & mask, probes = 0; probes < slotCount; ) {
+            int at = slotAt(i);
+            long w = (long) LONG.getAcquire(table, at);
+            if (w == 0) return null; // 从未占用的槽，探测链到此为止
+            if ((int) w != h) {
+                i = (i + 1) & mask;
+                probes++;
+                continue;
+            }
+            if ((w & SEQ_ONE) != 0) {
+                Thread.onSpinWait(); // 有写者正在改这个槽
+                continue;
+            }
+            long ref = (long) LONG.getAcquire(table, at + 8);
+            boolean match = keyEquals(ref, kb);
+            byte[] v = match && (ref & DELETED) == 0 ? valueBytes(ref) : null;
+            if ((long) LONG.getAcquire(table, at) != w) continue; // 读的过程中槽被改过，重读
+            if (match) return v;
+            i = (i + 1) & mask;
+            probes++;
+        }
+        return null;
+    }
+
+    /* ----------------- 写 -------------------- */
+
+    private static final int PUT = 0, PUT_IF_ABSENT = 1, REPLACE = 2, REMOVE = 3;
+
+    public V put(K key, V value) {
+        byte[] old = update(PUT, encode(keyCodec, key), encode(valueCodec, value), null);
+        return old == null ? null : decode(valueCodec, old);
+    }
+
+    public V putIfAbsent(K key, V value) {
+        byte[] old = update(PUT_IF_ABSENT, encode(keyCodec, key), encode(valueCodec, value), null);
+        return old == null ? null : decode(valueCodec, old);
+    }
+
+    /**
+     * 仅当键当前的值（按编码比较）等于 expectedValue 时替换，跨进程原子
+     */
+    public boolean replace(K key, V expectedValue, V newValue) {
+        return update(REPLACE, encode(keyCodec, key), encode(valueCodec, newValue), encode(valueCodec, expectedValue)) != null;
+    }
+
+    public V remove(K key) {
+        byte[] old = update(REMOVE, encode(keyCodec, key), null, null);
+        return old == null ? null : decode(valueCodec, old);
+    }
+
+    /**
+     * 所有写操作的实现。返回旧值的编码，键不存在时返回 null；PUT_IF_ABSENT 在键存在时不写入，
+     * REPLACE 在旧值不等于 expected 时不写入并返回 null。新记录在占住槽之前写好，占住后只需改一个偏移
+     */
+    private byte[] update(int mode, byte[] kb, byte[] vb, byte[] expected) {
+        ensureOpen();
+        int h = hashOf(kb);
+        int mask = slotCount - 1;
+        long rec = 0;
+        for (int i = h & mask, probes = 0; probes < slotCount; ) {
+            int at = slotAt(i);
+            long w = (long) LONG.getAcquire(table, at);
+            if (w == 0) {
+                if (mode == REMOVE || mode == REPLACE) return null;
+                if (rec == 0) rec = writeRecord(kb, vb);
+                long claimed = SEQ_ONE | (h & 0xffffffffL);
+                if (LONG.compareAndSet(table, at, 0L, claimed)) {
+                    LONG.setRelease(table, at + 8, rec);
+                    LONG.setRelease(table, at, unlocked(claimed));
+                    LONG.getAndAdd(table, H_SIZE, 1L);
+                    return null;
+                }
+                continue; // 被其他写者抢先，重读这个槽
+            }
+            if ((int) w != h) {
+                i = (i + 1) & mask;
+                probes++;
+                continue;
+            }
+            if ((w & SEQ_ONE) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            long ref = (long) LONG.getAcquire(table, at + 8);
+            boolean match = keyEquals(ref, kb);
+            boolean deleted = (ref & DELETED) != 0;
+            byte[] old = match && !deleted ? valueBytes(ref) : null;
+            if ((long) LONG.getAcquire(table, at) != w) continue;
+            if (!match) {
+                i = (i + 1) & mask;
+                probes++;
+                continue;
+            }
+            long newRef;
+            if (mode == REMOVE) {
+                if (deleted) return null;
+                newRef = ref | DELETED;
+            } else {
+                if (mode == PUT_IF_ABSENT && !deleted) return old;
+                if (mode == REPLACE && (deleted || !Arrays.equals(old, expected))) return null;
+                if (rec == 0) rec = writeRecord(kb, vb);
+                newRef = rec;
+            }
+            long locked = w + SEQ_ONE;
+            if (!LONG.compareAndSet(table, at, w, locked)) continue; // 版本变了，说明 ref 已被改过，重来
+            LONG.setRelease(table, at + 8, newRef);
+            LONG.setRelease(table, at, unlocked(locked));
+            if (mode == REMOVE) LONG.getAndAdd(table, H_SIZE, -1L);
+            else if (deleted) LONG.getAndAdd(table, H_SIZE, 1L);
+            return old;
+        }
+        throw new IllegalStateException("Shared map is full: all " + slotCount + " slots are in use");
+    }
+
+    /**
+     * 奇数版本的下一个偶数版本；版本号回绕到 0 时跳过，否则 hash 为 0 的槽会被当成从未占用
+     */
+    private static long unlocked(long locked) {
+        long next = locked + SEQ_ONE;
+        return (next >>> 32) == 0 ? next + 2 * SEQ_ONE : next;
+    }
+
+    private int slotAt(int i) {
+        return HEADER_BYTES + SLOT_BYTES * i;
+    }
+
+    /* ----------------- 记录区 -------------------- */
+
+    /**
+     * 追加一条记录，返回它在记录区中的偏移
+     */
+    private long writeRecord(byte[] kb, byte[] vb) {
+        int len = (RECORD_HEADER + kb.length + vb.length + 7) & ~7;
+        long r = allocate(len);
+        ByteBuffer c = chunks[(int) (r >>> chunkShift)];
+        int p = (int) (r & ((1L << chunkShift) - 1));
+        c.putInt(p, kb.length);
+        c.putInt(p + 4, vb.length);
+        c.put(p + RECORD_HEADER, kb);
+        c.put(p + RECORD_HEADER + kb.length, vb);
+        return r; // 由槽上的 release 写发布
+    }
+
+    private long allocate(int len) {
+        long chunkSize = 1L << chunkShift;
+        if (len > chunkSize) throw new IllegalArgumentException("Entry of " + len + " bytes does not fit in a chunk");
+        while (true) {
+            long top = (long) LONG.getVolatile(table, H_DATA_TOP);
+            long start = top;
+            long chunkEnd = ((start >>> chunkShift) + 1) << chunkShift;
+            if (start + len > chunkEnd) start = chunkEnd; // 记录不跨段，跳到下一段开头
+            if (start + len > dataCapacity) throw new IllegalStateException("Shared map data region is full");
+            if (LONG.compareAndSet(table, H_DATA_TOP, top, start + len)) return start;
+        }
+    }
+
+    private boolean keyEquals(long ref, byte[] kb) {
+        long r = ref & ~DELETED;
+        ByteBuffer c = chunks[(int) (r >>> chunkShift)];
+        int p = (int) (r & ((1L << chunkShift) - 1));
+        if (c.getInt(p) != kb.length) return false;
+        p += RECORD_HEADER;
+        for (int i = 0; i < kb.length; i++) {
+            if (c.get(p + i) != kb[i]) return false;
+        }
+        return true;
+    }
+
+    private byte[] keyBytes(long ref) {
+        long r = ref & ~DELETED;
+        ByteBuffer c = chunks[(int) (r >>> chunkShift)];
+        int p = (int) (r & ((1L << chunkShift) - 1));
+        byte[] b = new byte[c.getInt(p)];
+        c.get(p + RECORD_HEADER, b);
+        return b;
+    }
+
+    private byte[] valueBytes(long ref) {
+        long r = ref & ~DELETED;
+        ByteBuffer c = chunks[(int) (r >>> chunkShift)];
+        int p = (int) (r & ((1L << chunkShift) - 1));
+        byte[] b = new byte[c.getInt(p + 4)];
+        c.get(p + RECORD_HEADER + c.getInt(p), b);
+        return b;
+    }
+
+    /**
+     * 记录区已分配的字节数，包括被替换、删除的旧记录
+     */
+    public long dataUsed() {
+        return (long) LONG.getVolatile(table, H_DATA_TOP);
+    }
+
+    /* ----------------- 编解码 -------------------- */
+
+    private static int hashOf(byte[] b) {
+        int h = Arrays.hashCode(b);
+        return h ^ (h >>> 16);
+    }
+
+    private static <T> byte[] encode(Codec<T> codec, T value) {
+        Objects.requireNonNull(value);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        try {
+            codec.encode(value, new DataOutputStream(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static <T> T decode(Codec<T> codec, byte[] b) {
+        try {
+            return codec.decode(new DataInputStream(new ByteArrayInputStream(b)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) throw new IllegalStateException("Map is closed");
+    }
+
+    /**
+     * 把映射的修改刷到文件。进程之间共享数据不需要调用它，只在需要持久化时使用
+     */
+    public void force() {
+        ensureOpen();
+        table.force();
+        for (MappedByteBuffer c : chunks) c.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        channel.close();
+    }
+}
@@ -0,0 +1,422 @@
+package com.dhu.zlchashmap;
+
+import java.io.Closeable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+/**
+ * 单写者映射：写多读少之外的另一种场景，读者远多于写者、写入可以稍后可见。
+ * <p>
+ * 生产者的 put/remove 只把修改放进一个有界 MPSC 环形队列（键、值、操作各一个并行数组，入队不分配对象），
+ * 专门的写线程每次取出最多 batchSize 个修改应用到私有的 MyHashMap 上，
+ * 并保证每个修改在 flushLatency 之内发布到只读快照。读者只读 volatile 的快照引用，与写线程没有任何竞争。
+ * <p>
+ * 快照与写线程的 MyHashMap 桶布局相同（同样的表长和下标），桶数组分成 1024 个桶一块。
+ * 发布时只复制有修改的块，块中有修改的桶按 MyHashMap 的当前内容重建成新的链表
+ * （条目达到 TREEIFY_THRESHOLD 时为有序数组桶），其余桶与上一个快照共享。
+ * 快照中的节点发布后不再修改，所以旧快照永远保持发布时的内容。MyHashMap 扩容后下一次发布整体重建。
+ * <p>
+ * 队列满时生产者自旋后短暂休眠，直到写线程腾出位置。键和值都允许为 null。
+ * 读者看到的内容最多落后 flushLatency（加上处理一批的时间），需要读到自己的写入时调用 flush
+ * <p>
+ * 单个修改在写线程上失败（键的 hashCode/equals 抛出异常）时跳过该修改，异常由下一次返回的 flush 抛出。
+ * 写线程自身出错退出后，此后的 put/remove/flush 以及正在等待的 flush 都抛出 IllegalStateException
+ */
+public final class SingleWriterMap<K, V> implements Closeable {
+    static final int DEFAULT_QUEUE_CAPACITY = 1 << 14;
+    static final int DEFAULT_BATCH_SIZE = 1024;
+    static final long DEFAULT_FLUSH_LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    static final int CHUNK_SHIFT = 10; // 快照每块 1024 个桶
+
+    static final byte OP_PUT = 1;
+    static final byte OP_REMOVE = 2;
+    static final byte OP_FLUSH = 3;
+
+    private static final VarHandle SEQ = MethodHandles.arrayElementVarHandle(long[].class);
+
+    /**
+     * 不可变的读视图
+     */
+    public static final class Snapshot<K, V> {
+        final Node<K, V>[][] chunks;
+        final int mask;
+        final int size;
+        final long version;
+
+        Snapshot(Node<K, V>[][] chunks, int mask, int size, long version) {
+            this.chunks = chunks;
+            this.mask = mask;
+            this.size = size;
+            this.version = version;
+        }
+
+        private Node<K, V> bin(int i) {
+            return chunks[i >>> CHUNK_SHIFT][i & ((1 << CHUNK_SHIFT) - 1)];
+        }
+
+        @SuppressWarnings("unchecked")
+        public V get(Object key) {
+            int h = MyHashMap.hash(key);
+            Object v = MapAlgebra.lookupBin(bin(h & mask), h, key);
+            return v == MapAlgebra.ABSENT ? null : (V) v;
+        }
+
+        public boolean containsKey(Object key) {
+            int h = MyHashMap.hash(key);
+            return MapAlgebra.lookupBin(bin(h & mask), h, key) != MapAlgebra.ABSENT;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        /**
+         * 第几次发布，从 0 开始
+         */
+        public long version() {
+            return version;
+        }
+
+        public void forEach(BiConsumer<? super K, ? super V> action) {
+            Objects.requireNonNull(action);
+            for (Node<K, V>[] chunk : chunks) {
+                for (Node<K, V> head : chunk) {
+                    if (head != null) MapAlgebra.forEachInBin(head, (h, k, v) -> action.accept(k, v));
+                }
+            }
+        }
+    }
+
+    private final int batchSize;
+    private final long flushLatencyNanos;
+
+    // MPSC 队列：seqs[i] == 序号 表示槽空闲可写，== 序号 + 1 表示已写好可读
+    private final long[] seqs;
+    private final Object[] keys;
+    private final Object[] vals;
+    private final byte[] ops;
+    private final int qmask;
+    private final AtomicLong tail = new AtomicLong();
+    private long head; // 只有写线程访问
+
+    // 以下只有写线程访问
+    private final MyHashMap<K, V> state = new MyHashMap<>();
+    private long[] dirtyBins = new long[1];
+    private boolean[] dirtyChunks = new boolean[1];
+    private boolean anyDirty;
+    private long firstUnpublishedNanos;
+    private RuntimeException mutationFailure; // 上次 flush 之后第一个失败的修改
+
+    private volatile Snapshot<K, V> snapshot;
+    private volatile boolean writerParked;
+    private volatile boolean closed;
+    private volatile Throwable writerFailure; // 写线程因之退出的异常
+    private final Thread writer;
+
+    public SingleWriterMap() {
+        this(DEFAULT_QUEUE_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_LATENCY_NANOS, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param queueCapacity 修改队列的容量，取不小于它的 2 的幂
+     * @param batchSize     写线程每批最多应用的修改数
+     * @param flushLatency  修改最迟多久发布到快照
+     */
+    @SuppressWarnings("unchecked")
+    public SingleWriterMap(int queueCapacity, int batchSize, long flushLatency, TimeUnit unit) {
+        if (queueCapacity <= 0) throw new IllegalArgumentException("Illegal queue capacity: " + queueCapacity);
+        if (batchSize <= 0) throw new IllegalArgumentException("Illegal batch size: " + batchSize);
+        if (flushLatency < 0) throw new IllegalArgumentException("Illegal flush latency: " + flushLatency);
+        int cap = MyHashMap.tableSizeFor(queueCapacity);
+        this.seqs = new long[cap];
+        for (int i = 0; i < cap; i++) seqs[i] = i;
+        this.keys = new Object[cap];
+        this.vals = new Object[cap];
+        this.ops = new byte[cap];
+        this.qmask = cap - 1;
+        this.batchSize = batchSize;
+        this.flushLatencyNanos = unit.toNanos(flushLatency);
+        this.snapshot = new Snapshot<>(new Node[][]{new Node[1]}, 0, 0, 0);
+        this.writer = Thread.ofPlatform().name("single-writer-map").daemon().start(this::writeLoop);
+    }
+
+    /* ----------------- 读 -------------------- */
+
+    /**
+     * 当前发布的快照，多次读取需要一致的视图时先取快照再读
+     */
+    public Snapshot<K, V> snapshot() {
+        return snapshot;
+    }
+
+    public V get(Object key) {
+        return snapshot.get(key);
+    }
+
+    public boolean containsKey(Object key) {
+        return snapshot.containsKey(key);
+    }
+
+    public int size() {
+        return snapshot.size;
+    }
+
+    /* ----------------- 写 -------------------- */
+
+    public void put(K key, V value) {
+        enqueue(OP_PUT, key, value);
+    }
+
+    public void remove(Object key) {
+        enqueue(OP_REMOVE, key, null);
+    }
+
+    /**
+     * 等到此前（在当前线程中）提交的修改都已发布到快照后返回。
+     * 上次 flush 之后有修改在写线程上失败时（不论由哪个线程提交），抛出 IllegalStateException，异常原因是第一个失败
+     */
+    public void flush() {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        enqueue(OP_FLUSH, null, done);
+        // 写线程在入队前后退出时，它退出前的清理可能看不到这个 flush，由这里结束
+        Throwable failure = writerFailure;
+        if (failure != null) done.completeExceptionally(failure);
+        try {
+            done.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException(writerFailure != null ? "SingleWriterMap writer has died"
+                    : "Writes failed on the SingleWriterMap writer", e.getCause());
+        }
+    }
+
+    private void enqueue(byte op, Object key, Object value) {
+        if (closed) throw new IllegalStateException("SingleWriterMap is closed");
+        checkWriter();
+        for (int spins = 0; ; ) {
+            long t = tail.get();
+            int i = (int) t & qmask;
+            long s = (long) SEQ.getAcquire(seqs, i);
+            if (s == t) {
+                if (tail.compareAndSet(t, t + 1)) {
+                    keys[i] = key;
+                    vals[i] = value;
+                    ops[i] = op;
+                    // volatile 写：与写线程"先置 writerParked 再检查队列"配对，不会两边都错过
+                    SEQ.setVolatile(seqs, i, t + 1);
+                    break;
+                }
+            } else if (s < t) {
+                // 队列已满，等写线程消费
+                if (++spins < 64) {
+                    Thread.onSpinWait();
+                } else {
+                    checkWriter();
+                    LockSupport.parkNanos(10_000);
+                }
+            }
+        }
+        if (writerParked) LockSupport.unpark(writer);
+    }
+
+    private void checkWriter() {
+        Throwable failure = writerFailure;
+        if (failure != null) throw new IllegalStateException("SingleWriterMap writer has died", failure);
+    }
+
+    /**
+     * 停止接受修改，等写线程应用并发布队列中剩余的修改后返回。调用前应先停止生产者，
+     * 与 close 并发的写入可能被丢弃
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /* ----------------- 写线程 -------------------- */
+
+    private void writeLoop() {
+        try {
+            runWriter();
+        } catch (Throwable e) {
+            writerFailure = e;
+            failPendingFlushes(e);
+            throw e;
+        }
+    }
+
+    private void runWriter() {
+        while (true) {
+            int n = drain();
+            if (anyDirty && System.nanoTime() - firstUnpublishedNanos >= flushLatencyNanos) {
+                publish();
+            }
+            if (n > 0) continue;
+            if (closed && isQueueEmpty()) {
+                if (anyDirty) publish();
+                return;
+            }
+            writerParked = true;
+            if (isQueueEmpty()) {
+                if (anyDirty) {
+                    LockSupport.parkNanos(this, firstUnpublishedNanos + flushLatencyNanos - System.nanoTime());
+                } else {
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+                }
+            }
+            writerParked = false;
+        }
+    }
+
+    /**
+     * 写线程退出前结束队列中所有已入队的 flush。先置 writerFailure 再扫描：
+     * 之后入队的 flush 在 flush() 里能看到 writerFailure，之前入队的在这里能看到
+     */
+    @SuppressWarnings("unchecked")
+    private void failPendingFlushes(Throwable e) {
+        for (long t = head, end = tail.get(); t < end; t++) {
+            int i = (int) t & qmask;
+            if ((long) SEQ.getAcquire(seqs, i) == t + 1 && ops[i] == OP_FLUSH) {
+                ((CompletableFuture<Void>) vals[i]).completeExceptionally(e);
+            }
+        }
+    }
+
+    private boolean isQueueEmpty() {
+        return (long) SEQ.getVolatile(seqs, (int) head & qmask) != head + 1;
+    }
+
+    /**
+     * 取出并应用最多 batchSize 个修改，返回个数
+     */
+    @SuppressWarnings("unchecked")
+    private int drain() {
+        int n = 0;
+        for (; n < batchSize; n++) {
+            int i = (int) head & qmask;
+            if ((long) SEQ.getAcquire(seqs, i) != head + 1) break;
+            K key = (K) keys[i];
+            Object value = vals[i];
+            byte op = ops[i];
+            keys[i] = null;
+            vals[i] = null;
+            SEQ.setRelease(seqs, i, head + seqs.length);
+            head++;
+            if (op == OP_FLUSH) {
+                CompletableFuture<Void> done = (CompletableFuture<Void>) value;
+                try {
+                    if (anyDirty) publish();
+                } catch (Throwable e) {
+                    // 这个 flush 已经出队，failPendingFlushes 看不到它
+                    done.completeExceptionally(e);
+                    throw e;
+                }
+                if (mutationFailure == null) {
+                    done.complete(null);
+                } else {
+                    done.completeExceptionally(mutationFailure);
+                    mutationFailure = null;
+                }
+                continue;
+            }
+            int h;
+            try {
+                h = MyHashMap.hash(key);
+                if (op == OP_PUT) state.put(key, (V) value);
+                else state.remove(key);
+            } catch (RuntimeException e) {
+                // 键的 hashCode/equals 抛出：跳过这一个修改，写线程继续
+                if (mutationFailure == null) mutationFailure = e;
+                continue;
+            }
+            if (!anyDirty) {
+                anyDirty = true;
+                firstUnpublishedNanos = System.nanoTime();
+            }
+            markDirty(h);
+        }
+        return n;
+    }
+
+    private void markDirty(int h) {
+        Node<K, V>[] tab = state.table;
+        if (tab == null) return;
+        int i = h & (tab.length - 1);
+        if (dirtyBins.length << 6 < tab.length) return; // 表已扩容，发布时整体重建
+        dirtyBins[i >>> 6] |= 1L << i;
+        dirtyChunks[i >>> CHUNK_SHIFT] = true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void publish() {
+        Snapshot<K, V> prev = snapshot;
+        Node<K, V>[] tab = state.table;
+        int len = tab == null ? 1 : tab.length;
+        int chunkSize = Math.min(len, 1 << CHUNK_SHIFT);
+        Node<K, V>[][] chunks;
+        if (len - 1 != prev.mask) {
+            // 第一次发布或 MyHashMap 扩容过：按新表长整体重建
+            chunks = new Node[Math.max(1, len >>> CHUNK_SHIFT)][];
+            for (int c = 0; c < chunks.length; c++) {
+                chunks[c] = new Node[chunkSize];
+                for (int j = 0; j < chunkSize; j++) {
+                    int i = (c << CHUNK_SHIFT) + j;
+                    chunks[c][j] = tab == null ? null : copyBin(tab[i]);
+                }
+            }
+            dirtyBins = new long[Math.max(1, len >>> 6)];
+            dirtyChunks = new boolean[chunks.length];
+        } else {
+            chunks = prev.chunks.clone();
+            for (int c = 0; c < chunks.length; c++) {
+                if (!dirtyChunks[c]) continue;
+                dirtyChunks[c] = false;
+                Node<K, V>[] chunk = chunks[c].clone();
+                for (int j = 0; j < chunkSize; j++) {
+                    int i = (c << CHUNK_SHIFT) + j;
+                    if ((dirtyBins[i >>> 6] & (1L << i)) != 0) chunk[j] = copyBin(tab[i]);
+                }
+                chunks[c] = chunk;
+            }
+            Arrays.fill(dirtyBins, 0L);
+        }
+        anyDirty = false;
+        snapshot = new Snapshot<>(chunks, len - 1, state.size(), prev.version + 1);
+    }
+
+    /**
+     * 把 MyHashMap 的一个桶复制成快照专用的新节点，之后写线程对原桶的修改不会影响快照
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, V> Node<K, V> copyBin(Node<K, V> head) {
+        if (head == null) return null;
+        int[] n = new int[1];
+        MapAlgebra.forEachInBin(head, (h, k, v) -> n[0]++);
+        if (n[0] >= MyHashMap.TREEIFY_THRESHOLD) {
+            SortedArrayBin<K, V> b = new SortedArrayBin<>(n[0]);
+            MapAlgebra.forEachInBin(head, b::append);
+            b.sort();
+            return b;
+        }
+        Node<K, V>[] list = new Node[1];
+        MapAlgebra.forEachInBin(head, (h, k, v) -> list[0] = new Node<>(h, k, v, list[0]));
+        return list[0];
+    }
+}
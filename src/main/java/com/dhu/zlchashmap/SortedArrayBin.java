@@ -0,0 +1,158 @@
+package com.dhu.zlchashmap;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * MyHashMap 中冲突严重的桶的另一种表示：条目按 (hash, 键的顺序) 排好放在三个并行数组里，二分查找。
+ * <p>
+ * 键的顺序与红黑树相同（RedBlackNode.orderOf：不同类按类名，同类且可比较时按 compareTo），
+ * 无法区分顺序的键挨在一起，查找时在这一小段里逐个 equals。
+ * 每个条目只占 hash、键、值三个数组槽（约 12 字节），RedBlackNode 要 48 字节左右，
+ * 二分查找也只在连续的 int[] 上比较 hash，不用沿指针逐层下降。
+ * <p>
+ * 桶里没有 Node 对象，MyHashMap 按下标直接读写，find 不可用
+ */
+final class SortedArrayBin<K, V> extends Node<K, V> {
+    static final int BIN_HASH = -3; // 不会被当作普通节点比较
+
+    int[] hashes;
+    Object[] keys;
+    Object[] vals;
+    int size;
+
+    SortedArrayBin(int capacity) {
+        super(BIN_HASH, null, null);
+        hashes = new int[capacity];
+        keys = new Object[capacity];
+        vals = new Object[capacity];
+    }
+
+    @Override
+    public Node<K, V> find(int h, Object k) {
+        throw new UnsupportedOperationException("SortedArrayBin has no entry nodes");
+    }
+
+    /**
+     * 键的下标，不存在时返回 -(插入位置) - 1。与 RedBlackNode.findNode 一样先比 hash，再 equals，最后比顺序
+     */
+    int indexOf(int h, Object k) {
+        int lo = 0, hi = size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int hm = hashes[mid];
+            if (h < hm) {
+                hi = mid - 1;
+                continue;
+            }
+            if (h > hm) {
+                lo = mid + 1;
+                continue;
+            }
+            Object km = keys[mid];
+            if (Objects.equals(k, km)) return mid;
+            int c = RedBlackNode.orderOf(k, km);
+            if (c < 0) hi = mid - 1;
+            else if (c > 0) lo = mid + 1;
+            else return scanRun(mid, h, k);
+        }
+        return -lo - 1;
+    }
+
+    /**
+     * mid 与 k 的顺序无法区分：在前后顺序相同的一段里逐个 equals，找不到时插在这一段之后
+     */
+    private int scanRun(int mid, int h, Object k) {
+        for (int i = mid - 1; i >= 0 && hashes[i] == h && RedBlackNode.orderOf(k, keys[i]) == 0; i--) {
+            if (Objects.equals(k, keys[i])) return i;
+        }
+        int j = mid + 1;
+        for (; j < size && hashes[j] == h && RedBlackNode.orderOf(k, keys[j]) == 0; j++) {
+            if (Objects.equals(k, keys[j])) return j;
+        }
+        return -j - 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    V valueAt(int i) {
+        return (V) vals[i];
+    }
+
+    @SuppressWarnings("unchecked")
+    K keyAt(int i) {
+        return (K) keys[i];
+    }
+
+    void insertAt(int i, int h, K k, V v) {
+        if (size == hashes.length) {
+            int cap = size + (size >> 1) + 1;
+            hashes = Arrays.copyOf(hashes, cap);
+            keys = Arrays.copyOf(keys, cap);
+            vals = Arrays.copyOf(vals, cap);
+        }
+        int move = size - i;
+        System.arraycopy(hashes, i, hashes, i + 1, move);
+        System.arraycopy(keys, i, keys, i + 1, move);
+        System.arraycopy(vals, i, vals, i + 1, move);
+        hashes[i] = h;
+        keys[i] = k;
+        vals[i] = v;
+        size++;
+    }
+
+    void removeAt(int i) {
+        int move = size - i - 1;
+        System.arraycopy(hashes, i + 1, hashes, i, move);
+        System.arraycopy(keys, i + 1, keys, i, move);
+        System.arraycopy(vals, i + 1, vals, i, move);
+        size--;
+        keys[size] = null;
+        vals[size] = null;
+    }
+
+    /**
+     * 按 hash & bit 拆出一部分，仍保持有序；没有满足条件的条目时返回 null
+     */
+    SortedArrayBin<K, V> split(int bit, int want) {
+        int n = 0;
+        for (int i = 0; i < size; i++) if ((hashes[i] & bit) == want) n++;
+        if (n == 0) return null;
+        SortedArrayBin<K, V> part = new SortedArrayBin<>(n);
+        for (int i = 0; i < size; i++) {
+            if ((hashes[i] & bit) == want) {
+                part.hashes[part.size] = hashes[i];
+                part.keys[part.size] = keys[i];
+                part.vals[part.size++] = vals[i];
+            }
+        }
+        return part;
+    }
+
+    /**
+     * 逐个追加条目后排序，用于从链表或树转换
+     */
+    void sort() {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> {
+            int c = Integer.compare(hashes[a], hashes[b]);
+            return c != 0 ? c : RedBlackNode.orderOf(keys[a], keys[b]);
+        });
+        int[] hs = new int[hashes.length];
+        Object[] ks = new Object[keys.length], vs = new Object[vals.length];
+        for (int i = 0; i < size; i++) {
+            hs[i] = hashes[order[i]];
+            ks[i] = keys[order[i]];
+            vs[i] = vals[order[i]];
+        }
+        hashes = hs;
+        keys = ks;
+        vals = vs;
+    }
+
+    void append(int h, Object k, Object v) {
+        hashes[size] = h;
+        keys[size] = k;
+        vals[size++] = v;
+    }
+}
@@ -0,0 +1,99 @@
+package com.dhu.zlchashmap;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * ConcurrentCounterMap 中每个键的计数器，思路同 LongAdder：平时只 CAS 一个 base，
+ * 第一次 CAS 失败说明这个键是热点，再分配一组填充到独占缓存行的 Cell，
+ * 各线程按自己的探针值分散到不同 Cell 上。冷键只占一个 long，热键才付出 Cell 的内存
+ */
+final class StripedCounter {
+    static final int MAX_CELLS = MyHashMap.tableSizeFor(Runtime.getRuntime().availableProcessors());
+
+    private static final VarHandle BASE;
+    private static final VarHandle CELLS;
+    private static final VarHandle VALUE;
+
+    static {
+        try {
+            MethodHandles.Lookup l = MethodHandles.lookup();
+            BASE = l.findVarHandle(StripedCounter.class, "base", long.class);
+            CELLS = l.findVarHandle(StripedCounter.class, "cells", Cell[].class);
+            VALUE = l.findVarHandle(Cell.class, "value", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * 前后各 7 个 long 的填充，保证相邻 Cell 的 value 不在同一条 64 字节缓存行上
+     */
+    @SuppressWarnings("unused")
+    static final class Cell {
+        long p0, p1, p2, p3, p4, p5, p6;
+        volatile long value;
+        long q0, q1, q2, q3, q4, q5, q6;
+    }
+
+    // 每个线程的探针值，Cell 上冲突时换一个
+    private static final ThreadLocal<int[]> PROBE = ThreadLocal.withInitial(
+            () -> new int[]{CuckooHashMap.mix((int) Thread.currentThread().threadId()) | 1});
+
+    private volatile long base;
+    private volatile Cell[] cells;
+
+    void add(long x) {
+        Cell[] cs = cells;
+        if (cs == null) {
+            long b = base;
+            if (BASE.compareAndSet(this, b, b + x)) return;
+            cs = inflate(null);
+        }
+        int[] probe = PROBE.get();
+        while (true) {
+            Cell c = cs[probe[0] & (cs.length - 1)];
+            long v = c.value;
+            if (VALUE.compareAndSet(c, v, v + x)) return;
+            // Cell 上也有竞争：先尝试加宽，已到上限就换探针
+            if (cs.length < MAX_CELLS) {
+                cs = inflate(cs);
+            } else {
+                int p = probe[0];
+                p ^= p << 13;
+                p ^= p >>> 17;
+                p ^= p << 5; // xorshift
+                probe[0] = p;
+                cs = cells;
+            }
+        }
+    }
+
+    /**
+     * 把 cells 从 expected 加宽一倍（expected 为 null 时创建 2 个），其他线程抢先加宽时直接用它的结果
+     */
+    private Cell[] inflate(Cell[] expected) {
+        int n = expected == null ? 2 : expected.length << 1;
+        Cell[] next = new Cell[Math.min(n, Math.max(MAX_CELLS, 2))];
+        int i = 0;
+        if (expected != null) {
+            for (; i < expected.length; i++) next[i] = expected[i];
+        }
+        for (; i < next.length; i++) next[i] = new Cell();
+        Cell[] witness = (Cell[]) CELLS.compareAndExchange(this, expected, next);
+        return witness == expected ? next : witness;
+    }
+
+    long sum() {
+        long s = base;
+        Cell[] cs = cells;
+        if (cs != null) {
+            for (Cell c : cs) s += c.value;
+        }
+        return s;
+    }
+
+    boolean isStriped() {
+        return cells != null;
+    }
+}
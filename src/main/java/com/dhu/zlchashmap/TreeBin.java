@@ -0,0 +1,158 @@
+package com.dhu.zlchashmap;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Objects;
+
+/**
+ * MyConcurrentHashMap 中树化桶的头节点。
+ * <p>
+ * 红黑树旋转时根节点会变，不能像 MyHashMap 那样直接把树根放进桶里再对它加锁，
+ * 所以用一个固定的 TreeBin 占住桶位，树根和所有树节点都挂在它下面。
+ * 树节点另外通过 next 串成链表（first 为表头），供遍历和扩容迁移使用。
+ * <p>
+ * 修改都在持有桶锁时进行。读取不加锁，用类似 StampedLock 的乐观读：
+ * 写者在改动树结构前后各把 stamp 加一（奇数表示正在改），读者记下 stamp 后沿树查找，
+ * 结束时 stamp 没变结果才有效。写者正在改或者校验失败时，读者改为沿 next 链表线性查找，
+ * 链表的插入和摘除对并发读者始终是一致的，所以读者永远不会被写者阻塞
+ */
+final class TreeBin<K, V> extends Node<K, V> {
+    // 红黑树高度不超过 2 * log2(n + 1)，超过这个步数说明读到了旋转中途的结构
+    static final int MAX_TREE_STEPS = 64;
+
+    private static final VarHandle STAMP;
+
+    static {
+        try {
+            STAMP = MethodHandles.lookup().findVarHandle(TreeBin.class, "stamp", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    RedBlackNode<K, V> root;
+    volatile Node<K, V> first;
+    int count;
+    private volatile int stamp;
+
+    /**
+     * 由一条链表构建树，树节点都是新建的副本，原链表对并发读者保持不变
+     */
+    TreeBin(Node<K, V> chain) {
+        super(MyConcurrentHashMap.TREEBIN, null, null);
+        RedBlackNode<K, V> head = null, tail = null;
+        for (Node<K, V> e = chain; e != null; e = e.next) {
+            RedBlackNode<K, V> x = new RedBlackNode<>(e.hash, e.key, e.val, null);
+            if (tail == null) head = x;
+            else tail.next = x;
+            tail = x;
+            root = x.insertNewNodeWithBalance(root, x);
+            count++;
+        }
+        first = head;
+    }
+
+    @Override
+    public Node<K, V> find(int h, Object k) {
+        int s = stamp;
+        if ((s & 1) == 0) {
+            Node<K, V> p = treeFind(h, k);
+            VarHandle.acquireFence(); // 树上的读取不能重排到校验之后
+            if (p != this && stamp == s) {
+                return p;
+            }
+        }
+        for (Node<K, V> e = first; e != null; e = e.next) {
+            if (e.hash == h && Objects.equals(e.key, k)) return e;
+        }
+        return null;
+    }
+
+    /**
+     * 无锁地沿树查找，结构可能正在被修改：步数超限、遇到无法判断方向的键时返回 this，由调用方退回链表
+     */
+    private Node<K, V> treeFind(int h, Object k) {
+        RedBlackNode<K, V> p = root;
+        for (int steps = 0; p != null; steps++) {
+            if (steps > MAX_TREE_STEPS) return this;
+            int cmp;
+            if (h != p.hash) {
+                cmp = h < p.hash ? -1 : 1;
+            } else if (Objects.equals(k, p.key)) {
+                return p;
+            } else if ((cmp = RedBlackNode.orderOf(k, p.key)) == 0) {
+                return this;
+            }
+            p = cmp < 0 ? p.left : p.right;
+        }
+        return null;
+    }
+
+    /**
+     * 调用方持有桶锁。开始改动树结构，之后的写不会被重排到 stamp 变为奇数之前
+     */
+    private void beginWrite() {
+        STAMP.getAndAdd(this, 1);
+    }
+
+    private void endWrite() {
+        STAMP.setRelease(this, stamp + 1);
+    }
+
+    /**
+     * 调用方持有桶锁。键已存在时返回已有节点（由调用方读取旧值并决定是否替换），否则插入并返回 null
+     */
+    Node<K, V> putTreeVal(int h, K k, V v) {
+        RedBlackNode<K, V> p = root == null ? null : root.findNode(root, h, k);
+        if (p != null) {
+            return p;
+        }
+        RedBlackNode<K, V> x = new RedBlackNode<>(h, k, v, null);
+        x.next = first;
+        first = x; // 先挂到链表上，退回链表查找的读者马上能看到
+        beginWrite();
+        try {
+            root = x.insertNewNodeWithBalance(root, x);
+        } finally {
+            endWrite();
+        }
+        count++;
+        return null;
+    }
+
+    /**
+     * 调用方持有桶锁。删除键对应的节点并返回它，不存在时返回 null
+     */
+    Node<K, V> removeTreeNode(int h, Object k) {
+        RedBlackNode<K, V> p = root == null ? null : root.findNode(root, h, k);
+        if (p == null) {
+            return null;
+        }
+        Node<K, V> pred = null;
+        for (Node<K, V> e = first; e != p; e = e.next) pred = e;
+        if (pred == null) first = p.next;
+        else pred.next = p.next;
+        beginWrite();
+        try {
+            root = root.treeDelete(root, p);
+        } finally {
+            endWrite();
+        }
+        count--;
+        return p;
+    }
+
+    /**
+     * 复制成普通链表（反树化时使用）
+     */
+    Node<K, V> untreeify() {
+        Node<K, V> head = null, tail = null;
+        for (Node<K, V> e = first; e != null; e = e.next) {
+            Node<K, V> copy = new Node<>(e.hash, e.key, e.val);
+            if (tail == null) head = copy;
+            else tail.next = copy;
+            tail = copy;
+        }
+        return head;
+    }
+}
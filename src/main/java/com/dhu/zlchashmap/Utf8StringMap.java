@@ -0,0 +1,360 @@
+package com.dhu.zlchashmap;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * 字符串键专用的映射：键以 UTF-8 字节连续存放在一个 byte[] 区域（arena）里，
+ * 表是开放定址的并行数组（hash、偏移、长度、值），每个条目只有 16 字节左右的固定开销加上键的字节数，
+ * 而 String + Node 至少要 70 多字节。
+ * <p>
+ * get(byte[], int, int) 和 get(CharSequence) 在原地计算哈希、原地比较，不分配任何对象：
+ * 哈希定义在 UTF-8 字节流上，CharSequence 边编码边参与哈希和比较。
+ * 未配对的代理字符与 String.getBytes(UTF_8) 一样按 '?' 处理。
+ * <p>
+ * 不接受 null 键；删除留下墓碑和 arena 中的空洞，扩容或墓碑过多时一并整理。不是线程安全的
+ */
+public class Utf8StringMap<V> {
+    static final int DEFAULT_CAPACITY = 16;
+    static final float LOAD_FACTOR = 0.75f;
+    static final int EMPTY = -1;
+    static final int DELETED = -2;
+
+    private int[] hashes;
+    private int[] offsets;   // 键在 arena 中的起点；EMPTY / DELETED 表示空槽和墓碑
+    private int[] lengths;
+    private Object[] values;
+    private int size;
+    private int tombstones;
+
+    private byte[] arena;
+    private int arenaUsed;
+    private int arenaGarbage; // 已删除的键占用的字节
+
+    public Utf8StringMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public Utf8StringMap(int expectedSize) {
+        if (expectedSize < 0) throw new IllegalArgumentException("Illegal expected size: " + expectedSize);
+        allocate(MyHashMap.capacityFor(expectedSize, LOAD_FACTOR));
+        this.arena = new byte[Math.max(64, expectedSize * 16)];
+    }
+
+    private void allocate(int capacity) {
+        hashes = new int[capacity];
+        offsets = new int[capacity];
+        lengths = new int[capacity];
+        values = new Object[capacity];
+        Arrays.fill(offsets, EMPTY);
+    }
+
+    /* ----------------- 哈希：UTF-8 字节流上的 FNV-1a，再经 murmur3 混合 -------------------- */
+
+    private static final int FNV_OFFSET = 0x811c9dc5;
+    private static final int FNV_PRIME = 0x01000193;
+
+    static int hash(byte[] buf, int off, int len) {
+        int h = FNV_OFFSET;
+        for (int i = off; i < off + len; i++) {
+            h = (h ^ (buf[i] & 0xFF)) * FNV_PRIME;
+        }
+        return CuckooHashMap.mix(h);
+    }
+
+    /**
+     * 按 UTF-8 编码逐字节计算哈希，返回 (UTF-8 长度 << 32) | hash
+     */
+    static long hashAndLength(CharSequence s) {
+        int h = FNV_OFFSET;
+        int len = 0;
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                h = (h ^ c) * FNV_PRIME;
+                len++;
+                continue;
+            }
+            int cp = c;
+            if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                cp = Character.toCodePoint(c, s.charAt(++i));
+            } else if (Character.isSurrogate(c)) {
+                cp = '?';
+            }
+            int bytes = utf8Length(cp);
+            for (int k = 0; k < bytes; k++) {
+                h = (h ^ utf8Byte(cp, bytes, k)) * FNV_PRIME;
+            }
+            len += bytes;
+        }
+        return ((long) len << 32) | (CuckooHashMap.mix(h) & 0xFFFFFFFFL);
+    }
+
+    private static int utf8Length(int cp) {
+        return cp < 0x80 ? 1 : cp < 0x800 ? 2 : cp < 0x10000 ? 3 : 4;
+    }
+
+    /**
+     * 码点 cp 的 UTF-8 编码（共 bytes 个字节）中的第 k 个字节
+     */
+    private static int utf8Byte(int cp, int bytes, int k) {
+        if (k == 0) {
+            return switch (bytes) {
+                case 1 -> cp;
+                case 2 -> 0xC0 | (cp >>> 6);
+                case 3 -> 0xE0 | (cp >>> 12);
+                default -> 0xF0 | (cp >>> 18);
+            };
+        }
+        return 0x80 | ((cp >>> (6 * (bytes - 1 - k))) & 0x3F);
+    }
+
+    /* ----------------- 查找 -------------------- */
+
+    @SuppressWarnings("unchecked")
+    public V get(byte[] buf, int off, int len) {
+        int i = indexOf(buf, off, len);
+        return i < 0 ? null : (V) values[i];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(CharSequence key) {
+        int i = indexOf(key);
+        return i < 0 ? null : (V) values[i];
+    }
+
+    public boolean containsKey(byte[] buf, int off, int len) {
+        return indexOf(buf, off, len) >= 0;
+    }
+
+    public boolean containsKey(CharSequence key) {
+        return indexOf(key) >= 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private int indexOf(byte[] buf, int off, int len) {
+        Objects.checkFromIndexSize(off, len, buf.length);
+        int h = hash(buf, off, len);
+        int mask = offsets.length - 1;
+        for (int i = h & mask; ; i = (i + 1) & mask) {
+            int o = offsets[i];
+            if (o == EMPTY) return -1;
+            if (o >= 0 && hashes[i] == h && lengths[i] == len
+                    && Arrays.equals(arena, o, o + len, buf, off, off + len)) {
+                return i;
+            }
+        }
+    }
+
+    private int indexOf(CharSequence key) {
+        if (key == null) return -1;
+        long hl = hashAndLength(key);
+        int h = (int) hl, len = (int) (hl >>> 32);
+        int mask = offsets.length - 1;
+        for (int i = h & mask; ; i = (i + 1) & mask) {
+            int o = offsets[i];
+            if (o == EMPTY) return -1;
+            if (o >= 0 && hashes[i] == h && lengths[i] == len && equalsAt(key, o)) {
+                return i;
+            }
+        }
+    }
+
+    /**
+     * arena 中从 off 开始的字节是否等于 s 的 UTF-8 编码（长度已由调用方比较过）
+     */
+    private boolean equalsAt(CharSequence s, int off) {
+        byte[] a = arena;
+        int p = off;
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (a[p++] != c) return false;
+                continue;
+            }
+            int cp = c;
+            if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                cp = Character.toCodePoint(c, s.charAt(++i));
+            } else if (Character.isSurrogate(c)) {
+                cp = '?';
+            }
+            int bytes = utf8Length(cp);
+            for (int k = 0; k < bytes; k++) {
+                if ((a[p++] & 0xFF) != utf8Byte(cp, bytes, k)) return false;
+            }
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super String, ? super V> action) {
+        Objects.requireNonNull(action);
+        for (int i = 0; i < offsets.length; i++) {
+            int o = offsets[i];
+            if (o >= 0) action.accept(new String(arena, o, lengths[i], StandardCharsets.UTF_8), (V) values[i]);
+        }
+    }
+
+    /* ----------------- 修改 -------------------- */
+
+    /**
+     * 以 UTF-8 字节切片为键插入，调用方保证切片是合法的 UTF-8（与 String 编码结果一致才能被 get(CharSequence) 找到）
+     */
+    @SuppressWarnings("unchecked")
+    public V put(byte[] buf, int off, int len, V value) {
+        int i = indexOf(buf, off, len);
+        if (i >= 0) {
+            V old = (V) values[i];
+            values[i] = value;
+            return old;
+        }
+        int h = hash(buf, off, len);
+        int o = reserveArena(len);
+        System.arraycopy(buf, off, arena, o, len);
+        insert(h, o, len, value);
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(CharSequence key, V value) {
+        Objects.requireNonNull(key);
+        int i = indexOf(key);
+        if (i >= 0) {
+            V old = (V) values[i];
+            values[i] = value;
+            return old;
+        }
+        long hl = hashAndLength(key);
+        int len = (int) (hl >>> 32);
+        int o = reserveArena(len);
+        encode(key, o);
+        insert((int) hl, o, len, value);
+        return null;
+    }
+
+    public V remove(CharSequence key) {
+        int i = indexOf(key);
+        return i < 0 ? null : removeAt(i);
+    }
+
+    public V remove(byte[] buf, int off, int len) {
+        int i = indexOf(buf, off, len);
+        return i < 0 ? null : removeAt(i);
+    }
+
+    @SuppressWarnings("unchecked")
+    private V removeAt(int i) {
+        V old = (V) values[i];
+        arenaGarbage += lengths[i];
+        offsets[i] = DELETED;
+        values[i] = null;
+        size--;
+        tombstones++;
+        return old;
+    }
+
+    public void clear() {
+        Arrays.fill(offsets, EMPTY);
+        Arrays.fill(values, null);
+        size = tombstones = arenaUsed = arenaGarbage = 0;
+    }
+
+    private void encode(CharSequence s, int off) {
+        byte[] a = arena;
+        int p = off;
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                a[p++] = (byte) c;
+                continue;
+            }
+            int cp = c;
+            if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                cp = Character.toCodePoint(c, s.charAt(++i));
+            } else if (Character.isSurrogate(c)) {
+                cp = '?';
+            }
+            int bytes = utf8Length(cp);
+            for (int k = 0; k < bytes; k++) a[p++] = (byte) utf8Byte(cp, bytes, k);
+        }
+    }
+
+    /**
+     * 在 arena 末尾预留 len 字节，返回起点。空间不够时若一半以上是垃圾则先整理，否则扩大
+     */
+    private int reserveArena(int len) {
+        if (arenaUsed + len > arena.length) {
+            if (arenaGarbage > arenaUsed / 2) {
+                rehash(offsets.length, 0);
+            }
+            if (arenaUsed + len > arena.length) {
+                long want = Math.max((long) arena.length << 1, (long) arenaUsed + len);
+                if (want > Integer.MAX_VALUE - 8) throw new OutOfMemoryError("String arena exceeds 2GB");
+                arena = Arrays.copyOf(arena, (int) want);
+            }
+        }
+        int o = arenaUsed;
+        arenaUsed += len;
+        return o;
+    }
+
+    private void insert(int h, int off, int len, Object value) {
+        if (size + tombstones + 1 > offsets.length * LOAD_FACTOR) {
+            // 墓碑多时原容量重建即可，否则扩容
+            // rehash 会整理 arena，刚写入 arena 末尾的键要跟着搬移
+            rehash(size + 1 > offsets.length * LOAD_FACTOR / 2 ? offsets.length << 1 : offsets.length, len);
+            off = arenaUsed - len;
+        }
+        int mask = offsets.length - 1;
+        int i = h & mask;
+        while (offsets[i] >= 0) i = (i + 1) & mask;
+        if (offsets[i] == DELETED) tombstones--;
+        hashes[i] = h;
+        offsets[i] = off;
+        lengths[i] = len;
+        values[i] = value;
+        size++;
+    }
+
+    /**
+     * 按新容量重建表并整理 arena：只保留仍在表中的键，以及 arena 末尾 pending 字节的、尚未登记的新键
+     */
+    private void rehash(int capacity, int pending) {
+        int[] oldHashes = hashes, oldOffsets = offsets, oldLengths = lengths;
+        Object[] oldValues = values;
+        byte[] oldArena = arena;
+        int oldUsed = arenaUsed;
+        int live = arenaUsed - arenaGarbage;
+        allocate(capacity);
+        arena = new byte[Math.max(oldArena.length, live + 64)];
+        arenaUsed = 0;
+        arenaGarbage = 0;
+        tombstones = 0;
+        int mask = capacity - 1;
+        for (int j = 0; j < oldOffsets.length; j++) {
+            int o = oldOffsets[j];
+            if (o < 0) continue;
+            int len = oldLengths[j];
+            int no = arenaUsed;
+            System.arraycopy(oldArena, o, arena, no, len);
+            arenaUsed += len;
+            int i = oldHashes[j] & mask;
+            while (offsets[i] != EMPTY) i = (i + 1) & mask;
+            hashes[i] = oldHashes[j];
+            offsets[i] = no;
+            lengths[i] = oldLengths[j];
+            values[i] = oldValues[j];
+        }
+        System.arraycopy(oldArena, oldUsed - pending, arena, arenaUsed, pending);
+        arenaUsed += pending;
+    }
+}
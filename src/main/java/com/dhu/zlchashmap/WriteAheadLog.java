@@ -0,0 +1,276 @@
+package com.dhu.zlchashmap;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * 追加写日志，按代（generation）分段存放：wal-00000000.log, wal-00000001.log ...
+ * <p>
+ * 段格式：[int MAGIC][int VERSION] 之后是若干记录，每条记录为
+ * [int 负载长度][int 负载的 CRC32C][负载]。
+ * <p>
+ * 追加只写入内存缓冲并返回 LSN（自打开以来追加的总字节数）；
+ * 需要落盘的线程调用 {@link #flushUpTo}，第一个到达的线程成为 leader，
+ * 一次性写出并 fsync 所有已追加的记录，其余线程等待，这就是 group commit
+ */
+final class WriteAheadLog implements Closeable {
+    static final int MAGIC = 0x5A4C4357; // "ZLCW"
+    static final int VERSION = 2;
+    static final int SEGMENT_HEADER_SIZE = 8;
+    static final int RECORD_HEADER_SIZE = 8;
+    static final int MAX_RECORD_SIZE = 64 << 20;
+
+    private final Path dir;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushed = lock.newCondition();
+    private final CRC32C crc = new CRC32C(); // 仅在持有 lock 时使用
+
+    private FileChannel channel;
+    private long generation;
+    private long segmentBytes;   // 当前段已追加的字节数（含未写出的缓冲）
+    private ByteBuffer pending;  // 已追加但还未写入 channel 的记录
+    private ByteBuffer spare;    // 双缓冲：leader 写出 pending 时，新的追加进入 spare
+    private long appendedLsn;
+    private long writtenLsn;
+    private long syncedLsn;
+    private boolean flushing;
+    private IOException failure;
+
+    WriteAheadLog(Path dir, long generation) throws IOException {
+        this.dir = dir;
+        this.pending = ByteBuffer.allocate(64 * 1024);
+        this.spare = ByteBuffer.allocate(64 * 1024);
+        openSegment(generation);
+    }
+
+    static Path segmentPath(Path dir, long generation) {
+        return dir.resolve(String.format("wal-%08d.log", generation));
+    }
+
+    private void openSegment(long gen) throws IOException {
+        FileChannel ch = FileChannel.open(segmentPath(dir, gen),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip();
+        while (header.hasRemaining()) ch.write(header);
+        ch.force(true);
+        this.channel = ch;
+        this.generation = gen;
+        this.segmentBytes = SEGMENT_HEADER_SIZE;
+    }
+
+    /**
+     * 追加一条记录，返回写完这条记录后的 LSN
+     */
+    long append(byte[] payload, int off, int len) throws IOException {
+        if (len > MAX_RECORD_SIZE) throw new IOException("Record too large: " + len);
+        lock.lock();
+        try {
+            checkFailure();
+            int need = RECORD_HEADER_SIZE + len;
+            if (pending.remaining() < need) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(pending.capacity() << 1, pending.position() + need));
+                pending.flip();
+                bigger.put(pending);
+                pending = bigger;
+            }
+            crc.reset();
+            crc.update(payload, off, len);
+            pending.putInt(len).putInt((int) crc.getValue()).put(payload, off, len);
+            appendedLsn += need;
+            segmentBytes += need;
+            return appendedLsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 保证 LSN 之前的记录已写入 channel；force 为 true 时还保证已 fsync
+     */
+    void flushUpTo(long lsn, boolean force) throws IOException {
+        lock.lock();
+        try {
+            while (true) {
+                checkFailure();
+                if ((force ? syncedLsn : writtenLsn) >= lsn) {
+                    return;
+                }
+                if (flushing) {
+                    // 已有 leader 在写，等它完成后再检查一次（它可能已经顺带写出了我们的记录）
+                    flushed.awaitUninterruptibly();
+                    continue;
+                }
+                flushing = true;
+                ByteBuffer buf = pending;
+                pending = spare;
+                spare = buf;
+                long upTo = appendedLsn;
+                FileChannel ch = channel;
+                IOException err = null;
+                lock.unlock();
+                try {
+                    buf.flip();
+                    while (buf.hasRemaining()) ch.write(buf);
+                    if (force) ch.force(false);
+                } catch (IOException e) {
+                    err = e;
+                } finally {
+                    buf.clear();
+                    lock.lock();
+                }
+                flushing = false;
+                if (err != null) {
+                    failure = err;
+                } else {
+                    writtenLsn = upTo;
+                    if (force) syncedLsn = upTo;
+                }
+                flushed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void sync() throws IOException {
+        flushUpTo(appendedLsn(), true);
+    }
+
+    long appendedLsn() {
+        lock.lock();
+        try {
+            return appendedLsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long segmentBytes() {
+        lock.lock();
+        try {
+            return segmentBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long generation() {
+        lock.lock();
+        try {
+            return generation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 封存当前段（写出并 fsync），切换到下一代新段，返回被封存段的代号
+     */
+    long rotate() throws IOException {
+        lock.lock();
+        try {
+            while (flushing) flushed.awaitUninterruptibly();
+            checkFailure();
+            pending.flip();
+            while (pending.hasRemaining()) channel.write(pending);
+            pending.clear();
+            channel.force(true);
+            channel.close();
+            writtenLsn = syncedLsn = appendedLsn;
+            long sealed = generation;
+            openSegment(sealed + 1);
+            flushed.signalAll();
+            return sealed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) throw new IOException("Write-ahead log failed", failure);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            lock.lock();
+            try {
+                channel.close();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /* ----------------- 读取/恢复 -------------------- */
+
+    interface RecordVisitor {
+        void visit(byte[] payload) throws IOException;
+    }
+
+    /**
+     * 顺序读取一个段，对每条校验通过的记录回调 visitor。
+     * 遇到撕裂的尾部（长度不完整、负载不完整或 CRC 不匹配）即停止，
+     * 返回最后一条完整记录的结束位置，调用方据此截断
+     */
+    static long scan(Path file, RecordVisitor visitor) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(ch), 64 * 1024))) {
+            long fileSize = ch.size();
+            if (fileSize < SEGMENT_HEADER_SIZE) return 0; // 连段头都没写完
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a write-ahead log segment: " + file);
+            }
+            long valid = SEGMENT_HEADER_SIZE;
+            CRC32C checksum = new CRC32C();
+            while (true) {
+                int len;
+                int expected;
+                byte[] payload;
+                try {
+                    len = in.readInt();
+                    expected = in.readInt();
+                    if (len < 0 || len > MAX_RECORD_SIZE || valid + RECORD_HEADER_SIZE + len > fileSize) {
+                        return valid;
+                    }
+                    payload = new byte[len];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    return valid;
+                }
+                checksum.reset();
+                checksum.update(payload, 0, len);
+                if ((int) checksum.getValue() != expected) {
+                    return valid;
+                }
+                visitor.visit(payload);
+                valid += RECORD_HEADER_SIZE + len;
+            }
+        }
+    }
+
+    /**
+     * 把段截断到 validLength，丢弃撕裂的尾部
+     */
+    static void truncate(Path file, long validLength) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            if (ch.size() > validLength) {
+                ch.truncate(validLength);
+                ch.force(true);
+            }
+        }
+    }
+}
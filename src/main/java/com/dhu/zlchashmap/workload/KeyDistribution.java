@@ -0,0 +1,145 @@
+package com.dhu.zlchashmap.workload;
+
+import java.util.SplittableRandom;
+
+/**
+ * 键的访问分布。采样结果是 [0, keySpace) 内的下标，对应的键对象预先生成，测量期间不分配
+ */
+public enum KeyDistribution {
+    /**
+     * 均匀分布
+     */
+    UNIFORM,
+    /**
+     * Zipf 分布（theta = 0.99，与 YCSB 默认值相同），少数热点键占大部分访问。
+     * 与 YCSB 的 ScrambledZipfian 一样，名次经过 FNV 散列再映射到键，热点键不会是相邻的整数、落在相邻的桶里
+     */
+    ZIPFIAN,
+    /**
+     * 每个工作线程从自己的起点开始顺序访问，到末尾后回绕
+     */
+    SEQUENTIAL,
+    /**
+     * 均匀访问，但键的 hashCode 只有 COLLISION_CLASSES 种取值，大部分桶会树化
+     */
+    COLLISION_HEAVY;
+
+    static final int COLLISION_CLASSES = 64;
+    static final double ZIPF_THETA = 0.99;
+
+    public interface Sampler {
+        int next(SplittableRandom random);
+    }
+
+    /**
+     * 生成键对象。COLLISION_HEAVY 使用 hash 冲突的 CollidingKey，其余使用 Integer
+     */
+    public Object[] keys(int keySpace) {
+        Object[] keys = new Object[keySpace];
+        for (int i = 0; i < keySpace; i++) {
+            keys[i] = this == COLLISION_HEAVY ? new CollidingKey(i) : Integer.valueOf(i);
+        }
+        return keys;
+    }
+
+    /**
+     * 每个工作线程创建一个采样器；ZIPFIAN 的预计算结果在线程间共享
+     */
+    public Sampler sampler(int keySpace, int worker, int workers, Object shared) {
+        return switch (this) {
+            case UNIFORM, COLLISION_HEAVY -> r -> r.nextInt(keySpace);
+            case ZIPFIAN -> ((Zipfian) shared)::next;
+            case SEQUENTIAL -> new Sampler() {
+                int cursor = (int) ((long) keySpace * worker / Math.max(workers, 1));
+
+                @Override
+                public int next(SplittableRandom random) {
+                    int k = cursor;
+                    cursor = k + 1 == keySpace ? 0 : k + 1;
+                    return k;
+                }
+            };
+        };
+    }
+
+    /**
+     * 所有工作线程共享的预计算状态（只有 ZIPFIAN 需要）
+     */
+    public Object prepare(int keySpace) {
+        return this == ZIPFIAN ? new Zipfian(keySpace, ZIPF_THETA) : null;
+    }
+
+    /**
+     * Gray 等人 "Quickly Generating Billion-Record Synthetic Databases" 中的算法，YCSB 使用的同一实现
+     */
+    static final class Zipfian {
+        private final int items;
+        private final double theta;
+        private final double zetan;
+        private final double alpha;
+        private final double eta;
+
+        Zipfian(int items, double theta) {
+            this.items = items;
+            this.theta = theta;
+            double zeta2 = zeta(2, theta);
+            this.zetan = zeta(items, theta);
+            this.alpha = 1.0 / (1.0 - theta);
+            this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta2 / zetan);
+        }
+
+        private static double zeta(long n, double theta) {
+            double sum = 0;
+            for (long i = 1; i <= n; i++) sum += 1 / Math.pow(i, theta);
+            return sum;
+        }
+
+        /**
+         * 按名次采样后打散：名次 0 最热，打散后映射到 [0, items) 中看似随机的位置（不保证一一对应，与 YCSB 相同）
+         */
+        int next(SplittableRandom random) {
+            return (int) Long.remainderUnsigned(fnv64(rank(random)), items);
+        }
+
+        private int rank(SplittableRandom random) {
+            double u = random.nextDouble();
+            double uz = u * zetan;
+            if (uz < 1.0) return 0;
+            if (uz < 1.0 + Math.pow(0.5, theta)) return Math.min(1, items - 1);
+            int k = (int) (items * Math.pow(eta * u - eta + 1, alpha));
+            return Math.min(k, items - 1);
+        }
+
+        /**
+         * 64 位 FNV-1a，逐字节处理 rank 的 8 个字节（低字节在前）
+         */
+        static long fnv64(long rank) {
+            long h = 0xCBF29CE484222325L;
+            for (int i = 0; i < 8; i++) {
+                h ^= (rank >>> (i << 3)) & 0xff;
+                h *= 0x100000001B3L;
+            }
+            return h;
+        }
+    }
+
+    /**
+     * hashCode 故意大量冲突的键；实现 Comparable，冲突的桶树化后仍能按键排序
+     */
+    public record CollidingKey(int id) implements Comparable<CollidingKey> {
+        @Override
+        public int hashCode() {
+            return id % COLLISION_CLASSES;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CollidingKey k && k.id == id;
+        }
+
+        @Override
+        public int compareTo(CollidingKey o) {
+            return Integer.compare(id, o.id);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.dhu.zlchashmap.workload;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * HdrHistogram 风格的对数分桶直方图，记录纳秒级延迟，线程安全。
+ * <p>
+ * 小于 2^PRECISION_BITS 的值逐个计数；更大的值按最高位所在的量级分桶，
+ * 每个量级再均分为 HALF 个子桶，所以相对误差不超过 1/HALF（约 0.2%）。
+ * 下标计算只有几次移位，适合在热路径上记录
+ */
+public final class LatencyHistogram {
+    static final int PRECISION_BITS = 10;
+    static final int HALF = 1 << (PRECISION_BITS - 1);
+    static final int MAX_MAGNITUDE = 42; // 可记录到 2^42 ns（约 73 分钟），超过的值按最大值记录
+    static final long MAX_VALUE = (1L << MAX_MAGNITUDE) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(indexOf(MAX_VALUE) + 1);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    static int indexOf(long value) {
+        int msb = 63 - Long.numberOfLeadingZeros(value | 1);
+        if (msb < PRECISION_BITS) {
+            return (int) value;
+        }
+        int shift = msb - (PRECISION_BITS - 1);
+        return shift * HALF + (int) (value >>> shift);
+    }
+
+    /**
+     * 下标对应区间的上界（HdrHistogram 的 highestEquivalentValue）
+     */
+    static long highestValueAt(int index) {
+        if (index < 2 * HALF) {
+            return index;
+        }
+        int shift = index / HALF - 1;
+        long m = index - (long) shift * HALF;
+        return ((m + 1) << shift) - 1;
+    }
+
+    public void record(long nanos) {
+        long v = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        counts.incrementAndGet(indexOf(v));
+        total.incrementAndGet();
+        long m;
+        while (v > (m = max.get()) && !max.compareAndSet(m, v)) {
+            // 重试
+        }
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length(); i++) {
+            long c = other.counts.get(i);
+            if (c != 0) counts.addAndGet(i, c);
+        }
+        total.addAndGet(other.total.get());
+        long m;
+        long v = other.max.get();
+        while (v > (m = max.get()) && !max.compareAndSet(m, v)) {
+            // 重试
+        }
+    }
+
+    public long count() {
+        return total.get();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * percentile 取值 [0, 100]
+     */
+    public long valueAtPercentile(double percentile) {
+        long n = total.get();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestValueAt(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) counts.set(i, 0);
+        total.set(0);
+        max.set(0);
+    }
+}
@@ -0,0 +1,187 @@
+package com.dhu.zlchashmap.workload;
+
+import com.dhu.zlchashmap.MyConcurrentHashMap;
+import com.dhu.zlchashmap.MyHashMap;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 负载驱动使用的统一映射接口。非线程安全的实现用一把锁包起来，
+ * 模拟业务中"MyHashMap 外面套一把锁"的用法；用 ReentrantLock 而不是 synchronized，避免钉住虚拟线程
+ */
+public interface MapTarget {
+
+    Object get(Object key);
+
+    Object put(Object key, Object value);
+
+    Object remove(Object key);
+
+    boolean containsKey(Object key);
+
+    int size();
+
+    String name();
+
+    /**
+     * 按名称创建：myhashmap、concurrent、hashmap、jdk-concurrent
+     */
+    static MapTarget create(String kind, int expectedSize) {
+        return switch (kind) {
+            case "myhashmap" -> new Locked(of(new MyHashMap<>(expectedSize, 0.75f)));
+            case "concurrent" -> of(new MyConcurrentHashMap<>(expectedSize));
+            case "hashmap" -> new Locked(of("hashmap", new HashMap<>(expectedSize)));
+            case "jdk-concurrent" -> of("jdk-concurrent", new ConcurrentHashMap<>(expectedSize));
+            default -> throw new IllegalArgumentException("Unknown map: " + kind
+                    + " (expected myhashmap, concurrent, hashmap or jdk-concurrent)");
+        };
+    }
+
+    static MapTarget of(MyHashMap<Object, Object> map) {
+        return new MapTarget() {
+            public Object get(Object key) {
+                return map.get(key);
+            }
+
+            public Object put(Object key, Object value) {
+                return map.put(key, value);
+            }
+
+            public Object remove(Object key) {
+                return map.remove(key);
+            }
+
+            public boolean containsKey(Object key) {
+                return map.containsKey(key);
+            }
+
+            public int size() {
+                return map.size();
+            }
+
+            public String name() {
+                return "myhashmap";
+            }
+        };
+    }
+
+    static MapTarget of(MyConcurrentHashMap<Object, Object> map) {
+        return new MapTarget() {
+            public Object get(Object key) {
+                return map.get(key);
+            }
+
+            public Object put(Object key, Object value) {
+                return map.put(key, value);
+            }
+
+            public Object remove(Object key) {
+                return map.remove(key);
+            }
+
+            public boolean containsKey(Object key) {
+                return map.containsKey(key);
+            }
+
+            public int size() {
+                return map.size();
+            }
+
+            public String name() {
+                return "concurrent";
+            }
+        };
+    }
+
+    static MapTarget of(String name, Map<Object, Object> map) {
+        return new MapTarget() {
+            public Object get(Object key) {
+                return map.get(key);
+            }
+
+            public Object put(Object key, Object value) {
+                return map.put(key, value);
+            }
+
+            public Object remove(Object key) {
+                return map.remove(key);
+            }
+
+            public boolean containsKey(Object key) {
+                return map.containsKey(key);
+            }
+
+            public int size() {
+                return map.size();
+            }
+
+            public String name() {
+                return name;
+            }
+        };
+    }
+
+    /**
+     * 用一把锁串行化所有操作
+     */
+    final class Locked implements MapTarget {
+        private final MapTarget delegate;
+        private final ReentrantLock lock = new ReentrantLock();
+
+        public Locked(MapTarget delegate) {
+            this.delegate = delegate;
+        }
+
+        public Object get(Object key) {
+            lock.lock();
+            try {
+                return delegate.get(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public Object put(Object key, Object value) {
+            lock.lock();
+            try {
+                return delegate.put(key, value);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public Object remove(Object key) {
+            lock.lock();
+            try {
+                return delegate.remove(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public boolean containsKey(Object key) {
+            lock.lock();
+            try {
+                return delegate.containsKey(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public int size() {
+            lock.lock();
+            try {
+                return delegate.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public String name() {
+            return delegate.name();
+        }
+    }
+}
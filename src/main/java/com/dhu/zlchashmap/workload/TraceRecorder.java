@@ -0,0 +1,197 @@
+package com.dhu.zlchashmap.workload;
+
+import com.dhu.zlchashmap.Hash64;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.ToLongFunction;
+
+/**
+ * 把映射操作记录成紧凑的二进制轨迹文件。
+ * <p>
+ * 热路径只往当前块的 long[] 里写两个字（操作+hash、键指纹），块写满后交给后台线程编码写盘，
+ * 再从空闲队列取一个回收的块继续。后台来不及写、空闲块耗尽时丢弃整块并计数，而不是阻塞调用方。
+ * <p>
+ * 与 MyHashMap 一样不是线程安全的：同一时刻只能有一个线程调用 record（通常与被包装的映射共用一把锁）。
+ * <p>
+ * 重放时 hashCode 和指纹都相同的键被视为同一个键。默认的指纹：字符串（按内容，不区分 CharSequence 的具体类型）、
+ * 整数类（按数值）和 byte[] 由 {@link #fingerprint(Object)} 按值计算，跨录制稳定；其他类型的键无法按值区分，
+ * 改为记录本录制器内按 equals 分配的序号，保证 hashCode 冲突的不同键在重放时仍是不同的键，
+ * 代价是录制器在关闭前一直持有这些键，且序号只在同一个轨迹文件内有意义。需要跨文件稳定时可以传入自定义指纹函数。
+ * <p>
+ * 文件格式：[int MAGIC][byte VERSION][long 开始时间 epoch 毫秒]，之后是若干块：
+ * [int 条目数][long 块开始 ns][long 块结束 ns][int 此前丢弃的条目数]，
+ * 每个条目 [byte 操作][int 键的 hashCode][long 键指纹]，时间都相对于轨迹开始
+ */
+public final class TraceRecorder implements Closeable {
+    static final int MAGIC = 0x5A4C4354; // "ZLCT"
+    static final int VERSION = 1;
+
+    public static final byte OP_GET = 0;
+    public static final byte OP_PUT = 1;
+    public static final byte OP_REMOVE = 2;
+    public static final byte OP_CONTAINS_KEY = 3;
+
+    static final int DEFAULT_CHUNK_ENTRIES = 8192;
+    static final int DEFAULT_CHUNKS = 16;
+
+    private final DataOutputStream out;
+    private final long originNanos;
+    private final BlockingQueue<Chunk> full;
+    private final BlockingQueue<Chunk> free;
+    private final Thread writer;
+    private final ToLongFunction<Object> fingerprinter;
+    private final Map<Object, Long> ordinals = new HashMap<>(); // 默认指纹给非值类型的键分配的序号
+    private Chunk current;
+    private long dropped;        // 热路径线程维护
+    private volatile IOException failure;
+    private boolean closed;
+
+    public TraceRecorder(Path file) throws IOException {
+        this(file, DEFAULT_CHUNK_ENTRIES, DEFAULT_CHUNKS);
+    }
+
+    public TraceRecorder(Path file, int chunkEntries, int chunks) throws IOException {
+        this(file, chunkEntries, chunks, null);
+    }
+
+    /**
+     * @param fingerprinter 键的指纹函数，同一个键必须得到同一个值；为 null 时使用默认指纹（见类注释）
+     */
+    public TraceRecorder(Path file, int chunkEntries, int chunks, ToLongFunction<Object> fingerprinter) throws IOException {
+        if (chunkEntries <= 0 || chunks < 2)
+            throw new IllegalArgumentException("Need positive chunk size and at least two chunks");
+        this.fingerprinter = fingerprinter != null ? fingerprinter : this::defaultFingerprint;
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(System.currentTimeMillis());
+        this.originNanos = System.nanoTime();
+        this.full = new ArrayBlockingQueue<>(chunks);
+        this.free = new ArrayBlockingQueue<>(chunks);
+        for (int i = 1; i < chunks; i++) free.add(new Chunk(chunkEntries));
+        this.current = new Chunk(chunkEntries);
+        this.writer = Thread.ofPlatform().name("trace-writer").daemon(true).start(this::drain);
+    }
+
+    /**
+     * 按值计算的指纹（Hash64 混合后的结果）：同一个键必须得到同一个值；对字符串、整数类和 byte[]，
+     * 不同键碰撞的概率远低于 hashCode。其他类型只能由类名和 hashCode 派生，hashCode 相同的不同键会得到相同的指纹
+     */
+    public static long fingerprint(Object key) {
+        return key == null ? 0 : Hash64.mix(Hash64.of(key));
+    }
+
+    private long defaultFingerprint(Object key) {
+        if (Hash64.isValueBased(key)) return fingerprint(key);
+        Long ordinal = ordinals.get(key);
+        if (ordinal == null) {
+            ordinal = (long) ordinals.size();
+            ordinals.put(key, ordinal);
+        }
+        // 取反后再混合，与按值计算的指纹分属不同的输入，相撞只是 64 位哈希的偶然碰撞
+        return Hash64.mix(~ordinal);
+    }
+
+    public void record(byte op, Object key) {
+        Chunk c = current;
+        if (c.size == 0) {
+            c.start = System.nanoTime() - originNanos; // 每块只取一次时间
+        }
+        int i = c.size << 1;
+        c.words[i] = ((long) op << 32) | ((key == null ? 0 : key.hashCode()) & 0xFFFFFFFFL);
+        c.words[i + 1] = fingerprinter.applyAsLong(key);
+        if (++c.size == c.capacity) {
+            handOff();
+        }
+    }
+
+    private void handOff() {
+        long now = System.nanoTime() - originNanos;
+        Chunk c = current;
+        c.end = now;
+        c.droppedBefore = dropped;
+        Chunk next = free.poll();
+        if (next == null || !full.offer(c)) {
+            // 后台写盘跟不上：丢弃这一块，继续复用它
+            if (next != null) free.add(next);
+            dropped += c.size;
+            next = c;
+        }
+        next.size = 0;
+        current = next;
+    }
+
+    public long dropped() {
+        return dropped;
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                Chunk c = full.take();
+                if (c.capacity == 0) return; // 结束标记
+                try {
+                    out.writeInt(c.size);
+                    out.writeLong(c.start);
+                    out.writeLong(c.end);
+                    out.writeInt((int) Math.min(c.droppedBefore, Integer.MAX_VALUE));
+                    for (int i = 0; i < c.size; i++) {
+                        long w = c.words[i << 1];
+                        out.writeByte((int) (w >>> 32));
+                        out.writeInt((int) w);
+                        out.writeLong(c.words[(i << 1) + 1]);
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                }
+                free.put(c);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        Chunk last = current;
+        last.end = System.nanoTime() - originNanos;
+        last.droppedBefore = dropped;
+        try {
+            // 即使最后一块为空也写出，用来携带最终的丢弃计数
+            full.put(last);
+            full.put(new Chunk(0));
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while flushing trace", e);
+        }
+        out.close();
+        ordinals.clear();
+        if (failure != null) throw failure;
+    }
+
+    static final class Chunk {
+        final int capacity;
+        final long[] words;
+        int size;
+        long start;
+        long end;
+        long droppedBefore;
+
+        Chunk(int capacity) {
+            this.capacity = capacity;
+            this.words = new long[capacity << 1];
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.dhu.zlchashmap.workload;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把 TraceRecorder 录制的轨迹重放到任意 MapTarget 上，按录制时的时间窗口划分阶段并分别计时。
+ * <p>
+ * 轨迹中只有 hashCode 和指纹，重放时用 TraceKey 还原：hashCode 与原键相同，
+ * 所以桶分布、冲突和树化情况与录制时一致。每个阶段先解码并驻留键对象，再计时执行，
+ * 解码开销不计入结果
+ */
+public final class TraceReplayer {
+    private final Path trace;
+    private final long phaseNanos;
+
+    public TraceReplayer(Path trace, long phaseNanos) {
+        if (phaseNanos <= 0) throw new IllegalArgumentException("Illegal phase length: " + phaseNanos);
+        this.trace = trace;
+        this.phaseNanos = phaseNanos;
+    }
+
+    /**
+     * 用法：TraceReplayer 轨迹文件 [目标映射=concurrent] [阶段秒数=60]
+     */
+    public static void main(String... args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: TraceReplayer <trace> [myhashmap|concurrent|hashmap|jdk-concurrent] [phase-seconds]");
+            return;
+        }
+        String map = args.length > 1 ? args[1] : "concurrent";
+        long phase = TimeUnit.SECONDS.toNanos(args.length > 2 ? Long.parseLong(args[2]) : 60);
+        List<Phase> phases = new TraceReplayer(Path.of(args[0]), phase).replay(MapTarget.create(map, 16));
+        print(phases, System.out);
+    }
+
+    /**
+     * 重放结果：一个阶段对应录制时间轴上的一个窗口
+     */
+    public record Phase(int index, long recordedStartNanos, long recordedNanos, long operations,
+                        long replayNanos, long dropped) {
+        public double replayThroughput() {
+            return replayNanos == 0 ? 0 : operations * 1e9 / replayNanos;
+        }
+    }
+
+    public List<Phase> replay(MapTarget target) throws IOException {
+        List<Phase> phases = new ArrayList<>();
+        Map<TraceKey, TraceKey> interned = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(trace), 64 * 1024))) {
+            if (in.readInt() != TraceRecorder.MAGIC || in.readUnsignedByte() != TraceRecorder.VERSION) {
+                throw new IOException("Not a trace file: " + trace);
+            }
+            in.readLong(); // 录制开始时间，仅供参考
+
+            PhaseBuffer buf = new PhaseBuffer();
+            long droppedSoFar = 0;
+            while (true) {
+                int count;
+                try {
+                    count = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                long start = in.readLong();
+                long end = in.readLong();
+                long dropped = in.readInt();
+                if (count == 0) {
+                    droppedSoFar = dropped; // 结尾的空块只携带丢弃计数
+                    continue;
+                }
+                int phase = (int) (start / phaseNanos);
+                if (buf.size > 0 && phase != buf.phase) {
+                    phases.add(buf.run(target, droppedSoFar));
+                    buf.clear();
+                }
+                if (buf.size == 0) {
+                    buf.phase = phase;
+                    buf.start = start;
+                }
+                buf.end = end;
+                droppedSoFar = dropped;
+                for (int i = 0; i < count; i++) {
+                    byte op = in.readByte();
+                    int hash = in.readInt();
+                    long fingerprint = in.readLong();
+                    TraceKey key = interned.computeIfAbsent(new TraceKey(hash, fingerprint), k -> k);
+                    buf.add(op, key);
+                }
+            }
+            if (buf.size > 0) {
+                phases.add(buf.run(target, droppedSoFar));
+            }
+        }
+        return phases;
+    }
+
+    public static void print(List<Phase> phases, PrintStream out) {
+        out.printf("%-6s %12s %12s %12s %14s %10s%n", "phase", "start(s)", "ops", "replay(ms)", "ops/s", "dropped");
+        long ops = 0, nanos = 0;
+        for (Phase p : phases) {
+            out.printf("%-6d %12.1f %12d %12.2f %14.0f %10d%n", p.index(), p.recordedStartNanos() / 1e9,
+                    p.operations(), p.replayNanos() / 1e6, p.replayThroughput(), p.dropped());
+            ops += p.operations();
+            nanos += p.replayNanos();
+        }
+        out.printf("%-6s %12s %12d %12.2f %14.0f%n", "total", "", ops, nanos / 1e6, nanos == 0 ? 0 : ops * 1e9 / nanos);
+    }
+
+    private final class PhaseBuffer {
+        int phase;
+        long start;
+        long end;
+        byte[] ops = new byte[1024];
+        TraceKey[] keys = new TraceKey[1024];
+        int size;
+
+        void add(byte op, TraceKey key) {
+            if (size == ops.length) {
+                ops = java.util.Arrays.copyOf(ops, size << 1);
+                keys = java.util.Arrays.copyOf(keys, size << 1);
+            }
+            ops[size] = op;
+            keys[size] = key;
+            size++;
+        }
+
+        void clear() {
+            java.util.Arrays.fill(keys, 0, size, null);
+            size = 0;
+        }
+
+        Phase run(MapTarget target, long dropped) {
+            long begin = System.nanoTime();
+            for (int i = 0; i < size; i++) {
+                TraceKey k = keys[i];
+                switch (ops[i]) {
+                    case TraceRecorder.OP_GET -> target.get(k);
+                    case TraceRecorder.OP_PUT -> target.put(k, k);
+                    case TraceRecorder.OP_REMOVE -> target.remove(k);
+                    case TraceRecorder.OP_CONTAINS_KEY -> target.containsKey(k);
+                    default -> throw new IllegalStateException("Unknown trace operation: " + ops[i]);
+                }
+            }
+            long elapsed = System.nanoTime() - begin;
+            return new Phase(phase, start, end - start, size, elapsed, dropped);
+        }
+    }
+
+    /**
+     * 重放用的键：hashCode 与录制时的原键相同，相等性由 hashCode 和指纹共同决定，按指纹排序供树桶使用
+     */
+    public record TraceKey(int hash, long fingerprint) implements Comparable<TraceKey> {
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof TraceKey k && k.hash == hash && k.fingerprint == fingerprint;
+        }
+
+        @Override
+        public int compareTo(TraceKey o) {
+            return Long.compare(fingerprint, o.fingerprint);
+        }
+    }
+}
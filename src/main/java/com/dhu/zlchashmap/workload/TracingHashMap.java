@@ -0,0 +1,44 @@
+package com.dhu.zlchashmap.workload;
+
+import com.dhu.zlchashmap.MyHashMap;
+
+/**
+ * 可直接替换 MyHashMap 的录制版本：put/get/remove/containsKey 在执行前把操作交给 TraceRecorder。
+ * 录制器的生命周期由调用方管理
+ */
+public class TracingHashMap<K, V> extends MyHashMap<K, V> {
+    private final TraceRecorder recorder;
+
+    public TracingHashMap(TraceRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    public TracingHashMap(int initialCapacity, float loadFactor, TraceRecorder recorder) {
+        super(initialCapacity, loadFactor);
+        this.recorder = recorder;
+    }
+
+    @Override
+    public V get(Object key) {
+        recorder.record(TraceRecorder.OP_GET, key);
+        return super.get(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        recorder.record(TraceRecorder.OP_PUT, key);
+        return super.put(key, value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        recorder.record(TraceRecorder.OP_REMOVE, key);
+        return super.remove(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        recorder.record(TraceRecorder.OP_CONTAINS_KEY, key);
+        return super.containsKey(key);
+    }
+}
@@ -0,0 +1,92 @@
+package com.dhu.zlchashmap.workload;
+
+/**
+ * 负载参数，命令行形式为 --name=value：
+ * <pre>
+ * --map=myhashmap|concurrent|hashmap|jdk-concurrent   目标实现（默认 concurrent）
+ * --threads=platform|virtual                           线程类型（默认 platform）
+ * --concurrency=N                                      工作线程数（默认 8）
+ * --mix=读:写:删                                        操作比例（默认 80:15:5）
+ * --keys=N                                             键空间大小（默认 100000）
+ * --dist=uniform|zipfian|sequential|collision-heavy    键分布（默认 uniform）
+ * --prefill=F                                          预先写入的键比例（默认 0.5）
+ * --rate=N                                             目标总吞吐（次/秒），0 表示闭环压测（默认 0）
+ * --warmup=S --duration=S                              预热和测量时长（秒，默认 2 和 10）
+ * --seed=N                                             随机种子
+ * </pre>
+ * 指定 rate 时按计划时间发送请求，延迟从计划发送时间算起，从而修正协调遗漏
+ */
+public final class WorkloadConfig {
+    String map = "concurrent";
+    boolean virtualThreads;
+    int concurrency = 8;
+    int readPercent = 80;
+    int writePercent = 15;
+    int removePercent = 5;
+    int keySpace = 100_000;
+    KeyDistribution distribution = KeyDistribution.UNIFORM;
+    double prefill = 0.5;
+    long rate;
+    long warmupSeconds = 2;
+    long durationSeconds = 10;
+    long seed = 42;
+
+    public static WorkloadConfig parse(String... args) {
+        WorkloadConfig c = new WorkloadConfig();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            switch (name) {
+                case "map" -> c.map = value;
+                case "threads" -> c.virtualThreads = switch (value) {
+                    case "platform" -> false;
+                    case "virtual" -> true;
+                    default -> throw new IllegalArgumentException("Unknown thread kind: " + value);
+                };
+                case "concurrency" -> c.concurrency = Integer.parseInt(value);
+                case "mix" -> {
+                    String[] parts = value.split(":");
+                    if (parts.length != 3) throw new IllegalArgumentException("Mix must be read:write:remove");
+                    c.readPercent = Integer.parseInt(parts[0]);
+                    c.writePercent = Integer.parseInt(parts[1]);
+                    c.removePercent = Integer.parseInt(parts[2]);
+                }
+                case "keys" -> c.keySpace = Integer.parseInt(value);
+                case "dist" -> c.distribution = KeyDistribution.valueOf(value.toUpperCase().replace('-', '_'));
+                case "prefill" -> c.prefill = Double.parseDouble(value);
+                case "rate" -> c.rate = Long.parseLong(value);
+                case "warmup" -> c.warmupSeconds = Long.parseLong(value);
+                case "duration" -> c.durationSeconds = Long.parseLong(value);
+                case "seed" -> c.seed = Long.parseLong(value);
+                default -> throw new IllegalArgumentException("Unknown option: --" + name);
+            }
+        }
+        c.validate();
+        return c;
+    }
+
+    void validate() {
+        if (concurrency <= 0) throw new IllegalArgumentException("Illegal concurrency: " + concurrency);
+        if (keySpace <= 0) throw new IllegalArgumentException("Illegal key space: " + keySpace);
+        if (readPercent < 0 || writePercent < 0 || removePercent < 0
+                || readPercent + writePercent + removePercent != 100) {
+            throw new IllegalArgumentException("Mix percentages must be non-negative and add up to 100");
+        }
+        if (prefill < 0 || prefill > 1) throw new IllegalArgumentException("Illegal prefill: " + prefill);
+        if (rate < 0 || warmupSeconds < 0 || durationSeconds <= 0) {
+            throw new IllegalArgumentException("Illegal rate or duration");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "map=" + map + " threads=" + (virtualThreads ? "virtual" : "platform") + " concurrency=" + concurrency
+                + " mix=" + readPercent + ":" + writePercent + ":" + removePercent + " keys=" + keySpace
+                + " dist=" + distribution.name().toLowerCase().replace('_', '-') + " prefill=" + prefill
+                + " rate=" + (rate == 0 ? "closed-loop" : rate + "/s") + " warmup=" + warmupSeconds + "s"
+                + " duration=" + durationSeconds + "s";
+    }
+}
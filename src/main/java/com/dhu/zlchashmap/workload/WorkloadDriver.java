@@ -0,0 +1,148 @@
+package com.dhu.zlchashmap.workload;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 负载驱动：按配置的读写删比例和键分布，用平台线程或虚拟线程并发访问目标映射，
+ * 每种操作的延迟记录到 LatencyHistogram，结束后输出吞吐和 p50/p99/p99.9/max
+ */
+public final class WorkloadDriver {
+
+    public enum Op {GET, PUT, REMOVE}
+
+    private final WorkloadConfig config;
+    private volatile boolean recording;
+    private volatile boolean stopped;
+
+    public WorkloadDriver(WorkloadConfig config) {
+        config.validate();
+        this.config = config;
+    }
+
+    public static void main(String... args) throws InterruptedException {
+        WorkloadConfig config = WorkloadConfig.parse(args);
+        System.out.println(config);
+        new WorkloadDriver(config).run().print(System.out);
+    }
+
+    public Result run() throws InterruptedException {
+        WorkloadConfig c = config;
+        MapTarget map = MapTarget.create(c.map, c.keySpace);
+        Object[] keys = c.distribution.keys(c.keySpace);
+        Object shared = c.distribution.prepare(c.keySpace);
+
+        // 预填充：从随机起点开始写入 prefill 比例的键
+        SplittableRandom seeder = new SplittableRandom(c.seed);
+        int prefill = (int) (c.keySpace * c.prefill);
+        int offset = seeder.nextInt(c.keySpace);
+        for (int i = 0; i < prefill; i++) {
+            Object k = keys[(offset + i) % c.keySpace];
+            map.put(k, k);
+        }
+
+        // 直方图按线程分条，减少计数器上的竞争，结束时再合并
+        int stripes = Math.min(c.concurrency, Math.max(1, 4 * Runtime.getRuntime().availableProcessors()));
+        LatencyHistogram[][] histograms = new LatencyHistogram[Op.values().length][stripes];
+        for (LatencyHistogram[] row : histograms) {
+            for (int s = 0; s < stripes; s++) row[s] = new LatencyHistogram();
+        }
+        long interval = c.rate == 0 ? 0 : TimeUnit.SECONDS.toNanos(1) * c.concurrency / c.rate;
+
+        Thread.Builder builder = c.virtualThreads ? Thread.ofVirtual().name("worker-", 0)
+                : Thread.ofPlatform().name("worker-", 0).daemon(true);
+        List<Thread> workers = new ArrayList<>(c.concurrency);
+        for (int w = 0; w < c.concurrency; w++) {
+            KeyDistribution.Sampler sampler = c.distribution.sampler(c.keySpace, w, c.concurrency, shared);
+            SplittableRandom random = seeder.split();
+            LatencyHistogram[] mine = new LatencyHistogram[Op.values().length];
+            for (Op op : Op.values()) mine[op.ordinal()] = histograms[op.ordinal()][w % stripes];
+            workers.add(builder.unstarted(() -> work(map, keys, sampler, random, mine, interval)));
+        }
+        for (Thread t : workers) t.start();
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(c.warmupSeconds));
+        long start = System.nanoTime();
+        recording = true;
+        Thread.sleep(TimeUnit.SECONDS.toMillis(c.durationSeconds));
+        recording = false;
+        long elapsed = System.nanoTime() - start;
+        stopped = true;
+        for (Thread t : workers) t.join();
+
+        LatencyHistogram[] merged = new LatencyHistogram[Op.values().length];
+        for (Op op : Op.values()) {
+            merged[op.ordinal()] = new LatencyHistogram();
+            for (LatencyHistogram h : histograms[op.ordinal()]) merged[op.ordinal()].add(h);
+        }
+        return new Result(map.name(), elapsed, merged, map.size());
+    }
+
+    private void work(MapTarget map, Object[] keys, KeyDistribution.Sampler sampler, SplittableRandom random,
+                      LatencyHistogram[] histograms, long interval) {
+        int read = config.readPercent;
+        int readWrite = read + config.writePercent;
+        long next = System.nanoTime();
+        while (!stopped) {
+            long intended = 0;
+            if (interval > 0) {
+                // 开环：按计划时间发送，落后于计划时不等待，延迟从计划时间算起
+                intended = next;
+                next += interval;
+                long wait = intended - System.nanoTime();
+                if (wait > 0) LockSupport.parkNanos(wait);
+            }
+            int roll = random.nextInt(100);
+            Object key = keys[sampler.next(random)];
+            long begin = interval > 0 ? intended : System.nanoTime();
+            Op op;
+            if (roll < read) {
+                op = Op.GET;
+                map.get(key);
+            } else if (roll < readWrite) {
+                op = Op.PUT;
+                map.put(key, key);
+            } else {
+                op = Op.REMOVE;
+                map.remove(key);
+            }
+            long latency = System.nanoTime() - begin;
+            if (recording) {
+                histograms[op.ordinal()].record(latency);
+            }
+        }
+    }
+
+    public record Result(String map, long elapsedNanos, LatencyHistogram[] histograms, int finalSize) {
+
+        public LatencyHistogram histogram(Op op) {
+            return histograms[op.ordinal()];
+        }
+
+        public long totalOps() {
+            long n = 0;
+            for (LatencyHistogram h : histograms) n += h.count();
+            return n;
+        }
+
+        public double throughput() {
+            return totalOps() * 1e9 / elapsedNanos;
+        }
+
+        public void print(PrintStream out) {
+            out.printf("%-8s %12s %14s %10s %10s %10s %10s%n",
+                    "op", "count", "ops/s", "p50(us)", "p99(us)", "p99.9(us)", "max(us)");
+            for (Op op : Op.values()) {
+                LatencyHistogram h = histogram(op);
+                out.printf("%-8s %12d %14.0f %10.2f %10.2f %10.2f %10.2f%n", op.name().toLowerCase(), h.count(),
+                        h.count() * 1e9 / elapsedNanos, h.valueAtPercentile(50) / 1e3, h.valueAtPercentile(99) / 1e3,
+                        h.valueAtPercentile(99.9) / 1e3, h.max() / 1e3);
+            }
+            out.printf("%-8s %12d %14.0f   (map=%s, final size=%d)%n", "total", totalOps(), throughput(), map, finalSize);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.dhu.zlchashmap;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveSizingTest {
+
+    private static void assertContents(Map<Integer, Integer> expected, MyHashMap<Integer, Integer> m) {
+        assertEquals(expected.size(), m.size());
+        for (Map.Entry<Integer, Integer> e : expected.entrySet()) assertEquals(e.getValue(), m.get(e.getKey()));
+    }
+
+    @Test
+    void testLongChainsLowerLoadFactorAndGrowEarly() {
+        AdaptiveSizing policy = new AdaptiveSizing(0.5f, 1.0f, 1.2, 8, 1, 64, () -> false);
+        List<AdaptiveSizing.Decision> seen = new ArrayList<>();
+        policy.setListener(seen::add);
+        MyHashMap<Integer, Integer> m = new MyHashMap<>(16, 1.0f);
+        m.setAdaptiveSizing(policy);
+        MyHashMap<Integer, Integer> plain = new MyHashMap<>(16, 1.0f);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random rnd = new Random(42);
+        for (int i = 0; i < 50_000; i++) {
+            int k = rnd.nextInt();
+            m.put(k, i);
+            plain.put(k, i);
+            expected.put(k, i);
+            m.get(rnd.nextBoolean() ? k : rnd.nextInt());
+        }
+        assertContents(expected, m);
+        assertEquals(seen, policy.recentDecisions());
+        assertTrue(seen.stream().anyMatch(d -> d.kind() == AdaptiveSizing.Kind.GROW_EARLY));
+        for (AdaptiveSizing.Decision d : seen) {
+            assertTrue(d.loadFactorAfter() < d.loadFactorBefore());
+            assertTrue(d.averageProbes() > 1.2 || d.maxChain() > 8);
+            assertFalse(d.memoryTight());
+        }
+        assertEquals(0.5f, m.loadFactor);
+        assertTrue(m.capacity > plain.capacity);
+        assertTrue(policy.evaluations() > seen.size());
+    }
+
+    @Test
+    void testMemoryPressureRaisesLoadFactorUntilItClears() {
+        AtomicBoolean tight = new AtomicBoolean(true);
+        AdaptiveSizing policy = new AdaptiveSizing(0.5f, 1.5f, 100, 1_000, 1, 32, tight::get);
+        MyHashMap<Integer, Integer> m = new MyHashMap<>(16, 0.75f);
+        m.setAdaptiveSizing(policy);
+        MyHashMap<Integer, Integer> plain = new MyHashMap<>(16, 0.75f);
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 6_000; i++) {
+            m.put(i, i);
+            plain.put(i, i);
+            expected.put(i, i);
+        }
+        assertEquals(1.5f, m.loadFactor);
+        assertTrue(m.capacity < plain.capacity);
+        assertTrue(policy.recentDecisions().stream().allMatch(d -> d.kind() == AdaptiveSizing.Kind.RAISE_LOAD_FACTOR));
+
+        tight.set(false);
+        for (int i = 6_000; i < 8_000; i++) {
+            m.put(i, i);
+            expected.put(i, i);
+        }
+        assertEquals(0.75f, m.loadFactor);
+        AdaptiveSizing.Decision last = policy.recentDecisions().get(policy.recentDecisions().size() - 1);
+        assertEquals(AdaptiveSizing.Kind.RESTORE_LOAD_FACTOR, last.kind());
+        assertTrue(m.size() <= m.capacity * 0.75f);
+        assertContents(expected, m);
+    }
+
+    @Test
+    void testCollisionsInSparseTableDoNotGrow() {
+        AdaptiveSizing policy = new AdaptiveSizing(0.5f, 1.0f, 1.2, 8, 1, 16, () -> false);
+        MyHashMap<Colliding, Integer> m = new MyHashMap<>(1024, 0.75f);
+        m.setAdaptiveSizing(policy);
+        for (int i = 0; i < 200; i++) {
+            m.put(Colliding.sameHash(i), i);
+            assertEquals(i, m.get(Colliding.sameHash(i)));
+        }
+        assertEquals(1024, m.capacity);
+        assertEquals(0.75f, m.loadFactor);
+        assertTrue(policy.recentDecisions().isEmpty());
+        assertTrue(policy.evaluations() > 0);
+
+        assertThrows(IllegalStateException.class, () -> new MyHashMap<Integer, Integer>().setAdaptiveSizing(policy));
+        m.setAdaptiveSizing(null);
+        new MyHashMap<Integer, Integer>().setAdaptiveSizing(policy);
+        // 只检查 MXBean 的读取能正常工作，当前堆占用无法预知
+        AdaptiveSizing.heapUsageAbove(0.9).getAsBoolean();
+    }
+}
@@ -0,0 +1,74 @@
+package com.dhu.zlchashmap;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncLoadingMapTest {
+
+    @Test
+    void testConcurrentGetsShareOneLoad() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        try (ExecutorService loaders = Executors.newFixedThreadPool(2)) {
+            AsyncLoadingMap<String, Integer> m = new AsyncLoadingMap<>(k -> {
+                calls.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return k.length();
+            }, loaders);
+            List<CompletableFuture<Integer>> fs = new ArrayList<>();
+            for (int i = 0; i < 500; i++) fs.add(m.get("hello"));
+            // 调用方不等待加载
+            assertFalse(fs.get(0).isDone());
+            for (CompletableFuture<Integer> f : fs) assertSame(fs.get(0), f);
+            release.countDown();
+            assertEquals(5, fs.get(0).get(10, TimeUnit.SECONDS));
+            assertEquals(1, calls.get());
+            assertEquals(1, m.size());
+            assertSame(fs.get(0), m.getIfPresent("hello"));
+        }
+    }
+
+    @Test
+    void testFailedLoadIsRetried() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        AsyncLoadingMap<String, Integer> m = new AsyncLoadingMap<>(k -> {
+            if (calls.incrementAndGet() == 1) throw new IllegalStateException("backend down");
+            return 1;
+        }, Runnable::run);
+        CompletableFuture<Integer> failed = m.get("k");
+        ExecutionException e = assertThrows(ExecutionException.class, failed::get);
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertNull(m.getIfPresent("k"));
+        assertEquals(1, m.get("k").get());
+        assertEquals(2, calls.get());
+
+        AsyncLoadingMap<String, Integer> nulls = new AsyncLoadingMap<>(k -> null, Runnable::run);
+        assertThrows(ExecutionException.class, () -> nulls.get("x").get());
+        assertEquals(0, nulls.size());
+    }
+
+    @Test
+    void testPutAndInvalidate() throws Exception {
+        AsyncLoadingMap<String, Integer> m = new AsyncLoadingMap<>(k -> -1);
+        m.put("a", 1);
+        assertEquals(1, m.get("a").get());
+        m.invalidate("a");
+        assertNull(m.getIfPresent("a"));
+        assertEquals(-1, m.get("a").get(10, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,188 @@
+package com.dhu.zlchashmap;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeFeedTest {
+
+    /**
+     * 按事件维护一份副本，并检查每个事件的旧值与副本一致
+     */
+    static final class Replica implements Flow.Subscriber<List<ChangeFeed.Change<Integer, Integer>>> {
+        final Map<Integer, Integer> mirror = new HashMap<>();
+        final List<Integer> batchSizes = new ArrayList<>();
+        final CountDownLatch completed = new CountDownLatch(1);
+        final long initialRequest;
+        Flow.Subscription subscription;
+        Throwable error;
+
+        Replica(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription s) {
+            subscription = s;
+            if (initialRequest > 0) s.request(initialRequest);
+        }
+
+        @Override
+        public void onNext(List<ChangeFeed.Change<Integer, Integer>> batch) {
+            batchSizes.add(batch.size());
+            for (ChangeFeed.Change<Integer, Integer> c : batch) {
+                switch (c.kind()) {
+                    case INSERT -> assertNull(mirror.put(c.key(), c.newValue()));
+                    case REPLACE -> assertEquals(c.oldValue(), mirror.put(c.key(), c.newValue()));
+                    case REMOVE -> {
+                        assertTrue(mirror.containsKey(c.key()));
+                        assertEquals(c.oldValue(), mirror.remove(c.key()));
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+        }
+
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+    }
+
+    private static void randomWrites(MyHashMap<Integer, Integer> m, int ops, long seed) {
+        Random rnd = new Random(seed);
+        for (int i = 0; i < ops; i++) {
+            int k = rnd.nextInt(500);
+            switch (rnd.nextInt(5)) {
+                case 0 -> m.remove(k);
+                case 1 -> m.compute(k, (key, v) -> v == null ? Integer.valueOf(1) : (v % 3 == 0 ? null : Integer.valueOf(v + 1)));
+                case 2 -> m.computeIfAbsent(k, key -> -key);
+                case 3 -> m.computeIfPresent(k, (key, v) -> v + 10);
+                default -> m.put(k, rnd.nextInt(10) == 0 ? null : i);
+            }
+        }
+    }
+
+    private static Map<Integer, Integer> contents(MyHashMap<Integer, Integer> m) {
+        Map<Integer, Integer> c = new HashMap<>();
+        m.forEach(c::put);
+        return c;
+    }
+
+    @Test
+    void testReplicaFollowsAllMutations() throws InterruptedException {
+        for (boolean coalescing : new boolean[]{false, true}) {
+            MyHashMap<Integer, Integer> m = new MyHashMap<>();
+            ChangeFeed<Integer, Integer> feed = new ChangeFeed<>(Runnable::run, 64, 16, coalescing);
+            m.setChangeFeed(feed);
+            Replica r = new Replica(Long.MAX_VALUE);
+            feed.subscribe(r);
+            randomWrites(m, 20_000, 42);
+            feed.close();
+            assertTrue(r.completed.await(10, TimeUnit.SECONDS));
+            assertNull(r.error);
+            assertEquals(contents(m), r.mirror);
+            assertFalse(feed.hasSubscribers());
+        }
+    }
+
+    @Test
+    void testBackpressureBlocksWriterUntilRequested() throws Exception {
+        MyHashMap<Integer, Integer> m = new MyHashMap<>();
+        ChangeFeed<Integer, Integer> feed = new ChangeFeed<>(Runnable::run, 8, 4, false);
+        m.setChangeFeed(feed);
+        Replica r = new Replica(0);
+        feed.subscribe(r);
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 20; i++) m.put(i, i);
+        });
+        Thread.sleep(100);
+        // 缓冲区只有 8 个位置，没有配额时写者停在第 9 次 put
+        assertFalse(writer.isDone());
+        assertTrue(r.batchSizes.isEmpty());
+        r.subscription.request(Long.MAX_VALUE);
+        writer.get(10, TimeUnit.SECONDS);
+        feed.close();
+        assertTrue(r.completed.await(10, TimeUnit.SECONDS));
+        assertEquals(contents(m), r.mirror);
+        assertTrue(r.batchSizes.stream().allMatch(n -> n <= 4));
+    }
+
+    @Test
+    void testCoalescingKeepsNetChangePerKey() throws InterruptedException {
+        MyHashMap<Integer, Integer> m = new MyHashMap<>();
+        m.put(1, 100);
+        ChangeFeed<Integer, Integer> feed = new ChangeFeed<>(Runnable::run, 4, 100, true);
+        m.setChangeFeed(feed);
+        Replica r = new Replica(0);
+        r.mirror.put(1, 100);
+        feed.subscribe(r);
+        // 同一批键的反复修改不会占满只有 4 个位置的缓冲区
+        for (int round = 0; round < 1_000; round++) {
+            m.put(1, round);
+            m.put(2, round);
+            m.remove(2);
+            m.put(3, round);
+        }
+        m.remove(1);
+        m.put(1, 7);
+        feed.close();
+        r.subscription.request(1);
+        assertTrue(r.completed.await(10, TimeUnit.SECONDS));
+        // 键 1 净变化为 REPLACE(100 -> 7)，键 2 插入后删除互相抵消，键 3 为一次 INSERT
+        assertEquals(List.of(2), r.batchSizes);
+        assertEquals(contents(m), r.mirror);
+    }
+
+    @Test
+    void testCancelAndRequestValidation() {
+        MyHashMap<Integer, Integer> m = new MyHashMap<>();
+        ChangeFeed<Integer, Integer> feed = new ChangeFeed<>(Runnable::run, 2, 2, false);
+        m.setChangeFeed(feed);
+        Replica r = new Replica(0);
+        feed.subscribe(r);
+        r.subscription.cancel();
+        // 取消后写者不再受背压影响
+        for (int i = 0; i < 100; i++) m.put(i, i);
+        assertTrue(r.mirror.isEmpty());
+        assertFalse(feed.hasSubscribers());
+
+        Replica bad = new Replica(0);
+        feed.subscribe(bad);
+        bad.subscription.request(0);
+        assertInstanceOf(IllegalArgumentException.class, bad.error);
+        m.setChangeFeed(null);
+        m.put(-1, -1);
+
+        // 非法 request 的 onError 也经由 executor 交付，不在调用 request 的线程上直接回调
+        List<Runnable> tasks = new ArrayList<>();
+        ChangeFeed<Integer, Integer> queued = new ChangeFeed<>(tasks::add, 2, 2, false);
+        Replica late = new Replica(0);
+        queued.subscribe(late);
+        late.subscription.request(-1);
+        assertNull(late.error);
+        assertFalse(queued.hasSubscribers());
+        assertEquals(1, tasks.size());
+        tasks.remove(0).run();
+        assertInstanceOf(IllegalArgumentException.class, late.error);
+        late.error = null;
+        late.subscription.request(-2);
+        tasks.remove(0).run();
+        assertNull(late.error); // 只交付一次
+        assertTrue(late.batchSizes.isEmpty());
+    }
+}
@@ -0,0 +1,77 @@
+package com.dhu.zlchashmap;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkedHashMapTest {
+
+    // hashCode 低位相同的键，用来产生树桶
+    private static Colliding key(int id) {
+        return new Colliding(id, id & ~0xFF);
+    }
+
+    @Test
+    void testIncrementalResizeWithSmallChunks() {
+        // 每块 16 个桶，几千个元素就会经历多次逐块拆分
+        ChunkedHashMap<Integer, Integer> m = new ChunkedHashMap<>(1, 0.75f, 4);
+        boolean sawResizing = false;
+        for (int i = 0; i < 5_000; i++) {
+            assertNull(m.put(i, i));
+            sawResizing |= m.isResizing();
+            // 拆分进行到一半时，已拆分和未拆分的块都要能查到
+            assertEquals(i / 2, m.get(i / 2));
+        }
+        assertTrue(sawResizing);
+        assertEquals(5_000, m.mappingCount());
+        assertTrue(m.capacity() >= 5_000 / 0.75);
+        for (int i = 0; i < 5_000; i++) assertEquals(i, m.get(i));
+    }
+
+    @Test
+    void testAgainstHashMapWithTreesAndNulls() {
+        ChunkedHashMap<Object, Integer> m = new ChunkedHashMap<>(1, 0.75f, 5);
+        Map<Object, Integer> expected = new HashMap<>();
+        Random rnd = new Random(39);
+        for (int i = 0; i < 200_000; i++) {
+            int id = rnd.nextInt(20_000);
+            Object key = id == 0 ? null : (id & 1) == 0 ? key(id) : (Object) id;
+            if (rnd.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), m.remove(key));
+            } else {
+                Integer v = rnd.nextInt(10) == 0 ? null : i;
+                assertEquals(expected.put(key, v), m.put(key, v));
+            }
+        }
+        assertEquals(expected.size(), m.size());
+        for (Map.Entry<Object, Integer> e : expected.entrySet()) {
+            assertTrue(m.containsKey(e.getKey()));
+            assertEquals(e.getValue(), m.get(e.getKey()));
+        }
+        Map<Object, Integer> seen = new HashMap<>();
+        m.forEach(seen::put);
+        assertEquals(expected, seen);
+
+        m.clear();
+        assertTrue(m.isEmpty());
+        assertNull(m.get(2));
+    }
+
+    @Test
+    void testCapacityBeyondIntRangeAllocatesChunksLazily() {
+        // 2^32 个桶只分配目录，块在写入时才分配
+        ChunkedHashMap<Integer, Integer> m = new ChunkedHashMap<>(1L << 32);
+        assertEquals(1L << 32, m.capacity());
+        // 这些键的 hash 落在 2^31 以上的桶
+        int[] keys = {-1, Integer.MIN_VALUE, 0xC0000000, 0x80001234};
+        for (int k : keys) m.put(k, k);
+        for (int k : keys) assertEquals(k, m.get(k));
+        assertEquals(keys.length, m.size());
+        assertEquals(0xC0000000, m.remove(0xC0000000));
+        assertNull(m.get(0xC0000000));
+    }
+}
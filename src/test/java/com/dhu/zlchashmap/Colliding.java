@@ -0,0 +1,32 @@
+package com.dhu.zlchashmap;
+
+/**
+ * 测试用的键：hashCode 由构造参数指定，相同 hash 的键落在同一个桶，用来构造冲突链、树桶和有序数组桶；
+ * 按 id 比较，树化后仍能排序
+ */
+record Colliding(int id, int hash) implements Comparable<Colliding> {
+
+    /**
+     * 所有键 hash 相同
+     */
+    static Colliding sameHash(int id) {
+        return new Colliding(id, 7);
+    }
+
+    /**
+     * 每 groupSize 个连续的 id 一组，组内 hash 相同
+     */
+    static Colliding grouped(int id, int groupSize) {
+        return new Colliding(id, id / groupSize);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public int compareTo(Colliding o) {
+        return Integer.compare(id, o.id);
+    }
+}
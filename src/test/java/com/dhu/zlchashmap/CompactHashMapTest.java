@@ -0,0 +1,74 @@
+package com.dhu.zlchashmap;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactHashMapTest {
+
+    @Test
+    void testIterationFollowsInsertionOrder() {
+        CompactHashMap<String, Integer> m = new CompactHashMap<>();
+        m.put("c", 1);
+        m.put("a", 2);
+        m.put("b", 3);
+        assertEquals(2, m.put("a", 20)); // 覆盖不改变位置
+        assertEquals(1, m.remove("c"));
+        m.put("c", 4);                   // 删除后重新插入排到最后
+        List<String> order = new ArrayList<>();
+        m.forEach((k, v) -> order.add(k + "=" + v));
+        assertEquals(List.of("a=20", "b=3", "c=4"), order);
+        assertEquals(3, m.size());
+    }
+
+    @Test
+    void testNullKeysAndValues() {
+        CompactHashMap<String, Integer> m = new CompactHashMap<>();
+        assertNull(m.put(null, 1));
+        assertNull(m.put("v", null));
+        assertEquals(1, m.get(null));
+        assertTrue(m.containsKey("v"));
+        assertNull(m.get("v"));
+        assertFalse(m.containsKey("missing"));
+        assertEquals(1, m.remove(null));
+        assertFalse(m.containsKey(null));
+        m.clear();
+        assertTrue(m.isEmpty());
+        assertNull(m.get("v"));
+    }
+
+    @Test
+    void testAgainstLinkedHashMapAcrossIndexWidths() {
+        // 键空间跨过 byte / short / int 三种索引宽度，夹杂大量删除以触发原地压缩
+        CompactHashMap<Integer, Integer> m = new CompactHashMap<>();
+        Map<Integer, Integer> expected = new LinkedHashMap<>();
+        Random rnd = new Random(38);
+        for (int i = 0; i < 300_000; i++) {
+            int bound = i < 2_000 ? 150 : i < 100_000 ? 40_000 : 120_000;
+            Integer key = rnd.nextInt(bound);
+            if (rnd.nextInt(4) == 0) {
+                assertEquals(expected.remove(key), m.remove(key));
+            } else {
+                assertEquals(expected.put(key, i), m.put(key, i));
+            }
+        }
+        assertEquals(expected.size(), m.size());
+        List<Map.Entry<Integer, Integer>> seen = new ArrayList<>();
+        m.forEach((k, v) -> seen.add(Map.entry(k, v)));
+        assertEquals(new ArrayList<>(expected.entrySet()), seen);
+    }
+
+    @Test
+    void testPresizedMapDoesNotResize() {
+        CompactHashMap<Integer, Integer> m = new CompactHashMap<>(1_000);
+        for (int i = 0; i < 1_000; i++) m.put(i, i);
+        for (int i = 0; i < 1_000; i++) assertEquals(i, m.get(i));
+        assertEquals(2048, CompactHashMap.indexSizeFor(1_000));
+    }
+}
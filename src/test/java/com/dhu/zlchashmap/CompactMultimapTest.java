@@ -0,0 +1,121 @@
+package com.dhu.zlchashmap;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactMultimapTest {
+
+    @Test
+    void testAgainstMapOfLists() {
+        CompactMultimap<Integer, Integer> mm = new CompactMultimap<>(0);
+        Map<Integer, List<Integer>> model = new HashMap<>();
+        Random rnd = new Random(7);
+        for (int op = 0; op < 200_000; op++) {
+            int k = rnd.nextInt(2_000);
+            // 值的范围很小，会出现重复值
+            Integer v = rnd.nextInt(8) == 0 ? null : rnd.nextInt(6);
+            switch (rnd.nextInt(10)) {
+                case 0, 1, 2 -> {
+                    List<Integer> l = model.get(k);
+                    boolean removed = l != null && l.remove(v);
+                    if (l != null && l.isEmpty()) model.remove(k);
+                    assertEquals(removed, mm.removeValue(k, v));
+                }
+                case 3 -> {
+                    List<Integer> l = model.remove(k);
+                    assertEquals(l == null ? 0 : l.size(), mm.removeAll(k));
+                }
+                default -> {
+                    model.computeIfAbsent(k, x -> new ArrayList<>()).add(v);
+                    mm.putValue(k, v);
+                }
+            }
+        }
+        assertEquals(model.size(), mm.keyCount());
+        assertEquals(model.values().stream().mapToInt(List::size).sum(), mm.size());
+        for (int k = 0; k < 2_000; k++) {
+            assertEquals(model.getOrDefault(k, List.of()), mm.get(k));
+            assertEquals(model.containsKey(k), mm.containsKey(k));
+        }
+        Map<Integer, List<Integer>> seen = new HashMap<>();
+        mm.forEach((k, v) -> seen.computeIfAbsent(k, x -> new ArrayList<>()).add(v));
+        assertEquals(model, seen);
+    }
+
+    @Test
+    void testInlineSpillAndShrink() {
+        CompactMultimap<String, String> mm = new CompactMultimap<>();
+        mm.putValue(null, "a");
+        List<String> view = mm.get(null);
+        assertEquals(List.of("a"), view);
+        mm.putValue(null, "b");
+        mm.putValue(null, "c");
+        mm.putValue(null, "d");
+        mm.putValue(null, "e");
+        // 视图是活的，直接读节点
+        assertEquals(List.of("a", "b", "c", "d", "e"), view);
+        assertTrue(mm.containsEntry(null, "c"));
+        assertTrue(mm.removeValue(null, "a"));
+        assertTrue(mm.removeValue(null, "d"));
+        assertTrue(mm.removeValue(null, "e"));
+        assertEquals(List.of("b", "c"), view);
+        assertFalse(mm.removeValue(null, "x"));
+        assertThrows(UnsupportedOperationException.class, () -> view.add("z"));
+
+        List<String> collected = new ArrayList<>();
+        mm.forEachValue(null, collected::add);
+        assertEquals(List.of("b", "c"), collected);
+
+        assertEquals(2, mm.removeAll(null));
+        assertTrue(view.isEmpty());
+        assertTrue(mm.get(null).isEmpty());
+        assertFalse(mm.containsKey(null));
+        assertTrue(mm.isEmpty());
+    }
+
+    @Test
+    void testClearEmptiesOutstandingViews() {
+        CompactMultimap<String, Integer> mm = new CompactMultimap<>();
+        mm.putValue("one", 1);
+        for (int i = 0; i < 5; i++) mm.putValue("many", i);
+        List<Integer> one = mm.get("one");
+        List<Integer> many = mm.get("many");
+        assertEquals(5, many.size());
+        mm.clear();
+        // 与 removeAll 一样，之前取得的视图变为空，之后重新添加的键也不会反映到旧视图中
+        assertTrue(one.isEmpty());
+        assertTrue(many.isEmpty());
+        assertThrows(IndexOutOfBoundsException.class, () -> many.get(0));
+        mm.putValue("one", 10);
+        assertTrue(one.isEmpty());
+        assertEquals(List.of(10), mm.get("one"));
+        assertEquals(1, mm.size());
+        assertEquals(1, mm.keyCount());
+    }
+
+    @Test
+    void testCollidingKeysAndResize() {
+        CompactMultimap<String, Integer> mm = new CompactMultimap<>(1);
+        // "Aa" 与 "BB" 的 hashCode 相同
+        for (int i = 0; i < 10_000; i++) {
+            mm.putValue("Aa", i);
+            mm.putValue("BB", -i);
+            mm.putValue("k" + i, i);
+        }
+        assertEquals(10_002, mm.keyCount());
+        assertEquals(30_000, mm.size());
+        assertEquals(10_000, mm.valueCount("Aa"));
+        assertEquals(-9_999, mm.get("BB").get(9_999));
+        assertEquals(List.of(5), mm.get("k5"));
+        mm.clear();
+        assertEquals(0, mm.size());
+        assertFalse(mm.containsKey("Aa"));
+    }
+}
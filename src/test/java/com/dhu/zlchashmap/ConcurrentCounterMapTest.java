@@ -0,0 +1,85 @@
+package com.dhu.zlchashmap;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentCounterMapTest {
+
+    @Test
+    void testIncrementAddSum() {
+        ConcurrentCounterMap<String> m = new ConcurrentCounterMap<>();
+        assertEquals(0, m.sum("a"));
+        m.increment("a");
+        m.increment("a");
+        m.add("b", 40);
+        m.add("b", -5);
+        assertEquals(2, m.sum("a"));
+        assertEquals(35, m.sum("b"));
+        assertEquals(2, m.size());
+        assertEquals(37, m.total());
+        assertEquals(35, m.remove("b"));
+        assertEquals(0, m.sum("b"));
+        assertFalse(m.containsKey("b"));
+    }
+
+    @Test
+    void testTopK() {
+        ConcurrentCounterMap<Integer> m = new ConcurrentCounterMap<>();
+        for (int k = 0; k < 1000; k++) m.add(k, k % 97);
+        List<ConcurrentCounterMap.Count<Integer>> top = m.topK(3);
+        assertEquals(3, top.size());
+        for (ConcurrentCounterMap.Count<Integer> c : top) assertEquals(96, c.count());
+        top = m.topK(20);
+        for (int i = 1; i < top.size(); i++) assertTrue(top.get(i - 1).count() >= top.get(i).count());
+        assertEquals(0, m.topK(0).size());
+        assertEquals(1000, m.topK(5000).size());
+    }
+
+    @Test
+    void testConcurrentIncrementsOnHotKeyAreExact() throws InterruptedException {
+        ConcurrentCounterMap<String> m = new ConcurrentCounterMap<>();
+        int threads = 8, perThread = 200_000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> ts = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            ts.add(Thread.ofPlatform().start(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    m.increment("hot");
+                    m.increment("cold-" + id); // 新键的首次插入也在竞争
+                }
+            }));
+        }
+        start.countDown();
+        for (Thread t : ts) t.join();
+        assertEquals((long) threads * perThread, m.sum("hot"));
+        for (int t = 0; t < threads; t++) assertEquals(perThread, m.sum("cold-" + t));
+        assertEquals(2L * threads * perThread, m.total());
+    }
+
+    @Test
+    void testStripedCounterSumsBaseAndCells() throws InterruptedException {
+        StripedCounter c = new StripedCounter();
+        c.add(5);
+        assertFalse(c.isStriped());
+        // 多线程反复竞争直到出现一次 CAS 失败，之后的计数分散到 Cell 上
+        List<Thread> ts = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            ts.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 500_000; i++) c.add(1);
+            }));
+        }
+        for (Thread t : ts) t.join();
+        assertEquals(5 + 2_000_000, c.sum());
+    }
+}
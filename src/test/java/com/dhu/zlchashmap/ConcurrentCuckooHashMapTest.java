@@ -0,0 +1,60 @@
+package com.dhu.zlchashmap;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentCuckooHashMapTest {
+
+    /**
+     * 写者不断插入、删除另一批键，迫使稳定的键沿踢出路径搬移、表扩容；读者必须始终找到稳定的键
+     */
+    @Test
+    void testReadersNeverMissStableKeysDuringDisplacement() throws InterruptedException {
+        ConcurrentCuckooHashMap<Integer, Integer> m = new ConcurrentCuckooHashMap<>(0);
+        int stable = 2_000;
+        for (int i = 0; i < stable; i++) m.put(i, i);
+
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 3; r++) {
+            readers.add(Thread.ofPlatform().start(() -> {
+                int i = 0;
+                while (!stop.get() && failure.get() == null) {
+                    int k = i++ % stable;
+                    Integer v = m.get(k);
+                    if (v == null || v != k) failure.set("key " + k + " -> " + v);
+                }
+            }));
+        }
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 20_000; i++) m.put(stable + i, i);
+            for (int i = 0; i < 20_000; i++) m.remove(stable + i);
+        }
+        stop.set(true);
+        for (Thread t : readers) t.join();
+        assertNull(failure.get());
+        assertEquals(stable, m.size());
+    }
+
+    @Test
+    void testConcurrentWritersAreSerialized() throws InterruptedException {
+        ConcurrentCuckooHashMap<Integer, Integer> m = new ConcurrentCuckooHashMap<>();
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < 4; w++) {
+            int base = w * 10_000;
+            writers.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 10_000; i++) m.put(base + i, i);
+            }));
+        }
+        for (Thread t : writers) t.join();
+        assertEquals(40_000, m.size());
+        for (int i = 0; i < 40_000; i++) assertEquals(i % 10_000, m.get(i));
+    }
+}
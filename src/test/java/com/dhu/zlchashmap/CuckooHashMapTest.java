@@ -0,0 +1,76 @@
+package com.dhu.zlchashmap;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CuckooHashMapTest {
+
+    @Test
+    void testMatchesHashMap() {
+        CuckooHashMap<Integer, Integer> m = new CuckooHashMap<>(0);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random rnd = new Random(7);
+        for (int i = 0; i < 300_000; i++) {
+            int k = rnd.nextInt(50_000);
+            switch (rnd.nextInt(3)) {
+                case 0 -> assertEquals(expected.put(k, i), m.put(k, i));
+                case 1 -> assertEquals(expected.remove(k), m.remove(k));
+                default -> assertEquals(expected.get(k), m.get(k));
+            }
+        }
+        assertEquals(expected.size(), m.size());
+        Map<Integer, Integer> seen = new HashMap<>();
+        m.forEach(seen::put);
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    void testFillsBeyondSimpleCuckooLoad() {
+        // 4 路分桶 + BFS 踢出：在 LOAD_FACTOR 之内不应扩容
+        CuckooHashMap<Integer, Integer> m = new CuckooHashMap<>(10_000);
+        int slots = m.table.slots;
+        for (int i = 0; i < (int) (slots * CuckooHashMap.LOAD_FACTOR); i++) m.put(i * 0x9E3779B9, i);
+        assertEquals(slots, m.table.slots);
+        for (int i = 0; i < (int) (slots * CuckooHashMap.LOAD_FACTOR); i++) assertEquals(i, m.get(i * 0x9E3779B9));
+    }
+
+    @Test
+    void testSharedHashCodeUsesStash() {
+        CuckooHashMap<Colliding, Integer> m = new CuckooHashMap<>(64);
+        int limit = 2 * CuckooHashMap.SLOTS_PER_BUCKET + CuckooHashMap.STASH_SIZE;
+        for (int i = 0; i < limit; i++) m.put(Colliding.sameHash(i), i);
+        for (int i = 0; i < limit; i++) assertEquals(i, m.get(Colliding.sameHash(i)));
+        assertTrue(m.table.stashCount > 0);
+        assertThrows(IllegalStateException.class, () -> m.put(Colliding.sameHash(limit), limit));
+
+        // 删除桶里的键后，stash 中的键被搬回桶里
+        for (int i = 0; i < 4; i++) m.remove(Colliding.sameHash(i));
+        assertEquals(limit - 4 - m.table.stashCount, countInBuckets(m));
+        for (int i = 4; i < limit; i++) assertEquals(i, m.get(Colliding.sameHash(i)));
+    }
+
+    private static int countInBuckets(CuckooHashMap<?, ?> m) {
+        int n = 0;
+        for (int i = 0; i < m.table.slots; i++) if (m.table.keys[i] != null) n++;
+        return n;
+    }
+
+    @Test
+    void testPutIfAbsentAndNulls() {
+        CuckooHashMap<String, Integer> m = new CuckooHashMap<>();
+        assertNull(m.putIfAbsent("a", 1));
+        assertEquals(1, m.putIfAbsent("a", 2));
+        assertEquals(1, m.get("a"));
+        assertThrows(NullPointerException.class, () -> m.put(null, 1));
+        assertNull(m.get(null));
+        assertNull(m.remove(null));
+        m.clear();
+        assertTrue(m.isEmpty());
+        assertNull(m.get("a"));
+    }
+}
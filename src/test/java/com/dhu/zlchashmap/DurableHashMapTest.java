@@ -0,0 +1,193 @@
+package com.dhu.zlchashmap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DurableHashMapTest {
+    @TempDir
+    Path dir;
+
+    private DurableHashMap<String, Integer> open(Durability durability) throws IOException {
+        return new DurableHashMap<>(dir, Codecs.STRING, Codecs.INTEGER, durability);
+    }
+
+    @Test
+    void testRecoverAfterReopen() throws IOException {
+        try (DurableHashMap<String, Integer> m = open(Durability.SYNC)) {
+            for (int i = 0; i < 100; i++) m.put("k" + i, i);
+            m.put("k1", 1000);
+            m.remove("k2");
+            m.put(null, -1);
+            m.put("nullVal", null);
+        }
+        try (DurableHashMap<String, Integer> m = open(Durability.SYNC)) {
+            assertEquals(101, m.size());
+            assertEquals(1000, m.get("k1"));
+            assertFalse(m.containsKey("k2"));
+            assertEquals(99, m.get("k99"));
+            assertEquals(-1, m.get(null));
+            assertTrue(m.containsKey("nullVal"));
+        }
+    }
+
+    @Test
+    void testTornTailIsTruncated() throws IOException {
+        try (DurableHashMap<String, Integer> m = open(Durability.WRITE)) {
+            m.put("a", 1);
+            m.put("b", 2);
+        }
+        Path segment = lastSegment();
+        long intact = Files.size(segment);
+        // 模拟崩溃时只写出了一半的记录
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ch.write(java.nio.ByteBuffer.wrap(new byte[]{0, 0, 0, 20, 1, 2, 3}));
+        }
+        try (DurableHashMap<String, Integer> m = open(Durability.WRITE)) {
+            assertEquals(2, m.size());
+            assertEquals(2, m.get("b"));
+        }
+        assertEquals(intact, Files.size(segment));
+    }
+
+    @Test
+    void testChecksumMismatchDropsRecord() throws IOException {
+        try (DurableHashMap<String, Integer> m = open(Durability.SYNC)) {
+            m.put("a", 1);
+            m.put("b", 2);
+        }
+        Path segment = lastSegment();
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            // 破坏最后一条记录负载的最后一个字节
+            ch.write(java.nio.ByteBuffer.wrap(new byte[]{0x7f}), ch.size() - 1);
+        }
+        try (DurableHashMap<String, Integer> m = open(Durability.SYNC)) {
+            assertEquals(1, m.size());
+            assertEquals(1, m.get("a"));
+            assertNull(m.get("b"));
+        }
+    }
+
+    @Test
+    void testCompactionFoldsLogIntoSnapshot() throws IOException {
+        try (DurableHashMap<String, Integer> m = open(Durability.ASYNC)) {
+            for (int i = 0; i < 1000; i++) m.put("k" + (i % 50), i);
+            m.compact();
+            m.put("after", 1);
+            m.remove("k0");
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(1, files.filter(p -> p.toString().endsWith(".snap")).count());
+        }
+        try (DurableHashMap<String, Integer> m = open(Durability.ASYNC)) {
+            assertEquals(50, m.size());
+            assertEquals(999, m.get("k49"));
+            assertEquals(1, m.get("after"));
+            assertNull(m.get("k0"));
+        }
+    }
+
+    @Test
+    void testWriteBurstSchedulesOneCompaction() throws Exception {
+        try (DurableHashMap<String, Integer> m = new DurableHashMap<>(dir, Codecs.STRING, Codecs.INTEGER,
+                Durability.WRITE, 1)) {
+            // 维护线程被占住时，越过阈值之后的每次写入都会尝试调度压缩
+            CountDownLatch release = new CountDownLatch(1);
+            m.maintenance().execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            for (int i = 0; i < 200; i++) m.put("k" + i, i);
+            release.countDown();
+            // 单线程执行器按顺序执行，这个任务结束时之前排队的任务都已结束
+            m.maintenance().submit(() -> null).get(1, TimeUnit.MINUTES);
+            try (Stream<Path> files = Files.list(dir)) {
+                List<Path> snapshots = files.filter(p -> p.toString().endsWith(".snap")).toList();
+                assertEquals(1, snapshots.size());
+                // 只压缩过一次，日志只轮转了一次
+                assertEquals(DurableHashMap.snapshotPath(dir, 1), snapshots.get(0));
+            }
+        }
+        try (DurableHashMap<String, Integer> m = open(Durability.WRITE)) {
+            assertEquals(200, m.size());
+            assertEquals(199, m.get("k199"));
+        }
+    }
+
+    @Test
+    void testConcurrentWritersGroupCommit() throws Exception {
+        try (DurableHashMap<String, Integer> m = open(Durability.SYNC)) {
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int id = t;
+                threads.add(Thread.ofPlatform().start(() -> {
+                    try {
+                        for (int i = 0; i < 50; i++) m.put(id + "-" + i, i);
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }));
+            }
+            for (Thread t : threads) t.join();
+            assertEquals(200, m.size());
+        }
+        try (DurableHashMap<String, Integer> m = open(Durability.SYNC)) {
+            assertEquals(200, m.size());
+            assertEquals(49, m.get("3-49"));
+        }
+    }
+
+    @Test
+    void testFailedAppendLeavesMapUnchanged() throws IOException {
+        DurableHashMap<String, Integer> m = open(Durability.SYNC);
+        m.put("a", 1);
+        // 中断状态下写 channel 会关闭它（ClosedByInterruptException），日志随后一直处于失败状态
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(IOException.class, () -> m.put("b", 2));
+        } finally {
+            Thread.interrupted();
+        }
+        assertThrows(IOException.class, () -> m.put("a", 100));
+        assertThrows(IOException.class, () -> m.put("c", 3));
+        assertThrows(IOException.class, () -> m.remove("a"));
+        assertEquals(1, m.get("a"));
+        assertFalse(m.containsKey("c"));
+        assertEquals(2, m.size());
+        assertThrows(IOException.class, m::close);
+
+        try (DurableHashMap<String, Integer> reopened = open(Durability.SYNC)) {
+            assertEquals(1, reopened.get("a"));
+            assertFalse(reopened.containsKey("c"));
+        }
+    }
+
+    private Path lastSegment() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().startsWith("wal-"))
+                    .filter(p -> {
+                        try {
+                            return Files.size(p) > WriteAheadLog.SEGMENT_HEADER_SIZE;
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    })
+                    .max(Path::compareTo).orElseThrow();
+        }
+    }
+}
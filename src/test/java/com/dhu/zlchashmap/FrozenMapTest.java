@@ -0,0 +1,139 @@
+package com.dhu.zlchashmap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrozenMapTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void testFreezeKeepsAllMappings() {
+        MyHashMap<String, Integer> m = new MyHashMap<>();
+        for (int i = 0; i < 50_000; i++) m.put("sku-" + i, i);
+        m.put(null, -1);
+        m.put("nullValue", null);
+        FrozenMap<String, Integer> f = m.freeze();
+        assertEquals(m.size(), f.size());
+        for (int i = 0; i < 50_000; i++) assertEquals(i, f.get("sku-" + i));
+        assertEquals(-1, f.get(null));
+        assertTrue(f.containsKey("nullValue"));
+        assertNull(f.get("nullValue"));
+        assertNull(f.get("sku-50000"));
+        assertFalse(f.containsKey("missing"));
+
+        Map<String, Integer> seen = new HashMap<>();
+        f.forEach(seen::put);
+        assertEquals(m.size(), seen.size());
+    }
+
+    @Test
+    void testCollidingHashCodesAreSeparated() {
+        // "Aa" 与 "BB" 的 hashCode 相同，但 64 位内容哈希不同
+        MyHashMap<String, Integer> m = new MyHashMap<>();
+        m.put("Aa", 1);
+        m.put("BB", 2);
+        m.put("AaAa", 3);
+        m.put("BBBB", 4);
+        m.put("AaBB", 5);
+        FrozenMap<String, Integer> f = m.freeze();
+        assertEquals(1, f.get("Aa"));
+        assertEquals(2, f.get("BB"));
+        assertEquals(3, f.get("AaAa"));
+        assertEquals(4, f.get("BBBB"));
+        assertEquals(5, f.get("AaBB"));
+        assertNull(f.get("BBAa"));
+    }
+
+    @Test
+    void testEqualHashKeysShareOverflow() {
+        // hashCode 全部相同的非字符串键 64 位哈希也相同，溢出区里按 equals 区分
+        MyHashMap<Object, Integer> m = new MyHashMap<>();
+        for (int i = 0; i < 100; i++) m.put(Colliding.sameHash(i), i);
+        for (int i = 0; i < 1_000; i++) m.put(Colliding.grouped(1_000 + i, 10), i);
+        // Integer 1 与 Long 1L 数值哈希相同但不 equals
+        m.put(1, -1);
+        m.put(1L, -2);
+        m.put("x", -3);
+        FrozenMap<Object, Integer> f = m.freeze();
+        assertEquals(m.size(), f.size());
+        for (int i = 0; i < 100; i++) assertEquals(i, f.get(Colliding.sameHash(i)));
+        for (int i = 0; i < 1_000; i++) assertEquals(i, f.get(Colliding.grouped(1_000 + i, 10)));
+        assertEquals(-1, f.get(1));
+        assertEquals(-2, f.get(1L));
+        assertEquals(-3, f.get("x"));
+        assertNull(f.get(Colliding.sameHash(100)));
+        assertFalse(f.containsKey((short) 1));
+
+        Map<Object, Integer> seen = new HashMap<>();
+        f.forEach(seen::put);
+        assertEquals(m.size(), seen.size());
+    }
+
+    @Test
+    void testOverflowSurvivesFileRoundTrip() throws IOException {
+        Codec<Colliding> codec = new Codec<>() {
+            @Override
+            public void encode(Colliding value, DataOutput out) throws IOException {
+                out.writeInt(value.id());
+                out.writeInt(value.hash());
+            }
+
+            @Override
+            public Colliding decode(DataInput in) throws IOException {
+                return new Colliding(in.readInt(), in.readInt());
+            }
+        };
+        MyHashMap<Colliding, Integer> m = new MyHashMap<>();
+        for (int i = 0; i < 500; i++) m.put(Colliding.grouped(i, 7), i);
+        Path file = dir.resolve("colliding.frozen");
+        m.freeze().write(file, codec, Codecs.INTEGER);
+
+        FrozenMap<Colliding, Integer> f = FrozenMap.read(file, codec, Codecs.INTEGER);
+        assertEquals(500, f.size());
+        for (int i = 0; i < 500; i++) assertEquals(i, f.get(Colliding.grouped(i, 7)));
+        assertNull(f.get(Colliding.grouped(500, 7)));
+    }
+
+    @Test
+    void testEmptyAndTinyMaps() {
+        FrozenMap<Integer, Integer> empty = new MyHashMap<Integer, Integer>().freeze();
+        assertTrue(empty.isEmpty());
+        assertNull(empty.get(1));
+
+        for (int size = 1; size < 40; size++) {
+            MyHashMap<Integer, Integer> m = new MyHashMap<>();
+            for (int i = 0; i < size; i++) m.put(i * 7919, i);
+            FrozenMap<Integer, Integer> f = m.freeze();
+            for (int i = 0; i < size; i++) assertEquals(i, f.get(i * 7919));
+            assertNull(f.get(-1));
+        }
+    }
+
+    @Test
+    void testFileRoundTrip() throws IOException {
+        MyHashMap<String, Long> m = new MyHashMap<>();
+        for (int i = 0; i < 10_000; i++) m.put("cc-" + i, (long) i * i);
+        Path file = dir.resolve("dict.frozen");
+        m.freeze().write(file, Codecs.STRING, Codecs.LONG);
+
+        FrozenMap<String, Long> f = FrozenMap.read(file, Codecs.STRING, Codecs.LONG);
+        assertEquals(10_000, f.size());
+        for (int i = 0; i < 10_000; i++) assertEquals((long) i * i, f.get("cc-" + i));
+
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> FrozenMap.read(file, Codecs.STRING, Codecs.LONG));
+    }
+}
@@ -0,0 +1,107 @@
+package com.dhu.zlchashmap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 针对映射的线性一致性检查（Wing & Gong 搜索，带 Lowe 的状态缓存）。
+ * <p>
+ * 映射的各个键互不影响，线性一致性又具有局部性，所以按键拆分历史，每个键单独当作一个寄存器检查，
+ * 搜索空间从所有操作的排列降到单键操作的排列。每个键的历史最多 64 个操作，已线性化的集合用一个 long 表示
+ */
+final class LinearizabilityChecker {
+
+    enum Kind {GET, PUT, PUT_IF_ABSENT, REMOVE}
+
+    /**
+     * 一次已完成的操作：call/ret 是调用前后从全局计数器取得的序号，ret 之前开始的操作都与它重叠或在它之前
+     */
+    record Op(int thread, Kind kind, int key, Integer arg, Integer result, long call, long ret) {
+        @Override
+        public String toString() {
+            return "T" + thread + " [" + call + "," + ret + "] " + kind + "(" + key
+                    + (arg == null ? "" : ", " + arg) + ") -> " + result;
+        }
+    }
+
+    private LinearizabilityChecker() {
+    }
+
+    /**
+     * @return 不可线性化的那个键的历史（按调用顺序），全部可线性化时返回 null
+     */
+    static List<Op> findViolation(List<Op> history, Map<Integer, Integer> initial) {
+        Map<Integer, List<Op>> byKey = new TreeMap<>();
+        for (Op op : history) {
+            byKey.computeIfAbsent(op.key(), k -> new ArrayList<>()).add(op);
+        }
+        for (Map.Entry<Integer, List<Op>> e : byKey.entrySet()) {
+            List<Op> ops = e.getValue();
+            if (ops.size() > Long.SIZE)
+                throw new IllegalArgumentException("Too many operations on key " + e.getKey() + ": " + ops.size());
+            ops.sort(Comparator.comparingLong(Op::call));
+            if (!new Search(ops).run(initial.get(e.getKey()))) {
+                return ops;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 对单个键做深度优先搜索：每一步从“最小”操作（没有其他未线性化的操作在它调用之前就已返回）中选一个，
+     * 在寄存器上执行并比对结果
+     */
+    private static final class Search {
+        private final List<Op> ops;
+        private final long all;
+        private final Set<State> seen = new HashSet<>();
+
+        Search(List<Op> ops) {
+            this.ops = ops;
+            this.all = ops.size() == Long.SIZE ? -1L : (1L << ops.size()) - 1;
+        }
+
+        boolean run(Integer value) {
+            return search(0L, value);
+        }
+
+        private boolean search(long done, Integer value) {
+            if (done == all) return true;
+            if (!seen.add(new State(done, value))) return false;
+            // 未线性化操作中最早的返回序号：调用晚于它的操作不能排在下一位
+            long minRet = Long.MAX_VALUE;
+            for (int i = 0; i < ops.size(); i++) {
+                if ((done & (1L << i)) == 0) minRet = Math.min(minRet, ops.get(i).ret());
+            }
+            for (int i = 0; i < ops.size(); i++) {
+                if ((done & (1L << i)) != 0) continue;
+                Op op = ops.get(i);
+                if (op.call() > minRet) break; // ops 按 call 排序，后面的都不是最小操作
+                // 记录的返回值必须等于该时刻寄存器里的值
+                if (Objects.equals(op.result(), value) && search(done | (1L << i), apply(op, value))) return true;
+            }
+            return false;
+        }
+
+        /**
+         * 在当前值上执行 op，返回执行后的值
+         */
+        private static Integer apply(Op op, Integer value) {
+            return switch (op.kind()) {
+                case GET -> value;
+                case PUT -> op.arg();
+                case PUT_IF_ABSENT -> value == null ? op.arg() : value;
+                case REMOVE -> null;
+            };
+        }
+
+        private record State(long done, Integer value) {
+        }
+    }
+}
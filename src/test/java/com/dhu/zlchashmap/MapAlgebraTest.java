@@ -0,0 +1,160 @@
+package com.dhu.zlchashmap;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MapAlgebraTest {
+
+    private static <K, V> Map<K, V> contents(MyHashMap<K, V> m) {
+        Map<K, V> c = new HashMap<>();
+        m.forEach(c::put);
+        assertEquals(m.size(), c.size());
+        return c;
+    }
+
+    private static MyHashMap<Object, Integer> randomMap(Random rnd, int n, int keyRange, boolean sortedBins) {
+        MyHashMap<Object, Integer> m = new MyHashMap<>(16, 0.75f, sortedBins);
+        for (int i = 0; i < n; i++) {
+            int k = rnd.nextInt(keyRange);
+            Object key = k % 10 == 0 ? Colliding.grouped(k, 300) : (k == 1 ? null : k);
+            m.put(key, rnd.nextInt(5) == 0 ? null : i);
+        }
+        return m;
+    }
+
+    @Test
+    void testOperationsAgainstHashMap() {
+        Random rnd = new Random(11);
+        // 不同大小组合：容量相同、左大右小、左小右大，以及小到不拆任务的表
+        int[][] sizes = {{100_000, 100_000}, {200_000, 3_000}, {3_000, 200_000}, {50, 70}};
+        for (boolean sortedBins : new boolean[]{false, true}) {
+            for (int[] s : sizes) {
+                MyHashMap<Object, Integer> a = randomMap(rnd, s[0], 150_000, sortedBins);
+                MyHashMap<Object, Integer> b = randomMap(rnd, s[1], 150_000, false);
+                Map<Object, Integer> ma = contents(a), mb = contents(b);
+
+                Map<Object, Integer> inter = new HashMap<>(ma);
+                inter.keySet().retainAll(mb.keySet());
+                assertEquals(inter, contents(a.intersectKeys(b)));
+
+                Map<Object, Integer> diff = new HashMap<>(ma);
+                diff.keySet().removeAll(mb.keySet());
+                assertEquals(diff, contents(a.difference(b)));
+
+                Map<Object, Integer> union = new HashMap<>(ma);
+                mb.forEach((k, v) -> {
+                    if (!union.containsKey(k)) union.put(k, v);
+                    else {
+                        Integer nv = sum(union.get(k), v);
+                        if (nv == null) union.remove(k);
+                        else union.put(k, nv);
+                    }
+                });
+                a.mergeAll(b, MapAlgebraTest::sum);
+                assertEquals(union, contents(a));
+                // 合并后的映射仍然可以正常读写
+                for (Map.Entry<Object, Integer> e : union.entrySet()) {
+                    assertTrue(a.containsKey(e.getKey()));
+                    assertEquals(e.getValue(), a.get(e.getKey()));
+                }
+                a.put("fresh", 1);
+                assertEquals(union.size() + 1, a.size());
+            }
+        }
+    }
+
+    // 两个值中有 null 时结果为 null（删除键），其余情况为和
+    private static Integer sum(Integer x, Integer y) {
+        return x == null || y == null ? null : x + y;
+    }
+
+    @Test
+    void testEqualsContent() {
+        MyHashMap<Integer, String> a = new MyHashMap<>();
+        MyHashMap<Integer, String> b = new MyHashMap<>(1 << 20, 0.75f);
+        for (int i = 0; i < 100_000; i++) {
+            a.put(i, "v" + i);
+            b.put(99_999 - i, "v" + (99_999 - i));
+        }
+        assertTrue(a.equalsContent(b));
+        assertTrue(b.equalsContent(a));
+        b.put(5, "changed");
+        assertFalse(a.equalsContent(b));
+        b.put(5, "v5");
+        b.remove(7);
+        b.put(100_000, "v7");
+        assertFalse(a.equalsContent(b));
+        assertTrue(new MyHashMap<>().equalsContent(new MyHashMap<>()));
+        assertFalse(a.equalsContent(null));
+    }
+
+    @Test
+    void testMergeAllKeepsMapUnchangedWhenRemappingThrows() {
+        MyHashMap<Integer, Integer> a = new MyHashMap<>();
+        MyHashMap<Integer, Integer> b = new MyHashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            a.put(i, i);
+            b.put(i + 5_000, i);
+        }
+        Map<Integer, Integer> before = contents(a);
+        assertThrows(IllegalStateException.class, () -> a.mergeAll(b, (x, y) -> {
+            if (x == 9_000) throw new IllegalStateException("boom");
+            return x + y;
+        }));
+        assertEquals(before, contents(a));
+        assertEquals(10_000, a.size());
+    }
+
+    @Test
+    void testMergeAllPublishesChangesWhenFeedAttached() {
+        MyHashMap<Integer, Integer> a = new MyHashMap<>();
+        MyHashMap<Integer, Integer> b = new MyHashMap<>();
+        a.put(1, 1);
+        a.put(2, 2);
+        b.put(2, 20);
+        b.put(3, 30);
+        ChangeFeed<Integer, Integer> feed = new ChangeFeed<>(Runnable::run, 16, 16, false);
+        a.setChangeFeed(feed);
+        ChangeFeedTest.Replica r = new ChangeFeedTest.Replica(Long.MAX_VALUE);
+        r.mirror.putAll(contents(a));
+        feed.subscribe(r);
+        a.mergeAll(b, Integer::sum);
+        assertEquals(Map.of(1, 1, 2, 22, 3, 30), contents(a));
+        assertEquals(contents(a), r.mirror);
+    }
+
+    @Test
+    void testMergeAllWithItselfAndFailuresUnderFeed() {
+        MyHashMap<Integer, Integer> plain = new MyHashMap<>();
+        for (int i = 0; i < 5_000; i++) plain.put(i, i);
+        plain.mergeAll(plain, Integer::sum);
+        for (int i = 0; i < 5_000; i++) assertEquals(2 * i, plain.get(i));
+
+        MyHashMap<Integer, Integer> a = new MyHashMap<>();
+        for (int i = 0; i < 5_000; i++) a.put(i, i);
+        ChangeFeed<Integer, Integer> feed = new ChangeFeed<>(Runnable::run, 8_192, 256, false);
+        a.setChangeFeed(feed);
+        ChangeFeedTest.Replica r = new ChangeFeedTest.Replica(Long.MAX_VALUE);
+        r.mirror.putAll(contents(a));
+        feed.subscribe(r);
+        // 合并自身：遍历的是快照，不会因为边遍历边写而出错
+        a.mergeAll(a, (x, y) -> x % 2 == 0 ? null : x + y);
+        assertEquals(2_500, a.size());
+        for (int i = 1; i < 5_000; i += 2) assertEquals(2 * i, a.get(i));
+        assertEquals(contents(a), r.mirror);
+
+        Map<Integer, Integer> before = contents(a);
+        int events = r.batchSizes.stream().mapToInt(Integer::intValue).sum();
+        assertThrows(IllegalStateException.class, () -> a.mergeAll(a, (x, y) -> {
+            if (x == 4_002) throw new IllegalStateException("boom");
+            return x + y;
+        }));
+        assertEquals(before, contents(a));
+        assertEquals(events, r.batchSizes.stream().mapToInt(Integer::intValue).sum());
+    }
+}
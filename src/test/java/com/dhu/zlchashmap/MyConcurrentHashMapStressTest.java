@@ -0,0 +1,160 @@
+package com.dhu.zlchashmap;
+
+import com.dhu.zlchashmap.LinearizabilityChecker.Kind;
+import com.dhu.zlchashmap.LinearizabilityChecker.Op;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 随机并发历史 + 线性一致性检查。默认只跑几秒；调优时用 -Dstress.seconds=600 长时间运行，
+ * 失败信息里带有种子和轮次，可用 -Dstress.seed 复现同一组操作序列
+ */
+class MyConcurrentHashMapStressTest {
+    static final long SECONDS = Long.getLong("stress.seconds", 2);
+    static final long SEED = Long.getLong("stress.seed", System.nanoTime());
+
+    static final int THREADS = 4;
+    static final int OPS_PER_THREAD = 15; // 每个键的历史不超过 64 个操作
+    static final int KEYS = 12;
+
+    // colliding 时所有键落在同一个桶里，超过 8 个就会树化
+    record StressKey(int id, boolean colliding) implements Comparable<StressKey> {
+        @Override
+        public int hashCode() {
+            return colliding ? 7 : id;
+        }
+
+        @Override
+        public int compareTo(StressKey o) {
+            return Integer.compare(id, o.id);
+        }
+    }
+
+    @Test
+    void testRandomHistoriesAreLinearizable() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SECONDS);
+            long round = 0;
+            do {
+                runRound(pool, round++);
+            } while (System.nanoTime() < deadline);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 一轮：新建映射并随机预填充，几个线程同时执行随机操作，结束后顺序读取每个键作为历史的最后一段
+     */
+    private void runRound(ExecutorService pool, long round) throws Exception {
+        Random rnd = new Random(SEED * 31 + round);
+        boolean colliding = (round & 1) == 0;
+        MyConcurrentHashMap.LockMode mode = MyConcurrentHashMap.LockMode.values()[(int) (round >> 1) & 1];
+        // 冲突模式用足够大的表以便树化；否则从最小的表开始，让每轮都经历多次扩容
+        MyConcurrentHashMap<StressKey, Integer> map = new MyConcurrentHashMap<>(colliding ? 64 : 1, mode);
+        Map<Integer, Integer> initial = new HashMap<>();
+        for (int k = 0; k < KEYS; k++) {
+            if (rnd.nextInt(4) != 0) {
+                map.put(new StressKey(k, colliding), -k - 1);
+                initial.put(k, -k - 1);
+            }
+        }
+
+        AtomicLong clock = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<Op>>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(worker(map, colliding, t, new Random(rnd.nextLong()), clock, start)));
+        }
+        start.countDown();
+        List<Op> history = new ArrayList<>();
+        for (Future<List<Op>> f : futures) history.addAll(f.get(1, TimeUnit.MINUTES));
+
+        int present = 0;
+        for (int k = 0; k < KEYS; k++) {
+            long call = clock.getAndIncrement();
+            Integer v = map.get(new StressKey(k, colliding));
+            history.add(new Op(-1, Kind.GET, k, null, v, call, clock.getAndIncrement()));
+            if (v != null) present++;
+        }
+
+        List<Op> violation = LinearizabilityChecker.findViolation(history, initial);
+        if (violation != null) {
+            StringBuilder sb = new StringBuilder("Non-linearizable history (seed=" + SEED + ", round=" + round
+                    + ", colliding=" + colliding + ", lockMode=" + mode + ", initial=" + initial.get(violation.get(0).key()) + "):");
+            for (Op op : violation) sb.append("\n  ").append(op);
+            fail(sb.toString());
+        }
+        assertEquals(present, map.size(), "size after round " + round + " (seed=" + SEED + ")");
+        int[] visited = new int[1];
+        map.forEach((k, v) -> visited[0]++);
+        assertEquals(present, visited[0], "forEach after round " + round + " (seed=" + SEED + ")");
+    }
+
+    private static Callable<List<Op>> worker(MyConcurrentHashMap<StressKey, Integer> map, boolean colliding,
+                                             int thread, Random rnd, AtomicLong clock, CountDownLatch start) {
+        return () -> {
+            List<Op> ops = new ArrayList<>(OPS_PER_THREAD);
+            start.await();
+            for (int i = 0; i < OPS_PER_THREAD; i++) {
+                int k = rnd.nextInt(KEYS);
+                StressKey key = new StressKey(k, colliding);
+                Integer arg = thread * 1000 + i; // 每次写入的值都唯一
+                int r = rnd.nextInt(100);
+                Kind kind = r < 30 ? Kind.GET : r < 60 ? Kind.PUT : r < 75 ? Kind.PUT_IF_ABSENT : Kind.REMOVE;
+                long call = clock.getAndIncrement();
+                Integer result = switch (kind) {
+                    case GET -> map.get(key);
+                    case PUT -> map.put(key, arg);
+                    case PUT_IF_ABSENT -> map.putIfAbsent(key, arg);
+                    case REMOVE -> map.remove(key);
+                };
+                long ret = clock.getAndIncrement();
+                ops.add(new Op(thread, kind, k, kind == Kind.GET || kind == Kind.REMOVE ? null : arg, result, call, ret));
+            }
+            return ops;
+        };
+    }
+
+    @Test
+    void testCheckerAcceptsOverlappingWrites() {
+        // 两次 put 重叠，只能按 20、10 的顺序线性化，尽管 put(10) 先开始
+        List<Op> h = List.of(
+                new Op(0, Kind.PUT, 1, 10, 20, 0, 3),
+                new Op(1, Kind.PUT, 1, 20, null, 1, 2),
+                new Op(2, Kind.GET, 1, null, 10, 4, 5));
+        assertNull(LinearizabilityChecker.findViolation(h, Map.of()));
+    }
+
+    @Test
+    void testCheckerRejectsStaleRead() {
+        // remove 已经返回之后的 get 不能再看到旧值
+        List<Op> h = List.of(
+                new Op(0, Kind.REMOVE, 1, null, 5, 0, 1),
+                new Op(1, Kind.GET, 1, null, 5, 2, 3));
+        assertNotNull(LinearizabilityChecker.findViolation(h, Map.of(1, 5)));
+    }
+
+    @Test
+    void testCheckerRejectsDoublePutIfAbsent() {
+        List<Op> h = List.of(
+                new Op(0, Kind.PUT_IF_ABSENT, 1, 10, null, 0, 2),
+                new Op(1, Kind.PUT_IF_ABSENT, 1, 20, null, 1, 3));
+        assertNotNull(LinearizabilityChecker.findViolation(h, Map.of()));
+    }
+}
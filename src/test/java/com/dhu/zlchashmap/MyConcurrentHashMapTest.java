@@ -0,0 +1,394 @@
+package com.dhu.zlchashmap;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MyConcurrentHashMapTest {
+
+    @Test
+    void testPutGetRemove() {
+        MyConcurrentHashMap<String, Integer> m = new MyConcurrentHashMap<>();
+        assertNull(m.get("a"));
+        assertNull(m.put("a", 1));
+        assertEquals(1, m.put("a", 2));
+        assertEquals(1, m.putIfAbsent("b", 1) == null ? 1 : 0);
+        assertEquals(1, m.putIfAbsent("b", 3));
+        assertEquals(2, m.size());
+        assertEquals(2, m.remove("a"));
+        assertNull(m.remove("a"));
+        assertFalse(m.containsKey("a"));
+        assertEquals(1, m.size());
+    }
+
+    @Test
+    void testNullsRejected() {
+        MyConcurrentHashMap<String, Integer> m = new MyConcurrentHashMap<>();
+        assertThrows(NullPointerException.class, () -> m.put(null, 1));
+        assertThrows(NullPointerException.class, () -> m.put("a", null));
+        assertNull(m.get(null));
+    }
+
+    @Test
+    void testResizePreservesMappings() {
+        MyConcurrentHashMap<Integer, Integer> m = new MyConcurrentHashMap<>(2);
+        for (int i = 0; i < 10_000; i++) m.put(i, i);
+        assertEquals(10_000, m.size());
+        for (int i = 0; i < 10_000; i++) assertEquals(i, m.get(i));
+        assertTrue(m.table.length >= 10_000 / 0.75);
+    }
+
+    @Test
+    void testTreeifyAndUntreeify() {
+        MyConcurrentHashMap<Colliding, Integer> m = new MyConcurrentHashMap<>(64);
+        for (int i = 0; i < 20; i++) m.put(Colliding.sameHash(i), i);
+        Node<Colliding, Integer> bin = m.table[(m.table.length - 1) & MyConcurrentHashMap.spread(Colliding.sameHash(0))];
+        assertInstanceOf(TreeBin.class, bin);
+        for (int i = 0; i < 20; i++) assertEquals(i, m.get(Colliding.sameHash(i)));
+
+        for (int i = 0; i < 15; i++) assertEquals(i, m.remove(Colliding.sameHash(i)));
+        bin = m.table[(m.table.length - 1) & MyConcurrentHashMap.spread(Colliding.sameHash(0))];
+        assertFalse(bin instanceof TreeBin);
+        for (int i = 15; i < 20; i++) assertEquals(i, m.get(Colliding.sameHash(i)));
+        assertEquals(5, m.size());
+    }
+
+    @Test
+    void testForEach() {
+        MyConcurrentHashMap<Integer, Integer> m = new MyConcurrentHashMap<>();
+        for (int i = 0; i < 100; i++) m.put(i, i * 2);
+        Map<Integer, Integer> seen = new HashMap<>();
+        m.forEach(seen::put);
+        assertEquals(100, seen.size());
+        assertEquals(198, seen.get(99));
+    }
+
+    @Test
+    void testConcurrentPutsAndRemoves() throws InterruptedException {
+        MyConcurrentHashMap<Integer, Integer> m = new MyConcurrentHashMap<>(2);
+        int threads = 8, perThread = 5_000;
+        List<Thread> ts = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int base = t * perThread;
+            ts.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < perThread; i++) m.put(base + i, base + i);
+                // 删除一半
+                for (int i = 0; i < perThread; i += 2) m.remove(base + i);
+            }));
+        }
+        for (Thread t : ts) t.join();
+        assertEquals(threads * perThread / 2, m.size());
+        for (int k = 0; k < threads * perThread; k++) {
+            if (k % 2 == 0) assertNull(m.get(k));
+            else assertEquals(k, m.get(k));
+        }
+    }
+
+    @Test
+    void testParkingModeWithVirtualThreads() throws InterruptedException {
+        MyConcurrentHashMap<Object, Integer> m = new MyConcurrentHashMap<>(2, MyConcurrentHashMap.LockMode.PARKING);
+        assertEquals(MyConcurrentHashMap.LockMode.PARKING, m.lockMode());
+        List<Thread> ts = new ArrayList<>();
+        for (int t = 0; t < 1_000; t++) {
+            int id = t;
+            ts.add(Thread.ofVirtual().start(() -> {
+                // 一半线程写冲突键，让树桶在并发下建立、查找和拆分
+                Object key = id % 2 == 0 ? Colliding.sameHash(id) : id;
+                m.put(key, id);
+                m.put(key, id + 1);
+                if (id % 4 == 1) m.remove(key);
+            }));
+        }
+        for (Thread t : ts) t.join();
+        assertEquals(750, m.size());
+        for (int id = 0; id < 1_000; id++) {
+            Object key = id % 2 == 0 ? Colliding.sameHash(id) : id;
+            if (id % 4 == 1) assertNull(m.get(key));
+            else assertEquals(id + 1, m.get(key));
+        }
+    }
+
+    @Test
+    void testWaitingForBinLockUnmountsVirtualThread() throws InterruptedException {
+        // MONITOR 模式下等锁的虚拟线程是 BLOCKED（钉住载体线程），PARKING 模式下是 WAITING（已卸载）
+        MyConcurrentHashMap<String, Integer> monitor = new MyConcurrentHashMap<>();
+        monitor.put("a", 1);
+        Node<String, Integer> head = monitor.table[(monitor.table.length - 1) & MyConcurrentHashMap.spread("a")];
+        Thread blocked;
+        synchronized (head) {
+            blocked = Thread.ofVirtual().start(() -> monitor.put("a", 2));
+            assertEquals(Thread.State.BLOCKED, awaitNotRunnable(blocked));
+        }
+        blocked.join();
+        assertEquals(2, monitor.get("a"));
+
+        MyConcurrentHashMap<String, Integer> parking = new MyConcurrentHashMap<>(16, MyConcurrentHashMap.LockMode.PARKING);
+        parking.put("a", 1);
+        int i = (parking.table.length - 1) & MyConcurrentHashMap.spread("a");
+        Lock l = parking.binLocks[i & (MyConcurrentHashMap.LOCK_STRIPES - 1)];
+        Thread parked;
+        l.lock();
+        try {
+            parked = Thread.ofVirtual().start(() -> parking.put("a", 2));
+            assertEquals(Thread.State.WAITING, awaitNotRunnable(parked));
+        } finally {
+            l.unlock();
+        }
+        parked.join();
+        assertEquals(2, parking.get("a"));
+    }
+
+    private static Thread.State awaitNotRunnable(Thread t) throws InterruptedException {
+        Thread.State s;
+        while ((s = t.getState()) == Thread.State.RUNNABLE || s == Thread.State.NEW) {
+            Thread.sleep(1);
+        }
+        return s;
+    }
+
+    @Test
+    void testTreeBinReadDoesNotWaitForBinLock() throws Exception {
+        MyConcurrentHashMap<Colliding, Integer> m = new MyConcurrentHashMap<>(64);
+        for (int i = 0; i < 20; i++) m.put(Colliding.sameHash(i), i);
+        Node<Colliding, Integer> bin = m.table[(m.table.length - 1) & MyConcurrentHashMap.spread(Colliding.sameHash(0))];
+        assertInstanceOf(TreeBin.class, bin);
+        synchronized (bin) {
+            CompletableFuture<Integer> read = CompletableFuture.supplyAsync(() -> m.get(Colliding.sameHash(13)));
+            assertEquals(13, read.get(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void testTreeBinReadsDuringRotations() throws Exception {
+        // 偶数键一直存在，写者反复插入删除奇数键让树不停旋转，读者必须始终找到偶数键、找不到不存在的键
+        MyConcurrentHashMap<Colliding, Integer> m = new MyConcurrentHashMap<>(64);
+        for (int i = 0; i < 200; i += 2) m.put(Colliding.sameHash(i), i);
+        AtomicBoolean stop = new AtomicBoolean();
+        Thread writer = Thread.ofPlatform().start(() -> {
+            for (int round = 0; !stop.get(); round++) {
+                for (int i = 1; i < 200; i += 2) m.put(Colliding.sameHash(i), round);
+                for (int i = 1; i < 200; i += 2) m.remove(Colliding.sameHash(i));
+            }
+        });
+        List<CompletableFuture<Void>> readers = new ArrayList<>();
+        for (int r = 0; r < 2; r++) {
+            readers.add(CompletableFuture.runAsync(() -> {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500);
+                while (System.nanoTime() < deadline) {
+                    for (int i = 0; i < 200; i += 2) assertEquals(i, m.get(Colliding.sameHash(i)));
+                    assertNull(m.get(Colliding.sameHash(-1)));
+                }
+            }));
+        }
+        try {
+            for (CompletableFuture<Void> f : readers) f.get(1, TimeUnit.MINUTES);
+        } finally {
+            stop.set(true);
+            writer.join();
+        }
+        assertEquals(100, m.size());
+    }
+
+    @Test
+    void testComputeIfAbsentRunsLoaderOnce() throws InterruptedException {
+        MyConcurrentHashMap<Object, Integer> m = new MyConcurrentHashMap<>(2);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        List<Thread> ts = new ArrayList<>();
+        AtomicInteger wrong = new AtomicInteger();
+        for (int t = 0; t < 1_000; t++) {
+            int id = t;
+            ts.add(Thread.ofVirtual().start(() -> {
+                // 同一个热点键，外加冲突键让桶在加载期间树化、迁移
+                Integer v = m.computeIfAbsent("hot", k -> {
+                    calls.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return 42;
+                });
+                if (v != 42) wrong.incrementAndGet();
+                m.computeIfAbsent(Colliding.sameHash(id % 50), k -> ((Colliding) k).id());
+            }));
+        }
+        Thread.sleep(50);
+        // 加载中的键对读者和 size 都不存在
+        assertNull(m.get("hot"));
+        assertFalse(m.containsKey("hot"));
+        release.countDown();
+        for (Thread t : ts) t.join();
+        assertEquals(1, calls.get());
+        assertEquals(0, wrong.get());
+        assertEquals(51, m.size());
+        for (int i = 0; i < 50; i++) assertEquals(i, m.get(Colliding.sameHash(i)));
+        assertEquals(42, m.computeIfAbsent("hot", k -> { throw new AssertionError("hit must not load"); }));
+    }
+
+    @Test
+    void testComputeIfAbsentFailurePropagatesAndRetries() throws Exception {
+        MyConcurrentHashMap<String, Integer> m = new MyConcurrentHashMap<>();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch fail = new CountDownLatch(1);
+        CompletableFuture<Integer> owner = CompletableFuture.supplyAsync(() -> m.computeIfAbsent("k", k -> {
+            loading.countDown();
+            try {
+                fail.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            throw new IllegalArgumentException("backend down");
+        }));
+        loading.await();
+        CompletableFuture<Integer> waiter = CompletableFuture.supplyAsync(() -> m.computeIfAbsent("k", k -> 1));
+        Thread.sleep(20);
+        fail.countDown();
+        Exception e = assertThrows(Exception.class, () -> owner.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalArgumentException.class, e.getCause());
+        // 等待者要么拿到同一个异常，要么在失败之后才到达并自己加载成功
+        int expected = 7;
+        try {
+            expected = waiter.get(10, TimeUnit.SECONDS);
+            assertEquals(1, expected);
+        } catch (Exception we) {
+            assertInstanceOf(IllegalArgumentException.class, we.getCause());
+        }
+        // 失败不会留下占位符，下一次调用重新加载
+        assertEquals(expected, m.computeIfAbsent("k", k -> 7));
+        assertNull(m.computeIfAbsent("absent", k -> null));
+        assertFalse(m.containsKey("absent"));
+    }
+
+    @Test
+    void testComputeIfAbsentInteractionWithWrites() {
+        MyConcurrentHashMap<String, Integer> m = new MyConcurrentHashMap<>();
+        // 递归加载同一个键会死锁，直接拒绝
+        assertThrows(IllegalStateException.class,
+                () -> m.computeIfAbsent("a", k -> m.computeIfAbsent("a", k2 -> 1)));
+        assertFalse(m.containsKey("a"));
+        assertEquals(0, m.size());
+
+        // 加载期间被 put 覆盖时以 put 的值为准
+        assertEquals(5, m.computeIfAbsent("b", k -> {
+            assertNull(m.put("b", 5));
+            return 6;
+        }));
+        assertEquals(5, m.get("b"));
+        assertEquals(1, m.size());
+
+        assertFalse(m.remove("b", 6));
+        assertTrue(m.remove("b", 5));
+        assertEquals(0, m.size());
+    }
+
+    @Test
+    void testPutAllAtomicAndRemoveAllAtomic() {
+        for (MyConcurrentHashMap.LockMode mode : MyConcurrentHashMap.LockMode.values()) {
+            MyConcurrentHashMap<Object, Integer> m = new MyConcurrentHashMap<>(64, mode);
+            Map<Object, Integer> batch = new HashMap<>();
+            for (int i = 0; i < 20; i++) batch.put(Colliding.sameHash(i), i);
+            for (int i = 0; i < 10; i++) batch.put(i, i);
+            m.put(3, -1);
+            m.putAllAtomic(batch);
+            assertEquals(30, m.size());
+            for (Map.Entry<Object, Integer> e : batch.entrySet()) assertEquals(e.getValue(), m.get(e.getKey()));
+            int index = (m.table.length - 1) & MyConcurrentHashMap.spread(Colliding.sameHash(0));
+            assertInstanceOf(TreeBin.class, m.table[index]);
+
+            List<Object> keys = new ArrayList<>();
+            for (int i = 0; i < 15; i++) keys.add(Colliding.sameHash(i));
+            keys.add(Colliding.sameHash(3)); // 重复的键只删一次
+            keys.add("absent");
+            assertEquals(15, m.removeAllAtomic(keys));
+            assertFalse(m.table[index] instanceof TreeBin);
+            assertEquals(15, m.size());
+            for (int i = 0; i < 20; i++) assertEquals(i < 15 ? null : i, m.get(Colliding.sameHash(i)));
+
+            assertEquals(0, m.removeAllAtomic(List.of("absent")));
+            m.putAllAtomic(Map.of());
+            assertEquals(15, m.size());
+            assertThrows(NullPointerException.class, () -> m.removeAllAtomic(java.util.Arrays.asList(1, null)));
+            assertEquals(1, m.get(1));
+        }
+    }
+
+    @Test
+    void testAtomicBatchesAreSeenAllOrNothing() throws Exception {
+        for (MyConcurrentHashMap.LockMode mode : MyConcurrentHashMap.LockMode.values()) {
+            MyConcurrentHashMap<Object, Integer> m = new MyConcurrentHashMap<>(2, mode);
+            // 一组分散在多个桶里的键和一个冲突桶里的键，写者每批把整组改成同一个递增的版本号
+            List<Object> group = new ArrayList<>();
+            for (int i = 0; i < 24; i++) group.add(i * 97);
+            for (int i = 0; i < 8; i++) group.add(Colliding.sameHash(i));
+            Map<Object, Integer> init = new HashMap<>();
+            for (Object k : group) init.put(k, 0);
+            m.putAllAtomic(init);
+
+            AtomicBoolean stop = new AtomicBoolean();
+            AtomicInteger violations = new AtomicInteger();
+            List<Thread> ts = new ArrayList<>();
+            ts.add(Thread.ofPlatform().start(() -> {
+                for (int v = 1; v <= 3_000; v++) {
+                    Map<Object, Integer> batch = new HashMap<>();
+                    for (Object k : group) batch.put(k, v);
+                    m.putAllAtomic(batch);
+                }
+                stop.set(true);
+            }));
+            // 其他批量操作和单键写入与这组键共用一些桶，并不断触发扩容
+            ts.add(Thread.ofPlatform().start(() -> {
+                java.util.Random rnd = new java.util.Random(1);
+                while (!stop.get()) {
+                    List<Object> keys = new ArrayList<>();
+                    for (int i = 0; i < 20; i++) keys.add(100_000 + rnd.nextInt(5_000));
+                    Map<Object, Integer> batch = new HashMap<>();
+                    for (Object k : keys) batch.put(k, 1);
+                    m.putAllAtomic(batch);
+                    if (rnd.nextBoolean()) m.removeAllAtomic(keys);
+                }
+            }));
+            ts.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; !stop.get(); i++) {
+                    m.put(200_000 + (i % 20_000), i);
+                    if ((i & 1) == 0) m.remove(200_000 + ((i / 2) % 20_000));
+                }
+            }));
+            for (int r = 0; r < 2; r++) {
+                int seed = r;
+                ts.add(Thread.ofPlatform().start(() -> {
+                    java.util.Random rnd = new java.util.Random(seed);
+                    List<Object> order = new ArrayList<>(group);
+                    while (!stop.get()) {
+                        java.util.Collections.shuffle(order, rnd);
+                        // 按任意顺序逐个读：后读到的版本不可能比先读到的旧
+                        int last = -1;
+                        for (Object k : order) {
+                            Integer v = m.get(k);
+                            if (v == null || v < last) violations.incrementAndGet();
+                            else last = v;
+                        }
+                    }
+                }));
+            }
+            for (Thread t : ts) t.join(60_000);
+            assertTrue(stop.get());
+            assertEquals(0, violations.get());
+            for (Object k : group) assertEquals(3_000, m.get(k));
+            int[] seen = new int[1];
+            m.forEach((k, v) -> seen[0]++);
+            assertEquals(m.size(), seen[0]);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.dhu.zlchashmap;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MyHashMapSerializerTest {
+
+    @Test
+    void testRoundTripWithNulls() throws IOException {
+        MyHashMap<String, Integer> m = new MyHashMap<>();
+        for (int i = 0; i < 1000; i++) m.put("k" + i, i);
+        m.put(null, -1);
+        m.put("nullVal", null);
+
+        MyHashMapSerializer<String, Integer> s = new MyHashMapSerializer<>(Codecs.STRING, Codecs.INTEGER);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        s.write(m, bytes);
+        MyHashMap<String, Integer> copy = s.read(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertEquals(m.size(), copy.size());
+        for (int i = 0; i < 1000; i++) assertEquals(i, copy.get("k" + i));
+        assertEquals(-1, copy.get(null));
+        assertTrue(copy.containsKey("nullVal"));
+    }
+
+    @Test
+    void testReaderPresizesTable() throws IOException {
+        MyHashMap<Integer, Integer> m = new MyHashMap<>();
+        for (int i = 0; i < 5000; i++) m.put(i, i);
+        MyHashMapSerializer<Integer, Integer> s = new MyHashMapSerializer<>(Codecs.INTEGER, Codecs.INTEGER);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        s.write(m, Channels.newChannel(bytes));
+
+        MyHashMap<Integer, Integer> copy = s.read(Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())));
+        // 容量等于按条目数预先计算的值，说明读取过程中没有扩容
+        assertEquals(MyHashMap.capacityFor(5000, MyHashMap.LOAD_FACTOR), copy.table.length);
+        assertEquals(4999, copy.get(4999));
+    }
+
+    @Test
+    void testStoredHashSkipsHashCode() throws IOException {
+        // 所有键 hash 冲突，同时覆盖树桶的遍历
+        Codec<CountingKey> keyCodec = new Codec<>() {
+            @Override
+            public void encode(CountingKey value, DataOutput out) throws IOException {
+                out.writeInt(value.id);
+            }
+
+            @Override
+            public CountingKey decode(DataInput in) throws IOException {
+                return new CountingKey(in.readInt());
+            }
+
+            @Override
+            public boolean storesHash() {
+                return true;
+            }
+        };
+        MyHashMap<CountingKey, Integer> m = new MyHashMap<>(64, 0.75f);
+        for (int i = 0; i < 20; i++) m.put(new CountingKey(i), i);
+
+        MyHashMapSerializer<CountingKey, Integer> s = new MyHashMapSerializer<>(keyCodec, Codecs.INTEGER);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        s.write(m, bytes);
+        CountingKey.hashCodeCalls = 0;
+        MyHashMap<CountingKey, Integer> copy = s.read(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(0, CountingKey.hashCodeCalls);
+        assertEquals(20, copy.size());
+        assertEquals(7, copy.get(new CountingKey(7)));
+    }
+
+    @Test
+    void testVarIntEncoding() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        java.io.DataOutputStream out = new java.io.DataOutputStream(bytes);
+        Codecs.writeVarInt(out, 127);
+        assertEquals(1, bytes.size());
+        Codecs.writeVarInt(out, 128);
+        assertEquals(3, bytes.size());
+        Codecs.writeVarInt(out, -1);
+        java.io.DataInputStream in = new java.io.DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(127, Codecs.readVarInt(in));
+        assertEquals(128, Codecs.readVarInt(in));
+        assertEquals(-1, Codecs.readVarInt(in));
+    }
+
+    static final class CountingKey implements Comparable<CountingKey> {
+        static int hashCodeCalls;
+        final int id;
+
+        CountingKey(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            hashCodeCalls++;
+            return 42;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CountingKey k && k.id == id;
+        }
+
+        @Override
+        public int compareTo(CountingKey o) {
+            return Integer.compare(id, o.id);
+        }
+    }
+}
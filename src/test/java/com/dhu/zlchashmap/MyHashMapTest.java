@@ -3,6 +3,10 @@ package com.dhu.zlchashmap;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class MyHashMapTest {
@@ -94,4 +98,216 @@ class MyHashMapTest {
         assertTrue(m.containsKey("k"), "should contain key even if value is null");
         assertNull(m.get("k"));
     }
+
+    // hashCode 只有 4 种取值的键，用来触发树化
+    private static Colliding key(int id) {
+        return new Colliding(id, id & 3);
+    }
+
+    @Test
+    void testTreeBinsSurviveResizeAndRemove() {
+        MyHashMap<Colliding, Integer> m = new MyHashMap<>();
+        for (int i = 0; i < 500; i++) m.put(key(i), i);
+        for (int i = 0; i < 500; i++) assertEquals(i, m.get(key(i)), "lost key " + i);
+        for (int i = 0; i < 500; i += 2) assertEquals(i, m.remove(key(i)));
+        for (int i = 0; i < 500; i++) {
+            if (i % 2 == 0) assertNull(m.get(key(i)));
+            else assertEquals(i, m.get(key(i)));
+        }
+        assertEquals(250, m.size());
+    }
+
+    // hashCode 全部相同、不可比较的键
+    record Opaque(int id) {
+        @Override
+        public int hashCode() {
+            return 7;
+        }
+    }
+
+    @Test
+    void testTreeLookupWithIncomparableAndMixedKeys() {
+        // 树内只能按类名和 identityHashCode 排序，查找时用的是新实例
+        MyHashMap<Object, Integer> m = new MyHashMap<>(64, 0.75f);
+        m.put(7, -1); // Integer 7 与 Opaque 的 hash 相同，按类名排序
+        for (int i = 0; i < 40; i++) m.put(new Opaque(i), i);
+        assertEquals(-1, m.get(7));
+        for (int i = 0; i < 40; i++) assertEquals(i, m.get(new Opaque(i)));
+        for (int i = 0; i < 40; i += 2) assertEquals(i, m.remove(new Opaque(i)));
+        for (int i = 0; i < 40; i++) assertEquals(i % 2 == 0 ? null : i, m.get(new Opaque(i)));
+    }
+
+    @Test
+    void testSortedArrayBinsAgainstHashMap() {
+        // Colliding 只有 4 种 hash，Opaque 全部同 hash 且不可比较，桶会在链表、数组、树之间来回转换
+        MyHashMap<Object, Integer> m = new MyHashMap<>(64, 0.75f, true);
+        Map<Object, Integer> expected = new HashMap<>();
+        Random rnd = new Random(40);
+        for (int i = 0; i < 100_000; i++) {
+            int id = rnd.nextInt(600);
+            Object key = id < 400 ? key(id) : id < 480 ? new Opaque(id) : id == 599 ? null : (Object) id;
+            if (rnd.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), m.remove(key));
+            } else {
+                assertEquals(expected.put(key, i), m.put(key, i));
+            }
+            if (i % 10_000 == 0) assertEquals(expected.size(), m.size());
+        }
+        for (Map.Entry<Object, Integer> e : expected.entrySet()) {
+            assertTrue(m.containsKey(e.getKey()));
+            assertEquals(e.getValue(), m.get(e.getKey()));
+        }
+        Map<Object, Integer> seen = new HashMap<>();
+        m.forEach(seen::put);
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    void testSortedArrayBinLifecycle() {
+        MyHashMap<Colliding, Integer> m = new MyHashMap<>(64, 0.75f, true);
+        int index = (64 - 1) & MyHashMap.hash(key(0));
+        for (int i = 0; i < 40; i += 4) m.put(key(i), i);
+        assertInstanceOf(SortedArrayBin.class, m.table[index]);
+        for (int i = 40; i < 400; i += 4) m.put(key(i), i);
+        assertInstanceOf(RedBlackNode.class, m.table[index]); // 超过 SORTED_BIN_LIMIT
+        for (int i = 40; i < 400; i += 4) assertEquals(i, m.remove(key(i)));
+        for (int i = 4; i < 40; i += 4) assertEquals(i, m.remove(key(i)));
+        assertFalse(m.table[index] instanceof SortedArrayBin || m.table[index] instanceof RedBlackNode);
+        assertEquals(0, m.get(key(0)));
+        assertEquals(1, m.size());
+
+        // forEachNode 的调用方（冻结、序列化）要看到数组桶里的每一个条目和它的 hash
+        for (int i = 0; i < 40; i += 4) m.put(key(i), i);
+        Map<Colliding, Integer> seen = new HashMap<>();
+        m.forEachNode(e -> {
+            assertEquals(MyHashMap.hash(e.key), e.hash);
+            seen.put(e.key, e.val);
+        });
+        assertEquals(10, seen.size());
+        for (int i = 0; i < 40; i += 4) assertEquals(i, seen.get(key(i)));
+    }
+
+    private static MyHashMap<Object, Integer> mixedMap(boolean sortedBins, Map<Object, Integer> expected) {
+        MyHashMap<Object, Integer> m = new MyHashMap<>(16, 0.75f, sortedBins);
+        for (int i = 0; i < 20_000; i++) {
+            m.put(i, i);
+            expected.put(i, i);
+        }
+        // 4 个桶各 100 个条目：树桶（sortedBins 时是数组桶）里删掉一部分后要按剩余个数重建
+        for (int i = 0; i < 400; i++) {
+            m.put(key(i), i);
+            expected.put(key(i), i);
+        }
+        return m;
+    }
+
+    private static void assertBinsShaped(MyHashMap<Object, Integer> m) {
+        Map<Object, Integer> seen = new HashMap<>();
+        m.forEach(seen::put);
+        assertEquals(m.size(), seen.size());
+        for (Node<Object, Integer> head : m.table) {
+            if (head instanceof SortedArrayBin<Object, Integer> b) {
+                assertTrue(b.size > MyHashMap.UNTREEIFY_THRESHOLD);
+            } else if (head instanceof RedBlackNode<Object, Integer> root) {
+                assertTrue(root.countNodes(root, 0) > MyHashMap.UNTREEIFY_THRESHOLD);
+            }
+        }
+    }
+
+    @Test
+    void testRemoveIfAndRetainIfAgainstHashMap() {
+        for (boolean sortedBins : new boolean[]{false, true}) {
+            for (boolean parallel : new boolean[]{false, true}) {
+                Map<Object, Integer> expected = new HashMap<>();
+                MyHashMap<Object, Integer> m = mixedMap(sortedBins, expected);
+                int before = expected.size();
+                assertEquals(0, m.removeIf((k, v) -> v < 0, parallel));
+
+                expected.values().removeIf(v -> v % 3 == 0);
+                assertEquals(before - expected.size(), m.removeIf((k, v) -> v % 3 == 0, parallel));
+                assertBinsShaped(m);
+                for (Map.Entry<Object, Integer> e : expected.entrySet()) assertEquals(e.getValue(), m.get(e.getKey()));
+                assertEquals(expected.size(), m.size());
+
+                // 碰撞桶只剩 4 个左右，应退回链表
+                before = expected.size();
+                expected.entrySet().removeIf(e -> !(e.getValue() % 25 == 1));
+                assertEquals(before - expected.size(), m.retainIf((k, v) -> v % 25 == 1, parallel));
+                assertBinsShaped(m);
+                for (Map.Entry<Object, Integer> e : expected.entrySet()) assertEquals(e.getValue(), m.get(e.getKey()));
+                assertEquals(expected.size(), m.size());
+
+                assertEquals(expected.size(), m.removeIf((k, v) -> true, parallel));
+                assertTrue(m.isEmpty());
+                for (Node<Object, Integer> head : m.table) assertNull(head);
+                m.put(key(1), 1);
+                assertEquals(1, m.get(key(1)));
+            }
+        }
+    }
+
+    @Test
+    void testRemoveIfLeavesMapConsistentWhenFilterThrows() {
+        for (boolean sortedBins : new boolean[]{false, true}) {
+            Map<Object, Integer> expected = new HashMap<>();
+            MyHashMap<Object, Integer> m = mixedMap(sortedBins, expected);
+            int[] calls = new int[1];
+            // 第 10050 次调用时抛出：前面的条目已经删除，后面的全部保留
+            assertThrows(IllegalStateException.class, () -> m.removeIf((k, v) -> {
+                if (++calls[0] == 10_050) throw new IllegalStateException();
+                return v % 2 == 0;
+            }));
+            int removed = 0;
+            for (Map.Entry<Object, Integer> e : expected.entrySet()) {
+                if (m.containsKey(e.getKey())) assertEquals(e.getValue(), m.get(e.getKey()));
+                else removed++;
+            }
+            assertEquals(expected.size() - removed, m.size());
+            assertTrue(removed > 4_000 && removed < 5_100);
+            assertBinsShaped(m);
+            assertEquals(m.size() - expected.size() / 2, m.removeIf((k, v) -> v % 2 == 0));
+        }
+    }
+
+    @Test
+    void testParallelRemoveIfWaitsForAllTasksWhenFilterThrows() throws InterruptedException {
+        MyHashMap<Integer, Integer> m = new MyHashMap<>();
+        for (int i = 0; i < 20_000; i++) m.put(i, i);
+        int len = m.table.length;
+        assertTrue(len >= 2 * MapAlgebra.MIN_SPLIT);
+        // 后半张表一进 filter 就抛出；前半张表由分出去的任务处理，removeIf 返回时它必须已经做完
+        assertThrows(IllegalStateException.class, () -> m.removeIf((k, v) -> {
+            if ((MyHashMap.hash(k) & (len - 1)) >= len / 2) throw new IllegalStateException("boom");
+            return v % 2 == 0;
+        }, true));
+        int size = m.size();
+        int[] count = new int[1];
+        m.forEach((k, v) -> count[0]++);
+        assertEquals(count[0], size);
+        for (int i = 0; i < 20_000; i++) {
+            boolean front = (MyHashMap.hash(i) & (len - 1)) < len / 2;
+            assertEquals(!front || i % 2 != 0, m.containsKey(i));
+        }
+        Thread.sleep(100);
+        assertEquals(size, m.size());
+    }
+
+    @Test
+    void testRemoveIfPublishesRemovals() throws InterruptedException {
+        MyHashMap<Integer, Integer> m = new MyHashMap<>();
+        for (int i = 0; i < 5_000; i++) m.put(i, i);
+        ChangeFeed<Integer, Integer> feed = new ChangeFeed<>(Runnable::run, 64, 16, false);
+        m.setChangeFeed(feed);
+        ChangeFeedTest.Replica r = new ChangeFeedTest.Replica(Long.MAX_VALUE);
+        m.forEach(r.mirror::put);
+        feed.subscribe(r);
+        // 挂了变更流时即使要求并行也顺序执行
+        assertEquals(2_500, m.removeIf((k, v) -> (v & 1) == 1, true));
+        feed.close();
+        assertTrue(r.completed.await(10, java.util.concurrent.TimeUnit.SECONDS));
+        assertNull(r.error);
+        Map<Integer, Integer> c = new HashMap<>();
+        m.forEach(c::put);
+        assertEquals(c, r.mirror);
+    }
 }
@@ -0,0 +1,112 @@
+package com.dhu.zlchashmap;
+
+import com.dhu.zlchashmap.bench.RecyclingHashMapBenchmark;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecyclingHashMapTest {
+
+    private static Colliding key(int id) {
+        return new Colliding(id, id & 3);
+    }
+
+    @Test
+    void testMatchesHashMapUnderChurn() {
+        // 4 个桶里的冲突键，反复跨过树化和退树化的阈值
+        RecyclingHashMap<Colliding, Integer> m = new RecyclingHashMap<>(64, 0.75f, 32);
+        Map<Colliding, Integer> expected = new HashMap<>();
+        Random rnd = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            Colliding k = key(rnd.nextInt(48));
+            if (rnd.nextBoolean()) {
+                assertEquals(expected.put(k, i), m.put(k, i));
+            } else {
+                assertEquals(expected.remove(k), m.remove(k));
+            }
+            assertEquals(expected.size(), m.size());
+        }
+        for (Map.Entry<Colliding, Integer> e : expected.entrySet()) {
+            assertEquals(e.getValue(), m.get(e.getKey()));
+        }
+        assertTrue(m.pooledNodes() <= 2 * (32 + RecyclingHashMap.DEFAULT_SLAB_SIZE));
+    }
+
+    @Test
+    void testRemovedNodesAreReused() {
+        RecyclingHashMap<Integer, Integer> m = new RecyclingHashMap<>(1024, 0.75f, 1024);
+        for (int i = 0; i < 500; i++) m.put(i, i);
+        long allocated = m.allocatedNodes();
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 500; i++) assertEquals(i, m.remove(i));
+            assertEquals(0, m.size());
+            for (int i = 0; i < 500; i++) m.put(i, i);
+        }
+        assertEquals(allocated, m.allocatedNodes());
+    }
+
+    @Test
+    void testPoolIsBounded() {
+        RecyclingHashMap<Integer, Integer> m = new RecyclingHashMap<>(4096, 0.75f, 100);
+        for (int i = 0; i < 3000; i++) m.put(i, i);
+        for (int i = 0; i < 3000; i++) m.remove(i);
+        assertTrue(m.pooledNodes() <= 100);
+    }
+
+    @Test
+    void testSmallPoolNeverExceedsMaxFree() {
+        // maxFree 小于一批的大小时，分配也不能让池超过上限
+        for (int maxFree : new int[]{0, 1, 8}) {
+            RecyclingHashMap<Integer, Integer> m = new RecyclingHashMap<>(64, 0.75f, maxFree);
+            for (int round = 0; round < 3; round++) {
+                for (int i = 0; i < 200; i++) {
+                    m.put(i, i);
+                    assertTrue(m.pooledNodes() <= maxFree);
+                }
+                for (int i = 0; i < 200; i++) m.remove(i);
+                assertTrue(m.pooledNodes() <= maxFree);
+            }
+            for (int i = 0; i < 200; i++) m.put(i, -i);
+            for (int i = 0; i < 200; i++) assertEquals(-i, m.get(i));
+        }
+    }
+
+    /**
+     * 与 -prof gc 相同的口径：JMH GCProfiler 统计的每次操作分配字节数。
+     * 在当前 JVM 内运行（forks=0），测量期间只有增删循环本身
+     */
+    @Test
+    void testSteadyChurnAllocatesNothing() throws RunnerException {
+        Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .include(RecyclingHashMapBenchmark.class.getName() + ".churn")
+                .param("map", "recycling")
+                .param("layout", "spread", "tree")
+                .forks(0)
+                .warmupIterations(2)
+                .warmupTime(TimeValue.milliseconds(200))
+                .measurementIterations(2)
+                .measurementTime(TimeValue.milliseconds(200))
+                .addProfiler(GCProfiler.class)
+                .shouldFailOnError(true)
+                .build()).run();
+        assertEquals(2, results.size());
+        for (RunResult r : results) {
+            Result<?> norm = r.getSecondaryResults().get("gc.alloc.rate.norm");
+            assertNotNull(norm, "GC profiler did not report allocation");
+            assertEquals(0.0, norm.getScore(), 0.5,
+                    "bytes/op for layout=" + r.getParams().getParam("layout"));
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.dhu.zlchashmap;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedMapTest {
+
+    record BadKey(int id) {
+        @Override
+        public int hashCode() {
+            throw new IllegalStateException("bad key " + id);
+        }
+    }
+
+    @Test
+    void testSessionsMatchHashMapAndKeysStayInTheirShard() throws Exception {
+        int threads = 4;
+        Map<Integer, Integer> expected = new ConcurrentHashMap<>();
+        List<Throwable> errors = new ArrayList<>();
+        // 队列容量远小于每个线程的操作数，覆盖队列满时的等待
+        try (ShardedMap<Integer, Integer> m = new ShardedMap<>(4, 64, 16)) {
+            assertEquals(4, m.shardCount());
+            List<Thread> ts = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int id = t;
+                ts.add(new Thread(() -> {
+                    Map<Integer, Integer> mine = new HashMap<>();
+                    Random rnd = new Random(id);
+                    try (ShardedMap<Integer, Integer>.Session s = m.openSession()) {
+                        List<CompletableFuture<Integer>> got = new ArrayList<>();
+                        List<Integer> want = new ArrayList<>();
+                        for (int i = 0; i < 20_000; i++) {
+                            int k = rnd.nextInt(2_000) * threads + id; // 每个线程只用自己的键
+                            if (rnd.nextInt(4) == 0) {
+                                want.add(mine.remove(k));
+                                got.add(s.remove(k));
+                            } else {
+                                want.add(mine.put(k, i));
+                                got.add(s.put(k, i));
+                            }
+                            if (i % 97 == 0) {
+                                want.add(mine.get(k));
+                                got.add(s.get(k));
+                            }
+                        }
+                        s.flush();
+                        for (int i = 0; i < got.size(); i++) assertEquals(want.get(i), got.get(i).join());
+                        expected.putAll(mine);
+                    } catch (Throwable e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    }
+                }));
+            }
+            ts.forEach(Thread::start);
+            for (Thread t : ts) t.join();
+            assertEquals(List.of(), errors);
+
+            try (ShardedMap<Integer, Integer>.Session s = m.openSession()) {
+                assertEquals(expected.size(), s.size().join());
+                assertEquals(expected, s.select((k, v) -> true).join());
+                Map<Integer, Integer> even = s.select((k, v) -> v % 2 == 0).join();
+                assertTrue(even.values().stream().allMatch(v -> v % 2 == 0));
+                AtomicInteger visited = new AtomicInteger();
+                s.forEach((k, v) -> visited.incrementAndGet()).join();
+                assertEquals(expected.size(), visited.get());
+            }
+        }
+        // close 之后工作线程已退出，可以直接检查分区
+        ShardedMap<Integer, Integer> m = new ShardedMap<>(8, 16, 4);
+        try (ShardedMap<Integer, Integer>.Session s = m.openSession()) {
+            for (int k = 0; k < 5_000; k++) s.put(k, k);
+            s.put(null, -1);
+            s.size().join();
+        }
+        m.close();
+        int total = 0;
+        for (int i = 0; i < m.shardCount(); i++) {
+            MyHashMap<Integer, Integer> p = m.partition(i);
+            total += p.size();
+            int shard = i;
+            p.forEach((k, v) -> assertEquals(shard, m.shardOf(k)));
+        }
+        assertEquals(5_001, total);
+        assertEquals(0, m.shardOf(null));
+        // 连续的小整数 hash 高位相同，仍要大致均匀地分到各分区
+        for (int i = 0; i < m.shardCount(); i++) assertTrue(m.partition(i).size() > 5_000 / 16);
+    }
+
+    @Test
+    void testOperationsWaitForFlushAndBatchesPublishOnce() throws Exception {
+        try (ShardedMap<String, Integer> m = new ShardedMap<>(1, 1024, 8);
+             ShardedMap<String, Integer>.Session s = m.openSession()) {
+            assertEquals(0, m.shardOf("anything"));
+            CompletableFuture<Integer> f = s.put("a", 1);
+            Thread.sleep(50);
+            assertFalse(f.isDone()); // 攒着还没发布
+            s.flush();
+            assertNull(f.join());
+            // 攒够 batchSize 个时自动发布
+            List<CompletableFuture<Integer>> fs = new ArrayList<>();
+            for (int i = 0; i < 8; i++) fs.add(s.put("b" + i, i));
+            CompletableFuture.allOf(fs.toArray(new CompletableFuture<?>[0])).join();
+
+            AtomicReference<Object> result = new AtomicReference<>();
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            s.get("a", (v, e) -> {
+                result.set(e == null ? v : e);
+                done.complete(null);
+            });
+            s.flush();
+            done.join();
+            assertEquals(1, result.get());
+        }
+    }
+
+    @Test
+    void testFailuresAreReportedAndMisuseIsRejected() throws Exception {
+        ShardedMap<Object, Integer> m = new ShardedMap<>(2, 16, 4);
+        ShardedMap<Object, Integer>.Session s = m.openSession();
+        // hashCode 在路由时就抛出，不会进入队列
+        assertThrows(IllegalStateException.class, () -> s.put(new BadKey(1), 1));
+        CompletableFuture<List<Object>> failed = s.scan(p -> {
+            throw new ArithmeticException("boom");
+        });
+        CompletionException e = assertThrows(CompletionException.class, failed::join);
+        assertInstanceOf(ArithmeticException.class, e.getCause());
+        // 回调抛出的异常交给工作线程的 UncaughtExceptionHandler，之后的操作照常执行
+        s.put("x", 1, (v, t) -> {
+            throw new RuntimeException("callback");
+        });
+        CompletableFuture<Integer> after = s.get("x");
+        s.flush();
+        assertEquals(1, after.join());
+
+        AtomicReference<Throwable> fromOther = new AtomicReference<>();
+        Thread other = new Thread(() -> {
+            try {
+                s.get("x");
+            } catch (Throwable t) {
+                fromOther.set(t);
+            }
+        });
+        other.start();
+        other.join();
+        assertInstanceOf(IllegalStateException.class, fromOther.get());
+
+        s.close();
+        assertThrows(IllegalStateException.class, () -> s.get("x"));
+        m.close();
+        assertThrows(IllegalStateException.class, m::openSession);
+    }
+}
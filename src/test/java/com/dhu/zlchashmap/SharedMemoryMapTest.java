@@ -0,0 +1,180 @@
+package com.dhu.zlchashmap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SharedMemoryMapTest {
+    @TempDir
+    Path dir;
+
+    static final String COUNTER = "counter";
+
+    /**
+     * 子进程：写入自己的键区间 [id * n, (id + 1) * n)，并用 replace 的 CAS 循环给共享计数器加 n 次
+     */
+    public static final class Child {
+        public static void main(String[] args) throws IOException {
+            Path file = Path.of(args[0]);
+            int id = Integer.parseInt(args[1]);
+            int n = Integer.parseInt(args[2]);
+            try (SharedMemoryMap<String, Long> m = SharedMemoryMap.open(file, Codecs.STRING, Codecs.LONG)) {
+                for (int i = 0; i < n; i++) {
+                    m.put("c" + id + "-" + i, (long) id * n + i);
+                    while (true) {
+                        Long c = m.get(COUNTER);
+                        if (m.replace(COUNTER, c, c + 1)) break;
+                    }
+                    if (i % 3 == 0) m.remove("c" + id + "-" + (i / 3));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testMatchesHashMapAndSurvivesReopen() throws IOException {
+        Path file = dir.resolve("map");
+        Map<Integer, String> expected = new HashMap<>();
+        Random rnd = new Random(7);
+        // 小的 chunk 让记录区分成多段，覆盖跨段分配
+        try (SharedMemoryMap<Integer, String> m = SharedMemoryMap.create(file, 2_000, 1 << 20,
+                Codecs.INTEGER, Codecs.STRING, 12)) {
+            for (int i = 0; i < 20_000; i++) {
+                int k = rnd.nextInt(1_500);
+                String v = "v" + rnd.nextInt(1 << 20);
+                switch (rnd.nextInt(5)) {
+                    case 0 -> assertEquals(expected.remove(k), m.remove(k));
+                    case 1 -> assertEquals(expected.putIfAbsent(k, v), m.putIfAbsent(k, v));
+                    case 2 -> {
+                        String cur = expected.get(k);
+                        boolean ok = cur != null && rnd.nextBoolean();
+                        String exp = ok ? cur : "nope";
+                        assertEquals(expected.replace(k, exp, v), m.replace(k, exp, v));
+                    }
+                    default -> assertEquals(expected.put(k, v), m.put(k, v));
+                }
+                assertEquals(expected.get(k), m.get(k));
+            }
+            assertEquals(expected.size(), m.size());
+            assertThrows(NullPointerException.class, () -> m.put(null, "x"));
+            assertThrows(NullPointerException.class, () -> m.put(1, null));
+        }
+        try (SharedMemoryMap<Integer, String> m = SharedMemoryMap.open(file, Codecs.INTEGER, Codecs.STRING)) {
+            assertEquals(expected.size(), m.size());
+            Map<Integer, String> seen = new HashMap<>();
+            m.forEach(seen::put);
+            assertEquals(expected, seen);
+            assertTrue(m.dataUsed() > 0);
+        }
+        assertThrows(IOException.class, () -> SharedMemoryMap.create(file, 10, 1024, Codecs.INTEGER, Codecs.STRING));
+    }
+
+    @Test
+    void testFullTableAndFullDataRegion() throws IOException {
+        try (SharedMemoryMap<Integer, Integer> m = SharedMemoryMap.create(dir.resolve("small"), 8, 1 << 16,
+                Codecs.INTEGER, Codecs.INTEGER)) {
+            for (int i = 0; i < 16; i++) m.put(i, i);
+            assertThrows(IllegalStateException.class, () -> m.put(16, 16));
+            // 删除不释放槽，键重新放入时复用原来的槽
+            m.remove(3);
+            assertThrows(IllegalStateException.class, () -> m.put(17, 17));
+            assertNull(m.put(3, 33));
+            assertEquals(16, m.size());
+        }
+        try (SharedMemoryMap<Integer, Integer> m = SharedMemoryMap.create(dir.resolve("tiny"), 100, 256,
+                Codecs.INTEGER, Codecs.INTEGER)) {
+            assertThrows(IllegalStateException.class, () -> {
+                for (int i = 0; ; i++) m.put(0, i);
+            });
+            assertNotNull(m.get(0));
+        }
+    }
+
+    @Test
+    void testTwoMappingsInOneProcessUnderContention() throws Exception {
+        Path file = dir.resolve("threads");
+        int threads = 4, n = 2_000;
+        try (SharedMemoryMap<String, Long> a = SharedMemoryMap.create(file, threads * n, 1 << 22, Codecs.STRING, Codecs.LONG);
+             SharedMemoryMap<String, Long> b = SharedMemoryMap.open(file, Codecs.STRING, Codecs.LONG)) {
+            a.put(COUNTER, 0L);
+            List<Thread> ts = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                SharedMemoryMap<String, Long> m = t % 2 == 0 ? a : b;
+                int id = t;
+                ts.add(new Thread(() -> {
+                    for (int i = 0; i < n; i++) {
+                        m.put("k" + i, (long) id);
+                        while (true) {
+                            Long c = m.get(COUNTER);
+                            if (m.replace(COUNTER, c, c + 1)) break;
+                        }
+                    }
+                }));
+            }
+            ts.forEach(Thread::start);
+            for (Thread t : ts) t.join();
+            assertEquals(threads * n, b.get(COUNTER));
+            assertEquals(n + 1, a.size());
+            for (int i = 0; i < n; i++) assertEquals(a.get("k" + i), b.get("k" + i));
+        }
+    }
+
+    @Test
+    void testChildProcessesShareTheMap() throws Exception {
+        Path file = dir.resolve("procs");
+        int procs = 3, n = 1_000;
+        try (SharedMemoryMap<String, Long> m = SharedMemoryMap.create(file, procs * n + 1, 1 << 22, Codecs.STRING, Codecs.LONG)) {
+            m.put(COUNTER, 0L);
+            String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+            List<Process> children = new ArrayList<>();
+            for (int id = 0; id < procs; id++) {
+                children.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                        Child.class.getName(), file.toString(), String.valueOf(id), String.valueOf(n))
+                        .redirectErrorStream(true)
+                        .redirectOutput(dir.resolve("child" + id + ".log").toFile())
+                        .start());
+            }
+            for (int id = 0; id < procs; id++) {
+                Process p = children.get(id);
+                assertTrue(p.waitFor(120, TimeUnit.SECONDS), "child " + id + " timed out");
+                assertEquals(0, p.exitValue(), () -> readLog(dir.resolve("child" + children.indexOf(p) + ".log").toFile()));
+            }
+            // 父进程通过自己的映射看到子进程的全部修改
+            assertEquals((long) procs * n, m.get(COUNTER));
+            int present = 0;
+            for (int id = 0; id < procs; id++) {
+                for (int i = 0; i < n; i++) {
+                    Long v = m.get("c" + id + "-" + i);
+                    boolean removed = i <= (n - 1) / 3;
+                    if (removed) {
+                        assertNull(v);
+                    } else {
+                        assertEquals((long) id * n + i, v);
+                        present++;
+                    }
+                }
+            }
+            assertEquals(present + 1, m.size());
+        }
+    }
+
+    private static String readLog(File f) {
+        try {
+            return Files.readString(f.toPath());
+        } catch (IOException e) {
+            return e.toString();
+        }
+    }
+}
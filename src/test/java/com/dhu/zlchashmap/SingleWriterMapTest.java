@@ -0,0 +1,211 @@
+package com.dhu.zlchashmap;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleWriterMapTest {
+
+    record BadKey(int id) {
+        @Override
+        public int hashCode() {
+            throw new IllegalArgumentException("bad key " + id);
+        }
+    }
+
+    /**
+     * 写线程计算它的 hash 时先等 release，再以 Error 退出
+     */
+    record FatalKey(CountDownLatch release) {
+        @Override
+        public int hashCode() {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new AssertionError("writer killed");
+        }
+    }
+
+    @Test
+    void testFlushMakesWritesVisible() throws InterruptedException {
+        // 队列很小，生产者会经常等写线程腾位置
+        try (SingleWriterMap<Object, Integer> m = new SingleWriterMap<>(64, 16, 1, TimeUnit.SECONDS)) {
+            List<Thread> producers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int id = t;
+                producers.add(Thread.ofPlatform().start(() -> {
+                    for (int i = id; i < 40_000; i += 4) {
+                        Object key = i % 3 == 0 ? Colliding.grouped(i, 20) : i;
+                        m.put(key, i);
+                        if (i % 5 == 0) m.remove(key);
+                    }
+                    // flush 返回时本线程之前的写入都已可见
+                    m.flush();
+                    Object key = id % 3 == 0 ? Colliding.grouped(id, 20) : id;
+                    if (id % 5 != 0) assertEquals(id, m.get(key));
+                }));
+            }
+            for (Thread t : producers) t.join();
+            m.flush();
+            assertEquals(32_000, m.size());
+            for (int i = 0; i < 40_000; i++) {
+                Object key = i % 3 == 0 ? Colliding.grouped(i, 20) : i;
+                if (i % 5 == 0) assertFalse(m.containsKey(key));
+                else assertEquals(i, m.get(key));
+            }
+            m.put(null, null);
+            m.flush();
+            assertTrue(m.containsKey(null));
+            assertNull(m.get(null));
+        }
+    }
+
+    @Test
+    void testWritesArePublishedWithinFlushLatency() throws InterruptedException {
+        try (SingleWriterMap<String, String> m = new SingleWriterMap<>(1024, 64, 20, TimeUnit.MILLISECONDS)) {
+            m.put("a", "1");
+            long start = System.nanoTime();
+            while (m.get("a") == null) {
+                assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    @Test
+    void testSnapshotsAreImmutable() {
+        try (SingleWriterMap<Integer, Integer> m = new SingleWriterMap<>()) {
+            for (int i = 0; i < 5_000; i++) m.put(i, i);
+            m.flush();
+            SingleWriterMap.Snapshot<Integer, Integer> old = m.snapshot();
+            for (int i = 0; i < 5_000; i += 2) m.remove(i);
+            // 跨过扩容，使下一次发布整体重建
+            for (int i = 5_000; i < 20_000; i++) m.put(i, -i);
+            m.flush();
+            SingleWriterMap.Snapshot<Integer, Integer> now = m.snapshot();
+            assertTrue(now.version() > old.version());
+
+            assertEquals(5_000, old.size());
+            Map<Integer, Integer> oldContents = new HashMap<>();
+            old.forEach(oldContents::put);
+            assertEquals(5_000, oldContents.size());
+            for (int i = 0; i < 5_000; i++) assertEquals(i, old.get(i));
+            assertNull(old.get(5_000));
+
+            assertEquals(2_500 + 15_000, now.size());
+            assertNull(now.get(0));
+            assertEquals(1, now.get(1));
+            assertEquals(-19_999, now.get(19_999));
+        }
+    }
+
+    @Test
+    void testReadersSeeConsistentSnapshotsWhileWriting() throws Exception {
+        // 写者依次把 x、y 改成 i；同一个快照里 x 只能等于 y 或比 y 大 1，且 x 不会倒退
+        try (SingleWriterMap<String, Integer> m = new SingleWriterMap<>(256, 32, 1, TimeUnit.MILLISECONDS)) {
+            m.put("x", 0);
+            m.put("y", 0);
+            m.flush();
+            AtomicBoolean stop = new AtomicBoolean();
+            AtomicReference<String> failure = new AtomicReference<>();
+            Thread reader = Thread.ofPlatform().start(() -> {
+                int lastX = 0;
+                while (!stop.get()) {
+                    SingleWriterMap.Snapshot<String, Integer> s = m.snapshot();
+                    int x = s.get("x"), y = s.get("y");
+                    if (x != y && x != y + 1) failure.set("x=" + x + ", y=" + y);
+                    if (x < lastX) failure.set("x went back from " + lastX + " to " + x);
+                    lastX = x;
+                }
+            });
+            for (int i = 1; i <= 20_000; i++) {
+                m.put("x", i);
+                m.put("y", i);
+                if (i % 1000 == 0) m.flush();
+            }
+            m.flush();
+            stop.set(true);
+            reader.join();
+            assertNull(failure.get());
+            assertEquals(20_000, m.get("x"));
+        }
+    }
+
+    @Test
+    void testFailedMutationIsReportedByNextFlush() {
+        try (SingleWriterMap<Object, Integer> m = new SingleWriterMap<>(64, 16, 1, TimeUnit.HOURS)) {
+            m.put("a", 1);
+            m.put(new BadKey(1), 2);
+            m.remove(new BadKey(2));
+            m.put("b", 3);
+            IllegalStateException e = assertThrows(IllegalStateException.class, m::flush);
+            assertInstanceOf(IllegalArgumentException.class, e.getCause());
+            assertEquals("bad key 1", e.getCause().getMessage());
+            // 失败的修改被跳过，其余照常发布，写线程继续工作
+            assertEquals(1, m.get("a"));
+            assertEquals(3, m.get("b"));
+            assertEquals(2, m.size());
+            m.put("c", 4);
+            m.flush();
+            assertEquals(4, m.get("c"));
+        }
+    }
+
+    @Test
+    void testWriterDeathFailsWaitersAndLaterCalls() throws InterruptedException {
+        SingleWriterMap<Object, Integer> m = new SingleWriterMap<>(4, 4, 1, TimeUnit.HOURS);
+        CountDownLatch release = new CountDownLatch(1);
+        m.put(new FatalKey(release), 0);
+        // 写线程卡住时填满队列：生产者在队列满处等待，flush 要么在队列里等、要么在入队处等
+        AtomicReference<Throwable> producerFailure = new AtomicReference<>();
+        AtomicReference<Throwable> flushFailure = new AtomicReference<>();
+        Thread producer = Thread.ofPlatform().start(() -> {
+            try {
+                for (int i = 0; i < 100; i++) m.put(i, i);
+            } catch (Throwable t) {
+                producerFailure.set(t);
+            }
+        });
+        Thread flusher = Thread.ofPlatform().start(() -> {
+            try {
+                m.flush();
+            } catch (Throwable t) {
+                flushFailure.set(t);
+            }
+        });
+        Thread.sleep(50);
+        release.countDown();
+        producer.join(TimeUnit.SECONDS.toMillis(10));
+        flusher.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(producer.isAlive());
+        assertFalse(flusher.isAlive());
+        assertInstanceOf(IllegalStateException.class, producerFailure.get());
+        assertInstanceOf(IllegalStateException.class, flushFailure.get());
+        assertInstanceOf(AssertionError.class, flushFailure.get().getCause());
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> m.put("x", 1));
+        assertInstanceOf(AssertionError.class, e.getCause());
+        assertThrows(IllegalStateException.class, m::flush);
+        m.close();
+    }
+
+    @Test
+    void testClosePublishesPendingWrites() {
+        SingleWriterMap<Integer, Integer> m = new SingleWriterMap<>(1024, 64, 1, TimeUnit.HOURS);
+        for (int i = 0; i < 100; i++) m.put(i, i);
+        m.close();
+        assertEquals(100, m.size());
+        assertThrows(IllegalStateException.class, () -> m.put(1, 1));
+    }
+}
@@ -0,0 +1,101 @@
+package com.dhu.zlchashmap;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Utf8StringMapTest {
+
+    @Test
+    void testAllKeyFormsAgree() {
+        Utf8StringMap<Integer> m = new Utf8StringMap<>();
+        String[] keys = {"", "a", "hello", "héllo", "中文键", "emoji-😀", "Aa", "BB", "x".repeat(300)};
+        for (int i = 0; i < keys.length; i++) assertNull(m.put(keys[i], i));
+        for (int i = 0; i < keys.length; i++) {
+            byte[] utf8 = keys[i].getBytes(StandardCharsets.UTF_8);
+            byte[] padded = new byte[utf8.length + 6];
+            System.arraycopy(utf8, 0, padded, 3, utf8.length);
+            assertEquals(i, m.get(keys[i]));
+            assertEquals(i, m.get(new StringBuilder(keys[i])));
+            assertEquals(i, m.get(padded, 3, utf8.length));
+            assertEquals(Utf8StringMap.hash(utf8, 0, utf8.length), (int) Utf8StringMap.hashAndLength(keys[i]));
+        }
+        assertNull(m.get("hell"));
+        assertNull(m.get("hello".getBytes(StandardCharsets.UTF_8), 0, 4));
+
+        // 字节切片插入的键也能用字符串查到
+        byte[] k = "字节键".getBytes(StandardCharsets.UTF_8);
+        assertNull(m.put(k, 0, k.length, 99));
+        assertEquals(99, m.get("字节键"));
+        assertEquals(99, m.put("字节键", 100));
+        assertEquals(keys.length + 1, m.size());
+
+        // 未配对的代理字符与 String.getBytes 一样编码成 '?'
+        m.put("a\uD800b", 7);
+        assertEquals(7, m.get("a?b"));
+    }
+
+    @Test
+    void testAgainstHashMapWithRemovals() {
+        Utf8StringMap<Integer> m = new Utf8StringMap<>(4);
+        Map<String, Integer> expected = new HashMap<>();
+        Random rnd = new Random(35);
+        for (int i = 0; i < 200_000; i++) {
+            String key = "k" + rnd.nextInt(5_000) + (rnd.nextBoolean() ? "é" : "");
+            if (rnd.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), m.remove(key));
+            } else {
+                assertEquals(expected.put(key, i), m.put(key, i));
+            }
+        }
+        assertEquals(expected.size(), m.size());
+        Map<String, Integer> seen = new HashMap<>();
+        m.forEach(seen::put);
+        assertEquals(expected, seen);
+
+        m.clear();
+        assertTrue(m.isEmpty());
+        assertNull(m.get("k1"));
+    }
+
+    @Test
+    void testLookupsDoNotAllocate() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Utf8StringMap<String> m = new Utf8StringMap<>();
+        String[] keys = new String[1_000];
+        byte[][] bytes = new byte[keys.length][];
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "user:" + i + ":名前";
+            bytes[i] = keys[i].getBytes(StandardCharsets.UTF_8);
+            m.put(keys[i], keys[i]);
+        }
+        long hits = 0;
+        // 预热让查找路径被编译，之后测量期间线程分配的字节数
+        for (int round = 0; round < 30; round++) hits += lookups(m, keys, bytes, sb);
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int round = 0; round < 100; round++) hits += lookups(m, keys, bytes, sb);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        assertEquals(130L * keys.length * 3, hits);
+        assertTrue(allocated < 4096, "allocated " + allocated + " bytes");
+    }
+
+    private static long lookups(Utf8StringMap<String> m, String[] keys, byte[][] bytes, StringBuilder sb) {
+        long hits = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (m.get(keys[i]) != null) hits++;
+            if (m.get(bytes[i], 0, bytes[i].length) != null) hits++;
+            sb.setLength(0);
+            sb.append(keys[i]);
+            if (m.get(sb) != null) hits++;
+        }
+        return hits;
+    }
+}
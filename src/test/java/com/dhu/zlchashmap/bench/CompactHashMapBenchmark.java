@@ -0,0 +1,70 @@
+package com.dhu.zlchashmap.bench;
+
+import com.dhu.zlchashmap.CompactHashMap;
+import com.dhu.zlchashmap.MyHashMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 整表遍历与查找，比较 MyHashMap 与 CompactHashMap：
+ * java -cp ... org.openjdk.jmh.Main CompactHashMapBenchmark
+ * <p>
+ * 加上 -prof gc 可以在 setup 之后看到两者的堆占用差异（也可以用 jcmd GC.class_histogram）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompactHashMapBenchmark {
+    @Param({"1000", "1000000"})
+    public int size;
+
+    MyHashMap<Integer, Integer> plain;
+    CompactHashMap<Integer, Integer> compact;
+    Integer[] probes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        plain = new MyHashMap<>();
+        compact = new CompactHashMap<>();
+        probes = new Integer[1024];
+        for (int i = 0; i < size; i++) {
+            plain.put(i * 31, i);
+            compact.put(i * 31, i);
+        }
+        for (int i = 0; i < probes.length; i++) probes[i] = (i * 7919 % size) * 31;
+    }
+
+    @Benchmark
+    public long iterateMyHashMap() {
+        long[] sum = new long[1];
+        plain.forEach((k, v) -> sum[0] += v);
+        return sum[0];
+    }
+
+    @Benchmark
+    public long iterateCompact() {
+        long[] sum = new long[1];
+        compact.forEach((k, v) -> sum[0] += v);
+        return sum[0];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1024)
+    public long getMyHashMap() {
+        long sum = 0;
+        for (Integer k : probes) sum += plain.get(k);
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1024)
+    public long getCompact() {
+        long sum = 0;
+        for (Integer k : probes) sum += compact.get(k);
+        return sum;
+    }
+}
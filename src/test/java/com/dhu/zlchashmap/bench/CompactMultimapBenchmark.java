@@ -0,0 +1,58 @@
+package com.dhu.zlchashmap.bench;
+
+import com.dhu.zlchashmap.CompactMultimap;
+import com.dhu.zlchashmap.MyHashMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按键分组追加，比较 MyHashMap&lt;K, List&lt;V&gt;&gt; 的 get-then-put 与 CompactMultimap.putValue：
+ * java -cp ... org.openjdk.jmh.Main CompactMultimapBenchmark -prof gc
+ * <p>
+ * valuesPerKey 为 1、2 时 CompactMultimap 每个键只分配一个节点，gc.alloc.rate.norm 的差异最明显
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompactMultimapBenchmark {
+    @Param({"1", "2", "8"})
+    public int valuesPerKey;
+
+    static final int KEYS = 100_000;
+
+    Integer[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = new Integer[KEYS];
+        for (int i = 0; i < KEYS; i++) keys[i] = i * 31;
+    }
+
+    @Benchmark
+    public MyHashMap<Integer, List<Integer>> groupMapOfLists() {
+        MyHashMap<Integer, List<Integer>> m = new MyHashMap<>();
+        for (int r = 0; r < valuesPerKey; r++) {
+            for (Integer k : keys) {
+                List<Integer> l = m.get(k);
+                if (l == null) m.put(k, l = new ArrayList<>());
+                l.add(k);
+            }
+        }
+        return m;
+    }
+
+    @Benchmark
+    public CompactMultimap<Integer, Integer> groupCompact() {
+        CompactMultimap<Integer, Integer> m = new CompactMultimap<>();
+        for (int r = 0; r < valuesPerKey; r++) {
+            for (Integer k : keys) m.putValue(k, k);
+        }
+        return m;
+    }
+}
@@ -0,0 +1,90 @@
+package com.dhu.zlchashmap.bench;
+
+import com.dhu.zlchashmap.ConcurrentCuckooHashMap;
+import com.dhu.zlchashmap.CuckooHashMap;
+import com.dhu.zlchashmap.MyHashMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * get 的延迟分布。SampleTime 模式直接给出 p0.9999，关注尾延迟而不是平均值：
+ * java -cp ... org.openjdk.jmh.Main CuckooHashMapBenchmark
+ * <p>
+ * strided 布局的 hashCode 低位相同，MyHashMap 会出现很长的链表或树桶，
+ * 布谷鸟哈希的第二个桶经过混合，探测次数仍然有常数上界
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CuckooHashMapBenchmark {
+    @Param({"myhashmap", "cuckoo", "concurrent-cuckoo"})
+    public String map;
+
+    @Param({"random", "strided"})
+    public String layout;
+
+    @Param({"1000000"})
+    public int size;
+
+    /**
+     * 可比较的键，strided 布局下 hashCode 只有高位不同
+     */
+    public record Key(int id, int hash) implements Comparable<Key> {
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public int compareTo(Key o) {
+            return Integer.compare(id, o.id);
+        }
+    }
+
+    Key[] keys;
+    Function<Key, Key> getter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = new Key[size];
+        SplittableRandom rnd = new SplittableRandom(1);
+        for (int i = 0; i < size; i++) {
+            // strided：低 16 位全为 0，MyHashMap.hash 的高位异或只能分出 2^16 个桶
+            keys[i] = new Key(i, layout.equals("strided") ? i << 16 : rnd.nextInt());
+        }
+        switch (map) {
+            case "myhashmap" -> {
+                MyHashMap<Key, Key> m = new MyHashMap<>(size * 2, 0.75f);
+                for (Key k : keys) m.put(k, k);
+                getter = m::get;
+            }
+            case "cuckoo" -> {
+                CuckooHashMap<Key, Key> m = new CuckooHashMap<>(size);
+                for (Key k : keys) m.put(k, k);
+                getter = m::get;
+            }
+            case "concurrent-cuckoo" -> {
+                ConcurrentCuckooHashMap<Key, Key> m = new ConcurrentCuckooHashMap<>(size);
+                for (Key k : keys) m.put(k, k);
+                getter = m::get;
+            }
+            default -> throw new IllegalArgumentException(map);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        final SplittableRandom rnd = new SplittableRandom();
+    }
+
+    @Benchmark
+    public Key get(Cursor c) {
+        return getter.apply(keys[c.rnd.nextInt(keys.length)]);
+    }
+}
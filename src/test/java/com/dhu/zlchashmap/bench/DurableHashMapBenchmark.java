@@ -0,0 +1,63 @@
+package com.dhu.zlchashmap.bench;
+
+import com.dhu.zlchashmap.Codecs;
+import com.dhu.zlchashmap.DurableHashMap;
+import com.dhu.zlchashmap.Durability;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 各持久化级别下每秒可完成的修改次数。多线程运行时 SYNC 模式能体现 group commit 的效果：
+ * mvn test-compile && java -cp target/test-classes:target/classes:$(依赖) org.openjdk.jmh.Main DurableHashMapBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class DurableHashMapBenchmark {
+    @Param({"ASYNC", "WRITE", "SYNC"})
+    Durability durability;
+
+    @Param({"100000"})
+    int keySpace;
+
+    Path dir;
+    DurableHashMap<Integer, Integer> map;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("durable-map-bench");
+        map = new DurableHashMap<>(dir, Codecs.INTEGER, Codecs.INTEGER, durability);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        map.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.delete(p);
+        }
+    }
+
+    @Benchmark
+    public Integer put() throws IOException {
+        ThreadLocalRandom r = ThreadLocalRandom.current();
+        return map.put(r.nextInt(keySpace), r.nextInt());
+    }
+
+    @Benchmark
+    public Integer putOrRemove() throws IOException {
+        ThreadLocalRandom r = ThreadLocalRandom.current();
+        int key = r.nextInt(keySpace);
+        return r.nextInt(4) == 0 ? map.remove(key) : map.put(key, key);
+    }
+}
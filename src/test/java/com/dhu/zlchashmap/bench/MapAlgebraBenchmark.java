@@ -0,0 +1,75 @@
+package com.dhu.zlchashmap.bench;
+
+import com.dhu.zlchashmap.MyHashMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 合并两个等容量的 MyHashMap，比较单线程 get/put 循环与 mergeAll：
+ * java -cp ... org.openjdk.jmh.Main MapAlgebraBenchmark
+ * <p>
+ * mergeAll 在 ForkJoin 公共池上运行，核数越多差距越大
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class MapAlgebraBenchmark {
+    @Param({"1000000"})
+    public int size;
+
+    MyHashMap<Integer, Long> base;
+    MyHashMap<Integer, Long> delta;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        base = new MyHashMap<>();
+        delta = new MyHashMap<>();
+        // 一半键重叠
+        for (int i = 0; i < size; i++) {
+            base.put(i, (long) i);
+            delta.put(i + size / 2, 1L);
+        }
+    }
+
+    private MyHashMap<Integer, Long> copyOfBase() {
+        MyHashMap<Integer, Long> m = new MyHashMap<>(base.size() * 2, 0.75f);
+        base.forEach(m::put);
+        return m;
+    }
+
+    @Benchmark
+    public MyHashMap<Integer, Long> mergeLoop() {
+        MyHashMap<Integer, Long> m = copyOfBase();
+        delta.forEach((k, v) -> {
+            Long old = m.get(k);
+            m.put(k, old == null ? v : old + v);
+        });
+        return m;
+    }
+
+    @Benchmark
+    public MyHashMap<Integer, Long> mergeAll() {
+        MyHashMap<Integer, Long> m = copyOfBase();
+        m.mergeAll(delta, Long::sum);
+        return m;
+    }
+
+    @Benchmark
+    public MyHashMap<Integer, Long> copyOnly() {
+        return copyOfBase();
+    }
+
+    @Benchmark
+    public boolean equalsContent() {
+        return base.equalsContent(delta);
+    }
+
+    @Benchmark
+    public MyHashMap<Integer, Long> intersectKeys() {
+        return base.intersectKeys(delta);
+    }
+}
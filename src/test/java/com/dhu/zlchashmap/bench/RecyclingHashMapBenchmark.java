@@ -0,0 +1,75 @@
+package com.dhu.zlchashmap.bench;
+
+import com.dhu.zlchashmap.MyHashMap;
+import com.dhu.zlchashmap.RecyclingHashMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 规模稳定的增删循环：每次操作删除窗口最旧的键、插入一个新键，映射大小保持不变。
+ * 用 -prof gc 运行，recycling 模式的 gc.alloc.rate.norm 应为 0 B/op：
+ * java -cp ... org.openjdk.jmh.Main RecyclingHashMapBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RecyclingHashMapBenchmark {
+    @Param({"recycling", "plain"})
+    public String map;
+
+    // spread：键分散在各个桶里；tree：每个桶约 16 个冲突键，走红黑树的插入和删除
+    @Param({"spread", "tree"})
+    public String layout;
+
+    @Param({"4096"})
+    public int size;
+
+    /**
+     * hashCode 可控的键，可比较以便树桶按 id 排序
+     */
+    public record Key(int id, int hash) implements Comparable<Key> {
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public int compareTo(Key o) {
+            return Integer.compare(id, o.id);
+        }
+    }
+
+    MyHashMap<Key, Key> m;
+    Key[] keys;
+    int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // 键池是窗口的两倍，键和值都预先创建，测量期间不装箱
+        keys = new Key[size * 2];
+        int buckets = Math.max(1, size / 16);
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new Key(i, layout.equals("tree") ? i % buckets : i * 0x9E3779B1);
+        }
+        int capacity = size * 2; // 足够大，预热之后不再扩容
+        m = map.equals("recycling")
+                ? new RecyclingHashMap<>(capacity, 0.75f, size)
+                : new MyHashMap<>(capacity, 0.75f);
+        for (int i = 0; i < size; i++) m.put(keys[i], keys[i]);
+        cursor = 0;
+    }
+
+    @Benchmark
+    public Key churn() {
+        int n = keys.length;
+        Key old = keys[cursor];
+        Key fresh = keys[(cursor + size) % n];
+        cursor = cursor + 1 == n ? 0 : cursor + 1;
+        m.put(fresh, fresh);
+        return m.remove(old);
+    }
+}
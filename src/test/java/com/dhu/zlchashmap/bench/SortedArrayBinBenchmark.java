@@ -0,0 +1,89 @@
+package com.dhu.zlchashmap.bench;
+
+import com.dhu.zlchashmap.MyHashMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 冲突严重的桶：红黑树桶与有序数组桶的查找延迟和内存占用：
+ * java -cp ... org.openjdk.jmh.Main SortedArrayBinBenchmark
+ * <p>
+ * 每组 binSize 个键的 hashCode 完全相同：
+ * strings 用 "Aa"/"BB" 拼出 hashCode 相同的字符串，records 是 hashCode 相同、可比较的记录。
+ * 查找用内容相同的新实例，避免 equals 走引用相等的捷径。
+ * 每个 fork 建表后打印 GC 之后的堆增量，作为每个条目的内存占用
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SortedArrayBinBenchmark {
+    @Param({"tree", "sorted"})
+    public String bins;
+
+    @Param({"strings", "records"})
+    public String keySet;
+
+    @Param({"16", "48"})
+    public int binSize;
+
+    @Param({"200000"})
+    public int size;
+
+    public record Key(int id, int group) implements Comparable<Key> {
+        @Override
+        public int hashCode() {
+            return group;
+        }
+
+        @Override
+        public int compareTo(Key o) {
+            return Integer.compare(id, o.id);
+        }
+    }
+
+    MyHashMap<Object, Integer> map;
+    Object[] probes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Object[] keys = new Object[size];
+        for (int i = 0; i < size; i++) keys[i] = key(i);
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long before = memory.getHeapMemoryUsage().getUsed();
+        map = new MyHashMap<>(16, 0.75f, bins.equals("sorted"));
+        for (int i = 0; i < size; i++) map.put(keys[i], i);
+        System.gc();
+        long after = memory.getHeapMemoryUsage().getUsed();
+        System.out.printf("%n%s/%s/%d: ~%d bytes per entry retained by the map%n",
+                bins, keySet, binSize, (after - before) / size);
+
+        probes = new Object[1024];
+        SplittableRandom rnd = new SplittableRandom(40);
+        for (int i = 0; i < probes.length; i++) probes[i] = key(rnd.nextInt(size));
+    }
+
+    private Object key(int i) {
+        int group = i / binSize, member = i % binSize;
+        if (keySet.equals("records")) return new Key(i, group * 0x9E3779B9);
+        // "Aa" 与 "BB" 的 hashCode 相同，同一组内按 member 的二进制位选择，前缀区分组
+        StringBuilder sb = new StringBuilder("g").append(group).append(':');
+        for (int b = 0; b < 6; b++) sb.append((member >>> b & 1) == 0 ? "Aa" : "BB");
+        return sb.toString();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1024)
+    public long get() {
+        long sum = 0;
+        for (Object k : probes) sum += map.get(k);
+        return sum;
+    }
+}
@@ -0,0 +1,96 @@
+package com.dhu.zlchashmap.bench;
+
+import com.dhu.zlchashmap.MyConcurrentHashMap;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 10 万个虚拟线程同时对一小组热点键做混合写入，比较两种桶锁：
+ * java -cp ... org.openjdk.jmh.Main VirtualThreadPutBenchmark
+ * <p>
+ * 每个 fork 用 JFR 记录 jdk.VirtualThreadPinned 和 jdk.JavaMonitorEnter（阈值 0），
+ * 结束时写到 target/vt-&lt;lockMode&gt;.jfr 并打印事件数。
+ * Java 21 上虚拟线程在 monitor 入口处阻塞不会 park，不产生 VirtualThreadPinned，
+ * 但会以 JavaMonitorEnter 的形式出现，这段时间载体线程被占住
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VirtualThreadPutBenchmark {
+    @Param({"MONITOR", "PARKING"})
+    public MyConcurrentHashMap.LockMode lockMode;
+
+    @Param({"100000"})
+    public int threads;
+
+    @Param({"1024"})
+    public int keys;
+
+    static final int OPS_PER_THREAD = 16;
+
+    MyConcurrentHashMap<Integer, Integer> map;
+    Recording recording;
+
+    @Setup(Level.Trial)
+    public void startRecording() {
+        recording = new Recording();
+        recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+        recording.enable("jdk.JavaMonitorEnter").withThreshold(Duration.ZERO).withStackTrace();
+        recording.start();
+    }
+
+    @Setup(Level.Invocation)
+    public void newMap() {
+        map = new MyConcurrentHashMap<>(16, lockMode);
+    }
+
+    @Benchmark
+    public int mixedPuts() {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int t = 0; t < threads; t++) {
+                long seed = t;
+                executor.execute(() -> {
+                    SplittableRandom rnd = new SplittableRandom(seed);
+                    for (int i = 0; i < OPS_PER_THREAD; i++) {
+                        Integer k = rnd.nextInt(keys);
+                        switch (rnd.nextInt(4)) {
+                            case 0 -> map.putIfAbsent(k, i);
+                            case 1 -> map.remove(k);
+                            default -> map.put(k, i);
+                        }
+                    }
+                });
+            }
+        }
+        return map.size();
+    }
+
+    @TearDown(Level.Trial)
+    public void dumpRecording() throws IOException {
+        recording.stop();
+        Path out = Path.of("target", "vt-" + lockMode + ".jfr");
+        recording.dump(out);
+        recording.close();
+        long pinned = 0, monitorEnter = 0;
+        for (RecordedEvent e : RecordingFile.readAllEvents(out)) {
+            String name = e.getEventType().getName();
+            if (name.equals("jdk.VirtualThreadPinned")) pinned++;
+            else if (name.equals("jdk.JavaMonitorEnter")) monitorEnter++;
+        }
+        System.out.printf("%n%s: jdk.VirtualThreadPinned=%d, jdk.JavaMonitorEnter=%d (%s)%n",
+                lockMode, pinned, monitorEnter, out);
+    }
+}
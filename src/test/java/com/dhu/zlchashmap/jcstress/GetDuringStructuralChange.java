@@ -0,0 +1,96 @@
+package com.dhu.zlchashmap.jcstress;
+
+import com.dhu.zlchashmap.MyConcurrentHashMap;
+import org.openjdk.jcstress.annotations.*;
+import org.openjdk.jcstress.infra.results.II_Result;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+/**
+ * 读线程与扩容、树化并发：已存在的映射在迁移或转换的任何时刻都必须可见
+ */
+public class GetDuringStructuralChange {
+
+    @JCStressTest
+    @Description("第 12 次 put 触发 16 -> 32 的扩容，读线程同时读取已有的键和新键")
+    @Outcome(id = "5, 100", expect = ACCEPTABLE, desc = "新键已可见")
+    @Outcome(id = "5, -1", expect = ACCEPTABLE, desc = "新键尚未可见")
+    @Outcome(expect = FORBIDDEN, desc = "扩容期间丢失已有映射")
+    @State
+    public static class Resize {
+        final MyConcurrentHashMap<Integer, Integer> map = new MyConcurrentHashMap<>(16);
+
+        public Resize() {
+            // 阈值为 12，预先放入 11 个
+            for (int i = 0; i < 11; i++) map.put(i, i);
+        }
+
+        @Actor
+        public void writer() {
+            map.put(11, 100);
+        }
+
+        @Actor
+        public void reader(II_Result r) {
+            Integer v = map.get(5);
+            r.r1 = v == null ? -1 : v;
+            v = map.get(11);
+            r.r2 = v == null ? -1 : v;
+        }
+    }
+
+    @JCStressTest
+    @Description("同一个桶里第 9 个键触发树化，读线程同时在该桶中查找")
+    @Outcome(id = "3, 100", expect = ACCEPTABLE, desc = "新键已可见")
+    @Outcome(id = "3, -1", expect = ACCEPTABLE, desc = "新键尚未可见")
+    @Outcome(expect = FORBIDDEN, desc = "树化期间丢失已有映射")
+    @State
+    public static class Treeify {
+        final MyConcurrentHashMap<Key, Integer> map = new MyConcurrentHashMap<>(64);
+
+        public Treeify() {
+            for (int i = 0; i < 8; i++) map.put(Key.colliding(i), i);
+        }
+
+        @Actor
+        public void writer() {
+            map.put(Key.colliding(8), 100);
+        }
+
+        @Actor
+        public void reader(II_Result r) {
+            Integer v = map.get(Key.colliding(3));
+            r.r1 = v == null ? -1 : v;
+            v = map.get(Key.colliding(8));
+            r.r2 = v == null ? -1 : v;
+        }
+    }
+
+    @JCStressTest
+    @Description("删除使树桶退化为链表，读线程同时查找桶里剩下的键")
+    @Outcome(id = "1, 0", expect = ACCEPTABLE, desc = "删除已生效")
+    @Outcome(id = "1, 1", expect = ACCEPTABLE, desc = "删除尚未生效")
+    @Outcome(expect = FORBIDDEN, desc = "退化期间丢失已有映射")
+    @State
+    public static class Untreeify {
+        final MyConcurrentHashMap<Key, Integer> map = new MyConcurrentHashMap<>(64);
+
+        public Untreeify() {
+            for (int i = 0; i < 9; i++) map.put(Key.colliding(i), i); // 已树化，count = 9
+            map.remove(Key.colliding(7));
+            map.remove(Key.colliding(8)); // count = 7
+        }
+
+        @Actor
+        public void writer() {
+            map.remove(Key.colliding(0)); // count = 6，退化为链表
+        }
+
+        @Actor
+        public void reader(II_Result r) {
+            r.r1 = map.get(Key.colliding(1)) != null ? 1 : 0;
+            r.r2 = map.get(Key.colliding(0)) != null ? 1 : 0;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.dhu.zlchashmap.jcstress;
+
+/**
+ * hashCode 可控且可比较的键：相同 hash 的键落在同一个桶，用来构造链表冲突和树化
+ */
+record Key(int id, int hash) implements Comparable<Key> {
+    static Key colliding(int id) {
+        return new Key(id, 7);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public int compareTo(Key o) {
+        return Integer.compare(id, o.id);
+    }
+}
@@ -0,0 +1,107 @@
+package com.dhu.zlchashmap.jcstress;
+
+import com.dhu.zlchashmap.MyConcurrentHashMap;
+import org.openjdk.jcstress.annotations.*;
+import org.openjdk.jcstress.infra.results.III_Result;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+/**
+ * remove 与 put 竞争：同一个键的结果必须可线性化，同一个桶里的其他键不能被误删或丢失
+ */
+public class RemoveRacingPut {
+
+    @JCStressTest
+    @Description("已存在的键同时被 put 和 remove")
+    @Outcome(id = "1, 2, -1", expect = ACCEPTABLE, desc = "put 先于 remove")
+    @Outcome(id = "-1, 1, 2", expect = ACCEPTABLE, desc = "remove 先于 put")
+    @Outcome(expect = FORBIDDEN, desc = "不可线性化")
+    @State
+    public static class SameKey {
+        final MyConcurrentHashMap<Integer, Integer> map = new MyConcurrentHashMap<>(16);
+
+        public SameKey() {
+            map.put(1, 1);
+        }
+
+        @Actor
+        public void putter(III_Result r) {
+            Integer prev = map.put(1, 2);
+            r.r1 = prev == null ? -1 : prev;
+        }
+
+        @Actor
+        public void remover(III_Result r) {
+            Integer prev = map.remove(1);
+            r.r2 = prev == null ? -1 : prev;
+        }
+
+        @Arbiter
+        public void arbiter(III_Result r) {
+            Integer v = map.get(1);
+            r.r3 = v == null ? -1 : v;
+        }
+    }
+
+    @JCStressTest
+    @Description("删除桶头的同时在同一个桶尾部追加")
+    @Outcome(id = "1, 1, 2", expect = ACCEPTABLE, desc = "两个剩余映射都在")
+    @Outcome(expect = FORBIDDEN, desc = "追加丢失或删除波及其他键")
+    @State
+    public static class SameBin {
+        final MyConcurrentHashMap<Integer, Integer> map = new MyConcurrentHashMap<>(16);
+
+        public SameBin() {
+            map.put(1, 1);
+            map.put(17, 17);
+        }
+
+        @Actor
+        public void remover() {
+            map.remove(1);
+        }
+
+        @Actor
+        public void putter() {
+            map.put(33, 33);
+        }
+
+        @Arbiter
+        public void arbiter(III_Result r) {
+            r.r1 = map.get(17) != null ? 1 : 0;
+            r.r2 = map.get(33) != null ? 1 : 0;
+            r.r3 = map.size();
+        }
+    }
+
+    @JCStressTest
+    @Description("树桶中 remove 与 put 不同的键")
+    @Outcome(id = "1, 1, 9", expect = ACCEPTABLE, desc = "两个操作都生效")
+    @Outcome(expect = FORBIDDEN, desc = "树桶更新丢失")
+    @State
+    public static class TreeBinKeys {
+        final MyConcurrentHashMap<Key, Integer> map = new MyConcurrentHashMap<>(64);
+
+        public TreeBinKeys() {
+            for (int i = 0; i < 9; i++) map.put(Key.colliding(i), i);
+        }
+
+        @Actor
+        public void remover() {
+            map.remove(Key.colliding(4));
+        }
+
+        @Actor
+        public void putter() {
+            map.put(Key.colliding(100), 100);
+        }
+
+        @Arbiter
+        public void arbiter(III_Result r) {
+            r.r1 = map.get(Key.colliding(4)) == null ? 1 : 0;
+            r.r2 = map.get(Key.colliding(100)) != null ? 1 : 0;
+            r.r3 = map.size();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.dhu.zlchashmap.jcstress;
+
+import com.dhu.zlchashmap.MyConcurrentHashMap;
+import org.openjdk.jcstress.annotations.*;
+import org.openjdk.jcstress.infra.results.III_Result;
+import org.openjdk.jcstress.infra.results.II_Result;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+/**
+ * 两个线程同时向同一个空桶插入：CAS 失败的一方必须重试并挂到链上，不能覆盖对方
+ */
+public class SameBinPut {
+
+    @JCStressTest
+    @Description("不同键落入同一个空桶，两个都必须保留")
+    @Outcome(id = "2, 2", expect = ACCEPTABLE, desc = "两个映射都在")
+    @Outcome(expect = FORBIDDEN, desc = "丢失了插入")
+    @State
+    public static class DifferentKeys {
+        // 容量 16 时 1 和 17 落在同一个桶
+        final MyConcurrentHashMap<Integer, Integer> map = new MyConcurrentHashMap<>(16);
+
+        @Actor
+        public void actor1() {
+            map.put(1, 1);
+        }
+
+        @Actor
+        public void actor2() {
+            map.put(17, 17);
+        }
+
+        @Arbiter
+        public void arbiter(II_Result r) {
+            r.r1 = map.size();
+            r.r2 = (map.get(1) != null ? 1 : 0) + (map.get(17) != null ? 1 : 0);
+        }
+    }
+
+    @JCStressTest
+    @Description("同一个键被两个线程 put：恰好一方看到 null，另一方看到对方的值")
+    @Outcome(id = "-1, 1, 2", expect = ACCEPTABLE, desc = "actor1 先，actor2 覆盖")
+    @Outcome(id = "2, -1, 1", expect = ACCEPTABLE, desc = "actor2 先，actor1 覆盖")
+    @Outcome(expect = FORBIDDEN, desc = "不可线性化")
+    @State
+    public static class SameKey {
+        final MyConcurrentHashMap<Integer, Integer> map = new MyConcurrentHashMap<>(16);
+
+        @Actor
+        public void actor1(III_Result r) {
+            Integer prev = map.put(5, 1);
+            r.r1 = prev == null ? -1 : prev;
+        }
+
+        @Actor
+        public void actor2(III_Result r) {
+            Integer prev = map.put(5, 2);
+            r.r2 = prev == null ? -1 : prev;
+        }
+
+        @Arbiter
+        public void arbiter(III_Result r) {
+            r.r3 = map.size() == 1 ? map.get(5) : -map.size();
+        }
+    }
+
+    @JCStressTest
+    @Description("putIfAbsent 竞争同一个键：只有一方成功")
+    @Outcome(id = "1, 1", expect = ACCEPTABLE, desc = "恰好一方成功")
+    @Outcome(expect = FORBIDDEN, desc = "两方都成功或都失败")
+    @State
+    public static class PutIfAbsent {
+        final MyConcurrentHashMap<Integer, Integer> map = new MyConcurrentHashMap<>(16);
+        int winners1, winners2;
+
+        @Actor
+        public void actor1() {
+            winners1 = map.putIfAbsent(3, 1) == null ? 1 : 0;
+        }
+
+        @Actor
+        public void actor2() {
+            winners2 = map.putIfAbsent(3, 2) == null ? 1 : 0;
+        }
+
+        @Arbiter
+        public void arbiter(II_Result r) {
+            r.r1 = winners1 + winners2;
+            r.r2 = map.size();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.dhu.zlchashmap.jcstress;
+
+import com.dhu.zlchashmap.MyConcurrentHashMap;
+import org.openjdk.jcstress.annotations.*;
+import org.openjdk.jcstress.infra.results.II_Result;
+import org.openjdk.jcstress.infra.results.I_Result;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE_INTERESTING;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+/**
+ * size 在并发修改结束后必须准确；并发期间只要求落在合理范围内
+ */
+public class SizeAccuracy {
+
+    @JCStressTest
+    @Description("并发插入、覆盖和删除之后 size 与实际映射数一致")
+    @Outcome(id = "3", expect = ACCEPTABLE, desc = "计数准确")
+    @Outcome(expect = FORBIDDEN, desc = "计数丢失或重复")
+    @State
+    public static class Quiescent {
+        final MyConcurrentHashMap<Integer, Integer> map = new MyConcurrentHashMap<>(2);
+
+        public Quiescent() {
+            map.put(0, 0);
+            map.put(1, 1);
+        }
+
+        @Actor
+        public void insert() {
+            map.put(2, 2);
+            map.put(3, 3); // 可能触发扩容
+        }
+
+        @Actor
+        public void overwrite() {
+            map.put(1, 10);
+        }
+
+        @Actor
+        public void remove() {
+            map.remove(0);
+        }
+
+        @Arbiter
+        public void arbiter(I_Result r) {
+            r.r1 = map.size();
+        }
+    }
+
+    @JCStressTest
+    @Description("并发期间读取 size：可能尚未计入，但不能为负或超出可能的映射数")
+    @Outcome(id = "0, 2", expect = ACCEPTABLE, desc = "尚未计入")
+    @Outcome(id = "1, 2", expect = ACCEPTABLE_INTERESTING, desc = "计入一个")
+    @Outcome(id = "2, 2", expect = ACCEPTABLE, desc = "都已计入")
+    @Outcome(expect = FORBIDDEN, desc = "计数越界")
+    @State
+    public static class Concurrent {
+        final MyConcurrentHashMap<Integer, Integer> map = new MyConcurrentHashMap<>(16);
+
+        @Actor
+        public void actor1() {
+            map.put(1, 1);
+        }
+
+        @Actor
+        public void actor2() {
+            map.put(17, 17);
+        }
+
+        @Actor
+        public void observer(II_Result r) {
+            r.r1 = map.size();
+        }
+
+        @Arbiter
+        public void arbiter(II_Result r) {
+            r.r2 = map.size();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.dhu.zlchashmap.workload;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyDistributionTest {
+
+    @Test
+    void testZipfianHotKeysAreScrambled() {
+        int keySpace = 10_000;
+        KeyDistribution.Zipfian z = (KeyDistribution.Zipfian) KeyDistribution.ZIPFIAN.prepare(keySpace);
+        KeyDistribution.Sampler s = KeyDistribution.ZIPFIAN.sampler(keySpace, 0, 1, z);
+        SplittableRandom rnd = new SplittableRandom(1);
+        int[] counts = new int[keySpace];
+        for (int i = 0; i < 200_000; i++) counts[s.next(rnd)]++;
+
+        // 名次 0 和 1 是最热的两个键，打散后既不是 0、1，也不相邻
+        int hottest = (int) Long.remainderUnsigned(KeyDistribution.Zipfian.fnv64(0), keySpace);
+        int second = (int) Long.remainderUnsigned(KeyDistribution.Zipfian.fnv64(1), keySpace);
+        for (int c : counts) assertTrue(c <= counts[hottest]);
+        assertTrue(counts[hottest] > 200_000 / 20);
+        assertTrue(counts[second] > 200_000 / 50);
+        assertTrue(Math.abs(hottest - second) > 1);
+        assertTrue(counts[0] < counts[hottest] / 10);
+    }
+}
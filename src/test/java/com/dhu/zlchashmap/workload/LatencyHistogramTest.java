@@ -0,0 +1,50 @@
+package com.dhu.zlchashmap.workload;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void testIndexRoundTripWithinPrecision() {
+        for (long v = 1; v < (1L << 40); v = v * 3 + 1) {
+            long upper = LatencyHistogram.highestValueAt(LatencyHistogram.indexOf(v));
+            assertTrue(upper >= v, "upper bound below value " + v);
+            assertTrue(upper - v <= v / (LatencyHistogram.HALF - 1), "bucket too wide at " + v);
+        }
+    }
+
+    @Test
+    void testPercentiles() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) h.record(i * 1000L);
+        assertEquals(1000, h.count());
+        assertEquals(500_000, h.valueAtPercentile(50), 500_000 * 0.002);
+        assertEquals(990_000, h.valueAtPercentile(99), 990_000 * 0.002);
+        assertEquals(1_000_000, h.max());
+        assertEquals(1_000_000, h.valueAtPercentile(100));
+    }
+
+    @Test
+    void testMerge() {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        a.record(10);
+        b.record(20);
+        b.record(30);
+        a.add(b);
+        assertEquals(3, a.count());
+        assertEquals(30, a.max());
+        assertEquals(20, a.valueAtPercentile(50));
+    }
+
+    @Test
+    void testDriverSmoke() throws InterruptedException {
+        WorkloadConfig c = WorkloadConfig.parse("--map=myhashmap", "--threads=virtual", "--concurrency=4",
+                "--keys=1000", "--dist=zipfian", "--warmup=0", "--duration=1", "--rate=20000");
+        WorkloadDriver.Result r = new WorkloadDriver(c).run();
+        assertTrue(r.totalOps() > 0);
+        assertTrue(r.histogram(WorkloadDriver.Op.GET).count() > r.histogram(WorkloadDriver.Op.REMOVE).count());
+    }
+}
@@ -0,0 +1,110 @@
+package com.dhu.zlchashmap.workload;
+
+import com.dhu.zlchashmap.MyConcurrentHashMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraceReplayerTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void testRecordAndReplayReproducesFinalState() throws IOException {
+        Path file = dir.resolve("trace.bin");
+        TracingHashMap<String, Integer> m;
+        try (TraceRecorder recorder = new TraceRecorder(file)) {
+            m = new TracingHashMap<>(recorder);
+            for (int i = 0; i < 5000; i++) {
+                m.put("k" + (i % 700), i);
+                m.get("k" + (i % 31));
+                if (i % 3 == 0) m.remove("k" + (i % 500));
+                m.containsKey("x" + i);
+            }
+            assertEquals(0, recorder.dropped());
+        }
+
+        MapTarget target = MapTarget.of(new MyConcurrentHashMap<>());
+        List<TraceReplayer.Phase> phases = new TraceReplayer(file, TimeUnit.HOURS.toNanos(1)).replay(target);
+        assertEquals(1, phases.size());
+        assertEquals(5000 * 3 + 5000 / 3 + 1, phases.get(0).operations());
+        assertEquals(m.size(), target.size());
+    }
+
+    @Test
+    void testPhasesSplitByRecordedTime() throws IOException, InterruptedException {
+        Path file = dir.resolve("phases.bin");
+        try (TraceRecorder recorder = new TraceRecorder(file, 64, 4)) {
+            TracingHashMap<Integer, Integer> m = new TracingHashMap<>(recorder);
+            for (int i = 0; i < 64; i++) m.put(i, i);
+            Thread.sleep(50);
+            for (int i = 0; i < 64; i++) m.get(i);
+        }
+        List<TraceReplayer.Phase> phases = new TraceReplayer(file, TimeUnit.MILLISECONDS.toNanos(20))
+                .replay(MapTarget.create("myhashmap", 16));
+        assertTrue(phases.size() >= 2);
+        assertEquals(128, phases.stream().mapToLong(TraceReplayer.Phase::operations).sum());
+    }
+
+    @Test
+    void testDroppedChunksAreCounted() throws IOException {
+        Path file = dir.resolve("dropped.bin");
+        long dropped;
+        try (TraceRecorder recorder = new TraceRecorder(file, 4, 2)) {
+            TracingHashMap<Integer, Integer> m = new TracingHashMap<>(recorder);
+            for (int i = 0; i < 100_000; i++) m.put(i & 1023, i);
+            dropped = recorder.dropped();
+        }
+        List<TraceReplayer.Phase> phases = new TraceReplayer(file, TimeUnit.HOURS.toNanos(1))
+                .replay(MapTarget.create("hashmap", 16));
+        long replayed = phases.stream().mapToLong(TraceReplayer.Phase::operations).sum();
+        assertEquals(100_000, replayed + dropped);
+        assertEquals(dropped, phases.get(phases.size() - 1).dropped());
+    }
+
+    record SameHash(int id) {
+        @Override
+        public int hashCode() {
+            return -1;
+        }
+    }
+
+    @Test
+    void testCollidingKeysOfOtherTypesStayDistinct() throws IOException {
+        Path file = dir.resolve("colliding.bin");
+        try (TraceRecorder recorder = new TraceRecorder(file)) {
+            TracingHashMap<SameHash, Integer> m = new TracingHashMap<>(recorder);
+            for (int i = 0; i < 100; i++) m.put(new SameHash(i), i);
+            for (int i = 0; i < 100; i += 2) m.remove(new SameHash(i));
+        }
+        // 按值计算的指纹对 hashCode 相同的记录无能为力
+        assertEquals(TraceRecorder.fingerprint(new SameHash(1)), TraceRecorder.fingerprint(new SameHash(2)));
+        MapTarget target = MapTarget.create("myhashmap", 16);
+        new TraceReplayer(file, TimeUnit.HOURS.toNanos(1)).replay(target);
+        assertEquals(50, target.size());
+
+        // 自定义指纹函数
+        Path custom = dir.resolve("custom.bin");
+        try (TraceRecorder recorder = new TraceRecorder(custom, 64, 4, k -> ((SameHash) k).id())) {
+            TracingHashMap<SameHash, Integer> m = new TracingHashMap<>(recorder);
+            for (int i = 0; i < 10; i++) m.put(new SameHash(i % 5), i);
+        }
+        MapTarget target2 = MapTarget.create("myhashmap", 16);
+        new TraceReplayer(custom, TimeUnit.HOURS.toNanos(1)).replay(target2);
+        assertEquals(5, target2.size());
+    }
+
+    @Test
+    void testFingerprintDistinguishesCollidingStrings() {
+        // "Aa" 与 "BB" 的 hashCode 相同
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        assertNotEquals(TraceRecorder.fingerprint("Aa"), TraceRecorder.fingerprint("BB"));
+        assertEquals(TraceRecorder.fingerprint("Aa"), TraceRecorder.fingerprint(new StringBuilder("Aa")));
+    }
+}